@@ -19,6 +19,9 @@ import com.digi.wva.async.WvaCallback;
 
 import org.joda.time.DateTime;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
@@ -156,6 +159,25 @@ public class ChartActivityTest extends ActivityInstrumentationTestCase2<ChartAct
         assertEquals("Speed series not cleared", 0, frag.getSpeedSeries().getItemCount());
     }
 
+    public void testChooseEndpoints() {
+        ChartFragment frag = getChartFragment();
+        List<String> original = frag.getEndpoints();
+
+        try {
+            frag.handleNewData(new VehicleData(VEHICLE_SPEED, 10, null));
+            frag.setEndpoints(Arrays.asList(VEHICLE_SPEED, "FuelLevel"));
+
+            assertNull("RPM series still charted", frag.getRpmSeries());
+            assertEquals("Speed data not carried over", 1, frag.getSpeedSeries().getItemCount());
+
+            frag.handleNewData(new VehicleData("FuelLevel", 50, null));
+            frag.handleNewData(new VehicleData(ENGINE_SPEED, 1000, null));
+            assertEquals("FuelLevel series has wrong count", 1, frag.getSeries("FuelLevel").getItemCount());
+        } finally {
+            frag.setEndpoints(original);
+        }
+    }
+
     public void testTimespanCorrect() {
         ChartFragment frag = getChartFragment();
 
@@ -165,6 +187,25 @@ public class ChartActivityTest extends ActivityInstrumentationTestCase2<ChartAct
         assertEquals("End time is off", end, start + interval, 0.01);
     }
 
+    public void testHistoryKeptWhileZoomed() {
+        ChartFragment frag = getChartFragment();
+        long start = (long) frag.getStartTime();
+
+        frag.setZoomEnabled(true);
+        try {
+            // An hour of data, one point a minute, is kept although only
+            // 15 minutes of it are shown.
+            for (int i = 0; i <= 60; i++) {
+                frag.handleNewData(new VehicleData(VEHICLE_SPEED, i, new DateTime(start + i * 60000L)));
+            }
+            assertEquals("History not kept", 61, frag.getSpeedSeries().getItemCount());
+            assertEquals("Chart not following new data", start + 60 * 60000L, frag.getEndTime(), 0.01);
+        } finally {
+            frag.setZoomEnabled(false);
+        }
+        assertFalse("Still in zoom mode", frag.isZoomEnabled());
+    }
+
 //    public void testTimeShift() {
 //
 //    }
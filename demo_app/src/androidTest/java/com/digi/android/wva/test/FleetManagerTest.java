@@ -0,0 +1,142 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test;
+
+import android.test.ApplicationTestCase;
+
+import com.digi.android.wva.DeviceSession;
+import com.digi.android.wva.FleetManager;
+import com.digi.android.wva.WvaApplication;
+import com.digi.android.wva.adapters.VariableAdapter;
+import com.digi.android.wva.util.VehicleDataList;
+import com.digi.wva.WVA;
+import com.digi.wva.async.EventChannelStateListener;
+import com.digi.wva.async.VehicleDataListener;
+import com.digi.wva.async.WvaCallback;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+import static org.mockito.Mockito.eq;
+
+public class FleetManagerTest extends ApplicationTestCase<WvaApplication> {
+    private FleetManager fleet;
+    private WVA device;
+
+    public FleetManagerTest() {
+        super(WvaApplication.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        createApplication();
+        fleet = FleetManager.getInstance();
+        device = mock(WVA.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fleet.disconnectAll();
+        super.tearDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setEndpoints(final String... endpoints) {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Set<String> set = new HashSet<String>(Arrays.asList(endpoints));
+                ((WvaCallback<Set<String>>) invocation.getArguments()[0]).onResponse(null, set);
+                return null;
+            }
+        }).when(device).fetchVehicleDataEndpoints(any(WvaCallback.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testConnectStartsSession() {
+        DeviceSession session = fleet.connect("truck1", device, 5000, 10);
+
+        verify(device).setVehicleDataListener(any(VehicleDataListener.class));
+        verify(device).setEventChannelStateListener(any(EventChannelStateListener.class));
+        verify(device).fetchVehicleDataEndpoints(any(WvaCallback.class));
+        verify(device).connectEventChannel(eq(5000));
+        assertEquals(DeviceSession.State.CONNECTING, session.getState());
+
+        // Connecting again to the same device gives back the same session
+        assertSame(session, fleet.connect("truck1", mock(WVA.class), 5000, 10));
+        assertEquals(1, fleet.getSessions().size());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testEndpointsAreSubscribed() {
+        setEndpoints("EngineSpeed", "VehicleSpeed", "TirePressure1");
+        DeviceSession session = fleet.connect("truck1", device, 5000, 10);
+
+        ArgumentCaptor<WvaCallback> engine = ArgumentCaptor.forClass(WvaCallback.class);
+        verify(device).subscribeToVehicleData(eq("EngineSpeed"), eq(10), engine.capture());
+        verify(device).subscribeToVehicleData(eq("VehicleSpeed"), eq(10), any(WvaCallback.class));
+        // Pressure Pro endpoints are not subscribed to automatically
+        verify(device, never()).subscribeToVehicleData(eq("TirePressure1"), anyInt(), any(WvaCallback.class));
+
+        engine.getValue().onResponse(null, null);
+        assertEquals(3, session.getEndpoints().size());
+        assertTrue(session.getEndpoints().find("EngineSpeed").isSubscribed());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testOnlySuccessfulSubscriptionsAreMarked() {
+        setEndpoints("EngineSpeed", "VehicleSpeed");
+        DeviceSession session = fleet.connect("truck1", device, 5000, 10);
+
+        ArgumentCaptor<WvaCallback> engine = ArgumentCaptor.forClass(WvaCallback.class);
+        ArgumentCaptor<WvaCallback> speed = ArgumentCaptor.forClass(WvaCallback.class);
+        verify(device).subscribeToVehicleData(eq("EngineSpeed"), eq(10), engine.capture());
+        verify(device).subscribeToVehicleData(eq("VehicleSpeed"), eq(10), speed.capture());
+        // Nothing is subscribed until the device answers
+        assertFalse(session.getEndpoints().find("EngineSpeed").isSubscribed());
+
+        engine.getValue().onResponse(null, null);
+        speed.getValue().onResponse(new Exception("Not found"), null);
+
+        assertTrue(session.getEndpoints().find("EngineSpeed").isSubscribed());
+        assertFalse(session.getEndpoints().find("VehicleSpeed").isSubscribed());
+    }
+
+    public void testSetActiveSwitchesData() {
+        DeviceSession session = fleet.connect("truck1", device, 5000, 10);
+        VariableAdapter variables = VariableAdapter.getInstance();
+
+        fleet.setActive(session);
+        assertSame(session, fleet.getActive());
+        assertSame(session.getDataList(), variables.getData());
+
+        fleet.setActive(null);
+        assertSame(VehicleDataList.getInstance(), variables.getData());
+    }
+
+    public void testDisconnect() {
+        DeviceSession session = fleet.connect("truck1", device, 5000, 10);
+        fleet.setActive(session);
+
+        fleet.disconnect("truck1");
+
+        verify(device).disconnectEventChannel(true);
+        assertEquals(DeviceSession.State.CLOSED, session.getState());
+        assertNull(fleet.getSession("truck1"));
+        assertNull(fleet.getActive());
+        assertSame(VehicleDataList.getInstance(), VariableAdapter.getInstance().getData());
+    }
+}
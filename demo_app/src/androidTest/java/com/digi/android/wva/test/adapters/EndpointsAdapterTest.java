@@ -144,4 +144,14 @@ public class EndpointsAdapterTest extends AndroidTestCase {
         assertSame("Removed wrong index", get().getItem(2), confs.get(2));
         assertSame("Removed wrong index", get().getItem(3), confs.get(4));
     }
+
+    public void testSortedOrder() {
+        get().add(new EndpointConfiguration("VehicleSpeed"));
+        get().add(new EndpointConfiguration("CTI_Tire1"));
+        get().add(new EndpointConfiguration("EngineSpeed"));
+
+        assertEquals("Wrong first endpoint", "EngineSpeed", get().getItem(0).getEndpoint());
+        assertEquals("Wrong second endpoint", "VehicleSpeed", get().getItem(1).getEndpoint());
+        assertEquals("Pressure Pro endpoint not last", "CTI_Tire1", get().getItem(2).getEndpoint());
+    }
 }
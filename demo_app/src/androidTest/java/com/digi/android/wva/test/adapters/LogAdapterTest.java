@@ -48,8 +48,41 @@ public class LogAdapterTest extends AndroidTestCase {
         adapter.alarmTriggered(alarmdata);
 
         assertEquals("Wrong number of events in adapter", 1, adapter.getCount());
-        assertEquals("Wrong event message for alarm", adapter.getItem(0).message, "Alarm: " + alarmdata.name + " = " + alarmdata.value);
-        assertEquals("Wrong event timestamp", adapter.getItem(0).timestamp, alarmdata.timestamp.toString());
+        assertEquals("Wrong event message for alarm", adapter.getItem(0).getMessage(), "Alarm: " + alarmdata.name + " = " + alarmdata.value);
+        assertEquals("Wrong event timestamp", adapter.getItem(0).getTimestamp(), alarmdata.getTimestamp().toString());
         assertTrue("Log event is not alarm", adapter.getItem(0).isAlarm);
     }
+
+    public void testNewestFirst() {
+        LogEvent first = new LogEvent("First", "Test Timestamp");
+        LogEvent second = new LogEvent("Second", "Test Timestamp");
+
+        LogAdapter adapter = LogAdapter.getInstance();
+        adapter.add(first);
+        adapter.add(second);
+
+        assertEquals("Newest event not at top", second, adapter.getItem(0));
+        assertEquals("Oldest event not at bottom", first, adapter.getItem(1));
+        assertEquals("Wrong position for event", 1, adapter.getPosition(first));
+    }
+
+    public void testCapacity() {
+        LogAdapter adapter = LogAdapter.getInstance();
+        int capacity = adapter.getCapacity();
+        try {
+            adapter.setCapacity(10);
+            for (int i = 0; i < 15; i++)
+                adapter.add(new LogEvent("Event " + i, "Test Timestamp"));
+
+            assertEquals("Log grew past its capacity", 10, adapter.getCount());
+            assertEquals("Wrong number of dropped events", 5, adapter.getDroppedCount());
+            assertEquals("Wrong newest event", "Event 14", adapter.getItem(0).getMessage());
+            assertEquals("Wrong oldest event", "Event 5", adapter.getItem(9).getMessage());
+
+            adapter.clear();
+            assertEquals("Dropped count not reset", 0, adapter.getDroppedCount());
+        } finally {
+            adapter.setCapacity(capacity);
+        }
+    }
 }
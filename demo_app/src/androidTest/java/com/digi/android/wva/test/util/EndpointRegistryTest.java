@@ -0,0 +1,67 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import android.test.InstrumentationTestCase;
+
+import com.digi.android.wva.model.EndpointConfiguration;
+import com.digi.android.wva.util.EndpointRegistry;
+
+public class EndpointRegistryTest extends InstrumentationTestCase {
+	private EndpointRegistry registry;
+
+	@Override protected void setUp() {
+		registry = new EndpointRegistry();
+	}
+
+	public void testSortedOrder() {
+		String[] names = {"EngineSpeed", "CTI_Tire1", "VehicleSpeed", "AccelPedal", "TirePressure0"};
+		for (String name : names)
+			registry.add(new EndpointConfiguration(name));
+		registry.add(new EndpointConfiguration(null));
+
+		String[] expected = {"AccelPedal", "EngineSpeed", "VehicleSpeed", "CTI_Tire1", "TirePressure0", null};
+		assertEquals(expected.length, registry.size());
+		for (int i = 0; i < expected.length; i++)
+			assertEquals("Wrong endpoint at " + i, expected[i], registry.get(i).getEndpoint());
+	}
+
+	public void testFind() {
+		EndpointConfiguration speed = new EndpointConfiguration("VehicleSpeed");
+		registry.add(new EndpointConfiguration("EngineSpeed"));
+		registry.add(speed);
+
+		assertSame(speed, registry.find("VehicleSpeed"));
+		assertNull(registry.find("Nothing"));
+		assertNull(registry.find(null));
+	}
+
+	public void testDuplicates() {
+		EndpointConfiguration first = new EndpointConfiguration("EngineSpeed");
+		EndpointConfiguration second = new EndpointConfiguration("EngineSpeed");
+		registry.add(first);
+		registry.add(second);
+
+		assertEquals(2, registry.size());
+		assertSame("find() should return the first added", first, registry.find("EngineSpeed"));
+		assertEquals(1, registry.indexOf(second));
+
+		assertTrue(registry.remove(first));
+		assertSame("Remaining duplicate not found", second, registry.find("EngineSpeed"));
+		assertTrue(registry.remove(second));
+		assertNull(registry.find("EngineSpeed"));
+		assertFalse("Removed twice", registry.remove(second));
+	}
+
+	public void testClear() {
+		registry.add(new EndpointConfiguration("EngineSpeed"));
+		registry.clear();
+		assertEquals(0, registry.size());
+		assertNull(registry.find("EngineSpeed"));
+	}
+}
@@ -9,6 +9,7 @@ package com.digi.android.wva.test.util;
 
 import android.test.InstrumentationTestCase;
 import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.ChartFeed;
 import com.digi.android.wva.util.MessageCourier;
 import com.digi.android.wva.util.MessageCourier.ChartMessage;
 import com.digi.android.wva.util.MessageCourier.DashboardMessage;
@@ -18,6 +19,13 @@ public class MessageCourierTest extends InstrumentationTestCase {
 	@Override
 	protected void setUp() throws Exception {
 		MessageCourier.clear();
+		MessageCourier.getChartFeed().setEnabled(true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		MessageCourier.getChartFeed().setEnabled(false);
+		MessageCourier.clear();
 	}
 	
 	public void testConnected() {
@@ -51,13 +59,14 @@ public class MessageCourierTest extends InstrumentationTestCase {
 		
 		MessageCourier.sendChartNewData(data);
 		
-		ChartMessage[] msgs = MessageCourier.getChartMessages();
-		
-		assertEquals("Not exactly 1 message for chart", 1, msgs.length);
-		
-		ChartMessage msg = msgs[0];
-		assertSame("Wrong first message", msg.getData(), data);
-		assertNull("Message contains error", msg.getError());
+		// Data goes to the chart feed, not the chart's message queue
+		assertEquals("New data sent as chart message", 0, MessageCourier.getChartMessages().length);
+
+		ChartFeed.Points points = new ChartFeed.Points();
+		assertEquals("Not exactly 1 point for chart", 1,
+				MessageCourier.getChartFeed().drain("Test", points));
+		assertEquals("Wrong point time", data.time, points.getTime(0));
+		assertEquals("Wrong point value", data.value, points.getValue(0), 0.001);
 	}
 	
 	public void testDashSize() {
@@ -72,14 +81,15 @@ public class MessageCourierTest extends InstrumentationTestCase {
 	}
 	
 	public void testChartSize() {
-		// Chart message list "max size" is 20
+		// Chart data is no longer limited to 20 points
 		for (int i = 0; i < 40; i++) {
 			MessageCourier.sendChartNewData(new VehicleData("", i, null));
 		}
-		ChartMessage[] msgs = MessageCourier.getChartMessages();
-		assertEquals("Chart message list incorrect size", 20, msgs.length);
-		// Check that the first twenty messages were dropped
-		assertEquals("Wrong message at front of list", 20, (int)msgs[0].getData().value);
+		ChartFeed.Points points = new ChartFeed.Points();
+		assertEquals("Chart data incorrect size", 40,
+				MessageCourier.getChartFeed().drain("", points));
+		assertEquals("Wrong point at front of list", 0, (int)points.getValue(0));
+		assertEquals("Chart data dropped", 0, MessageCourier.getChartFeed().getDroppedCount());
 	}
 	
 	public void testClearEtc() {
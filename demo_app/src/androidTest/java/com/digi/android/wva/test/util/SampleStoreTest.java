@@ -0,0 +1,114 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import android.test.InstrumentationTestCase;
+
+import com.digi.android.wva.util.SampleStore;
+import com.digi.wva.async.EventFactory;
+
+import java.io.File;
+
+public class SampleStoreTest extends InstrumentationTestCase {
+	private File dir;
+	private SampleStore store;
+	private final SampleStore.Samples samples = new SampleStore.Samples();
+
+	@Override protected void setUp() {
+		dir = new File(getInstrumentation().getTargetContext().getCacheDir(), "sample-store-test");
+		deleteDir();
+		// Room for 4 records per segment, and 3 segments
+		store = new SampleStore(dir, 32 + 4 * 24, 3);
+	}
+
+	@Override protected void tearDown() {
+		store.close();
+		deleteDir();
+	}
+
+	private void deleteDir() {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files)
+				f.delete();
+		}
+		dir.delete();
+	}
+
+	public void testQueryByEndpointAndTime() throws InterruptedException {
+		for (int t = 0; t < 6; t++) {
+			store.append("Speed", EventFactory.Type.SUBSCRIPTION, t * 1000, t);
+			store.append("Rpm", EventFactory.Type.SUBSCRIPTION, t * 1000, t * 100);
+		}
+		store.append("Speed", EventFactory.Type.ALARM, 6000, 99);
+		store.flush();
+
+		assertEquals(3, store.query("Speed", 2000, 4000, samples));
+		assertEquals(2000, samples.getTime(0));
+		assertEquals(4.0, samples.getValue(2));
+
+		assertEquals(1, store.query("Rpm", 5000, 10000, samples));
+		assertEquals(500.0, samples.getValue(0));
+
+		assertEquals(1, store.query("Speed", 6000, 6000, samples));
+		assertEquals(EventFactory.Type.ALARM, samples.getType(0));
+
+		assertEquals(0, store.query("Fuel", 0, 10000, samples));
+	}
+
+	public void testOldSegmentsDeleted() throws InterruptedException {
+		// 20 records fill 5 segments; only the newest 3 are kept
+		for (int t = 0; t < 20; t++)
+			store.append("Speed", EventFactory.Type.SUBSCRIPTION, t, t);
+		store.flush();
+
+		assertEquals(12, store.query("Speed", 0, 100, samples));
+		assertEquals(8, samples.getTime(0));
+	}
+
+	public void testReopen() throws InterruptedException {
+		store.append("Speed", EventFactory.Type.SUBSCRIPTION, 1000, 50);
+		store.append("Rpm", EventFactory.Type.SUBSCRIPTION, 1000, 2000);
+		store.flush();
+		store.close();
+
+		store = new SampleStore(dir, 32 + 4 * 24, 3);
+		store.append("Rpm", EventFactory.Type.SUBSCRIPTION, 2000, 3000);
+		store.flush();
+
+		assertEquals(1, store.query("Speed", 0, 10000, samples));
+		assertEquals(50.0, samples.getValue(0));
+		assertEquals(2, store.query("Rpm", 0, 10000, samples));
+		assertEquals(3000.0, samples.getValue(1));
+	}
+
+	public void testReopenWithoutFlush() throws InterruptedException {
+		store.append("Rpm", EventFactory.Type.SUBSCRIPTION, 1000, 2000);
+		store.append("Speed", EventFactory.Type.SUBSCRIPTION, 1000, 50);
+		// Wait for the writer without flush() or close(), as if the app died
+		// as soon as the records were written.
+		long deadline = System.currentTimeMillis() + 5000;
+		while (store.query("Speed", 0, 10000, samples) == 0) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+
+		SampleStore first = store;
+		store = new SampleStore(dir, 32 + 4 * 24, 3);
+		store.append("Fuel", EventFactory.Type.SUBSCRIPTION, 2000, 30);
+		store.flush();
+		first.close();
+
+		assertEquals(1, store.query("Rpm", 0, 10000, samples));
+		assertEquals(2000.0, samples.getValue(0));
+		assertEquals(1, store.query("Speed", 0, 10000, samples));
+		assertEquals(50.0, samples.getValue(0));
+		assertEquals(1, store.query("Fuel", 0, 10000, samples));
+		assertEquals(30.0, samples.getValue(0));
+	}
+}
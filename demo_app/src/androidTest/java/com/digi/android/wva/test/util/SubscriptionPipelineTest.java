@@ -0,0 +1,140 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.test.InstrumentationTestCase;
+
+import com.digi.android.wva.util.SubscriptionPipeline;
+import com.digi.wva.async.WvaCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SubscriptionPipelineTest extends InstrumentationTestCase {
+	/** Records subscription requests, leaving them to be answered by the test. */
+	private static class FakeSubscriber implements SubscriptionPipeline.Subscriber {
+		final List<String> endpoints = new ArrayList<String>();
+		final List<WvaCallback<Void>> callbacks = new ArrayList<WvaCallback<Void>>();
+
+		@Override
+		public synchronized boolean subscribe(String endpoint, WvaCallback<Void> callback) {
+			endpoints.add(endpoint);
+			callbacks.add(callback);
+			return true;
+		}
+	}
+
+	private static class RecordingListener implements SubscriptionPipeline.Listener {
+		final CountDownLatch done = new CountDownLatch(1);
+		int progress = -1;
+		int subscribed = -1;
+		List<String> failed;
+
+		@Override
+		public void onProgress(int completed, int total) {
+			progress = completed;
+		}
+
+		@Override
+		public void onFinished(int subscribed, List<String> failed) {
+			this.subscribed = subscribed;
+			this.failed = failed;
+			done.countDown();
+		}
+	}
+
+	private Handler handler;
+
+	@Override protected void setUp() {
+		handler = new Handler(Looper.getMainLooper());
+	}
+
+	public void testWindowLimitsRequestsInFlight() {
+		FakeSubscriber subscriber = new FakeSubscriber();
+		RecordingListener listener = new RecordingListener();
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(handler, subscriber, listener);
+		pipeline.setMaxInFlight(2);
+		pipeline.start(Arrays.asList("A", "B", "C", "D", "E"));
+
+		assertEquals(Arrays.asList("A", "B"), subscriber.endpoints);
+
+		// Each answer frees a slot for the next endpoint
+		subscriber.callbacks.get(0).onResponse(null, null);
+		assertEquals(3, subscriber.endpoints.size());
+		assertEquals("C", subscriber.endpoints.get(2));
+		assertEquals(1, listener.progress);
+
+		for (int i = 1; i < 5; i++)
+			subscriber.callbacks.get(i).onResponse(null, null);
+		assertEquals(5, subscriber.endpoints.size());
+		assertTrue(pipeline.isFinished());
+		assertEquals(5, listener.subscribed);
+		assertTrue(listener.failed.isEmpty());
+	}
+
+	public void testFailuresAreRetried() throws InterruptedException {
+		final List<String> tried = new ArrayList<String>();
+		RecordingListener listener = new RecordingListener();
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(handler,
+				new SubscriptionPipeline.Subscriber() {
+					@Override
+					public boolean subscribe(String endpoint, WvaCallback<Void> callback) {
+						synchronized (tried) {
+							tried.add(endpoint);
+						}
+						// "good" always works; "bad" never does
+						callback.onResponse("good".equals(endpoint) ? null : new Exception("nope"), null);
+						return true;
+					}
+				}, listener);
+		pipeline.setRetries(3, 0);
+		pipeline.start(Arrays.asList("good", "bad"));
+
+		assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, listener.subscribed);
+		assertEquals(Arrays.asList("bad"), listener.failed);
+		synchronized (tried) {
+			assertEquals(4, tried.size());
+		}
+	}
+
+	public void testCancelStopsNewRequests() {
+		FakeSubscriber subscriber = new FakeSubscriber();
+		RecordingListener listener = new RecordingListener();
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(handler, subscriber, listener);
+		pipeline.setMaxInFlight(1);
+		pipeline.start(Arrays.asList("A", "B", "C"));
+		pipeline.cancel();
+
+		subscriber.callbacks.get(0).onResponse(null, null);
+		assertEquals(1, subscriber.endpoints.size());
+		assertFalse(pipeline.isFinished());
+		assertEquals(-1, listener.subscribed);
+	}
+
+	public void testSubscriberCanCancel() {
+		final List<String> tried = new ArrayList<String>();
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(handler,
+				new SubscriptionPipeline.Subscriber() {
+					@Override
+					public boolean subscribe(String endpoint, WvaCallback<Void> callback) {
+						tried.add(endpoint);
+						return false;
+					}
+				}, null);
+		pipeline.start(Arrays.asList("A", "B", "C"));
+
+		assertEquals(Arrays.asList("A"), tried);
+		assertFalse(pipeline.isFinished());
+	}
+}
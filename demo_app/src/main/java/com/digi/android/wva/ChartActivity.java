@@ -11,6 +11,7 @@ import android.os.Bundle;
 import android.util.Log;
 
 import com.actionbarsherlock.app.SherlockFragmentActivity;
+import com.actionbarsherlock.view.Menu;
 import com.actionbarsherlock.view.MenuItem;
 import com.digi.android.wva.fragments.ChartFragment;
 import com.digi.android.wva.fragments.ConnectionErrorDialog;
@@ -37,12 +38,26 @@ public class ChartActivity extends SherlockFragmentActivity
         super.finish();
     }
 
+    @Override
+	public boolean onCreateOptionsMenu(Menu menu) {
+		getSupportMenuInflater().inflate(R.menu.chart, menu);
+		menu.findItem(R.id.chart_zoom).setChecked(getChartFragment().isZoomEnabled());
+		return true;
+	}
+
     @Override
 	public boolean onOptionsItemSelected(MenuItem item) {
 		switch (item.getItemId()) {
 		case android.R.id.home:
 			finish();
 			return true;
+		case R.id.choose_chart_endpoints:
+			getChartFragment().showEndpointPicker();
+			return true;
+		case R.id.chart_zoom:
+			item.setChecked(!item.isChecked());
+			getChartFragment().setZoomEnabled(item.isChecked());
+			return true;
 		}
 		return false;
 	}
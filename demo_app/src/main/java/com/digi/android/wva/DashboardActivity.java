@@ -11,7 +11,6 @@ import android.annotation.SuppressLint;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Message;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
@@ -31,9 +30,12 @@ import com.actionbarsherlock.view.Window;
 import com.digi.android.wva.adapters.EndpointsAdapter;
 import com.digi.android.wva.adapters.LogAdapter;
 import com.digi.android.wva.adapters.VariableAdapter;
+import com.digi.android.wva.fragments.AddFleetDeviceDialog;
 import com.digi.android.wva.fragments.ConnectionErrorDialog;
 import com.digi.android.wva.fragments.ConnectionErrorDialog.ErrorDialogListener;
 import com.digi.android.wva.fragments.EndpointsFragment;
+import com.digi.android.wva.fragments.FleetDialog;
+import com.digi.android.wva.fragments.FleetDialog.FleetDialogListener;
 import com.digi.android.wva.fragments.LogFragment;
 import com.digi.android.wva.fragments.PreConnectionDialog;
 import com.digi.android.wva.fragments.PreConnectionDialog.PreConnectionDialogListener;
@@ -60,7 +62,8 @@ import org.joda.time.DateTimeZone;
  *
  */
 public class DashboardActivity extends SherlockFragmentActivity
-								implements ErrorDialogListener, PreConnectionDialogListener {
+								implements ErrorDialogListener, PreConnectionDialogListener,
+                                           FleetDialogListener, FleetManager.Listener {
 	public static final String INTENT_IP = "ip_address";
 
 	private static final String TAG = "DashboardActivity";
@@ -69,20 +72,13 @@ public class DashboardActivity extends SherlockFragmentActivity
     private String mActionBarTitle;
 	private String mActionBarSubtitle;
 
-    private static final int MESSAGE_LOOP_INTERVAL = 2000;
-
-    private class MessageHandler extends Handler {
+    private final Handler mHandler = new Handler();
+    private final Runnable messageConsumer = new Runnable() {
         @Override
-        public void handleMessage(Message msg) {
-            DashboardActivity.this.processMessages();
-        }
-
-        public void sleep() {
-            this.removeMessages(0);
-            sendMessageDelayed(obtainMessage(0), MESSAGE_LOOP_INTERVAL);
+        public void run() {
+            processMessages();
         }
-    }
-    private final MessageHandler mHandler = new MessageHandler();
+    };
     private boolean isPaused = false;
     private boolean showIndeterminateProgress = true;
 
@@ -93,7 +89,9 @@ public class DashboardActivity extends SherlockFragmentActivity
                 setIsConnecting(false);
                 Log.d(TAG, "processMessages -- got error");
                 showErrorDialog(message.getContents());
-                return; // stop processing and handler loop
+                // Stop processing messages until we are resumed again.
+                MessageCourier.unregisterDashboardConsumer();
+                return;
             } else if (message.isReconnecting() && !isPaused) {
                 // Reconnecting to device, and we're not paused.
                 setIsConnecting(true);
@@ -110,16 +108,14 @@ public class DashboardActivity extends SherlockFragmentActivity
                 setActionBarText();
             }
         }
-        if (isPaused) {
-            return;
-        }
-        mHandler.sleep();
     }
 
     @Override
 	protected void onPause() {
         // Ensure messages stop being processed.
-        mHandler.removeMessages(0);
+        MessageCourier.unregisterDashboardConsumer();
+        mHandler.removeCallbacks(messageConsumer);
+        FleetManager.getInstance().removeListener(this);
         isPaused = true;
 //		Log.i(TAG, "onPause");
 		super.onPause();
@@ -134,7 +130,12 @@ public class DashboardActivity extends SherlockFragmentActivity
 		app.dismissAlarmNotification();
 
         isPaused = false;
-        processMessages();
+        // Process anything already waiting, and be woken up for anything
+        // that arrives while we are in the foreground.
+        MessageCourier.registerDashboardConsumer(mHandler, messageConsumer);
+
+        FleetManager.getInstance().addListener(this);
+        setActionBarText();
 	}
 
     /**
@@ -184,6 +185,9 @@ public class DashboardActivity extends SherlockFragmentActivity
     @Override
 	public void onOkay(String ipAddress, String username, String password,
 			boolean useHttps) {
+        // Devices added to the fleet use the same credentials.
+        FleetManager.getInstance().setCredentials(username, password, useHttps);
+
     	// Use VehicleInfoService to connect to the device.
         startService(VehicleInfoService.buildConnectIntent(
         		getApplicationContext(), ipAddress, username, password, useHttps));
@@ -295,6 +299,8 @@ public class DashboardActivity extends SherlockFragmentActivity
 	}
 
 	protected static void clearData() {
+        // Also puts the VariableAdapter back on the main device's data.
+        FleetManager.getInstance().disconnectAll();
     	VariableAdapter.getInstance().clear();
     	LogAdapter.getInstance().clear();
     	EndpointsAdapter.getInstance().clear();
@@ -307,7 +313,11 @@ public class DashboardActivity extends SherlockFragmentActivity
 	 */
 	protected void setActionBarText() {
 		getSupportActionBar().setTitle(mActionBarTitle);
-		getSupportActionBar().setSubtitle(mActionBarSubtitle);
+		DeviceSession shown = FleetManager.getInstance().getActive();
+		if (shown == null)
+			getSupportActionBar().setSubtitle(mActionBarSubtitle);
+		else
+			getSupportActionBar().setSubtitle(getString(R.string.fleet_subtitle_template, shown.getName()));
 	}
 
 	/**
@@ -318,6 +328,7 @@ public class DashboardActivity extends SherlockFragmentActivity
 //		Log.d(TAG, "navigateBackToDevices");
 
 		Log.d(TAG, "Exiting dashboard, returning to device discovery.");
+		FleetManager.getInstance().disconnectAll();
 		((WvaApplication)getApplication()).clearDevice();
 
 		// developer.android.com/training/implementing-navigation/ancestral.html
@@ -383,11 +394,48 @@ public class DashboardActivity extends SherlockFragmentActivity
 			return true;
         case R.id.fault_codes:
             startActivity(new Intent(this, FaultCodeActivity.class));
+            return true;
+        case R.id.fleet:
+            FleetDialog.newInstance().show(getSupportFragmentManager(), "fleet");
+            return true;
+        case R.id.diagnostics:
+            startActivity(new Intent(this, DiagnosticsActivity.class));
             return true;
 		}
 		return false;
 	}
 
+    @Override
+    public void onShowFleetDevice(String name) {
+        FleetManager fleet = FleetManager.getInstance();
+        fleet.setActive(name == null ? null : fleet.getSession(name));
+    }
+
+    @Override
+    public void onAddFleetDeviceRequested() {
+        AddFleetDeviceDialog.newInstance().show(getSupportFragmentManager(), "fleet_add");
+    }
+
+    @Override
+    public void onAddFleetDevice(String ip) {
+        FleetManager fleet = FleetManager.getInstance();
+        fleet.setActive(fleet.connect(ip));
+    }
+
+    @Override
+    public void onRemoveFleetDevice(String name) {
+        FleetManager.getInstance().disconnect(name);
+    }
+
+    /**
+     * Implementation of {@link FleetManager.Listener}. Keeps the subtitle
+     * showing which device's data is on screen.
+     */
+    @Override
+    public void onFleetChanged() {
+        setActionBarText();
+    }
+
 	/**
 	 * {@link FragmentPagerAdapter} implementation which is used when creating
 	 * the dashboard activity on small screens. Allows the user to swipe between
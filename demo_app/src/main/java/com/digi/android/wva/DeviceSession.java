@@ -0,0 +1,387 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.digi.android.wva.model.EndpointConfiguration;
+import com.digi.android.wva.model.EndpointConfiguration.SubscriptionConfig;
+import com.digi.android.wva.util.BackoffReconnectPolicy;
+import com.digi.android.wva.util.EndpointRegistry;
+import com.digi.android.wva.util.IngestMetrics;
+import com.digi.android.wva.util.ReconnectScheduler;
+import com.digi.android.wva.util.ReconnectStats;
+import com.digi.android.wva.util.SubscriptionPipeline;
+import com.digi.android.wva.util.VehicleDataList;
+import com.digi.android.wva.util.VehicleEndpointComparator;
+import com.digi.android.wva.util.VehicleHistory;
+import com.digi.wva.WVA;
+import com.digi.wva.async.EventChannelStateListener;
+import com.digi.wva.async.VehicleDataEvent;
+import com.digi.wva.async.VehicleDataListener;
+import com.digi.wva.async.WvaCallback;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One of the devices connected to in fleet mode (see {@link FleetManager}).
+ *
+ * <p>Each session has its own {@link WVA}, event channel state listener,
+ * vehicle data listener and reconnect schedule, and keeps what it receives
+ * in its own {@link EndpointRegistry}, {@link VehicleDataList} and
+ * {@link VehicleHistory}, by way of its own {@link VehicleDataIngest}. So
+ * showing a different device is only a matter of pointing the
+ * {@link com.digi.android.wva.adapters.VariableAdapter} at a different list.</p>
+ *
+ * <p>Once connected, the session subscribes to every endpoint (other than
+ * Pressure Pro endpoints) at the default subscription interval, through a
+ * {@link SubscriptionPipeline}. Lost connections are retried with a
+ * {@link BackoffReconnectPolicy} until the session is {@link #close() closed}.
+ * Sessions are created, and should only be used, on the main thread.</p>
+ */
+public class DeviceSession {
+    private static final String TAG = "DeviceSession";
+
+    /**
+     * Connection state of a session
+     */
+    public enum State {
+        /** Fetching endpoints and connecting the event channel. */
+        CONNECTING,
+        /** Event channel connected. */
+        CONNECTED,
+        /** Connection lost, or could not be made; waiting to try again. */
+        RECONNECTING,
+        /** The device could not be reached at all. */
+        FAILED,
+        /** Disconnected for good. */
+        CLOSED
+    }
+
+    private final FleetManager fleet;
+    private final WVA device;
+    private final String name;
+    private final int port;
+    private final int interval;
+    private final Handler handler;
+
+    private final VehicleDataList data = new VehicleDataList();
+    private final EndpointRegistry endpoints = new EndpointRegistry();
+    private final VehicleHistory history = new VehicleHistory();
+    private final ReconnectStats reconnectStats = new ReconnectStats();
+    private final VehicleDataIngest ingest;
+    private final ReconnectScheduler reconnects;
+    private SubscriptionPipeline subscriptions;
+
+    private volatile State state = State.CONNECTING;
+    private volatile String lastError;
+    private volatile int subscribed, failedSubscriptions;
+
+    private final VehicleDataListener dataListener = new VehicleDataListener() {
+        @Override
+        public boolean runsOnUiThread() {
+            return false;
+        }
+
+        @Override
+        public void onEvent(VehicleDataEvent event) {
+            ingest.post(event);
+        }
+    };
+
+    private final EventChannelStateListener stateListener = new EventChannelStateListener() {
+        @Override
+        public boolean runsOnUiThread() {
+            return true;
+        }
+
+        @Override
+        public void onConnected(WVA device) {
+            Log.d(TAG, name + " -- onConnected");
+            if (state == State.CLOSED)
+                return;
+            reconnects.onConnected();
+            lastError = null;
+            setState(State.CONNECTED);
+        }
+
+        @Override
+        public void onError(WVA device, IOException error) {
+            Log.e(TAG, name + " -- connection error", error);
+            if (state == State.CLOSED)
+                return;
+            device.disconnectEventChannel();
+            lastError = error == null ? null : error.getMessage();
+            scheduleReconnect();
+        }
+
+        @Override
+        public void onRemoteClose(WVA device, int port) {
+            Log.d(TAG, name + " -- onRemoteClose");
+            if (state != State.CLOSED)
+                scheduleReconnect();
+        }
+
+        @Override
+        public void onFailedConnection(WVA device, int port) {
+            Log.d(TAG, name + " -- onFailedConnection");
+            if (state != State.CLOSED)
+                scheduleReconnect();
+        }
+
+        private void scheduleReconnect() {
+            setState(State.RECONNECTING);
+            reconnects.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (state == State.CLOSED)
+                        return;
+                    // Connects on a new thread, unless stopReconnects()
+                    // has been called.
+                    reconnectAfter(device, 0, port);
+                }
+            });
+        }
+    };
+
+    /**
+     * Create a session. Nothing happens until {@link #connect()} is called.
+     * @param app the application
+     * @param fleet fleet manager to report state changes to
+     * @param device the device to connect to, with authentication and HTTP(S)
+     *               set up already
+     * @param name name to show for the device, such as its IP address
+     * @param port event channel port
+     * @param interval subscription interval, in seconds
+     * @param handler main thread handler
+     */
+    DeviceSession(WvaApplication app, FleetManager fleet, WVA device, String name,
+                  int port, int interval, Handler handler) {
+        this.fleet = fleet;
+        this.device = device;
+        this.name = name;
+        this.port = port;
+        this.interval = interval;
+        this.handler = handler;
+        ingest = new VehicleDataIngest(app, this);
+        reconnects = new ReconnectScheduler(handler, app, new BackoffReconnectPolicy(), reconnectStats);
+    }
+
+    /**
+     * Fetch the device's endpoints, subscribe to them, and connect the event
+     * channel
+     */
+    void connect() {
+        device.setVehicleDataListener(dataListener);
+        device.setEventChannelStateListener(stateListener);
+
+        device.fetchVehicleDataEndpoints(new WvaCallback<Set<String>>() {
+            @Override
+            public void onResponse(Throwable error, Set<String> response) {
+                if (state == State.CLOSED)
+                    return;
+                if (error != null) {
+                    Log.e(TAG, "Couldn't fetch endpoints of " + name, error);
+                    String msg = error.getMessage();
+                    lastError = TextUtils.isEmpty(msg) ? error.toString() : msg;
+                    stop();
+                    setState(State.FAILED);
+                    return;
+                }
+                startSubscriptions(VehicleEndpointComparator.asSortedList(response));
+            }
+        });
+
+        device.connectEventChannel(port);
+
+        JSONObject portJson = new JSONObject();
+        try {
+            portJson.put("port", port);
+            portJson.put("enable", "on");
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return;
+        }
+        device.configure("ws_events", portJson, new WvaCallback<Void>() {
+            @Override
+            public void onResponse(Throwable error, Void response) {
+                if (error != null)
+                    Log.d(TAG, "Failed to configure port of " + name, error);
+            }
+        });
+    }
+
+    private void startSubscriptions(List<String> sortedEndpoints) {
+        List<String> toSubscribe = new ArrayList<String>();
+        for (String e : sortedEndpoints) {
+            endpoints.add(new EndpointConfiguration(e));
+            if (!VehicleEndpointComparator.isPressurePro(e))
+                toSubscribe.add(e);
+        }
+
+        subscriptions = new SubscriptionPipeline(handler, new SubscriptionPipeline.Subscriber() {
+            @Override
+            public boolean subscribe(final String endpoint, final WvaCallback<Void> callback) {
+                if (state == State.CLOSED)
+                    return false;
+                // Only mark the endpoint as subscribed once the device has
+                // agreed, so that failed subscriptions don't look live.
+                device.subscribeToVehicleData(endpoint, interval, new WvaCallback<Void>() {
+                    @Override
+                    public boolean runsOnUiThread() {
+                        return callback.runsOnUiThread();
+                    }
+
+                    @Override
+                    public void onResponse(Throwable error, Void response) {
+                        if (error == null) {
+                            SubscriptionConfig config = new SubscriptionConfig(interval);
+                            config.setSubscribed(true);
+                            EndpointConfiguration ept = endpoints.find(endpoint);
+                            if (ept != null)
+                                ept.setSubscriptionConfig(config);
+                        }
+                        callback.onResponse(error, response);
+                    }
+                });
+                return true;
+            }
+        }, new SubscriptionPipeline.Listener() {
+            @Override
+            public void onProgress(int completed, int total) {
+            }
+
+            @Override
+            public void onFinished(int succeeded, List<String> failed) {
+                subscribed = succeeded;
+                failedSubscriptions = failed.size();
+                if (!failed.isEmpty()) {
+                    Log.e(TAG, name + ": failed to subscribe to " + failed);
+                    IngestMetrics metrics = IngestMetrics.getInstance();
+                    if (metrics != null)
+                        metrics.recordSubscriptionFailures(name, failed);
+                }
+                fleet.notifyChanged();
+            }
+        });
+        subscriptions.start(toSubscribe);
+    }
+
+    /**
+     * Disconnect from the device for good
+     */
+    void close() {
+        if (state == State.CLOSED)
+            return;
+        stop();
+        setState(State.CLOSED);
+    }
+
+    private void stop() {
+        if (subscriptions != null)
+            subscriptions.cancel();
+        reconnects.reset();
+        stateListener.stopReconnects();
+        device.disconnectEventChannel(true);
+        device.removeAllVehicleDataListeners();
+        ingest.quit();
+    }
+
+    private void setState(State newState) {
+        state = newState;
+        fleet.notifyChanged();
+    }
+
+    /**
+     * Start processing this device's data on the given thread
+     * @param ingestThread looper of the thread shared by the fleet's ingests
+     */
+    void startIngest(Looper ingestThread) {
+        ingest.start(ingestThread);
+    }
+
+    /**
+     * @return name of the device, such as its IP address
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the session's connection state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return message of the last connection error, or null if there was none
+     * since the last connection was made
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return the {@link WVA} used to talk to the device
+     */
+    public WVA getDevice() {
+        return device;
+    }
+
+    /**
+     * @return the newest data of each of the device's endpoints
+     */
+    public VehicleDataList getDataList() {
+        return data;
+    }
+
+    /**
+     * @return configurations of the device's endpoints
+     */
+    public EndpointRegistry getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return recent history of each of the device's endpoints
+     */
+    public VehicleHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * @return reconnect counts and timings for this device
+     */
+    public ReconnectStats getReconnectStats() {
+        return reconnectStats;
+    }
+
+    /**
+     * @return number of endpoints subscribed to, once subscribing is done
+     */
+    public int getSubscribedCount() {
+        return subscribed;
+    }
+
+    /**
+     * @return number of endpoints which could not be subscribed to
+     */
+    public int getFailedSubscriptionCount() {
+        return failedSubscriptions;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.actionbarsherlock.app.SherlockActivity;
+import com.actionbarsherlock.view.Menu;
+import com.actionbarsherlock.view.MenuItem;
+import com.digi.android.wva.util.DiagnosticsReport;
+import com.digi.android.wva.util.IngestMetrics;
+
+import org.joda.time.DateTime;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Shows how the vehicle data pipeline is doing: event rates, the time from
+ * events arriving to their being shown, queue sizes and drops, adapter
+ * notifications, the event log, reconnects and subscription failures.
+ *
+ * <p>The screen shows the {@link DiagnosticsReport} itself, refreshed every
+ * second, with rates worked out over the last second. The Export menu item
+ * saves the report as a JSON file and offers to send it.</p>
+ */
+public class DiagnosticsActivity extends SherlockActivity {
+    private static final String TAG = "DiagnosticsActivity";
+    private static final long REFRESH_INTERVAL = 1000;
+
+    private final Handler handler = new Handler();
+    private TextView text;
+    private IngestMetrics.Snapshot last;
+    private JSONObject report;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            update();
+            handler.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.diagnostics_activity);
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        text = (TextView) findViewById(R.id.diagnostics_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        handler.removeCallbacks(refresh);
+        super.onPause();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getSupportMenuInflater().inflate(R.menu.diagnostics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                finish();
+                return true;
+            case R.id.diagnostics_export:
+                export();
+                return true;
+            case R.id.diagnostics_reset:
+                IngestMetrics metrics = IngestMetrics.getInstance();
+                if (metrics != null)
+                    metrics.reset();
+                last = null;
+                update();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /** Take a new snapshot and show it. */
+    private void update() {
+        IngestMetrics metrics = IngestMetrics.getInstance();
+        if (metrics == null)
+            return;
+        IngestMetrics.Snapshot snapshot = metrics.snapshot();
+        try {
+            report = DiagnosticsReport.build(snapshot, last);
+            text.setText(report.toString(2));
+        } catch (JSONException e) {
+            Log.e(TAG, "Couldn't build diagnostics report", e);
+        }
+        last = snapshot;
+    }
+
+    /** Save the report shown to a file, and offer to send it. */
+    private void export() {
+        if (report == null)
+            return;
+
+        String json;
+        try {
+            json = report.toString(2);
+        } catch (JSONException e) {
+            Log.e(TAG, "Couldn't format diagnostics report", e);
+            Toast.makeText(this, R.string.diagnostics_export_failed, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        File dir = getExternalFilesDir(null);
+        if (dir == null)
+            dir = getFilesDir();
+        File file = new File(dir, "diagnostics-" + DateTime.now().toString("yyyyMMdd-HHmmss") + ".json");
+        Writer out = null;
+        try {
+            out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            out.write(json);
+            // Closing flushes the file; it isn't written until this succeeds.
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            Log.e(TAG, "Couldn't write " + file, e);
+            Toast.makeText(this, R.string.diagnostics_export_failed, Toast.LENGTH_SHORT).show();
+            return;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Already failed; nothing more to do.
+                }
+            }
+        }
+        Toast.makeText(this, getString(R.string.diagnostics_exported, file.getPath()),
+                Toast.LENGTH_SHORT).show();
+
+        Intent send = new Intent(Intent.ACTION_SEND);
+        send.setType("application/json");
+        send.putExtra(Intent.EXTRA_SUBJECT, file.getName());
+        send.putExtra(Intent.EXTRA_TEXT, json);
+        startActivity(Intent.createChooser(send, getString(R.string.diagnostics_export)));
+    }
+}
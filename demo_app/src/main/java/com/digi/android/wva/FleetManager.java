@@ -0,0 +1,273 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.digi.android.wva.adapters.VariableAdapter;
+import com.digi.android.wva.util.VehicleDataList;
+import com.digi.wva.WVA;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fleet mode: keeps connections to any number of extra devices, on top of
+ * the one made by {@link VehicleInfoService}, and chooses which device's
+ * data is shown.
+ *
+ * <p>To use, call {@link #getInstance()} for a handle to the static instance
+ * of the class. Each device gets a {@link DeviceSession}, keyed by its IP
+ * address. The sessions' {@link VehicleDataIngest ingests} share a single
+ * background thread, but each keeps its own batch and data list.</p>
+ *
+ * <p>{@link #setActive(DeviceSession)} switches the
+ * {@link VariableAdapter} (and, through the ingests, the chart and the data
+ * log entries) to another device's data straight away, since every
+ * device's latest values are kept up to date whether shown or not. Passing
+ * null goes back to the device connected by {@link VehicleInfoService}; the
+ * endpoints list, and subscription and alarm settings, always apply to that
+ * device.</p>
+ *
+ * <p>Methods other than {@link #getActive()} and {@link #getSessions()}
+ * should be called on the main thread.</p>
+ */
+public class FleetManager {
+    private static final String TAG = "FleetManager";
+    private static FleetManager instance;
+
+    /**
+     * Interface for hearing about changes to the fleet. Called on the main
+     * thread.
+     */
+    public interface Listener {
+        /**
+         * Called when a device is added or removed, a device's connection
+         * state changes, or a different device is shown
+         */
+        void onFleetChanged();
+    }
+
+    private final WvaApplication app;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /** Sessions by name, in the order they were added. Guarded by this. */
+    private final Map<String, DeviceSession> sessions = new LinkedHashMap<String, DeviceSession>();
+    private final List<Listener> listeners = new ArrayList<Listener>();
+    private volatile DeviceSession active;
+    private HandlerThread ingestThread;
+    private String username = "", password = "";
+    private boolean useHttps = true;
+    private boolean changePosted;
+
+    private final Runnable notifyListeners = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (this) {
+                changePosted = false;
+            }
+            for (Listener l : new ArrayList<Listener>(listeners)) {
+                l.onFleetChanged();
+            }
+        }
+    };
+
+    /**
+     * Initialize the singleton FleetManager instance
+     * @param app the application
+     */
+    public static void initInstance(WvaApplication app) {
+        if (instance == null)
+            instance = new FleetManager(app);
+    }
+
+    /**
+     * Fetch the singleton FleetManager instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static FleetManager getInstance() {
+        return instance;
+    }
+
+    private FleetManager(WvaApplication app) {
+        this.app = app;
+    }
+
+    /**
+     * Set the credentials used for devices added to the fleet, as given for
+     * the device connected by {@link VehicleInfoService}
+     * @param username basic-auth username
+     * @param password basic-auth password
+     * @param https true to use HTTPS
+     */
+    public void setCredentials(String username, String password, boolean https) {
+        this.username = username == null ? "" : username;
+        this.password = password == null ? "" : password;
+        this.useHttps = https;
+    }
+
+    /**
+     * Connect to a device, using the event channel port and subscription
+     * interval set in preferences
+     * @param ip IP address of the device
+     * @return the device's session; the existing one if the device is
+     * already in the fleet
+     */
+    public DeviceSession connect(String ip) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(app);
+        int port = Integer.valueOf(prefs.getString("pref_device_port", "5000"));
+        int interval = Integer.valueOf(prefs.getString("pref_default_interval", "10"));
+
+        WVA device = new WVA(ip);
+        // The demo app assumes default HTTP and HTTPS ports.
+        device.useBasicAuth(username, password)
+                .useSecureHttp(useHttps)
+                .setHttpPort(80)
+                .setHttpsPort(443);
+        return connect(ip, device, port, interval);
+    }
+
+    /**
+     * Connect to a device
+     * @param name name of the device in the fleet
+     * @param device the device, with authentication and HTTP(S) set up
+     * @param port event channel port
+     * @param interval subscription interval, in seconds
+     * @return the device's session; the existing one if a device of this
+     * name is already in the fleet
+     */
+    public DeviceSession connect(String name, WVA device, int port, int interval) {
+        DeviceSession session;
+        synchronized (this) {
+            session = sessions.get(name);
+            if (session != null)
+                return session;
+            session = new DeviceSession(app, this, device, name, port, interval, mainHandler);
+            sessions.put(name, session);
+            if (ingestThread == null) {
+                ingestThread = new HandlerThread("WVA fleet ingest", Process.THREAD_PRIORITY_BACKGROUND);
+                ingestThread.start();
+            }
+            session.startIngest(ingestThread.getLooper());
+        }
+        Log.i(TAG, "Adding " + name + " to the fleet");
+        session.connect();
+        notifyChanged();
+        return session;
+    }
+
+    /**
+     * Disconnect from a device and remove it from the fleet
+     * @param name name of the device
+     */
+    public void disconnect(String name) {
+        DeviceSession session;
+        synchronized (this) {
+            session = sessions.remove(name);
+            if (session == null)
+                return;
+            if (sessions.isEmpty() && ingestThread != null) {
+                ingestThread.quit();
+                ingestThread = null;
+            }
+        }
+        Log.i(TAG, "Removing " + name + " from the fleet");
+        if (active == session)
+            setActive(null);
+        session.close();
+        notifyChanged();
+    }
+
+    /**
+     * Disconnect from every device in the fleet
+     */
+    public void disconnectAll() {
+        for (DeviceSession session : getSessions()) {
+            disconnect(session.getName());
+        }
+    }
+
+    /**
+     * @return every session, in the order they were added
+     */
+    public synchronized List<DeviceSession> getSessions() {
+        return new ArrayList<DeviceSession>(sessions.values());
+    }
+
+    /**
+     * @param name name of the device
+     * @return the device's session, or null if it is not in the fleet
+     */
+    public synchronized DeviceSession getSession(String name) {
+        return sessions.get(name);
+    }
+
+    /**
+     * @return the session being shown, or null if the device connected by
+     * {@link VehicleInfoService} is shown
+     */
+    public DeviceSession getActive() {
+        return active;
+    }
+
+    /**
+     * Show a device's data
+     * @param session session of the device to show, or null to show the
+     *                device connected by {@link VehicleInfoService}
+     */
+    public void setActive(DeviceSession session) {
+        if (session == active)
+            return;
+        active = session;
+        VariableAdapter variables = VariableAdapter.getInstance();
+        if (variables != null) {
+            if (session == null)
+                variables.setData(VehicleDataList.getInstance(), null);
+            else
+                variables.setData(session.getDataList(), session.getEndpoints());
+        }
+        notifyChanged();
+    }
+
+    /**
+     * Register a listener
+     * @param listener listener to add
+     */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener))
+            listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener
+     * @param listener listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Let listeners know that something changed. Changes are coalesced, and
+     * reported on the main thread.
+     */
+    void notifyChanged() {
+        synchronized (notifyListeners) {
+            if (changePosted)
+                return;
+            changePosted = true;
+        }
+        mainHandler.post(notifyListeners);
+    }
+}
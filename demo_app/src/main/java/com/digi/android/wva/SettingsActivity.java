@@ -9,7 +9,9 @@ package com.digi.android.wva;
 
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.preference.EditTextPreference;
 import android.preference.ListPreference;
+import android.text.TextUtils;
 import android.util.Log;
 import com.actionbarsherlock.app.SherlockPreferenceActivity;
 import com.actionbarsherlock.view.MenuItem;
@@ -21,6 +23,14 @@ import com.actionbarsherlock.view.MenuItem;
 @SuppressWarnings("deprecation")
 public class SettingsActivity extends SherlockPreferenceActivity {
     private static final String INTERVAL_PREF = "pref_default_interval";
+    private static final String REFRESH_PREF = WvaApplication.PREF_UI_REFRESH_INTERVAL;
+    private static final String LOG_CAPACITY_PREF = WvaApplication.PREF_LOG_CAPACITY;
+    private static final String CHART_BUDGET_PREF = WvaApplication.PREF_CHART_BUDGET;
+    private static final String SUBSCRIBE_WINDOW_PREF = WvaApplication.PREF_SUBSCRIBE_WINDOW;
+    private static final String SUBSCRIBE_RATE_PREF = WvaApplication.PREF_SUBSCRIBE_RATE;
+    private static final String UPLOAD_URL_PREF = WvaApplication.PREF_UPLOAD_URL;
+    private static final String UPLOAD_USERNAME_PREF = WvaApplication.PREF_UPLOAD_USERNAME;
+    private static final String UPLOAD_PASSWORD_PREF = WvaApplication.PREF_UPLOAD_PASSWORD;
 
     SharedPreferences.OnSharedPreferenceChangeListener changeListener =
             new SharedPreferences.OnSharedPreferenceChangeListener() {
@@ -28,6 +38,22 @@ public class SettingsActivity extends SherlockPreferenceActivity {
                 public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
                     if (INTERVAL_PREF.equals(key)) {
                         setAutosubscribeSummary();
+                    } else if (REFRESH_PREF.equals(key)) {
+                        setRefreshIntervalSummary();
+                        ((WvaApplication) getApplication()).applyUiRefreshInterval();
+                    } else if (LOG_CAPACITY_PREF.equals(key)) {
+                        setLogCapacitySummary();
+                        ((WvaApplication) getApplication()).applyLogCapacity();
+                    } else if (CHART_BUDGET_PREF.equals(key)) {
+                        setChartBudgetSummary();
+                        ((WvaApplication) getApplication()).applyChartBudget();
+                    } else if (SUBSCRIBE_WINDOW_PREF.equals(key) || SUBSCRIBE_RATE_PREF.equals(key)) {
+                        // Read each time auto-subscription starts.
+                        setSubscribePipelineSummary();
+                    } else if (UPLOAD_URL_PREF.equals(key) || UPLOAD_USERNAME_PREF.equals(key)
+                            || UPLOAD_PASSWORD_PREF.equals(key)) {
+                        setUploadSummary();
+                        ((WvaApplication) getApplication()).applyCloudUpload();
                     }
                 }
             };
@@ -44,6 +70,11 @@ public class SettingsActivity extends SherlockPreferenceActivity {
         addPreferencesFromResource(R.xml.settings);
 
         setAutosubscribeSummary();
+        setRefreshIntervalSummary();
+        setLogCapacitySummary();
+        setChartBudgetSummary();
+        setSubscribePipelineSummary();
+        setUploadSummary();
 	}
 
     @Override
@@ -81,4 +112,52 @@ public class SettingsActivity extends SherlockPreferenceActivity {
         else
             pref.setSummary(pref.getEntry());
     }
+
+    protected void setRefreshIntervalSummary() {
+        ListPreference pref = (ListPreference) findPreference(REFRESH_PREF);
+        if (pref == null)
+            Log.d("SettingsActivity", "Refresh interval preference was null");
+        else
+            pref.setSummary(pref.getEntry());
+    }
+
+    protected void setLogCapacitySummary() {
+        ListPreference pref = (ListPreference) findPreference(LOG_CAPACITY_PREF);
+        if (pref == null)
+            Log.d("SettingsActivity", "Log capacity preference was null");
+        else
+            pref.setSummary(pref.getEntry());
+    }
+
+    protected void setChartBudgetSummary() {
+        ListPreference pref = (ListPreference) findPreference(CHART_BUDGET_PREF);
+        if (pref == null)
+            Log.d("SettingsActivity", "Chart budget preference was null");
+        else
+            pref.setSummary(pref.getEntry());
+    }
+
+    protected void setSubscribePipelineSummary() {
+        for (String key : new String[] {SUBSCRIBE_WINDOW_PREF, SUBSCRIBE_RATE_PREF}) {
+            ListPreference pref = (ListPreference) findPreference(key);
+            if (pref == null)
+                Log.d("SettingsActivity", "Subscription preference " + key + " was null");
+            else
+                pref.setSummary(pref.getEntry());
+        }
+    }
+
+    protected void setUploadSummary() {
+        for (String key : new String[] {UPLOAD_URL_PREF, UPLOAD_USERNAME_PREF}) {
+            EditTextPreference pref = (EditTextPreference) findPreference(key);
+            if (pref == null)
+                Log.d("SettingsActivity", "Upload preference " + key + " was null");
+            else if (!TextUtils.isEmpty(pref.getText()))
+                pref.setSummary(pref.getText());
+            else if (UPLOAD_URL_PREF.equals(key))
+                pref.setSummary(R.string.pref_upload_url_summary);
+            else
+                pref.setSummary(null);
+        }
+    }
 }
@@ -0,0 +1,379 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import com.digi.android.wva.adapters.EndpointsAdapter;
+import com.digi.android.wva.adapters.LogAdapter;
+import com.digi.android.wva.adapters.VariableAdapter;
+import com.digi.android.wva.model.EndpointConfiguration;
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.BatchUploader;
+import com.digi.android.wva.util.IngestBatch;
+import com.digi.android.wva.util.IngestMetrics;
+import com.digi.android.wva.util.InvalidationScheduler;
+import com.digi.android.wva.util.MessageCourier;
+import com.digi.android.wva.util.SampleStore;
+import com.digi.android.wva.util.VehicleDataList;
+import com.digi.android.wva.util.VehicleHistory;
+import com.digi.wva.async.EventFactory;
+import com.digi.wva.async.VehicleDataEvent;
+import com.digi.wva.async.VehicleDataResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Processes incoming vehicle data events on a background thread, and hands
+ * the results to the UI once per frame.
+ *
+ * <p>Everything that can be done without touching the adapters (building
+ * {@link LogEvent} objects, which are only formatted once shown, logging,
+ * storing every event in the {@link SampleStore}, queueing chart data and
+ * raising alarm notifications) happens on the ingest thread. The results
+ * are collected into an {@link IngestBatch}, keeping only the newest value
+ * for each endpoint. Once per frame, the main thread takes the current
+ * batch and applies it to the {@link VariableAdapter} and
+ * {@link LogAdapter}.</p>
+ *
+ * <p>Samples are handled as plain values and epoch-millisecond times. Each
+ * batch keeps one reusable {@link VehicleData} record per endpoint, the two
+ * batches (one being filled, one being applied) are swapped back and forth
+ * rather than replaced, and each endpoint's {@link SampleStore} key and
+ * upload stream name are built once. The data log's entries are reused
+ * too: the events the {@link LogAdapter} drops once it is full are handed
+ * back to the batch, to be refilled. Once every endpoint has been seen and
+ * the log is full, filling a batch and applying it allocate nothing (see
+ * {@code IngestBatchTest} in wva-core).</p>
+ *
+ * <p>Each {@link DeviceSession} in fleet mode has an ingest of its own, with
+ * its own batch, {@link VehicleDataList} and {@link VehicleHistory}, so the
+ * devices never contend for anything but the thread. Only the device shown
+ * by the {@link FleetManager} feeds the chart and the data log entries;
+ * every device's alarms are logged. Data from devices which are not shown
+ * goes straight into their own lists, ready to be switched to.</p>
+ *
+ * <p>Every event is counted in the {@link IngestMetrics}, along with the
+ * time from {@link #post(VehicleDataEvent)} to the frame which applies
+ * it. Samples from endpoints set to be pushed to Device Cloud are handed
+ * to the {@link BatchUploader} as they arrive.</p>
+ */
+public class VehicleDataIngest implements InvalidationScheduler.FrameListener {
+    private static final String TAG = "VehicleDataIngest";
+    private static final int MSG_EVENT = 1;
+
+    private final WvaApplication app;
+    /** Device this ingest is for, or null for the device connected by VehicleInfoService. */
+    private final DeviceSession session;
+    private HandlerThread thread;
+    private Handler handler;
+    /** Sample store and metrics key of each endpoint, for a session. Ingest thread only. */
+    private final Map<String, String> keys = new HashMap<String, String>();
+    /** Device Cloud stream of each endpoint. Ingest thread only. */
+    private final Map<String, String> uploadStreams = new HashMap<String, String>();
+
+    private final Object batchLock = new Object();
+    /** Batch being filled by the ingest thread. Guarded by batchLock. */
+    private IngestBatch pending = new IngestBatch();
+    /**
+     * Emptied batch handed back by the main thread, to be filled next, or
+     * null while the main thread is still using it. Guarded by batchLock.
+     */
+    private IngestBatch spare = new IngestBatch();
+    /** True if the main thread has been asked to take the pending batch. Guarded by batchLock. */
+    private boolean handOffRequested;
+
+    private final Handler.Callback callback = new Handler.Callback() {
+        @Override
+        public boolean handleMessage(Message msg) {
+            if (msg.what != MSG_EVENT)
+                return false;
+            // The message was sent with no delay, so it is due when it was posted.
+            process((VehicleDataEvent) msg.obj, msg.getWhen());
+            return true;
+        }
+    };
+
+    VehicleDataIngest(WvaApplication app) {
+        this(app, null);
+    }
+
+    VehicleDataIngest(WvaApplication app, DeviceSession session) {
+        this.app = app;
+        this.session = session;
+    }
+
+    /**
+     * Start the ingest thread, if it is not running already
+     */
+    public synchronized void start() {
+        if (handler != null)
+            return;
+        thread = new HandlerThread("WVA data ingest", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper(), callback);
+    }
+
+    /**
+     * Start processing events on an existing thread, such as one shared by
+     * several devices, if not doing so already
+     * @param looper looper of the thread to use
+     */
+    public synchronized void start(Looper looper) {
+        if (handler != null)
+            return;
+        handler = new Handler(looper, callback);
+    }
+
+    /**
+     * Stop the ingest thread, or stop using the shared thread. Events which
+     * have not been processed yet are discarded.
+     */
+    public synchronized void quit() {
+        if (handler == null)
+            return;
+        handler.removeMessages(MSG_EVENT);
+        if (thread != null)
+            thread.quit();
+        thread = null;
+        handler = null;
+    }
+
+    /**
+     * Queue an event to be processed on the ingest thread. May be called
+     * from any thread.
+     * @param event the event to process
+     */
+    public void post(VehicleDataEvent event) {
+        Handler h;
+        synchronized (this) {
+            h = handler;
+        }
+        if (h == null) {
+            Log.w(TAG, "Ingest thread not running; dropping event for " + event.getEndpoint());
+            return;
+        }
+        h.obtainMessage(MSG_EVENT, event).sendToTarget();
+    }
+
+    /**
+     * Handle a single event, as if it had just been posted. Runs on the
+     * ingest thread.
+     * @param event the event to process
+     */
+    void process(VehicleDataEvent event) {
+        process(event, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Handle a single event. Runs on the ingest thread.
+     * @param event the event to process
+     * @param postedAt when the event was posted, in uptime milliseconds
+     */
+    void process(VehicleDataEvent event, long postedAt) {
+        String endpoint = event.getEndpoint();
+        VehicleDataResponse response = event.getResponse();
+        double value = response.getValue();
+        long time = response.getTime().getMillis();
+
+        boolean shown = isShown();
+        LogEvent alarm;
+        boolean isUpdate;
+        if (event.getType() == EventFactory.Type.SUBSCRIPTION) {
+            // Building log messages for every sample adds up; only do so
+            // when somebody will see them.
+            if (Log.isLoggable(TAG, Log.VERBOSE))
+                Log.v(TAG, "New data: " + endpoint + "=" + value + " @ " + time);
+
+            // Send the data out so the graph activity can pick it up. The
+            // chart feed ignores it unless the graph is live and charting
+            // this endpoint.
+            if (shown)
+                MessageCourier.sendChartNewData(endpoint, time, value);
+
+            // Keep the endpoint's recent history, compressed, in memory.
+            VehicleHistory history = session == null ? VehicleHistory.getInstance() : session.getHistory();
+            if (history != null)
+                history.append(endpoint, time, value);
+
+            alarm = null;
+            isUpdate = true;
+            upload(endpoint, time, value);
+        } else if (event.getType() == EventFactory.Type.ALARM) {
+            Log.v(TAG, "Alarm triggered by " + endpoint);
+
+            // Only the alarm itself is logged; alarm data does not update
+            // the vehicle data list.
+            VehicleData newData = new VehicleData(endpoint, value, time);
+            if (session == null) {
+                app.showAlarmNotification(endpoint, newData);
+                alarm = LogEvent.alarm(null, endpoint, value, time);
+            } else {
+                app.showAlarmNotification(session.getName() + ": " + endpoint, newData);
+                alarm = LogEvent.alarm(session.getName(), endpoint, value, time);
+            }
+            isUpdate = false;
+        } else {
+            return;
+        }
+
+        // Keep every event, not just the newest value of each endpoint.
+        String key = keyOf(endpoint);
+        SampleStore store = SampleStore.getInstance();
+        if (store != null)
+            store.append(key, event.getType(), time, value);
+        IngestMetrics metrics = IngestMetrics.getInstance();
+        if (metrics != null)
+            metrics.recordEvent(key, !isUpdate);
+
+        boolean requestHandOff;
+        synchronized (batchLock) {
+            if (isUpdate) {
+                pending.put(endpoint, value, time);
+                // The log event reuses one the log has dropped, if any.
+                if (shown)
+                    pending.logData(endpoint, value, time);
+            } else {
+                pending.log(alarm);
+            }
+            pending.addPosted(postedAt);
+            requestHandOff = !handOffRequested;
+            handOffRequested = true;
+        }
+
+        if (requestHandOff)
+            InvalidationScheduler.runOnNextFrame(this);
+    }
+
+    /**
+     * @return the key an endpoint's samples are stored and counted under:
+     * the endpoint name, prefixed with the device name in fleet mode
+     */
+    private String keyOf(String endpoint) {
+        if (session == null)
+            return endpoint;
+        String key = keys.get(endpoint);
+        if (key == null) {
+            key = session.getName() + "/" + endpoint;
+            keys.put(endpoint, key);
+        }
+        return key;
+    }
+
+    /**
+     * Queue a sample for upload to Device Cloud, if its endpoint is
+     * subscribed and set to be pushed there
+     */
+    private void upload(String endpoint, long time, double value) {
+        BatchUploader uploader = BatchUploader.getInstance();
+        if (uploader == null || !uploader.isEnabled())
+            return;
+        EndpointConfiguration cfg;
+        if (session != null) {
+            cfg = session.getEndpoints().find(endpoint);
+        } else {
+            EndpointsAdapter endpoints = EndpointsAdapter.getInstance();
+            cfg = endpoints == null ? null : endpoints.findEndpointConfiguration(endpoint);
+        }
+        if (cfg != null && cfg.isSubscribed() && cfg.shouldBePushedToDeviceCloud()) {
+            String stream = uploadStreams.get(endpoint);
+            if (stream == null) {
+                stream = "wva/" + keyOf(endpoint);
+                uploadStreams.put(endpoint, stream);
+            }
+            uploader.offer(stream, time, value);
+        }
+    }
+
+    /**
+     * @return true if this ingest's device is the one being shown
+     */
+    private boolean isShown() {
+        FleetManager fleet = FleetManager.getInstance();
+        return (fleet == null ? null : fleet.getActive()) == session;
+    }
+
+    /**
+     * Take the batch collected so far, leaving an empty one in its place.
+     * The batch should be {@link #recycle(IngestBatch) handed back} once it has
+     * been applied.
+     * @return the batch of results collected since the last hand-off
+     */
+    IngestBatch takeBatch() {
+        synchronized (batchLock) {
+            IngestBatch batch = pending;
+            if (spare != null) {
+                pending = spare;
+                spare = null;
+            } else {
+                // The last batch taken was never handed back.
+                pending = new IngestBatch();
+            }
+            handOffRequested = false;
+            return batch;
+        }
+    }
+
+    /**
+     * Hand back a batch taken with {@link #takeBatch()}, once nothing refers
+     * to it or its records any more, so that it can be filled again
+     * @param batch the batch
+     */
+    void recycle(IngestBatch batch) {
+        synchronized (batchLock) {
+            batch.clear();
+            spare = batch;
+        }
+    }
+
+    /**
+     * Apply everything processed since the last frame to the adapters.
+     * Runs on the main thread.
+     */
+    @Override
+    public void onFrame() {
+        IngestBatch batch = takeBatch();
+        if (batch.isEmpty()) {
+            recycle(batch);
+            return;
+        }
+
+        LogAdapter logs = LogAdapter.getInstance();
+        VariableAdapter variables = VariableAdapter.getInstance();
+
+        // Log events go in oldest first, so the newest ends up on top. The
+        // events the log drops come back to the batch, to be reused.
+        if (logs != null)
+            logs.addAll(batch.getLogEvents(), batch.getSpareEvents());
+
+        // Data for a device which is not shown only goes into its own list.
+        // Either way, the list copies the batch's records rather than
+        // keeping them.
+        VehicleDataList list = session == null ? VehicleDataList.getInstance() : session.getDataList();
+        if (variables != null && variables.getData() == list) {
+            variables.applyUpdates(batch.getLatest());
+        } else if (list != null) {
+            batch.mergeInto(list);
+        }
+
+        IngestMetrics metrics = IngestMetrics.getInstance();
+        if (metrics != null) {
+            long now = SystemClock.uptimeMillis();
+            for (int i = 0; i < batch.getPostedCount(); i++)
+                metrics.recordPublished(now - batch.getPostedAt(i));
+        }
+        recycle(batch);
+    }
+}
@@ -12,6 +12,7 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.BitmapFactory;
 import android.os.Handler;
 import android.os.IBinder;
@@ -25,8 +26,15 @@ import com.digi.android.wva.adapters.EndpointsAdapter;
 import com.digi.android.wva.adapters.LogAdapter;
 import com.digi.android.wva.model.EndpointConfiguration;
 import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.util.BackoffReconnectPolicy;
+import com.digi.android.wva.util.IngestMetrics;
+import com.digi.android.wva.util.InvalidationScheduler;
 import com.digi.android.wva.util.MessageCourier;
 import com.digi.android.wva.util.NetworkUtils;
+import com.digi.android.wva.util.ReconnectPolicy;
+import com.digi.android.wva.util.ReconnectScheduler;
+import com.digi.android.wva.util.ReconnectStats;
+import com.digi.android.wva.util.SubscriptionPipeline;
 import com.digi.android.wva.util.VehicleEndpointComparator;
 import com.digi.wva.WVA;
 import com.digi.wva.async.EventChannelStateListener;
@@ -36,6 +44,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 /**
@@ -97,6 +106,13 @@ public class VehicleInfoService extends Service {
 
     private Handler mHandler;
 
+    /** Auto-subscription in progress, if any. */
+    private SubscriptionPipeline subscriptions;
+    /** Auto-subscription progress shown in the notification, or null. */
+    private String subscribeStatus;
+
+    private ReconnectScheduler reconnects;
+
     /**
      * Builds a new EventChannelStateListener specialized for use by the demo app.
      *
@@ -125,6 +141,8 @@ public class VehicleInfoService extends Service {
 
                 log(new LogEvent("Connected to device.", null));
 
+                reconnects.onConnected();
+
                 // Ensure the service-running notification goes up.
                 isConnected = true;
 
@@ -161,23 +179,48 @@ public class VehicleInfoService extends Service {
 
                 log(new LogEvent("Reconnecting...", null));
 
-                // this will interrupt() the EventChannel thread, but since we're
-                // inside that thread currently, and we're not doing any thread-blocking
-                // calls here, execution will continue until we leave this method.
-                // Then, execution returns to EventChannel, and off we go.
-                super.onRemoteClose(device, port);
+                // Rather than the library's fixed 15 second wait
+                scheduleReconnect(device, port);
             }
 
             @Override
             public void onFailedConnection(WVA device, int port) {
                 Log.d(TAG, "connectionListener -- onFailedConnection");
                 MessageCourier.sendReconnecting(connectIp);
-                log(new LogEvent("Retrying connection...", null));
-                reconnectAfter(device, 15000, port);
+                long delay = scheduleReconnect(device, port);
+                log(new LogEvent(String.format("Retrying connection in %.1f s...", delay / 1000.0), null));
+            }
+
+            /**
+             * Schedule an attempt to reconnect, after the delay chosen by the
+             * reconnect policy
+             * @return the delay, in milliseconds
+             */
+            private long scheduleReconnect(final WVA device, final int port) {
+                return reconnects.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Disconnected, or connected elsewhere, since?
+                        if (device != mDevice)
+                            return;
+                        // Connects on a new thread, unless stopReconnects()
+                        // has been called.
+                        reconnectAfter(device, 0, port);
+                    }
+                });
             }
         };
     }
 
+    /**
+     * Replace the policy which decides how long to wait between reconnect
+     * attempts
+     * @param policy the new policy
+     */
+    public void setReconnectPolicy(ReconnectPolicy policy) {
+        reconnects.setPolicy(policy);
+    }
+
     public VehicleInfoService() {
         connectIp = null;
     }
@@ -193,6 +236,8 @@ public class VehicleInfoService extends Service {
         } else {
             mHandler = app.getHandler();
         }
+        reconnects = new ReconnectScheduler(mHandler, getApplicationContext(),
+                new BackoffReconnectPolicy(), ReconnectStats.getInstance());
 		super.onCreate();
 	}
 
@@ -225,8 +270,11 @@ public class VehicleInfoService extends Service {
 							Intent.FLAG_ACTIVITY_SINGLE_TOP);
 			contentIntent = PendingIntent.getActivity(VehicleInfoService.this,
 														0, intent, 0);
+			String text = "Connected to " + (TextUtils.isEmpty(connectIp) ? "(null)" : connectIp);
+			if (subscribeStatus != null)
+				text += " - " + subscribeStatus;
 			builder.setContentTitle("Digi WVA Service")
-				   .setContentText("Connected to " + (TextUtils.isEmpty(connectIp) ? "(null)" : connectIp))
+				   .setContentText(text)
 				   .setLargeIcon(BitmapFactory.decodeResource(getResources(), R.drawable.ic_launcher))
 				   .setSmallIcon(R.drawable.notif_small)
 				   .setOngoing(true)
@@ -332,6 +380,8 @@ public class VehicleInfoService extends Service {
 		case CMD_DISCONNECT:
 			Log.i(TAG, "startService - CMD_DISCONNECT");
 			isConnected = false;
+			cancelSubscriptions();
+			reconnects.reset();
 			if (mDevice != null) {
 				mDevice.disconnectEventChannel(true);
 				mDevice = null;
@@ -360,6 +410,7 @@ public class VehicleInfoService extends Service {
 								.getString("pref_device_port", "5000"));
 				connectIp = ip;
 				isConnected = false;
+				reconnects.reset();
 
                 boolean autoSubscribe = PreferenceManager.getDefaultSharedPreferences(this).getBoolean("pref_auto_subscribe", false);
 				final int autosub = autoSubscribe
@@ -427,82 +478,19 @@ public class VehicleInfoService extends Service {
                         }
                         
                         // Update the endpoints adapter.
-                        mHandler.postAtFrontOfQueue(new Runnable() {
-							@Override
-							public void run() {
-								Log.d("VIS", "Updating endpoints adapter");
-								EndpointsAdapter.getInstance().notifyDataSetChanged();
-							}
-						});
-
-                        // Handle subscribing/unsubscribing on a separate thread.
+                        Log.d("VIS", "Updating endpoints adapter");
+                        InvalidationScheduler.invalidateStructure(EndpointsAdapter.getInstance());
+
+                        // Subscribe through a pipeline which keeps a bounded
+                        // number of requests in flight, so as not to flood the
+                        // device (or the main thread, as it tries to keep up).
                         if (autosub > 0) {
-                            Runnable doSubscriptions = new Runnable() {
-                                @Override
-                                public void run() {
-                                    for (String e : sortedEndpoints) {
-                                        // Add a bit of sleep between subscribing
-                                        // to each endpoint, so as not to overload
-                                        // the main thread as it tries to keep up.
-                                        // This is happening as soon as the
-                                        // DashboardActivity is launched, after all.
-                                        try {
-                                            Thread.sleep(25);
-                                        } catch (InterruptedException ignored) {
-                                        }
-            
-                                        if (app.getDevice() == null) {
-                                            // User backed out of DashboardActivity
-                                            // We should stop these subscriptions...
-                                            Log.d(TAG, "app.getDevice() returned null. " +
-                                                    "Stopping subscriptions...");
-                                            app.clearDevice();
-                                            return;
-                                        }
-            
-                                        final String ep = e;
-
-                                        boolean isPressurePro = false;
-                                        for (String s : VehicleEndpointComparator.PRESSURE_PRO_PREFIXES) {
-                                            if (ep.startsWith(s)) {
-                                                isPressurePro = true;
-                                                break;
-                                            }
-                                        }
-
-                                        if (!isPressurePro) {
-                                            // (Try to) subscribe to the endpoint
-                                            app.subscribeToEndpointFromService(e, autosub,
-                                            new WvaCallback<Void>() {
-                                                @Override
-                                                public void onResponse(Throwable error, Void response) {
-                                                    String msg;
-                                                    if (error != null) {
-                                                        msg = "Failed to subscribe to " + ep;
-                                                        Log.e(TAG, "Failed to subscribe to " + ep, error);
-                                                        final LogEvent evt = new LogEvent(msg, null);
-                                                        mHandler.post(new Runnable() {
-                                                            @Override
-                                                            public void run() {
-                                                                LogAdapter.getInstance().add(evt);
-                                                            }
-                                                        });
-                                                    }
-                                                }
-                                            });
-                                        }
-                                    }
-                                }
-                            };
-                        
-                            // Do subscriptions on this thread when running unit tests,
-                            // but on a separate thread when actually being used. This allows
-                            // us to test the code in the runnable.
-                            if (app.isTesting()) {
-                                doSubscriptions.run();
-                            } else {
-                                new Thread(doSubscriptions).start();
+                            List<String> toSubscribe = new ArrayList<String>();
+                            for (String e : sortedEndpoints) {
+                                if (!VehicleEndpointComparator.isPressurePro(e))
+                                    toSubscribe.add(e);
                             }
+                            startSubscriptions(app, toSubscribe, autosub);
                         }
                     }
                 });
@@ -548,6 +536,114 @@ public class VehicleInfoService extends Service {
 		}
 	}
 
+    /**
+     * Subscribe to the given endpoints through a {@link SubscriptionPipeline},
+     * using the in-flight window and rate set in preferences. Progress is
+     * shown in the service notification, and a single event is logged once
+     * the pipeline finishes.
+     *
+     * <p>This method is protected, rather than private, due to a bug between JaCoCo and
+     * the Android build tools which causes the instrumented bytecode to be invalid when this
+     * method is private:
+     * http://stackoverflow.com/questions/17603192/dalvik-transformation-using-wrong-invoke-opcode
+     * </p>
+     */
+    protected synchronized void startSubscriptions(final WvaApplication app, List<String> endpoints,
+                                                   final int interval) {
+        cancelSubscriptions();
+
+        SubscriptionPipeline.Subscriber subscriber = new SubscriptionPipeline.Subscriber() {
+            @Override
+            public boolean subscribe(String endpoint, WvaCallback<Void> callback) {
+                if (app.getDevice() == null) {
+                    // User backed out of DashboardActivity
+                    // We should stop these subscriptions...
+                    Log.d(TAG, "app.getDevice() returned null. Stopping subscriptions...");
+                    app.clearDevice();
+                    return false;
+                }
+                app.subscribeToEndpointFromService(endpoint, interval, callback);
+                return true;
+            }
+        };
+
+        SubscriptionPipeline.Listener listener = new SubscriptionPipeline.Listener() {
+            // Only update the notification every 5% or so.
+            private int lastShown = -1;
+
+            @Override
+            public void onProgress(final int completed, final int total) {
+                int step = Math.max(1, total / 20);
+                if (completed / step == lastShown / step && completed != total)
+                    return;
+                lastShown = completed;
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscribeStatus = "subscribed to " + completed + " of " + total;
+                        showNotificationIfRunning();
+                    }
+                });
+            }
+
+            @Override
+            public void onFinished(int subscribed, List<String> failed) {
+                StringBuilder msg = new StringBuilder();
+                msg.append("Subscribed to ").append(subscribed).append(" of ")
+                   .append(subscribed + failed.size()).append(" endpoints.");
+                if (!failed.isEmpty()) {
+                    Log.e(TAG, "Failed to subscribe to " + failed);
+                    IngestMetrics metrics = IngestMetrics.getInstance();
+                    if (metrics != null)
+                        metrics.recordSubscriptionFailures(null, failed);
+                    msg.append(" Failed: ");
+                    for (int i = 0; i < failed.size() && i < 5; i++) {
+                        msg.append(i == 0 ? "" : ", ").append(failed.get(i));
+                    }
+                    if (failed.size() > 5)
+                        msg.append(" and ").append(failed.size() - 5).append(" more");
+                }
+                final LogEvent evt = new LogEvent(msg.toString(), null);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscribeStatus = null;
+                        showNotificationIfRunning();
+                        LogAdapter logs = LogAdapter.getInstance();
+                        if (logs != null)
+                            logs.add(evt);
+                    }
+                });
+            }
+        };
+
+        subscriptions = new SubscriptionPipeline(mHandler, subscriber, listener);
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        try {
+            subscriptions.setMaxInFlight(Integer.parseInt(prefs.getString(
+                    WvaApplication.PREF_SUBSCRIBE_WINDOW,
+                    String.valueOf(SubscriptionPipeline.DEFAULT_MAX_IN_FLIGHT))));
+            subscriptions.setRate(Double.parseDouble(prefs.getString(
+                    WvaApplication.PREF_SUBSCRIBE_RATE,
+                    String.valueOf((int) SubscriptionPipeline.DEFAULT_RATE))));
+        } catch (IllegalArgumentException e) {
+            // Covers NumberFormatException, and values out of range
+            Log.e(TAG, "Invalid subscription window or rate; using defaults", e);
+        }
+        subscriptions.start(endpoints);
+    }
+
+    /**
+     * Stop any auto-subscription in progress.
+     */
+    private synchronized void cancelSubscriptions() {
+        if (subscriptions != null) {
+            subscriptions.cancel();
+            subscriptions = null;
+        }
+        subscribeStatus = null;
+    }
+
 	@Override
 	public int onStartCommand(Intent intent, int code, int startid){
 
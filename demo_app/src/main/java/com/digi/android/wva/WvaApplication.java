@@ -10,13 +10,17 @@ package com.digi.android.wva;
 import android.app.Application;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
@@ -24,6 +28,7 @@ import android.preference.PreferenceManager;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationCompat.Builder;
 import android.text.TextUtils;
+import android.util.Base64;
 import android.util.Log;
 
 import com.digi.addp.AddpClient;
@@ -34,20 +39,25 @@ import com.digi.android.wva.model.EndpointConfiguration;
 import com.digi.android.wva.model.EndpointConfiguration.AlarmConfig;
 import com.digi.android.wva.model.EndpointConfiguration.SubscriptionConfig;
 import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.BatchUploader;
+import com.digi.android.wva.util.ChartFeed;
+import com.digi.android.wva.util.IngestMetrics;
+import com.digi.android.wva.util.InvalidationScheduler;
 import com.digi.android.wva.util.MessageCourier;
+import com.digi.android.wva.util.ReconnectStats;
+import com.digi.android.wva.util.SampleStore;
 import com.digi.android.wva.util.VehicleDataList;
+import com.digi.android.wva.util.VehicleHistory;
 import com.digi.wva.WVA;
 import com.digi.wva.async.AlarmType;
-import com.digi.wva.async.EventFactory;
 import com.digi.wva.async.VehicleDataEvent;
 import com.digi.wva.async.VehicleDataListener;
-import com.digi.wva.async.VehicleDataResponse;
 import com.digi.wva.async.WvaCallback;
 
-import org.joda.time.DateTime;
-
-import java.util.Arrays;
-import java.util.List;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
 
 //import com.digi.connector.android.library.core.CloudConnectorManager;
 //import com.digi.connector.android.library.models.Sample;
@@ -71,12 +81,40 @@ public class WvaApplication extends Application {
 	 * a keypad.</p> */
 	private static final int ALARM_NOTIF_ID = 0x98225216; // WVAALARM
 	private static final String TAG = "WvaApplication";
+	/** Preference key for the minimum time between list refreshes, in milliseconds. */
+	public static final String PREF_UI_REFRESH_INTERVAL = "pref_ui_refresh_interval";
+	/** Preference key for the maximum number of events kept in the event log. */
+	public static final String PREF_LOG_CAPACITY = "pref_log_capacity";
+	/** Preference key for the maximum number of chart points waiting to be drawn. */
+	public static final String PREF_CHART_BUDGET = "pref_chart_budget";
+	/** Preference key for the comma-separated endpoints shown on the chart. */
+	public static final String PREF_CHART_ENDPOINTS = "pref_chart_endpoints";
+	/** Preference key for the most auto-subscription requests in flight at once. */
+	public static final String PREF_SUBSCRIBE_WINDOW = "pref_subscribe_window";
+	/** Preference key for the most auto-subscription requests started per second. */
+	public static final String PREF_SUBSCRIBE_RATE = "pref_subscribe_rate";
+	/** Preference key for the URL batches of Device Cloud data points are sent to. */
+	public static final String PREF_UPLOAD_URL = "pref_upload_url";
+	/** Preference key for the Device Cloud username. */
+	public static final String PREF_UPLOAD_USERNAME = "pref_upload_username";
+	/** Preference key for the Device Cloud password. */
+	public static final String PREF_UPLOAD_PASSWORD = "pref_upload_password";
     private static String appVersion;
 	
 	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final VehicleDataIngest ingest = new VehicleDataIngest(this);
 	
 	private WVA mDevice;
 	private AddpClient addpClient;
+
+	// Lets the uploader hold off while there is no network, and send
+	// straight away once there is.
+	private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			updateUploaderNetwork();
+		}
+	};
 	
 	//private CloudConnectorManager mCloudConnectorManager;
 
@@ -126,67 +164,16 @@ public class WvaApplication extends Application {
 	// we can easily tie receipt of subscription data to arbitrary actions,
 	// like notifying the data chart activity of new data.
 	private final VehicleDataListener dataListener = new VehicleDataListener() {
-		// TODO get definite endpoints names for these
-		private final List<String> graphingEndpoints = Arrays.asList("VehicleSpeed", "EngineSpeed");
-
         @Override
         public boolean runsOnUiThread() {
-            // This override is not strictly necessary, but it's good to be explicit.
-            return true;
+            // Events are handed straight to the ingest thread, so there is
+            // no reason to bounce them through the main thread first.
+            return false;
         }
 
 		@Override
 		public void onEvent(VehicleDataEvent event) {
-			// "endpoint" is made final so it can be used in the new Runnable below
-            final String endpoint = event.getEndpoint();
-
-			Log.d("WVAApplication", "Listener cb for endpoint " + endpoint);
-            VehicleDataResponse response = event.getResponse();
-
-			Double value = response.getValue();
-			DateTime time = response.getTime();
-			
-			final VehicleData newData =
-					new VehicleData(endpoint, value, time);
-
-            if (event.getType() == EventFactory.Type.SUBSCRIPTION) {
-                Log.v(TAG, "New data: " + endpoint + "=" + value
-                        + " @ " + time.toString());
-
-                // Add the new data to the variable adapter.
-                VariableAdapter.getInstance().add(newData);
-
-                // If this newly received data point is one of the "graphable"
-                // endpoints (i.e. one of those displayed when the user chooses
-                // to see the graph), send the data out on the local broadcast
-                // so the graph activity can pick it up, if it is live.
-                if (graphingEndpoints.contains(endpoint)) {
-                    MessageCourier.sendChartNewData(newData);
-                }
-
-                // Fetch EndpointConfiguration for this endpoint, check if it should be pushed
-                // to Device Cloud, and send the sample if need be.
-                EndpointConfiguration cfg = EndpointsAdapter.getInstance().findEndpointConfiguration(endpoint);
-
-                // Skip sending to Device Cloud if no EndpointConfiguration exists, or if the user has not subscribed
-                // to this endpoint.
-                if (cfg == null || !cfg.isSubscribed()) {
-                    return;
-                }
-				/**
-                else if (cfg.shouldBePushedToDeviceCloud()) {
-                    Sample s = new Sample("wva", endpoint, String.valueOf(value));
-                    mCloudConnectorManager.sendSample("upload.xml", s);
-                }**/
-
-            } else if (event.getType() == EventFactory.Type.ALARM) {
-                Log.v("WVAApplication", "Alarm triggered by " + endpoint);
-
-                // Log an event saying the alarm went off
-                LogAdapter.getInstance().alarmTriggered(newData);
-
-                showAlarmNotification(endpoint, newData);
-            }
+			ingest.post(event);
 		}
 	};
 	
@@ -226,6 +213,13 @@ public class WvaApplication extends Application {
 		// Initialize global singleton objects.
 		createSingletons();
 
+		// Start processing vehicle data off the main thread
+		ingest.start();
+
+		updateUploaderNetwork();
+		registerReceiver(connectivityReceiver,
+				new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
         // "Start" the VehicleInfoService
 		startService(VehicleInfoService.buildCreateIntent(this));
 		
@@ -233,15 +227,134 @@ public class WvaApplication extends Application {
 	}
 	
 	void createSingletons() {
+		InvalidationScheduler.initInstance();
+		applyUiRefreshInterval();
+
 		LogAdapter.initInstance(this);
+		applyLogCapacity();
 		
 		VehicleDataList.initInstance();
+		VehicleHistory.initInstance();
 		
 		VariableAdapter.initInstance(this,
                 VehicleDataList.getInstance());
 		
 		EndpointsAdapter.initInstance(this);
+
+		SampleStore.initInstance(new File(getFilesDir(), "samples"));
+		ReconnectStats.initInstance();
+		IngestMetrics.initInstance();
+		BatchUploader.initInstance(new File(getFilesDir(), "uploads"));
+		applyCloudUpload();
+		FleetManager.initInstance(this);
+
+		applyChartBudget();
 	}
+
+    /**
+     * Read the UI refresh interval out of preferences and hand it to the
+     * {@link InvalidationScheduler}.
+     */
+    public void applyUiRefreshInterval() {
+        InvalidationScheduler scheduler = InvalidationScheduler.getInstance();
+        if (scheduler == null)
+            return;
+
+        String interval = PreferenceManager.getDefaultSharedPreferences(this)
+                .getString(PREF_UI_REFRESH_INTERVAL, "0");
+        try {
+            scheduler.setMinInterval(Long.parseLong(interval));
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Invalid UI refresh interval: " + interval);
+            scheduler.setMinInterval(0);
+        }
+    }
+
+    /**
+     * Read the event log capacity out of preferences and hand it to the
+     * {@link LogAdapter}.
+     */
+    public void applyLogCapacity() {
+        LogAdapter logs = LogAdapter.getInstance();
+        if (logs == null)
+            return;
+
+        String capacity = PreferenceManager.getDefaultSharedPreferences(this)
+                .getString(PREF_LOG_CAPACITY, String.valueOf(LogAdapter.DEFAULT_CAPACITY));
+        try {
+            logs.setCapacity(Integer.parseInt(capacity));
+        } catch (IllegalArgumentException e) {
+            // Covers NumberFormatException, and capacities below 1
+            Log.e(TAG, "Invalid event log capacity: " + capacity);
+            logs.setCapacity(LogAdapter.DEFAULT_CAPACITY);
+        }
+    }
+
+    /**
+     * Read the chart buffer size out of preferences and hand it to the
+     * chart feed.
+     */
+    public void applyChartBudget() {
+        ChartFeed feed = MessageCourier.getChartFeed();
+        String budget = PreferenceManager.getDefaultSharedPreferences(this)
+                .getString(PREF_CHART_BUDGET, String.valueOf(ChartFeed.DEFAULT_BUDGET));
+        try {
+            feed.setBudget(Integer.parseInt(budget));
+        } catch (IllegalArgumentException e) {
+            // Covers NumberFormatException, and budgets below 1
+            Log.e(TAG, "Invalid chart buffer size: " + budget);
+            feed.setBudget(ChartFeed.DEFAULT_BUDGET);
+        }
+    }
+
+
+    /**
+     * Read the Device Cloud upload settings out of preferences and hand
+     * them to the {@link BatchUploader}. Uploading is off while there is
+     * no URL.
+     */
+    public void applyCloudUpload() {
+        BatchUploader uploader = BatchUploader.getInstance();
+        if (uploader == null)
+            return;
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String url = prefs.getString(PREF_UPLOAD_URL, "").trim();
+        String username = prefs.getString(PREF_UPLOAD_USERNAME, "");
+        String password = prefs.getString(PREF_UPLOAD_PASSWORD, "");
+
+        // Set the credentials first, so the first batch is sent with them.
+        if (TextUtils.isEmpty(username)) {
+            uploader.setHeader("Authorization", null);
+        } else {
+            byte[] credentials = (username + ":" + password).getBytes(Charset.forName("UTF-8"));
+            uploader.setHeader("Authorization",
+                    "Basic " + Base64.encodeToString(credentials, Base64.NO_WRAP));
+        }
+
+        if (TextUtils.isEmpty(url)) {
+            uploader.setUrl(null);
+            return;
+        }
+        try {
+            uploader.setUrl(new URL(url));
+        } catch (MalformedURLException e) {
+            Log.e(TAG, "Invalid upload URL: " + url);
+            uploader.setUrl(null);
+        }
+    }
+
+    /**
+     * Tell the {@link BatchUploader} whether there is a network to send on.
+     */
+    void updateUploaderNetwork() {
+        BatchUploader uploader = BatchUploader.getInstance();
+        if (uploader == null)
+            return;
+        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = cm == null ? null : cm.getActiveNetworkInfo();
+        uploader.setOnline(info != null && info.isConnected());
+    }
 	
 	//==========================================================================
 	// Methods related to WVALib interactivity (manipulating the WVA object,
@@ -360,7 +473,7 @@ public class WvaApplication extends Application {
 					// We modified the subscription setup, so we need to
 					// call notifyDataSetChanged to ensure the new information
 					// is reflected in the list view.
-					epts.notifyDataSetChanged();
+					InvalidationScheduler.invalidate(epts);
 				}
 			}
 		});
@@ -396,16 +509,11 @@ public class WvaApplication extends Application {
 	}
 	
 	/**
-	 * Wrapper around calling EndpointsAdapter.notifyDataSetChanged
+	 * Wrapper around scheduling EndpointsAdapter.notifyDataSetChanged
 	 * on the main thread.
 	 */
     void notifyEndpointsChanged() {
-		mHandler.post(new Runnable() {
-			@Override
-			public void run() {
-				EndpointsAdapter.getInstance().notifyDataSetChanged();
-			}
-		});
+		InvalidationScheduler.invalidate(EndpointsAdapter.getInstance());
 	}
 
     /**
@@ -433,12 +541,7 @@ public class WvaApplication extends Application {
 		}
 
         // Refresh vehicle data list
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                VariableAdapter.getInstance().notifyDataSetChanged();
-            }
-        });
+        InvalidationScheduler.invalidate(VariableAdapter.getInstance());
 	}
 
     /**
@@ -490,7 +593,7 @@ public class WvaApplication extends Application {
 				EndpointsAdapter adapter = EndpointsAdapter.getInstance();
 				if (!needToAddFinal) {
 					// We still need to call notifyDataSetChanged
-					adapter.notifyDataSetChanged();
+					InvalidationScheduler.invalidate(adapter);
 				}
 				else {
 					// This calls notifyDataSetChanged
@@ -524,12 +627,7 @@ public class WvaApplication extends Application {
 		if (conf != null) {
 			// We have an alarm configuration to "forget about"
 			conf.setAlarmConfig(null);
-			mHandler.post(new Runnable() {
-				@Override
-				public void run() {
-					EndpointsAdapter.getInstance().notifyDataSetChanged();
-				}
-			});
+			InvalidationScheduler.invalidate(EndpointsAdapter.getInstance());
 		}
 	}
 	
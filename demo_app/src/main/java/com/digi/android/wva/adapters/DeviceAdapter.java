@@ -33,6 +33,17 @@ import java.net.InetAddress;
 public class DeviceAdapter extends ArrayAdapter<AddpDevice> {
 	private final int resourceId;
 	private final Context context;
+
+	/** Views of a row. */
+	private static final class ViewHolder {
+		final TextView name;
+		final TextView ip;
+
+		ViewHolder(View row) {
+			name = (TextView)row.findViewById(R.id.device_name);
+			ip = (TextView)row.findViewById(R.id.device_ip);
+		}
+	}
 	
 	public DeviceAdapter(Context context) {
 		super(context, R.layout.device_element_list_item);
@@ -42,14 +53,19 @@ public class DeviceAdapter extends ArrayAdapter<AddpDevice> {
 	
 	@Override
 	public View getView(int pos, View view, ViewGroup parent) {
-		if (view == null)
+		ViewHolder holder;
+		if (view == null) {
 			view = LayoutInflater.from(context).inflate(resourceId, null);
-
-        // This suppresses Lint warnings, and can be useful in development to ensure
-        // the proper layouts exist.
-        assert view != null;
-        TextView name = (TextView)view.findViewById(R.id.device_name);
-		TextView ip = (TextView)view.findViewById(R.id.device_ip);
+			// This suppresses Lint warnings, and can be useful in development to ensure
+			// the proper layouts exist.
+			assert view != null;
+			holder = new ViewHolder(view);
+			view.setTag(holder);
+		} else {
+			holder = (ViewHolder)view.getTag();
+		}
+        TextView name = holder.name;
+		TextView ip = holder.ip;
 		
 		AddpDevice devEl = getItem(pos);
         InetAddress ipAddr = devEl.getIPAddress();
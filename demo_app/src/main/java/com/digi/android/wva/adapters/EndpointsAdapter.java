@@ -17,19 +17,33 @@ import android.widget.TextView;
 import com.digi.android.wva.R;
 import com.digi.android.wva.model.EndpointConfiguration;
 import com.digi.android.wva.model.EndpointConfiguration.SubscriptionConfig;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.digi.android.wva.util.EndpointRegistry;
+import com.digi.android.wva.util.InvalidationScheduler;
 
 /**
  * An {@link ArrayAdapter} subclass which lists out vehicle data endpoints
  * and provides an at-a-glance summary of endpoint configurations.
+ *
+ * <p>Configurations are kept in an {@link EndpointRegistry}, so they are
+ * always listed in {@link com.digi.android.wva.util.VehicleEndpointComparator}
+ * order, no matter the order in which they are added.</p>
  */
 public class EndpointsAdapter extends ArrayAdapter<EndpointConfiguration> {
 	private static EndpointsAdapter instance;
 	private final Context ctx;
 	private final int resourceId;
-	private final List<EndpointConfiguration> data;
+	private final EndpointRegistry data;
+
+	/** Views of a row. */
+	private static final class ViewHolder {
+		final TextView name;
+		final TextView alarm;
+
+		ViewHolder(View row) {
+			name = (TextView)row.findViewById(R.id.endpoint_name);
+			alarm = (TextView)row.findViewById(R.id.endpoint_alarm_summary);
+		}
+	}
 
     /**
      * Initialize the singleton EndpointsAdapter instance
@@ -52,17 +66,22 @@ public class EndpointsAdapter extends ArrayAdapter<EndpointConfiguration> {
 		super(context, R.layout.endpoints_list_item);
 		this.ctx = context;
 		this.resourceId = R.layout.endpoints_list_item;
-		this.data = new ArrayList<EndpointConfiguration>();
+		this.data = new EndpointRegistry();
 	}
 	
 	@Override
 	public View getView(int pos, View convertView, ViewGroup parent) {
-		if (convertView == null)
+		ViewHolder holder;
+		if (convertView == null) {
 			convertView = LayoutInflater.from(ctx).inflate(resourceId, null);
-        assert convertView != null;
-        TextView ept = (TextView)convertView.findViewById(R.id.endpoint_name);
-		TextView alarm =
-				(TextView)convertView.findViewById(R.id.endpoint_alarm_summary);
+			assert convertView != null;
+			holder = new ViewHolder(convertView);
+			convertView.setTag(holder);
+		} else {
+			holder = (ViewHolder)convertView.getTag();
+		}
+        TextView ept = holder.name;
+		TextView alarm = holder.alarm;
 		
 		EndpointConfiguration item = getItem(pos);
 		SubscriptionConfig sc = item.getSubscriptionConfig();
@@ -90,17 +109,19 @@ public class EndpointsAdapter extends ArrayAdapter<EndpointConfiguration> {
      * @return matching EndpointConfiguration, or null if there is none
      */
 	public EndpointConfiguration findEndpointConfiguration(String endpoint) {
-		for (EndpointConfiguration c : data) {
-			if (c.getEndpoint().equals(endpoint))
-				return c;
-		}
-		return null;
+		return data.find(endpoint);
 	}
 
+    /**
+     * Add a configuration at its sorted position
+     * @param newEntry configuration to add
+     * @param notify true to have the list updated on the next frame; false
+     *               if the caller will notify the adapter itself
+     */
 	public void add(EndpointConfiguration newEntry, boolean notify) {
 		data.add(newEntry);
 		if (notify) {
-			notifyDataSetChanged();
+			InvalidationScheduler.invalidateStructure(this);
 		}
 	}
 	
@@ -132,9 +153,13 @@ public class EndpointsAdapter extends ArrayAdapter<EndpointConfiguration> {
 		return data.indexOf(item);
 	}
 	
+	/**
+	 * Configurations are always kept in sorted order, so the index is
+	 * ignored and this is the same as {@link #add(EndpointConfiguration)}.
+	 */
 	@Override
 	public void insert(EndpointConfiguration item, int index) {
-		data.add(index, item);
+		data.add(item);
 		notifyDataSetChanged();
 	}
 	
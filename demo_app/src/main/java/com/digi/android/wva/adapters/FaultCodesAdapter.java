@@ -33,6 +33,24 @@ public class FaultCodesAdapter extends BaseExpandableListAdapter {
     private HashMap<String, List<String>> ecus;
     private OnCanBusRefreshListener listener;
 
+    /**
+     * Views of a group header. Kept under {@code R.id.view_holder}, since the
+     * header's plain tag is its bus.
+     */
+    private static final class GroupHolder {
+        final TextView header;
+        final TextView count;
+        final ImageButton refresh;
+        final ProgressBar progress;
+
+        GroupHolder(View row) {
+            header = (TextView) row.findViewById(R.id.groupHeader);
+            count = (TextView) row.findViewById(R.id.ecuCount);
+            refresh = (ImageButton) row.findViewById(R.id.refreshButton);
+            progress = (ProgressBar) row.findViewById(R.id.progressBar);
+        }
+    }
+
     public static interface OnCanBusRefreshListener {
         public void onRefresh(FaultCodeCommon.Bus bus, View headerView);
     }
@@ -99,14 +117,24 @@ public class FaultCodesAdapter extends BaseExpandableListAdapter {
     }
 
     public void setRefreshState(final View groupView, boolean isRefreshing) {
-        ProgressBar progress = (ProgressBar) groupView.findViewById(R.id.progressBar);
-        ImageButton refreshBtn = (ImageButton) groupView.findViewById(R.id.refreshButton);
+        GroupHolder holder = getGroupHolder(groupView);
+        ProgressBar progress = holder.progress;
+        ImageButton refreshBtn = holder.refresh;
 
         // Hide the button, show the progress indicator
         refreshBtn.setVisibility(isRefreshing ? View.GONE : View.VISIBLE);
         progress.setVisibility(isRefreshing ? View.VISIBLE : View.GONE);
     }
 
+    private static GroupHolder getGroupHolder(View groupView) {
+        GroupHolder holder = (GroupHolder) groupView.getTag(R.id.view_holder);
+        if (holder == null) {
+            holder = new GroupHolder(groupView);
+            groupView.setTag(R.id.view_holder, holder);
+        }
+        return holder;
+    }
+
     @Override
     public View getGroupView(final int groupPosition, boolean isExpanded, View convertView, ViewGroup viewGroup) {
         final String headerTitle = (String) getGroup(groupPosition);
@@ -119,17 +147,19 @@ public class FaultCodesAdapter extends BaseExpandableListAdapter {
         // Create the string to display the number of ECUs
         String ecuCount = (children > 0) ? context.getResources().getQuantityString(R.plurals.numberOfECUs, children, children) : "";
 
+        GroupHolder holder = getGroupHolder(convertView);
+
         // Update the CAN bus name
-        final TextView header = (TextView) convertView.findViewById(R.id.groupHeader);
+        final TextView header = holder.header;
         header.setTypeface(null, Typeface.BOLD);
         header.setText(headerTitle);
 
         // Update the counter
-        TextView count = (TextView) convertView.findViewById(R.id.ecuCount);
+        TextView count = holder.count;
         count.setText(ecuCount);
 
         // Make the refresh button reload the list.
-        ImageButton refreshBtn = (ImageButton) convertView.findViewById(R.id.refreshButton);
+        ImageButton refreshBtn = holder.refresh;
         refreshBtn.setFocusable(false);
 
         final FaultCodeCommon.Bus bus = getBusFromGroupPosition(groupPosition);
@@ -167,7 +197,13 @@ public class FaultCodesAdapter extends BaseExpandableListAdapter {
             convertView = LayoutInflater.from(context).inflate(R.layout.fault_code_list_item, null);
         }
 
-        TextView name = (TextView) convertView.findViewById(R.id.faultCodeListItem);
+        // The row's plain tag is its ECU name; the view itself is kept under
+        // R.id.view_holder.
+        TextView name = (TextView) convertView.getTag(R.id.view_holder);
+        if (name == null) {
+            name = (TextView) convertView.findViewById(R.id.faultCodeListItem);
+            convertView.setTag(R.id.view_holder, name);
+        }
         name.setText(ecuName);
 
         convertView.setTag(ecuName);
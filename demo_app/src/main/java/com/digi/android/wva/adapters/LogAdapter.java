@@ -8,7 +8,6 @@
 package com.digi.android.wva.adapters;
 
 import android.content.Context;
-import android.graphics.Color;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,6 +16,14 @@ import android.widget.TextView;
 import com.digi.android.wva.R;
 import com.digi.android.wva.model.LogEvent;
 import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.EventLog;
+import com.digi.android.wva.util.InvalidationScheduler;
+import com.digi.android.wva.util.LogEventPool;
+import com.digi.android.wva.util.RingBuffer;
+import com.digi.android.wva.util.VehicleDataList;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Adapter for {@link com.digi.android.wva.fragments.LogFragment LogFragment}
@@ -25,14 +32,50 @@ import com.digi.android.wva.model.VehicleData;
  * <p>Use <b>add(LogEvent)</b> (part of the {@link ArrayAdapter} interface)
  * to add new events directly. Use {@link #alarmTriggered(com.digi.android.wva.model.VehicleData)}
  * to record that an alarm has gone off.</p>
+ *
+ * <p>Events are held in a {@link RingBuffer} rather than ArrayAdapter's own
+ * list, so adding an event never has to shift the older ones. The log keeps
+ * at most {@link #getCapacity()} events; once it is full, each new event
+ * pushes out the oldest one, and {@link #getDroppedCount()} reports how many
+ * events have been pushed out. Data events pushed out this way can be
+ * handed back to be reused, with {@link #addAll(List, LogEventPool)}.</p>
  * 
  * @author mwadsten
  *
  */
-public class LogAdapter extends ArrayAdapter<LogEvent> {
+public class LogAdapter extends ArrayAdapter<LogEvent> implements EventLog {
+    /** Number of events kept if no other capacity has been set. */
+    public static final int DEFAULT_CAPACITY = 5000;
+
 	private final int resourceId;
 	private final Context context;
+	private final RingBuffer<LogEvent> events = new RingBuffer<LogEvent>(DEFAULT_CAPACITY);
 	private static LogAdapter instance; // singleton
+	/** Text colour of ordinary events; the same as R.color.log_message_color. */
+	private static final int MESSAGE_COLOR = 0xaa000000;
+	/** Text colour of alarms; the same as R.color.log_alarm_color. */
+	private static final int ALARM_COLOR = 0xffdd0000;
+
+	/** Views of a row, and the event they show. */
+	private static final class ViewHolder {
+		final TextView message;
+		final TextView timestamp;
+		LogEvent event;
+		// What the event held when it was shown, since data events are
+		// refilled once they have been dropped from the log.
+		String endpoint;
+		double value;
+		long time;
+
+		ViewHolder(View row) {
+			message = (TextView)row.findViewById(R.id.log_msg);
+			timestamp = (TextView)row.findViewById(R.id.log_time);
+		}
+
+		boolean shows(LogEvent e) {
+			return event == e && endpoint == e.endpoint && value == e.value && time == e.time;
+		}
+	}
 
     /**
      * Initialize the singleton LogAdapter instance
@@ -41,6 +84,8 @@ public class LogAdapter extends ArrayAdapter<LogEvent> {
 	public static void initInstance(Context ctx) {
 		if (instance == null)
 			instance = new LogAdapter(ctx);
+		// Updates made through VehicleDataList.update are logged here.
+		VehicleDataList.setEventLog(instance);
 	}
 
     /**
@@ -56,18 +101,116 @@ public class LogAdapter extends ArrayAdapter<LogEvent> {
 		super(context, R.layout.log_event_list_item);
 		this.context = context;
 		this.resourceId = R.layout.log_event_list_item;
-		// Automatically call notifyDataSetChanged when the data set changes
-		setNotifyOnChange(true);
 	}
 
     /**
-     * We override ArrayAdapter's add method to call insert(event, 0), i.e.
-     * to put new log events at the top of the list.
+     * We override ArrayAdapter's add method to put new log events at the
+     * top of the list.
      * @param object {@link LogEvent} to add to the logs
      */
     @Override
     public void add(LogEvent object) {
-        insert(object, 0);
+        events.add(object);
+        InvalidationScheduler.invalidateStructure(this);
+    }
+
+    @Override
+    public void addAll(Collection<? extends LogEvent> collection) {
+        for (LogEvent event : collection)
+            events.add(event);
+        InvalidationScheduler.invalidateStructure(this);
+    }
+
+    /**
+     * Add events, oldest first, handing the events they push out of the
+     * log back to be reused
+     * @param collection events to add
+     * @param dropped where to put the events pushed out
+     */
+    public void addAll(List<LogEvent> collection, LogEventPool dropped) {
+        for (int i = 0; i < collection.size(); i++)
+            dropped.recycle(events.add(collection.get(i)));
+        InvalidationScheduler.invalidateStructure(this);
+    }
+
+    @Override
+    public void addAll(LogEvent... items) {
+        for (LogEvent event : items)
+            events.add(event);
+        InvalidationScheduler.invalidateStructure(this);
+    }
+
+    /**
+     * New events can only be inserted at the top of the log, so this is
+     * the same as {@link #add(LogEvent)}.
+     * @param object {@link LogEvent} to add to the logs
+     * @param index must be 0
+     * @throws UnsupportedOperationException if index is not 0
+     */
+    @Override
+    public void insert(LogEvent object, int index) {
+        if (index != 0)
+            throw new UnsupportedOperationException("Log events can only be inserted at index 0");
+        add(object);
+    }
+
+    /**
+     * Individual events cannot be removed from the log.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void remove(LogEvent object) {
+        throw new UnsupportedOperationException("Log events cannot be removed individually");
+    }
+
+    @Override
+    public void clear() {
+        events.clear();
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return events.size();
+    }
+
+    @Override
+    public LogEvent getItem(int position) {
+        return events.get(position);
+    }
+
+    @Override
+    public int getPosition(LogEvent item) {
+        return events.indexOf(item);
+    }
+
+    /**
+     * Get the maximum number of events the log will hold
+     * @return log capacity
+     */
+    public int getCapacity() {
+        return events.capacity();
+    }
+
+    /**
+     * Set the maximum number of events the log will hold. If there are
+     * more events than that in the log already, the oldest are dropped.
+     * @param capacity new log capacity, at least 1
+     */
+    public void setCapacity(int capacity) {
+        int before = events.size();
+        events.setCapacity(capacity);
+        if (events.size() != before)
+            InvalidationScheduler.invalidateStructure(this);
+    }
+
+    /**
+     * Get the number of events that have been dropped from the log to
+     * make room for newer ones since the log was last cleared
+     * @return number of dropped events
+     */
+    public long getDroppedCount() {
+        return events.getDroppedCount();
     }
 
     /**
@@ -76,9 +219,16 @@ public class LogAdapter extends ArrayAdapter<LogEvent> {
      * @param data {@link VehicleData} pertaining to the alarm
      */
 	public void alarmTriggered(VehicleData data) {
-		String message = "Alarm: " + data.name + " = " + data.value;
-		LogEvent event = new LogEvent(message, data.timestamp.toString(), true);
-		add(event);
+		add(makeAlarmEvent(data));
+	}
+
+    /**
+     * Build the log event recording that an alarm went off
+     * @param data {@link VehicleData} pertaining to the alarm
+     * @return log event describing the alarm
+     */
+	public static LogEvent makeAlarmEvent(VehicleData data) {
+		return LogEvent.alarm(null, data.name, data.value, data.time);
 	}
 	
 	@Override
@@ -87,17 +237,25 @@ public class LogAdapter extends ArrayAdapter<LogEvent> {
 			view = LayoutInflater.from(context).inflate(resourceId, null);
 
         assert view != null;
-        TextView message = (TextView)view.findViewById(R.id.log_msg);
-		TextView timestamp = (TextView)view.findViewById(R.id.log_time);
-		
+		ViewHolder holder = (ViewHolder)view.getTag();
+		if (holder == null) {
+			holder = new ViewHolder(view);
+			view.setTag(holder);
+		}
+
 		LogEvent event = getItem(pos);
-		message.setText(event.message);
-		timestamp.setText(event.timestamp);
-		
-		if (event.isAlarm)
-			message.setTextColor(Color.parseColor("#ffdd0000"));
-		else
-			message.setTextColor(Color.parseColor("#aa000000"));
+        // Events are only formatted when a row is bound to them, and the
+        // row keeps the text until it is bound to a different event.
+        if (holder.shows(event))
+            return view;
+        holder.event = event;
+        holder.endpoint = event.endpoint;
+        holder.value = event.value;
+        holder.time = event.time;
+
+		holder.message.setText(event.getMessage());
+		holder.timestamp.setText(event.getTimestamp());
+		holder.message.setTextColor(event.isAlarm ? ALARM_COLOR : MESSAGE_COLOR);
 		
 		return view;
 	}
@@ -16,17 +16,23 @@ import android.widget.TextView;
 import com.digi.android.wva.R;
 import com.digi.android.wva.model.EndpointConfiguration;
 import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.EndpointRegistry;
+import com.digi.android.wva.util.InvalidationScheduler;
+import com.digi.android.wva.util.ValueFormatter;
 import com.digi.android.wva.util.VehicleDataList;
 
-import java.text.DecimalFormat;
 import java.util.Collection;
-import java.util.List;
 
 /**
  * Adapter used by the
  * {@link com.digi.android.wva.fragments.VariableListFragment
  * 			VariableListFragment}
  * to display the vehicle data which has been received.
+ *
+ * <p>Each row keeps a {@link ViewHolder} recording what it shows, and is
+ * only re-bound when its data, value or subscription state has changed.
+ * Values are formatted into the holder's own buffer, so binding a row
+ * allocates nothing.</p>
  * 
  * @author mwadsten
  *
@@ -34,8 +40,27 @@ import java.util.List;
 public class VariableAdapter extends ArrayAdapter<VehicleData> {
 	private final int resourceId;
 	private final Context ctx;
-	private final VehicleDataList data;
+	private VehicleDataList data;
+	/** Endpoint configurations for the shown data, or null to use the EndpointsAdapter's. */
+	private EndpointRegistry registry;
 	private static VariableAdapter instance;
+	private final ValueFormatter formatter = new ValueFormatter(3);
+
+	/** Views of a row, and what they show. */
+	private static final class ViewHolder {
+		final TextView name;
+		final TextView value;
+		/** Text of the value, handed to the value view. */
+		final char[] text = new char[ValueFormatter.MAX_LENGTH];
+		VehicleData data;
+		double shownValue;
+		boolean enabled;
+
+		ViewHolder(View row) {
+			name = (TextView)row.findViewById(R.id.var_name);
+			value = (TextView)row.findViewById(R.id.var_value);
+		}
+	}
 
     /**
      * Initialize the singleton VariableAdapter instance
@@ -64,6 +89,27 @@ public class VariableAdapter extends ArrayAdapter<VehicleData> {
 		data = list;
 	}
 	
+    /**
+     * Show a different data list, as when switching between devices in
+     * fleet mode. Must be called on the main thread.
+     * @param list the backing {@link VehicleDataList} to use
+     * @param endpoints configurations of the list's endpoints, used to gray
+     *                  out those not subscribed to; null to use the
+     *                  {@link EndpointsAdapter}
+     */
+	public void setData(VehicleDataList list, EndpointRegistry endpoints) {
+		data = list;
+		registry = endpoints;
+		notifyDataSetChanged();
+	}
+
+    /**
+     * @return the backing {@link VehicleDataList} currently shown
+     */
+	public VehicleDataList getData() {
+		return data;
+	}
+
 	// Overrides of ArrayAdapter methods to interact with the backing
 	// VehicleDataList
 	
@@ -76,27 +122,39 @@ public class VariableAdapter extends ArrayAdapter<VehicleData> {
 		// If 'object' can correspond to something already in the
 		// backing list, update its data rather than blindly inserting
 		// it at the end of the list.
-		data.update(object);
-		notifyDataSetChanged();
+		// Value changes are coalesced with other updates; new rows are
+		// shown on the next frame.
+		if (data.update(object))
+			InvalidationScheduler.invalidateStructure(this);
+		else
+			InvalidationScheduler.invalidate(this);
+	}
+
+    /**
+     * Apply a batch of updates to the backing data list, without writing
+     * an event log entry for each one (the caller is expected to have
+     * logged them already).
+     * @param updates new vehicle data, at most one per endpoint
+     */
+	public void applyUpdates(Collection<VehicleData> updates) {
+		boolean added = false;
+		for (VehicleData object : updates) {
+			added |= data.merge(object, data.getList().size());
+		}
+		if (added)
+			InvalidationScheduler.invalidateStructure(this);
+		else if (!updates.isEmpty())
+			InvalidationScheduler.invalidate(this);
 	}
 
     /**
-     * Iterates over the backing data list to find any data whose name
-     * matches that passed in to this method, and removes that data from
-     * the list
+     * Removes any data whose name matches that passed in to this method
+     * from the backing data list
      * @param endpoint endpoint name whose corresponding {@link VehicleData}
      *                 shall be removed
      */
 	public void removeEndpoint(String endpoint) {
-		List<VehicleData> lis = data.getList();
-		VehicleData toRemove = null;
-		for (VehicleData d : lis)
-			if (d.name.equals(endpoint)) {
-				toRemove = d;
-				break;
-			}
-		if (toRemove != null)
-			data.getList().remove(toRemove);
+		data.remove(endpoint);
 		notifyDataSetChanged();
 	}
 	
@@ -139,12 +197,7 @@ public class VariableAdapter extends ArrayAdapter<VehicleData> {
 	
 	@Override
 	public int getPosition(VehicleData item) {
-		int pos = -1;
-		for(int i = 0; i < getCount(); i++) {
-			if (item.name.equals(data.getList().get(i).name))
-				pos = i;
-		}
-		return pos;
+		return data.indexOf(item.name);
 	}
 	
 	@Override
@@ -155,45 +208,49 @@ public class VariableAdapter extends ArrayAdapter<VehicleData> {
 	
 	@Override
 	public void remove(VehicleData object) {
-		VehicleData toRemove = null;
-		for(VehicleData o : data.getList()) {
-			if (object.name.equals(o.name)) {
-				toRemove = o;
-				break;
-			}
-		}
-		if (toRemove != null) {
-			data.getList().remove(toRemove);
+		if (data.remove(object.name) != null) {
 			notifyDataSetChanged();
 		}
 	}
 	
 	@Override
 	public View getView(int pos, View view, ViewGroup parent) {
-		if (view == null)
+		ViewHolder holder;
+		if (view == null) {
 			view = LayoutInflater.from(ctx).inflate(resourceId, null);
+			assert view != null;
+			holder = new ViewHolder(view);
+			view.setTag(holder);
+		} else {
+			holder = (ViewHolder)view.getTag();
+		}
 
-        assert view != null;
-        TextView name = (TextView)view.findViewById(R.id.var_name);
-		TextView val = (TextView)view.findViewById(R.id.var_value);
-		
 		VehicleData i = getItem(pos);
-		String n = i.name,
-			   v = roundToThree(i.value);
-		name.setText(n != null ? n : "Blah");
-		val.setText(v != null ? v : "50");
-
-        // Gray out the entry if we're not subscribed to the endpoint.
-        name.setEnabled(true);
-        val.setEnabled(true);
+
+        // Gray out the entry if we're not subscribed to the endpoint. Both
+        // lookups are hash lookups.
+        boolean enabled = true;
         EndpointsAdapter endpoints = EndpointsAdapter.getInstance();
-        if (endpoints != null) { // a sanity check
-            EndpointConfiguration config = endpoints.findEndpointConfiguration(n);
-            if (config == null || !config.isSubscribed()) {
-                name.setEnabled(false);
-                val.setEnabled(false);
-            }
+        if (registry != null || endpoints != null) { // a sanity check
+            EndpointConfiguration config = registry != null
+                    ? registry.find(i.name) : endpoints.findEndpointConfiguration(i.name);
+            enabled = config != null && config.isSubscribed();
         }
+
+        // Leave the row alone if it already shows this.
+        boolean sameData = holder.data == i;
+        if (sameData && holder.enabled == enabled
+                && Double.doubleToLongBits(holder.shownValue) == Double.doubleToLongBits(i.value))
+            return view;
+
+        if (!sameData)
+            holder.name.setText(i.name);
+        holder.value.setText(holder.text, 0, formatter.format(i.value, holder.text));
+        holder.name.setEnabled(enabled);
+        holder.value.setEnabled(enabled);
+        holder.data = i;
+        holder.shownValue = i.value;
+        holder.enabled = enabled;
 		return view;
 	}
 
@@ -211,6 +268,6 @@ public class VariableAdapter extends ArrayAdapter<VehicleData> {
      * @return the value, rounded to three digits
      */
 	protected String roundToThree(Double value) {
-		return new DecimalFormat("#.###").format(value);
+		return formatter.format(value);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.fragments;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.support.v4.app.DialogFragment;
+import android.text.InputType;
+import android.text.TextUtils;
+import android.widget.EditText;
+
+import com.digi.android.wva.R;
+import com.digi.android.wva.fragments.FleetDialog.FleetDialogListener;
+
+/**
+ * A {@link DialogFragment} prompting for the IP address of a device to add
+ * to the fleet. The device is connected to with the same credentials as the
+ * device connected to first.
+ */
+public class AddFleetDeviceDialog extends DialogFragment {
+	public static AddFleetDeviceDialog newInstance() {
+		return new AddFleetDeviceDialog();
+	}
+
+	@Override
+	public void onAttach(Activity activity) {
+		super.onAttach(activity);
+		if (!(activity instanceof FleetDialogListener)) {
+			throw new ClassCastException(activity.toString() + " must implement FleetDialogListener!");
+		}
+	}
+
+	@Override
+	public Dialog onCreateDialog(Bundle savedInstanceState) {
+		final FleetDialogListener listener = (FleetDialogListener) getActivity();
+		final EditText ip = new EditText(getActivity());
+		ip.setInputType(InputType.TYPE_CLASS_PHONE);
+		ip.setHint(R.string.fleet_add_hint);
+
+		return new AlertDialog.Builder(getActivity())
+				.setTitle(R.string.fleet_add)
+				.setView(ip)
+				.setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						String address = ip.getText().toString().trim();
+						if (!TextUtils.isEmpty(address))
+							listener.onAddFleetDevice(address);
+					}
+				})
+				.setNegativeButton(android.R.string.cancel, null)
+				.create();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.fragments;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.support.v4.app.DialogFragment;
+import android.widget.Toast;
+
+import com.digi.android.wva.R;
+import com.digi.android.wva.adapters.EndpointsAdapter;
+import com.digi.android.wva.model.EndpointConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DialogFragment} which lets the user choose which endpoints the
+ * {@link ChartFragment} (set as this dialog's target fragment) graphs.
+ *
+ * <p>Every endpoint known to the {@link EndpointsAdapter} is listed, along
+ * with any endpoint currently being graphed.</p>
+ */
+public class ChartEndpointsDialog extends DialogFragment {
+	private String[] names;
+	private boolean[] checked;
+
+	/**
+	 * Create a new dialog
+	 * @param selected endpoints currently being graphed
+	 * @return the new dialog
+	 */
+	public static ChartEndpointsDialog newInstance(ArrayList<String> selected) {
+		ChartEndpointsDialog f = new ChartEndpointsDialog();
+
+		Bundle args = new Bundle();
+		args.putStringArrayList("selected", selected);
+		f.setArguments(args);
+
+		return f;
+	}
+
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		List<String> selected = getArguments().getStringArrayList("selected");
+
+		List<String> all = new ArrayList<String>(selected);
+		EndpointsAdapter adapter = EndpointsAdapter.getInstance();
+		if (adapter != null) {
+			for (int i = 0; i < adapter.getCount(); i++) {
+				EndpointConfiguration conf = adapter.getItem(i);
+				String endpoint = conf.getEndpoint();
+				if (endpoint != null && !all.contains(endpoint))
+					all.add(endpoint);
+			}
+		}
+
+		names = all.toArray(new String[all.size()]);
+		checked = new boolean[names.length];
+		for (int i = 0; i < names.length; i++) {
+			checked[i] = selected.contains(names[i]);
+		}
+	}
+
+	@Override
+	public Dialog onCreateDialog(Bundle savedInstanceState) {
+		return new AlertDialog.Builder(getActivity())
+				.setTitle(R.string.chart_endpoints_title)
+				.setMultiChoiceItems(names, checked, new DialogInterface.OnMultiChoiceClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+						checked[which] = isChecked;
+					}
+				})
+				.setPositiveButton(android.R.string.ok, new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						List<String> chosen = new ArrayList<String>();
+						for (int i = 0; i < names.length; i++) {
+							if (checked[i])
+								chosen.add(names[i]);
+						}
+						if (chosen.isEmpty()) {
+							Toast.makeText(getActivity(), R.string.chart_endpoints_none, Toast.LENGTH_SHORT).show();
+							return;
+						}
+						((ChartFragment) getTargetFragment()).setEndpoints(chosen);
+					}
+				})
+				.setNegativeButton(android.R.string.cancel, null)
+				.create();
+	}
+}
@@ -11,7 +11,7 @@ import android.graphics.Color;
 import android.graphics.Paint.Align;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.Message;
+import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentTransaction;
 import android.text.TextUtils;
@@ -25,12 +25,13 @@ import android.widget.Toast;
 
 import com.digi.android.wva.WvaApplication;
 import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.BufferedXYSeries;
+import com.digi.android.wva.util.ChartFeed;
+import com.digi.android.wva.util.ChartSurfaceView;
+import com.digi.android.wva.util.FrameThrottle;
 import com.digi.android.wva.util.MessageCourier;
 import com.digi.wva.async.WvaCallback;
 
-import org.achartengine.ChartFactory;
-import org.achartengine.GraphicalView;
-import org.achartengine.chart.LineChart;
 import org.achartengine.chart.PointStyle;
 import org.achartengine.model.SeriesSelection;
 import org.achartengine.model.XYMultipleSeriesDataset;
@@ -40,14 +41,30 @@ import org.achartengine.renderer.XYSeriesRenderer;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The {@link Fragment} which holds and displays the data graph, as well
  * as handling incoming data to be plotted.
  *
+ * <p>The user picks which endpoints are charted (see
+ * {@link #showEndpointPicker()}); by default, these are vehicle speed and
+ * engine RPM. Each endpoint gets its own Y-axis scale. Vehicle speed and
+ * engine RPM have fixed ranges; every other endpoint's range follows the
+ * data charted.</p>
+ *
+ * <p>Normally the chart follows the newest data, showing the last
+ * {@link #TIMESPAN} of it. Up to {@link #HISTORY_SPAN} of data is kept, and
+ * in {@link #setZoomEnabled(boolean) zoom mode} the user can pan and zoom
+ * through all of it. Long stretches are drawn from each series'
+ * {@link com.digi.android.wva.util.MinMaxPyramid}, so that zooming out to a
+ * whole shift does not mean reading every point.</p>
+ *
  * @author mwadsten
  */
 public class ChartFragment extends Fragment {
@@ -57,39 +74,58 @@ public class ChartFragment extends Fragment {
      * to display on the graph at one time.
      */
     private static final int TIMESPAN = 15 * 60 * 1000;
-    private final MessageHandler mHandler = new MessageHandler(this);
-    private GraphicalView mChart;
+    /** Amount of data kept for panning and zooming, in milliseconds (8 hours). */
+    private static final long HISTORY_SPAN = 8 * 60 * 60 * 1000L;
+    /** Shortest time span the chart can be zoomed in to, in milliseconds. */
+    private static final long MIN_ZOOM_SPAN = 10 * 1000L;
+    /** Minimum time between chart repaints, in milliseconds (20 Hz). */
+    private static final int REPAINT_INTERVAL = 50;
+    private static final String SPEED_ENDPOINT = "VehicleSpeed";
+    private static final String RPM_ENDPOINT = "EngineSpeed";
+    private static final String DEFAULT_ENDPOINTS = SPEED_ENDPOINT + "," + RPM_ENDPOINT;
+    private static final int[] SERIES_COLORS = {
+        Color.RED, Color.BLUE, 0xFF008000, Color.MAGENTA, 0xFFFF8C00,
+        0xFF008B8B, 0xFF800080, 0xFF8B4513, Color.DKGRAY, 0xFF6B8E23
+    };
+    private final Handler mHandler = new Handler();
+    private ChartSurfaceView mChart;
 	private XYMultipleSeriesDataset mDataset;
 	private XYMultipleSeriesRenderer mRenderer;
-	private XYSeriesRenderer mSpeedRenderer, mRpmRenderer;
+    /** Charted endpoints, in order of their series in the dataset. */
+    private final List<String> endpoints = new ArrayList<String>();
+    private final Map<String, BufferedXYSeries> seriesByEndpoint = new HashMap<String, BufferedXYSeries>();
     private double startTime, endTime;
-    private boolean paused = false;
+    /** Scratch {min, max} for updateYRanges. */
+    private final double[] yRange = new double[2];
+    /** End of the X-axis while following the newest data. */
+    private double liveEndTime;
+    /** True while the X-axis follows the newest data. */
+    private boolean following = true;
+    private boolean zoomEnabled = false;
     private boolean subscribed = false;
     private boolean isTesting = false;
-    // We add the last speed and RPM values to the graph after shifting the
-    // X-axis so that we have a visual indication of the difference between
-    // them and the new ones.
+    // The most recently plotted speed and RPM values.
     private VehicleData lastSpeed, lastRPM;
+    private final ChartFeed.Points feedPoints = new ChartFeed.Points();
     private final Object shiftLock = new Object();
     private WvaApplication app;
 
-    private static final int MESSAGE_LOOP_INTERVAL = 1000;
-
-    private static class MessageHandler extends Handler {
-    	private final ChartFragment fragment;
-    	public MessageHandler(ChartFragment frag) {
-    		fragment = frag;
-    	}
+    private final Runnable messageConsumer = new Runnable() {
         @Override
-        public void handleMessage(Message msg) {
-            fragment.processMessages();
+        public void run() {
+            processMessages();
         }
+    };
 
-        public void sleep() {
-            this.removeMessages(0);
-            sendMessageDelayed(obtainMessage(0), MESSAGE_LOOP_INTERVAL);
+    private final FrameThrottle repaintThrottle = new FrameThrottle(new Runnable() {
+        @Override
+        public void run() {
+            if (mChart != null) {
+                updateYRanges();
+                mChart.requestRender();
+            }
         }
-    }
+    }, REPAINT_INTERVAL);
 	
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
@@ -99,22 +135,41 @@ public class ChartFragment extends Fragment {
 		// This is to ensure that the chart remains in existence.
 		setRetainInstance(true);
 
+        app = (WvaApplication) getActivity().getApplication();
+        loadEndpoints();
 		
 		startTime = DateTime.now().getMillis();
 		// endTime is 15 minutes after startTime
 		endTime = startTime + TIMESPAN;
+		liveEndTime = endTime;
 		
 		buildGraphPieces();
 		clearDataset();
 
-        app = (WvaApplication) getActivity().getApplication();
+        // Start collecting chart data, dropping anything left over from a
+        // previous chart.
+        ChartFeed feed = MessageCourier.getChartFeed();
+        feed.clear();
+        feed.setEndpoints(endpoints);
+        feed.setEnabled(true);
 	}
 
+    @Override
+    public void onDestroy() {
+        // Nobody is left to read chart data; stop collecting it.
+        ChartFeed feed = MessageCourier.getChartFeed();
+        feed.setEnabled(false);
+        feed.setEndpoints(null);
+        feed.clear();
+        super.onDestroy();
+    }
+
     @Override
 	public void onPause() {
         // Ensure messages stop being processed.
-        mHandler.removeMessages(0);
-        paused = true;
+        MessageCourier.unregisterChartConsumer();
+        mHandler.removeCallbacks(messageConsumer);
+        repaintThrottle.cancel();
 		super.onPause();
 	}
 
@@ -136,36 +191,12 @@ public class ChartFragment extends Fragment {
                 return;
             }
             subscribed = true;
-            if (!isTesting) {
-                app.subscribeToEndpoint("EngineSpeed", 10, new WvaCallback<Void>() {
-                    @Override
-                    public void onResponse(Throwable error, Void response) {
-                        if (error != null) {
-                            Log.e(TAG, "Unable to subscribe to EngineSpeed", error);
-                            Toast.makeText(getActivity(), "Unable to subscribe to EngineSpeed: " + error, Toast.LENGTH_SHORT).show();
-                        } else {
-                            Log.d(TAG, "Successfully subscribed to EngineSpeed.");
-                            Toast.makeText(getActivity(), "Subscribed to EngineSpeed.", Toast.LENGTH_SHORT).show();
-                        }
-                    }
-                });
-                app.subscribeToEndpoint("VehicleSpeed", 10, new WvaCallback<Void>() {
-                    @Override
-                    public void onResponse(Throwable error, Void response) {
-                        if (error != null) {
-                            Log.e(TAG, "Unable to subscribe to VehicleSpeed", error);
-                            Toast.makeText(getActivity(), "Unable to subscribe to VehicleSpeed: " + error, Toast.LENGTH_SHORT).show();
-                        } else {
-                            Log.d(TAG, "Successfully subscribed to VehicleSpeed.");
-                            Toast.makeText(getActivity(), "Subscribed to VehicleSpeed.", Toast.LENGTH_SHORT).show();
-                        }
-                    }
-                });
-            }
+            subscribe(endpoints);
         }
 
-        paused = false;
-        processMessages();
+        // Process anything already waiting, and be woken up for anything
+        // that arrives while we are in the foreground.
+        MessageCourier.registerChartConsumer(mHandler, messageConsumer);
 	}
 
 	@Override
@@ -175,12 +206,124 @@ public class ChartFragment extends Fragment {
 		if (container == null) {
 			container = new LinearLayout(getActivity());
 		}
-		container.addView(ChartFactory.getCombinedXYChartView(getActivity(), mDataset, mRenderer, new String[] {LineChart.TYPE, LineChart.TYPE}));
+		container.addView(getChartView());
+		redrawChart();
 
        //container.addView(ChartFactory.getCombinedXYChartView(getActivity(), mDataset, mRenderer, new String[] {new CombinedXYChart.XYCombinedChartDef(LineChart.TYPE, 0), new CombinedXYChart.XYCombinedChartDef(LineChart.TYPE, 1
         return container;
 	}
 
+    @Override
+    public void onDestroyView() {
+        // The chart view belongs to the activity being torn down.
+        repaintThrottle.cancel();
+        mChart = null;
+        super.onDestroyView();
+    }
+
+    /**
+     * Subscribe to the given endpoints, so that their data reaches the chart.
+     * Does nothing while testing.
+     * @param toSubscribe endpoints to subscribe to
+     */
+    private void subscribe(Collection<String> toSubscribe) {
+        if (isTesting)
+            return;
+        for (final String endpoint : toSubscribe) {
+            app.subscribeToEndpoint(endpoint, 10, new WvaCallback<Void>() {
+                @Override
+                public void onResponse(Throwable error, Void response) {
+                    if (error != null) {
+                        Log.e(TAG, "Unable to subscribe to " + endpoint, error);
+                        Toast.makeText(getActivity(), "Unable to subscribe to " + endpoint + ": " + error, Toast.LENGTH_SHORT).show();
+                    } else {
+                        Log.d(TAG, "Successfully subscribed to " + endpoint + ".");
+                        Toast.makeText(getActivity(), "Subscribed to " + endpoint + ".", Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Read the charted endpoints out of preferences.
+     */
+    private void loadEndpoints() {
+        String saved = PreferenceManager.getDefaultSharedPreferences(getActivity())
+                .getString(WvaApplication.PREF_CHART_ENDPOINTS, DEFAULT_ENDPOINTS);
+        endpoints.clear();
+        for (String endpoint : TextUtils.split(saved, ",")) {
+            if (!TextUtils.isEmpty(endpoint) && !endpoints.contains(endpoint))
+                endpoints.add(endpoint);
+        }
+        if (endpoints.isEmpty())
+            Collections.addAll(endpoints, TextUtils.split(DEFAULT_ENDPOINTS, ","));
+    }
+
+    /**
+     * Get the endpoints being charted
+     * @return the charted endpoints, in the order of their series
+     */
+    public List<String> getEndpoints() {
+        return Collections.unmodifiableList(new ArrayList<String>(endpoints));
+    }
+
+    /**
+     * Change which endpoints are charted, and remember the choice. Data
+     * already plotted for endpoints which stay on the chart is kept.
+     * @param chosen endpoints to chart; must not be empty
+     */
+    public void setEndpoints(List<String> chosen) {
+        if (chosen.isEmpty())
+            throw new IllegalArgumentException("No endpoints to chart");
+        if (chosen.equals(endpoints))
+            return;
+
+        List<String> added = new ArrayList<String>(chosen);
+        added.removeAll(endpoints);
+        Map<String, BufferedXYSeries> old = new HashMap<String, BufferedXYSeries>(seriesByEndpoint);
+
+        endpoints.clear();
+        endpoints.addAll(chosen);
+        PreferenceManager.getDefaultSharedPreferences(getActivity()).edit()
+                .putString(WvaApplication.PREF_CHART_ENDPOINTS, TextUtils.join(",", endpoints))
+                .apply();
+
+        // The number of scales is fixed when a renderer is created, so
+        // build the chart again, carrying over the points we already have.
+        mRenderer = null;
+        mDataset = null;
+        buildGraphPieces();
+        for (Map.Entry<String, BufferedXYSeries> e : seriesByEndpoint.entrySet()) {
+            BufferedXYSeries from = old.get(e.getKey());
+            if (from == null)
+                continue;
+            for (int i = 0; i < from.getItemCount(); i++) {
+                e.getValue().add(from.getX(i), from.getY(i));
+            }
+        }
+        if (!seriesByEndpoint.containsKey(SPEED_ENDPOINT))
+            lastSpeed = null;
+        if (!seriesByEndpoint.containsKey(RPM_ENDPOINT))
+            lastRPM = null;
+
+        if (mChart != null)
+            mChart.setChart(mDataset, mRenderer);
+        MessageCourier.getChartFeed().setEndpoints(endpoints);
+        if (subscribed)
+            subscribe(added);
+        redrawChart();
+    }
+
+    /**
+     * Show a dialog letting the user choose which endpoints to chart.
+     */
+    public void showEndpointPicker() {
+        ChartEndpointsDialog dialog = ChartEndpointsDialog.newInstance(new ArrayList<String>(endpoints));
+        dialog.setTargetFragment(this, 0);
+        dialog.show(getFragmentManager(), "chart_endpoints");
+    }
+
     /**
      * In the process of unit-testing, effectively mocking the WvaApplication
      * and making that mock application accessible from this fragment has
@@ -192,9 +335,11 @@ public class ChartFragment extends Fragment {
     }
 	
 	/**
-	 * Repaints the chart view onto the screen. This is done by
-	 * removing the chart view from the layout, calling repaint(),
-	 * and putting the view back into the layout.
+	 * Schedules a repaint of the chart view. At most once every
+	 * {@link #REPAINT_INTERVAL} milliseconds, the chart data is handed to the
+	 * chart view, which draws it on its own thread, so this can be called
+	 * for every new data point. The chart view stays where it is in the
+	 * layout.
      *
      * <p>This method is protected, rather than private, due to a bug between JaCoCo and
      * the Android build tools which causes the instrumented bytecode to be invalid when this
@@ -203,13 +348,60 @@ public class ChartFragment extends Fragment {
      * </p>
 	 */
 	protected void redrawChart() {
-		// super.getView() should return NoSaveStateFrameLayout, which
-		// extends FrameLayout, which extends ViewGroup
-		ViewGroup l = (ViewGroup)super.getView();
 		if (mChart == null) {
-			mChart = ChartFactory.getCombinedXYChartView(
-					getActivity(), mDataset, mRenderer,
-					new String[] {LineChart.TYPE, LineChart.TYPE});
+			// The view hasn't been created yet; it will be drawn once it is.
+			return;
+		}
+		repaintThrottle.request();
+	}
+
+    /**
+     * Turn zoom mode on or off. In zoom mode, the chart can be dragged and
+     * pinched to look back through the history kept; it stops following the
+     * newest data as soon as it is moved. Turning zoom mode off goes back to
+     * following the newest data.
+     * @param enabled true to turn zoom mode on
+     */
+    public void setZoomEnabled(boolean enabled) {
+        zoomEnabled = enabled;
+        mRenderer.setPanEnabled(enabled, false);
+        mRenderer.setZoomEnabled(enabled, false);
+        if (!enabled) {
+            synchronized (shiftLock) {
+                following = true;
+                slideWindow((long) liveEndTime);
+            }
+        }
+        redrawChart();
+    }
+
+    /**
+     * @return true if the chart is in zoom mode
+     */
+    public boolean isZoomEnabled() {
+        return zoomEnabled;
+    }
+
+    /**
+     * Get the chart view, creating it if need be. The view is dropped in
+     * {@link #onDestroyView()}, so that a new one is created for the new
+     * activity when this (retained) fragment is re-attached.
+     */
+    private ChartSurfaceView getChartView() {
+		if (mChart == null) {
+			mChart = new ChartSurfaceView(getActivity());
+			mChart.setChart(mDataset, mRenderer);
+			mChart.setSpanLimits(MIN_ZOOM_SPAN, HISTORY_SPAN);
+			mChart.setOnViewportChangeListener(new ChartSurfaceView.OnViewportChangeListener() {
+				@Override
+				public void onViewportChanged(long start, long end) {
+					synchronized (shiftLock) {
+						following = false;
+						startTime = start;
+						endTime = end;
+					}
+				}
+			});
 			mChart.setOnClickListener(new OnClickListener() {
 				@Override
 				public void onClick(View v) {
@@ -218,15 +410,7 @@ public class ChartFragment extends Fragment {
 					if (sel == null)
 						return;
 					
-					String series = "SERIES";
-					switch (sel.getSeriesIndex()) {
-					case 0:
-						series = "Vehicle Speed";
-						break;
-					case 1:
-						series = "Engine RPM";
-						break;
-					}
+					String series = mDataset.getSeriesAt(sel.getSeriesIndex()).getTitle();
 					
 					String time = ISODateTimeFormat.dateTimeNoMillis().print((long)sel.getXValue());
 					
@@ -236,25 +420,7 @@ public class ChartFragment extends Fragment {
 				}
 			});
 		}
-		if (l != null) {
-            // Ensure that the chart is removed from all views.
-            try {
-                if (mChart.getParent() != null) {
-                    //noinspection ConstantConditions
-                    ((ViewGroup) mChart.getParent()).removeAllViews();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
-            l.removeAllViews();
-            mChart.repaint();
-            l.addView(mChart);
-        } else {
-            // If the getView() result is null, something's up, like
-            // the activity has been backgrounded.
-            Log.d(TAG, "redrawChart -- l is null");
-        }
+        return mChart;
     }
 
     /**
@@ -267,15 +433,14 @@ public class ChartFragment extends Fragment {
      * </p>
      */
 	protected void buildGraphPieces() {
-		if (mRenderer != null || mDataset != null
-			|| mRpmRenderer != null || mSpeedRenderer != null) {
+		if (mRenderer != null || mDataset != null) {
 			// Don't want to leak any memory or whatnot.
 			return;
 		}
-		mRenderer = new XYMultipleSeriesRenderer(2);
+		int count = endpoints.size();
+		mRenderer = new XYMultipleSeriesRenderer(Math.max(1, count));
 		mDataset = new XYMultipleSeriesDataset();
-		mSpeedRenderer = new XYSeriesRenderer();
-		mRpmRenderer = new XYSeriesRenderer();
+		seriesByEndpoint.clear();
 		
 		// Initialize renderer settings
 		mRenderer.setShowGrid(true);
@@ -294,93 +459,129 @@ public class ChartFragment extends Fragment {
 		mRenderer.setAxesColor(Color.DKGRAY);
 		mRenderer.setLabelsColor(Color.BLACK);
 		mRenderer.setXLabelsColor(Color.DKGRAY);
-		mRenderer.setYLabelsColor(0, Color.DKGRAY);
-        mRenderer.setYLabelsColor(1, Color.DKGRAY);
 		mRenderer.setGridColor(Color.LTGRAY);
-		mRenderer.setPanEnabled(false, false);
-		mRenderer.setZoomEnabled(false, false);
-		mRenderer.setXAxisMin(startTime);
-		mRenderer.setXAxisMax(endTime);
-        mRenderer.setXAxisMin(startTime, 1);
-        mRenderer.setXAxisMax(endTime, 1);
-		mRenderer.setYAxisMin(0, 0);
-		mRenderer.setYAxisMax(100, 0);
-
-		mSpeedRenderer.setColor(Color.RED);
-		mSpeedRenderer.setPointStyle(PointStyle.CIRCLE);
-		mSpeedRenderer.setFillPoints(true);
-		
-		mRpmRenderer.setColor(Color.BLUE);
-		mRpmRenderer.setPointStyle(PointStyle.SQUARE);
-		mRpmRenderer.setFillPoints(true);
-		
-		XYSeries speedSeries = new XYSeries("Vehicle Speed");
-		XYSeries rpmSeries = new XYSeries("Engine RPM", 1);
-		
-		mDataset.addSeries(0, speedSeries);
-		mDataset.addSeries(1, rpmSeries);
-		mRenderer.addSeriesRenderer(0, mSpeedRenderer);
-		mRenderer.addSeriesRenderer(1, mRpmRenderer);
-
-        mRenderer.setYAxisMin(0, 1);
-        mRenderer.setYAxisMax(10000, 1);
-
-        mRenderer.setYTitle("VehicleSpeed");
-        mRenderer.setYTitle("EngineSpeed", 1);
-        mRenderer.setYAxisAlign(Align.RIGHT, 1);
-        mRenderer.setYLabelsAlign(Align.RIGHT, 1);
-		
-		// Add X-axis labels with time.
-		Log.d(TAG, "Time range: " + startTime + " to " + endTime);
-		SimpleDateFormat fmt = new SimpleDateFormat("HH:mm:ss", Locale.US);
-		for (double t = startTime; t <= endTime; t += 60*1000) {
-			String time = fmt.format(new Date((long)t));
-			Log.d(TAG, "Adding label " + t + ", " + time);
-			mRenderer.addXTextLabel(t, time);
+		mRenderer.setPanEnabled(zoomEnabled, false);
+		mRenderer.setZoomEnabled(zoomEnabled, false);
+
+		for (int i = 0; i < count; i++) {
+			String endpoint = endpoints.get(i);
+			XYSeriesRenderer seriesRenderer = new XYSeriesRenderer();
+			seriesRenderer.setColor(SERIES_COLORS[i % SERIES_COLORS.length]);
+			seriesRenderer.setPointStyle(i % 2 == 0 ? PointStyle.CIRCLE : PointStyle.SQUARE);
+			seriesRenderer.setFillPoints(true);
+
+			BufferedXYSeries series = new BufferedXYSeries(getSeriesTitle(endpoint), i);
+			mDataset.addSeries(i, series);
+			mRenderer.addSeriesRenderer(i, seriesRenderer);
+			seriesByEndpoint.put(endpoint, series);
+
+			mRenderer.setXAxisMin(startTime, i);
+			mRenderer.setXAxisMax(endTime, i);
+			double[] range = getFixedRange(endpoint);
+			mRenderer.setYAxisMin(range == null ? 0 : range[0], i);
+			mRenderer.setYAxisMax(range == null ? 1 : range[1], i);
+			mRenderer.setYTitle(endpoint, i);
+			mRenderer.setYLabelsColor(i, Color.DKGRAY);
+			// Only the first two scales get an axis, one on either side;
+			// ChartSurfaceView draws axes for the first scale aligned each
+			// way.
+			if (i == 1) {
+				mRenderer.setYAxisAlign(Align.RIGHT, i);
+				mRenderer.setYLabelsAlign(Align.RIGHT, i);
+			}
 		}
+
+		// X-axis labels (times of day) are drawn by ChartSurfaceView.
+		Log.d(TAG, "Time range: " + startTime + " to " + endTime);
 	}
 
+    private static String getSeriesTitle(String endpoint) {
+        if (SPEED_ENDPOINT.equals(endpoint))
+            return "Vehicle Speed";
+        if (RPM_ENDPOINT.equals(endpoint))
+            return "Engine RPM";
+        return endpoint;
+    }
+
+    /**
+     * @return the fixed Y-axis range of an endpoint, as {min, max}, or null
+     * if its range should follow the data
+     */
+    private static double[] getFixedRange(String endpoint) {
+        if (SPEED_ENDPOINT.equals(endpoint))
+            return new double[] {0, 100};
+        if (RPM_ENDPOINT.equals(endpoint))
+            return new double[] {0, 10000};
+        return null;
+    }
+
+    /**
+     * Fit the Y-axis range of each endpoint without a fixed range to the
+     * data between startTime and endTime. Endpoints with no data in view
+     * keep their range.
+     */
+    private void updateYRanges() {
+        for (int i = 0; i < endpoints.size(); i++) {
+            String endpoint = endpoints.get(i);
+            BufferedXYSeries series = seriesByEndpoint.get(endpoint);
+            if (series == null || getFixedRange(endpoint) != null
+                    || !series.getRangeY((long) startTime, (long) endTime, yRange))
+                continue;
+            double min = yRange[0], max = yRange[1];
+            double margin = max > min ? (max - min) * 0.05 : 1;
+            mRenderer.setYAxisMin(min - margin, i);
+            mRenderer.setYAxisMax(max + margin, i);
+        }
+    }
+
+    /**
+     * Slide the X-axis so that it shows the {@link #TIMESPAN} ending at the
+     * given time.
+     * @param end new end time of the X-axis
+     */
+    private void slideWindow(long end) {
+        endTime = end;
+        startTime = end - TIMESPAN;
+        for (int i = 0; i < mRenderer.getScalesCount(); i++) {
+            mRenderer.setXAxisMin(startTime, i);
+            mRenderer.setXAxisMax(endTime, i);
+        }
+    }
+
     /**
      * Does what it says on the tin: clears out the data sets.
      */
 	public void clearDataset() {
-		if (mDataset != null && mDataset.getSeriesCount() == 2) {
+		if (mDataset != null) {
 			for (XYSeries series : mDataset.getSeries()) {
 				series.clear();
 			}
 		}
 	}
 
+    /**
+     * Fetch the XYSeries representing the sequence of values of an endpoint
+     * @param endpoint the endpoint whose series to fetch
+     * @return the endpoint's series, or null if it is not being charted
+     */
+	public XYSeries getSeries(String endpoint) {
+		return seriesByEndpoint.get(endpoint);
+	}
+
     /**
      * Fetch the XYSeries representing the sequence of speed values
-     * @return the speed series, or null if there is an error or the series
-     * is itself null
+     * @return the speed series, or null if speed is not being charted
      */
 	public XYSeries getSpeedSeries() {
-		if (mDataset != null)
-			try {
-				return mDataset.getSeriesAt(0);
-			} catch (Exception e) {
-				e.printStackTrace();
-				return null;
-			}
-		return null;
+		return getSeries(SPEED_ENDPOINT);
 	}
 
     /**
      * Fetch the XYSeries representing the sequence of RPM values
-     * @return the RPM series, or null if there is an error or the series
-     * is itself null
+     * @return the RPM series, or null if RPM is not being charted
      */
 	public XYSeries getRpmSeries() {
-		if (mDataset != null)
-			try {
-				return mDataset.getSeriesAt(1);
-			} catch (Exception e) {
-				e.printStackTrace();
-				return null;
-			}
-		return null;
+		return getSeries(RPM_ENDPOINT);
 	}
 
     /**
@@ -418,7 +619,7 @@ public class ChartFragment extends Fragment {
     /**
      * Iterate over {@link MessageCourier#getChartMessages() any pending messages}
      * and call {@link #processMessage(com.digi.android.wva.util.MessageCourier.ChartMessage)}
-     * on each of them.
+     * on each of them, then plot any new data from the chart feed.
      *
      * <p>This method is protected, rather than private, due to a bug between JaCoCo and
      * the Android build tools which causes the instrumented bytecode to be invalid when this
@@ -433,13 +634,11 @@ public class ChartFragment extends Fragment {
                 // an error, and so we should have displayed an error
                 // dialog; we want to stop processing messages and get ready
                 // for leaving the chart activity.
+                MessageCourier.unregisterChartConsumer();
                 return;
             }
         }
-        // Stop mHandler loop if paused.
-        if (paused)
-            return;
-        mHandler.sleep();
+        drainChartFeed();
     }
 
     /**
@@ -498,64 +697,15 @@ public class ChartFragment extends Fragment {
         try {
             String endpoint = incoming.name;
             double value = incoming.value;
-            long timeMs = incoming.timestamp.getMillis();
+            long timeMs = incoming.time;
             if (!isTesting)
                 Log.d(TAG, "Got new data on " + endpoint + ", value: " + value + ", time: " + timeMs);
 
-            // Synchronize on shiftLock so that if two data points come in
-            // practically simultaneously, we don't shift the view ahead and
-            // then shift ahead another time.
-            synchronized (shiftLock) {
-                if (timeMs > endTime) {
-                    // Shift graph view ahead so current endTime becomes new startTime
-                    startTime = endTime;
-                    endTime = startTime + TIMESPAN;
-                    /*
-                    Wipe out dataset and renderers, so that we can rebuild them
-                    using buildGraphPieces, and they will reflect the new
-                    start and end times.
-                    */
-                    clearDataset();
-                    mRenderer.clearXTextLabels();
-                    mRenderer.removeSeriesRenderer(mRpmRenderer);
-                    mRenderer.removeSeriesRenderer(mSpeedRenderer);
-                    mRenderer = null;
-                    mDataset = null;
-                    mRpmRenderer = null;
-                    mSpeedRenderer = null;
-                    mChart = null;
-                    buildGraphPieces();
-                    try {
-                        ((ViewGroup)getView()).removeAllViews();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    if (lastSpeed != null && getSpeedSeries() != null) {
-                        getSpeedSeries().add(lastSpeed.timestamp.getMillis(), lastSpeed.value);
-                    }
-                    if (lastRPM != null && getRpmSeries() != null) {
-                        getRpmSeries().add(lastRPM.timestamp.getMillis(), lastRPM.value);
-                    }
-                }
-            }
-
-            // Add the new data point to the graph.
-            if ("VehicleSpeed".equals(endpoint)) {
-                XYSeries series = getSpeedSeries();
-                if (series != null) {
-                    series.add(timeMs, value);
-                }
+            plotPoint(endpoint, timeMs, value);
+            if (SPEED_ENDPOINT.equals(endpoint))
                 lastSpeed = incoming;
-            }
-            else if ("EngineSpeed".equals(endpoint)) {
-                XYSeries series = getRpmSeries();
-                if (series != null) {
-                    series.add(timeMs, value);
-                }
+            else if (RPM_ENDPOINT.equals(endpoint))
                 lastRPM = incoming;
-            } else {
-                Log.d(TAG, "Unknown graphing endpoint: " + endpoint);
-            }
 
             // Redraw the chart on-screen so the new data point is visible.
             redrawChart();
@@ -563,4 +713,76 @@ public class ChartFragment extends Fragment {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Plot every point waiting in the {@link MessageCourier#getChartFeed() chart feed},
+     * then redraw the chart once.
+     *
+     * <p>This method is protected, rather than private, due to a bug between JaCoCo and
+     * the Android build tools which causes the instrumented bytecode to be invalid when this
+     * method is private:
+     * http://stackoverflow.com/questions/17603192/dalvik-transformation-using-wrong-invoke-opcode
+     * </p>
+     */
+    protected void drainChartFeed() {
+        ChartFeed feed = MessageCourier.getChartFeed();
+        boolean plotted = false;
+        try {
+            for (int i = 0; i < endpoints.size(); i++) {
+                String endpoint = endpoints.get(i);
+                if (feed.drain(endpoint, feedPoints) > 0) {
+                    plotPoints(endpoint, feedPoints);
+                    plotted = true;
+                }
+            }
+            if (plotted)
+                redrawChart();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void plotPoints(String endpoint, ChartFeed.Points points) {
+        int count = points.size();
+        for (int i = 0; i < count; i++) {
+            plotPoint(endpoint, points.getTime(i), points.getValue(i));
+        }
+
+        if (SPEED_ENDPOINT.equals(endpoint) || RPM_ENDPOINT.equals(endpoint)) {
+            VehicleData last = new VehicleData(endpoint, points.getValue(count - 1),
+                                               points.getTime(count - 1));
+            if (SPEED_ENDPOINT.equals(endpoint))
+                lastSpeed = last;
+            else
+                lastRPM = last;
+        }
+    }
+
+    /**
+     * Add a single point to the graph, sliding the X-axis forward first if
+     * the chart is following the newest data and the point is past the end
+     * of it, and drop any points older than {@link #HISTORY_SPAN}. Does not
+     * redraw the chart.
+     */
+    private void plotPoint(String endpoint, long timeMs, double value) {
+        BufferedXYSeries series = seriesByEndpoint.get(endpoint);
+        if (series == null) {
+            Log.d(TAG, "Unknown graphing endpoint: " + endpoint);
+            return;
+        }
+
+        // Synchronize on shiftLock so that if two data points come in
+        // practically simultaneously, they don't both slide the view.
+        synchronized (shiftLock) {
+            if (timeMs > liveEndTime) {
+                liveEndTime = timeMs;
+                if (following)
+                    slideWindow(timeMs);
+            }
+        }
+
+        // Add the new data point to the graph.
+        series.add(timeMs, value);
+        series.evictBefore(timeMs - HISTORY_SPAN);
+    }
 }
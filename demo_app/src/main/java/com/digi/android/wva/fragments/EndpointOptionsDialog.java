@@ -38,6 +38,7 @@ import com.digi.android.wva.adapters.EndpointsAdapter;
 import com.digi.android.wva.adapters.LogAdapter;
 import com.digi.android.wva.model.EndpointConfiguration;
 import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.util.BatchUploader;
 import com.digi.wva.async.AlarmType;
 import com.digi.wva.async.WvaCallback;
 
@@ -195,7 +196,7 @@ public class EndpointOptionsDialog extends DialogFragment {
 		final Spinner typeSpinner = (Spinner)v.findViewById(R.id.alarmTypeSpinner);
         final LinearLayout makeAlarmSection = (LinearLayout)v.findViewById(R.id.section_make_alarm);
         final LinearLayout showAlarmSection = (LinearLayout) v.findViewById(R.id.section_show_alarm);
-		//final CheckBox dcSendCB = (CheckBox)v.findViewById(R.id.dcPushCheckbox);
+		final CheckBox dcSendCB = (CheckBox)v.findViewById(R.id.dcPushCheckbox);
 
         String alarmInfo = "No alarm yet";
         boolean isSubscribed = false;
@@ -302,7 +303,10 @@ public class EndpointOptionsDialog extends DialogFragment {
             alarmCB.setText("Create alarm");
         }
 		
-		//dcSendCB.setChecked(isSendingToDC);
+		dcSendCB.setChecked(isSendingToDC);
+		// Nowhere to send the data until an upload URL is set in preferences.
+		BatchUploader uploader = BatchUploader.getInstance();
+		dcSendCB.setVisibility(uploader != null && uploader.isEnabled() ? View.VISIBLE : View.GONE);
 		
 		subInterval.setText(Integer.toString(sinterval));
 		
@@ -325,8 +329,7 @@ public class EndpointOptionsDialog extends DialogFragment {
             	// Set whether this endpoint's data should be pushed to Device Cloud
 
                 if (cfg != null) {
-                    //cfg.setPushToDeviceCloud(dcSendCB.isChecked());
-                    cfg.setPushToDeviceCloud(false);
+                    cfg.setPushToDeviceCloud(dcSendCB.isChecked());
                 }
 
             	// Handle (un)subscribing
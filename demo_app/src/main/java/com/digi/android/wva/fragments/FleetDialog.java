@@ -0,0 +1,142 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.fragments;
+
+import android.app.Activity;
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.support.v4.app.DialogFragment;
+
+import com.digi.android.wva.DeviceSession;
+import com.digi.android.wva.FleetManager;
+import com.digi.android.wva.R;
+
+import java.util.List;
+
+/**
+ * A {@link DialogFragment} listing the devices of the fleet (see
+ * {@link FleetManager}) along with their connection state, to choose which
+ * one is shown. Devices can also be added to, or removed from, the fleet.
+ */
+public class FleetDialog extends DialogFragment {
+	/**
+	 * Interface for activities showing this dialog (and
+	 * {@link AddFleetDeviceDialog}) to implement.
+	 */
+	public interface FleetDialogListener {
+		/**
+		 * Called when a device is chosen to be shown
+		 * @param name name of the fleet device, or null for the device
+		 *             connected to first
+		 */
+		void onShowFleetDevice(String name);
+
+		/**
+		 * Called when the user wants to add a device to the fleet
+		 */
+		void onAddFleetDeviceRequested();
+
+		/**
+		 * Called when the user has entered the address of a device to add
+		 * @param ip IP address of the device
+		 */
+		void onAddFleetDevice(String ip);
+
+		/**
+		 * Called when the user wants a device removed from the fleet
+		 * @param name name of the fleet device
+		 */
+		void onRemoveFleetDevice(String name);
+	}
+
+	private String[] names;
+	private String[] titles;
+	private int checked;
+
+	public static FleetDialog newInstance() {
+		return new FleetDialog();
+	}
+
+	@Override
+	public void onAttach(Activity activity) {
+		super.onAttach(activity);
+		if (!(activity instanceof FleetDialogListener)) {
+			throw new ClassCastException(activity.toString() + " must implement FleetDialogListener!");
+		}
+	}
+
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		FleetManager fleet = FleetManager.getInstance();
+		List<DeviceSession> sessions = fleet.getSessions();
+		DeviceSession active = fleet.getActive();
+
+		// The first entry is the device connected to first.
+		names = new String[sessions.size() + 1];
+		titles = new String[sessions.size() + 1];
+		titles[0] = getString(R.string.fleet_main_device);
+		checked = 0;
+		for (int i = 0; i < sessions.size(); i++) {
+			DeviceSession s = sessions.get(i);
+			names[i + 1] = s.getName();
+			titles[i + 1] = getString(R.string.fleet_device_template, s.getName(), describe(s));
+			if (s == active)
+				checked = i + 1;
+		}
+	}
+
+	private String describe(DeviceSession session) {
+		switch (session.getState()) {
+		case CONNECTED:
+			return getString(R.string.fleet_state_connected);
+		case RECONNECTING:
+			return getString(R.string.fleet_state_reconnecting);
+		case FAILED:
+			return getString(R.string.fleet_state_failed);
+		case CLOSED:
+			return getString(R.string.fleet_state_closed);
+		default:
+			return getString(R.string.fleet_state_connecting);
+		}
+	}
+
+	@Override
+	public Dialog onCreateDialog(Bundle savedInstanceState) {
+		final FleetDialogListener listener = (FleetDialogListener) getActivity();
+
+		AlertDialog.Builder builder = new AlertDialog.Builder(getActivity())
+				.setTitle(R.string.fleet_title)
+				.setSingleChoiceItems(titles, checked, new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						listener.onShowFleetDevice(names[which]);
+						dismiss();
+					}
+				})
+				.setNeutralButton(R.string.fleet_add, new DialogInterface.OnClickListener() {
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						listener.onAddFleetDeviceRequested();
+					}
+				})
+				.setNegativeButton(android.R.string.cancel, null);
+		if (checked > 0) {
+			final String shown = names[checked];
+			builder.setPositiveButton(R.string.fleet_remove, new DialogInterface.OnClickListener() {
+				@Override
+				public void onClick(DialogInterface dialog, int which) {
+					listener.onRemoveFleetDevice(shown);
+				}
+			});
+		}
+		return builder.create();
+	}
+}
@@ -30,11 +30,13 @@ import com.digi.android.wva.adapters.LogAdapter;
 public class LogFragment extends ListFragment {
 	private LogAdapter mAdapter;
     private boolean autoscroll;
+    private TextView droppedView;
 
     private final DataSetObserver observer = new DataSetObserver() {
         @Override
         public void onChanged() {
             super.onChanged();
+            updateDroppedCount();
             try {
                 if (autoscroll)
                     getListView().smoothScrollToPosition(0);
@@ -61,6 +63,7 @@ public class LogFragment extends ListFragment {
 //		Log.i("LogFragment", "onDestroyView");
 		super.onDestroyView();
 		setListAdapter(null);
+        droppedView = null;
 	}
 
 	// Override onResume (called when the containing activity
@@ -76,6 +79,7 @@ public class LogFragment extends ListFragment {
 
         if (getListAdapter() != null)
             getListAdapter().registerDataSetObserver(observer);
+        updateDroppedCount();
 	}
 
     @Override
@@ -105,7 +109,7 @@ public class LogFragment extends ListFragment {
 	public View onCreateView(LayoutInflater inflater, ViewGroup container,
 			Bundle savedInstanceState) {
 //		Log.i("LogFragment", "onCreateView");
-		View v = inflater.inflate(R.layout.list_fragment_with_header, null);
+		View v = inflater.inflate(R.layout.log_fragment, null);
         assert v != null;
         TextView header = (TextView) v.findViewById(R.id.log_header);
 		if (header != null) { // We're on a tablet
@@ -115,8 +119,27 @@ public class LogFragment extends ListFragment {
         TextView empty = (TextView)v.findViewById(android.R.id.empty);
         if (empty != null)
             empty.setText(R.string.empty_log_message);
+
+        droppedView = (TextView) v.findViewById(R.id.log_dropped);
 		
 		return v;
 	}
 
+    /**
+     * Show or hide the note at the bottom of the log saying how many events
+     * have been pushed out of the log to make room for newer ones.
+     */
+    private void updateDroppedCount() {
+        if (droppedView == null || mAdapter == null)
+            return;
+
+        long dropped = mAdapter.getDroppedCount();
+        if (dropped > 0) {
+            droppedView.setText(getString(R.string.log_dropped_template, dropped));
+            droppedView.setVisibility(View.VISIBLE);
+        } else {
+            droppedView.setVisibility(View.GONE);
+        }
+    }
+
 }
@@ -84,7 +84,7 @@ public class EndpointConfiguration implements Parcelable {
      */
 	public static class SubscriptionConfig {
 		private final int interval;
-		private boolean isSubscribed;
+		private volatile boolean isSubscribed;
 		
 		public SubscriptionConfig(int interval) {
 			this.interval = interval;
@@ -120,8 +120,9 @@ public class EndpointConfiguration implements Parcelable {
 	
 	private final String endpointName;
 	private AlarmConfig mAlarmC;
-	private SubscriptionConfig mSubC;
-	private boolean shouldBePushedToDC;
+	// Read by the ingest thread when deciding what to upload.
+	private volatile SubscriptionConfig mSubC;
+	private volatile boolean shouldBePushedToDC;
 	
 	public EndpointConfiguration(String endpoint) {
 		this.endpointName = endpoint;
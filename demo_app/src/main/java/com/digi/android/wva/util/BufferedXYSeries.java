@@ -0,0 +1,337 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import org.achartengine.model.XYSeries;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * AChartEngine {@link XYSeries} whose points are stored in a
+ * {@link TimeSeriesBuffer} rather than XYSeries' own map of boxed values.
+ *
+ * <p>X values are timestamps, in milliseconds since the epoch. Adding a point
+ * and evicting old points (see {@link #evictBefore(long)}) never allocate,
+ * apart from the occasional growth of the buffer. The only boxing left is in
+ * {@link #getRange(double, double, int)}, which AChartEngine calls while
+ * drawing; it returns a view onto the buffer rather than a copy.</p>
+ *
+ * <p>A {@link MinMaxPyramid} of the points is kept up to date alongside the
+ * buffer, so that {@link #copyRange(long, long, int, long[], double[])} can
+ * return a long stretch of the series, and
+ * {@link #getRangeY(long, long, double[])} its value range, without reading
+ * every point.</p>
+ *
+ * <p>Individual points cannot be {@link #remove(int) removed}.</p>
+ */
+public class BufferedXYSeries extends XYSeries {
+    private static final long serialVersionUID = 1L;
+
+    private final TimeSeriesBuffer buffer = new TimeSeriesBuffer();
+    private final MinMaxPyramid pyramid = new MinMaxPyramid();
+    /** Stretch covered by the pyramid in getRangeY. */
+    private final long[] covered = new long[2];
+
+    /**
+     * Create a new, empty series
+     * @param title title of the series
+     */
+    public BufferedXYSeries(String title) {
+        super(title);
+    }
+
+    /**
+     * Create a new, empty series
+     * @param title title of the series
+     * @param scaleNumber the number of the Y-axis the series is drawn against
+     */
+    public BufferedXYSeries(String title, int scaleNumber) {
+        super(title, scaleNumber);
+    }
+
+    /**
+     * Add a point to the series
+     * @param x timestamp of the point, in milliseconds since the epoch
+     * @param y value of the point
+     */
+    @Override
+    public synchronized void add(double x, double y) {
+        buffer.add((long) x, y);
+        pyramid.add((long) x, y);
+    }
+
+    /**
+     * Remove every point older than the given time
+     * @param time timestamp of the oldest point to keep
+     * @return the number of points removed
+     */
+    public synchronized int evictBefore(long time) {
+        pyramid.evictBefore(time);
+        return buffer.evictBefore(time);
+    }
+
+    /**
+     * Not supported; use {@link #evictBefore(long)} or {@link #clear()}.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public synchronized void remove(int index) {
+        throw new UnsupportedOperationException("Use evictBefore to remove points");
+    }
+
+    @Override
+    public synchronized void clear() {
+        buffer.clear();
+        pyramid.clear();
+    }
+
+    @Override
+    public synchronized double getX(int index) {
+        return buffer.getTime(index);
+    }
+
+    @Override
+    public synchronized double getY(int index) {
+        return buffer.getValue(index);
+    }
+
+    @Override
+    public synchronized int getItemCount() {
+        // XYSeries's constructor calls this before our fields are set.
+        return buffer == null ? 0 : buffer.size();
+    }
+
+    @Override
+    public synchronized double getMinX() {
+        return buffer.size() == 0 ? Double.MAX_VALUE : buffer.getTime(0);
+    }
+
+    @Override
+    public synchronized double getMaxX() {
+        return buffer.size() == 0 ? -Double.MAX_VALUE : buffer.getTime(buffer.size() - 1);
+    }
+
+    @Override
+    public synchronized double getMinY() {
+        return buffer.getMinValue();
+    }
+
+    @Override
+    public synchronized double getMaxY() {
+        return buffer.getMaxValue();
+    }
+
+    @Override
+    public synchronized int getIndexForKey(double key) {
+        int i = buffer.lowerBound((long) key);
+        if (i < buffer.size() && buffer.getTime(i) == (long) key)
+            return i;
+        // Same convention as Collections.binarySearch
+        return -(i + 1);
+    }
+
+    /**
+     * Get the points between start and stop, plus beforeAfterPoints more
+     * on either side. The returned map is a view onto this series, and is
+     * only valid until the series is next changed.
+     */
+    @Override
+    public synchronized SortedMap<Double, Double> getRange(double start, double stop,
+                                                          int beforeAfterPoints) {
+        int from = Math.max(0, buffer.lowerBound((long) Math.ceil(start)) - beforeAfterPoints);
+        int to = Math.min(buffer.size(), buffer.upperBound((long) Math.floor(stop)) + beforeAfterPoints);
+        return new RangeView(from, Math.max(from, to));
+    }
+
+    /**
+     * Copy the points between start and stop, plus one more on either side
+     * so that lines can be drawn up to the edges of the range.
+     * @param start timestamp at the start of the range
+     * @param stop timestamp at the end of the range
+     * @param times array to copy timestamps into
+     * @param values array to copy values into
+     * @return the number of points in the range. If that is more than the
+     * arrays can hold, nothing is copied, and the caller should try again
+     * with larger arrays.
+     */
+    public synchronized int copyRange(long start, long stop, long[] times, double[] values) {
+        int from = Math.max(0, buffer.lowerBound(start) - 1);
+        int to = Math.min(buffer.size(), buffer.upperBound(stop) + 1);
+        int count = Math.max(0, to - from);
+        if (count <= times.length && count <= values.length)
+            buffer.copy(from, from + count, times, values);
+        return count;
+    }
+
+    /**
+     * Copy the points between start and stop, as with
+     * {@link #copyRange(long, long, long[], double[])}, if there are no more
+     * than maxPoints of them. Otherwise, copy the minimum and maximum points
+     * over stretches of the range, from the {@link MinMaxPyramid}, which
+     * come to about maxPoints points.
+     * @param start timestamp at the start of the range
+     * @param stop timestamp at the end of the range
+     * @param maxPoints roughly how many points to copy
+     * @param times array to copy timestamps into
+     * @param values array to copy values into
+     * @return the number of points to copy. If that is more than the arrays
+     * can hold, the caller should try again with larger arrays.
+     */
+    public synchronized int copyRange(long start, long stop, int maxPoints, long[] times, double[] values) {
+        int from = Math.max(0, buffer.lowerBound(start) - 1);
+        int to = Math.min(buffer.size(), buffer.upperBound(stop) + 1);
+        if (to - from <= maxPoints)
+            return copyRange(start, stop, times, values);
+        return pyramid.query(start, stop, maxPoints, times, values);
+    }
+
+    /**
+     * Find the smallest and largest values between start and stop. Most of
+     * the range is taken from the {@link MinMaxPyramid}; only the few
+     * points at its edges are read from the buffer.
+     * @param start timestamp at the start of the range
+     * @param stop timestamp at the end of the range
+     * @param minMax array of at least two, to write the smallest and
+     *               largest values into
+     * @return false if there are no points in the range, in which case
+     * minMax is not written
+     */
+    public synchronized boolean getRangeY(long start, long stop, double[] minMax) {
+        double min, max;
+        int from = buffer.lowerBound(start);
+        int to = buffer.upperBound(stop);
+        if (from >= to)
+            return false;
+
+        int leftTo = to, rightFrom = to;
+        if (pyramid.rangeMinMax(start, stop, minMax, covered)) {
+            min = minMax[0];
+            max = minMax[1];
+            leftTo = buffer.lowerBound(covered[0]);
+            rightFrom = buffer.upperBound(covered[1]);
+        } else {
+            min = Double.MAX_VALUE;
+            max = -Double.MAX_VALUE;
+        }
+        for (int i = from; i < leftTo; i++) {
+            double y = buffer.getValue(i);
+            min = Math.min(min, y);
+            max = Math.max(max, y);
+        }
+        for (int i = Math.max(rightFrom, from); i < to; i++) {
+            double y = buffer.getValue(i);
+            min = Math.min(min, y);
+            max = Math.max(max, y);
+        }
+        minMax[0] = min;
+        minMax[1] = max;
+        return true;
+    }
+
+    /**
+     * Read-only map view of points [from, to) of the buffer.
+     */
+    private final class RangeView extends AbstractMap<Double, Double>
+            implements SortedMap<Double, Double> {
+        private final int from, to;
+
+        RangeView(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Set<Map.Entry<Double, Double>> entrySet() {
+            return new AbstractSet<Map.Entry<Double, Double>>() {
+                @Override
+                public Iterator<Map.Entry<Double, Double>> iterator() {
+                    return new Iterator<Map.Entry<Double, Double>>() {
+                        private int next = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < to;
+                        }
+
+                        @Override
+                        public Map.Entry<Double, Double> next() {
+                            if (next >= to)
+                                throw new NoSuchElementException();
+                            Map.Entry<Double, Double> e = new SimpleImmutableEntry<Double, Double>(
+                                    (double) buffer.getTime(next), buffer.getValue(next));
+                            next++;
+                            return e;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public Comparator<? super Double> comparator() {
+            // Natural ordering
+            return null;
+        }
+
+        @Override
+        public SortedMap<Double, Double> subMap(Double fromKey, Double toKey) {
+            return new RangeView(clamp(buffer.lowerBound((long) Math.ceil(fromKey))),
+                                 clamp(buffer.lowerBound((long) Math.ceil(toKey))));
+        }
+
+        @Override
+        public SortedMap<Double, Double> headMap(Double toKey) {
+            return new RangeView(from, clamp(buffer.lowerBound((long) Math.ceil(toKey))));
+        }
+
+        @Override
+        public SortedMap<Double, Double> tailMap(Double fromKey) {
+            return new RangeView(clamp(buffer.lowerBound((long) Math.ceil(fromKey))), to);
+        }
+
+        @Override
+        public Double firstKey() {
+            if (from >= to)
+                throw new NoSuchElementException();
+            return (double) buffer.getTime(from);
+        }
+
+        @Override
+        public Double lastKey() {
+            if (from >= to)
+                throw new NoSuchElementException();
+            return (double) buffer.getTime(to - 1);
+        }
+
+        private int clamp(int index) {
+            return Math.max(from, Math.min(to, index));
+        }
+    }
+}
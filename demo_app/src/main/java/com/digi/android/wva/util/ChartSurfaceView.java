@@ -0,0 +1,750 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.RectF;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import org.achartengine.chart.PointStyle;
+import org.achartengine.model.SeriesSelection;
+import org.achartengine.model.XYMultipleSeriesDataset;
+import org.achartengine.model.XYSeries;
+import org.achartengine.renderer.XYMultipleSeriesRenderer;
+import org.achartengine.renderer.XYSeriesRenderer;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Time chart which draws on its own render thread, onto a
+ * {@link SurfaceView}, instead of on the main thread.
+ *
+ * <p>The chart is described by an AChartEngine
+ * {@link XYMultipleSeriesDataset} and {@link XYMultipleSeriesRenderer}, like
+ * an AChartEngine {@link org.achartengine.GraphicalView}: the renderer's X-axis
+ * range (in milliseconds since the epoch) is the time window shown, and each
+ * series is drawn against the Y-axis of its scale number, with that axis'
+ * range. Labels and a title are drawn for the first left-aligned and first
+ * right-aligned axis; the legend tells the other series apart. X-axis
+ * labels are times of day.</p>
+ *
+ * <p>However many points are in view, each series is downsampled to about
+ * one point per pixel of width with {@link Lttb} before it is drawn, so the
+ * cost of drawing a frame depends on the size of the view rather than on
+ * the amount of data.</p>
+ *
+ * <p>Both the dataset and the renderer belong to the main thread. Each call
+ * to {@link #requestRender()} copies what is in view into a snapshot, made
+ * of primitive arrays, and hands it to the render thread. Snapshots go round
+ * between three slots: one being filled on the main thread, one being drawn
+ * on the render thread, and the most recent complete one waiting in between,
+ * so neither thread ever waits for the other to finish. Series which are
+ * {@link BufferedXYSeries} are copied with {@link System#arraycopy}; when
+ * far more of their points are in view than there are pixels, they are
+ * copied from their {@link MinMaxPyramid} instead.</p>
+ *
+ * <p>If the renderer has X-axis panning or zooming enabled, the time window
+ * can be dragged sideways with one finger and pinched with two. Its span is
+ * kept within the {@link #setSpanLimits(long, long) span limits}, and an
+ * {@link OnViewportChangeListener} hears of every change.</p>
+ *
+ * <p>As with GraphicalView, {@link #getCurrentSeriesAndPoint()} gives the
+ * point nearest to where the chart was last touched, so that an
+ * {@link android.view.View.OnClickListener} can show it.</p>
+ */
+public class ChartSurfaceView extends SurfaceView implements SurfaceHolder.Callback {
+    /** Distance from a point within which a touch selects it, in dp. */
+    private static final float SELECTION_RADIUS_DP = 20;
+    /** Possible times between X-axis labels, in seconds. */
+    private static final int[] LABEL_SECONDS = {
+            5, 10, 15, 30, 60, 120, 300, 600, 900, 1800, 3600, 7200, 14400};
+    /** Most points copied per series per pixel of width. */
+    private static final int POINTS_PER_PIXEL = 4;
+    private static final int LABEL_CACHE_SIZE = 32;
+    /** Width of one legend entry, in dp. */
+    private static final float LEGEND_COLUMN_DP = 140;
+
+    /**
+     * Interface for hearing about the time window being panned or zoomed by
+     * the user.
+     */
+    public interface OnViewportChangeListener {
+        /**
+         * Called on the main thread after the user moves the time window
+         * @param start new start of the window, in milliseconds since the epoch
+         * @param end new end of the window
+         */
+        void onViewportChanged(long start, long end);
+    }
+
+    /** Points of one series, copied out for the render thread. */
+    private static final class SeriesData {
+        long[] times = new long[256];
+        double[] values = new double[256];
+        int count;
+        int scale;
+        int color;
+        PointStyle pointStyle;
+        boolean fillPoints;
+        float lineWidth;
+        String title;
+    }
+
+    /** Everything the render thread needs to draw one frame. */
+    private static final class Snapshot {
+        long start, end;
+        SeriesData[] series = new SeriesData[0];
+        int seriesCount;
+        int scales;
+        /** Scales whose axis is drawn on the left and right, or -1. */
+        int leftAxis, rightAxis;
+        double[] yMin = new double[0], yMax = new double[0];
+        boolean[] yRight = new boolean[0];
+        int[] yLabelsColor = new int[0];
+        String[] yTitle = new String[0];
+        int yLabels;
+        int backgroundColor, axesColor, gridColor, labelsColor, xLabelsColor;
+        boolean showGridX, showGridY, showLegend;
+        float pointSize;
+
+        void setScales(int n) {
+            if (yMin.length != n) {
+                yMin = new double[n];
+                yMax = new double[n];
+                yRight = new boolean[n];
+                yLabelsColor = new int[n];
+                yTitle = new String[n];
+            }
+            scales = n;
+        }
+
+        void setSeriesCount(int n) {
+            if (series.length < n) {
+                SeriesData[] s = new SeriesData[n];
+                System.arraycopy(series, 0, s, 0, series.length);
+                for (int i = series.length; i < n; i++)
+                    s[i] = new SeriesData();
+                series = s;
+            }
+            seriesCount = n;
+        }
+    }
+
+    private final float density;
+    private final float selectionRadius;
+
+    // Main thread state.
+    private XYMultipleSeriesDataset dataset;
+    private XYMultipleSeriesRenderer renderer;
+    private float touchX = -1, touchY = -1;
+    private final RectF touchPlot = new RectF();
+    private final GestureDetector gestureDetector;
+    private final ScaleGestureDetector scaleDetector;
+    private boolean moved;
+    private long minSpan = 10000, maxSpan = Long.MAX_VALUE;
+    private OnViewportChangeListener viewportListener;
+
+    // Snapshot slots. Guarded by slotLock, except that writing belongs to
+    // the main thread and drawing to the render thread.
+    private final Object slotLock = new Object();
+    private Snapshot writing = new Snapshot(), ready = new Snapshot(), drawing = new Snapshot();
+    private boolean readyIsNew;
+
+    // Surface state. Guarded by surfaceLock.
+    private final Object surfaceLock = new Object();
+    private boolean surfaceReady;
+    private int surfaceWidth, surfaceHeight;
+
+    private HandlerThread renderThread;
+    private Handler renderHandler;
+    private final AtomicBoolean renderPending = new AtomicBoolean();
+    private final Runnable renderRunnable = new Runnable() {
+        @Override
+        public void run() {
+            renderPending.set(false);
+            render();
+        }
+    };
+
+    // Render thread state.
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final RectF plot = new RectF();
+    private float[] lineBuffer = new float[1024];
+    private long[] sampledTimes = new long[0];
+    private double[] sampledValues = new double[0];
+    private double[][] yLabelRange = new double[0][];
+    private String[][] yLabelText = new String[0][];
+    private final long[] xLabelTimes = new long[LABEL_CACHE_SIZE];
+    private final String[] xLabelText = new String[LABEL_CACHE_SIZE];
+    private int xLabelNext;
+    private final SimpleDateFormat xLabelFormat = new SimpleDateFormat("HH:mm:ss", Locale.US);
+    private final Date xLabelDate = new Date();
+
+    /**
+     * Create a new chart view
+     * @param context the view's context
+     */
+    public ChartSurfaceView(Context context) {
+        super(context);
+        density = context.getResources().getDisplayMetrics().density;
+        selectionRadius = SELECTION_RADIUS_DP * density;
+        getHolder().addCallback(this);
+        setClickable(true);
+        textPaint.setTextSize(12 * density);
+        gridPaint.setStrokeWidth(1);
+
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                if (!renderer.isPanXEnabled() || scaleDetector.isInProgress())
+                    return false;
+                double start = renderer.getXAxisMin(), end = renderer.getXAxisMax();
+                double shift = distanceX / touchPlot.width() * (end - start);
+                setViewport(start + shift, end + shift);
+                return true;
+            }
+        });
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                if (!renderer.isZoomXEnabled())
+                    return false;
+                double start = renderer.getXAxisMin(), end = renderer.getXAxisMax();
+                double span = end - start;
+                double newSpan = Math.max(minSpan, Math.min(maxSpan, span / detector.getScaleFactor()));
+                // Keep the time under the focus point where it is.
+                double focus = start + (detector.getFocusX() - touchPlot.left) / touchPlot.width() * span;
+                double newStart = focus - (focus - start) * newSpan / span;
+                setViewport(newStart, newStart + newSpan);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Set the listener to hear about the user panning or zooming the chart
+     * @param listener the listener, or null for none
+     */
+    public void setOnViewportChangeListener(OnViewportChangeListener listener) {
+        viewportListener = listener;
+    }
+
+    /**
+     * Set how far the time window may be zoomed in and out
+     * @param min shortest span of the window, in milliseconds
+     * @param max longest span of the window, in milliseconds
+     */
+    public void setSpanLimits(long min, long max) {
+        minSpan = min;
+        maxSpan = max;
+    }
+
+    /** Move the time window of every scale, and draw the chart again. */
+    private void setViewport(double start, double end) {
+        for (int i = 0; i < renderer.getScalesCount(); i++) {
+            renderer.setXAxisMin(start, i);
+            renderer.setXAxisMax(end, i);
+        }
+        moved = true;
+        requestRender();
+        if (viewportListener != null)
+            viewportListener.onViewportChanged((long) start, (long) end);
+    }
+
+    /**
+     * Set what to draw. The dataset and renderer should only be changed on
+     * the main thread, and the change becomes visible on the next
+     * {@link #requestRender()}.
+     * @param dataset series to draw
+     * @param renderer how to draw them
+     */
+    public void setChart(XYMultipleSeriesDataset dataset, XYMultipleSeriesRenderer renderer) {
+        this.dataset = dataset;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Take a snapshot of the chart as it is now and have it drawn on the
+     * render thread. Main thread only.
+     */
+    public void requestRender() {
+        if (dataset == null || renderer == null)
+            return;
+        takeSnapshot(writing);
+        synchronized (slotLock) {
+            Snapshot s = ready;
+            ready = writing;
+            writing = s;
+            readyIsNew = true;
+        }
+        postRender();
+    }
+
+    private void postRender() {
+        Handler h = renderHandler;
+        if (h != null && renderPending.compareAndSet(false, true))
+            h.post(renderRunnable);
+    }
+
+    /**
+     * Get the point nearest to where the chart was last touched, as
+     * {@link org.achartengine.GraphicalView#getCurrentSeriesAndPoint()} does.
+     * Main thread only.
+     * @return the selected point, or null if no point is close enough
+     */
+    public SeriesSelection getCurrentSeriesAndPoint() {
+        if (dataset == null || renderer == null || touchX < 0)
+            return null;
+        getPlotArea(getWidth(), getHeight(), findAxis(renderer, Align.RIGHT) >= 0,
+                    renderer.isShowLegend() ? dataset.getSeriesCount() : 0, touchPlot);
+        double start = renderer.getXAxisMin(), end = renderer.getXAxisMax();
+        if (!(end > start) || touchPlot.width() <= 0)
+            return null;
+        double xScale = touchPlot.width() / (end - start);
+
+        SeriesSelection best = null;
+        float bestDistance = selectionRadius;
+        for (int i = 0; i < dataset.getSeriesCount(); i++) {
+            XYSeries series = dataset.getSeriesAt(i);
+            int scale = series.getScaleNumber();
+            double yMin = renderer.getYAxisMin(scale), yMax = renderer.getYAxisMax(scale);
+            double yScale = touchPlot.height() / (yMax > yMin ? yMax - yMin : 1);
+
+            double time = start + (touchX - touchPlot.left) / xScale;
+            int index = series.getIndexForKey(time);
+            if (index < 0)
+                index = -index - 1;
+            // Walk outwards from the touch until points are too far away
+            // horizontally to be selected.
+            for (int dir = -1; dir <= 1; dir += 2) {
+                for (int j = dir < 0 ? index - 1 : index;
+                     j >= 0 && j < series.getItemCount(); j += dir) {
+                    float dx = (float) ((series.getX(j) - start) * xScale) + touchPlot.left - touchX;
+                    if (Math.abs(dx) > bestDistance)
+                        break;
+                    float dy = touchPlot.bottom - (float) ((series.getY(j) - yMin) * yScale) - touchY;
+                    float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                    if (distance <= bestDistance) {
+                        bestDistance = distance;
+                        best = new SeriesSelection(i, j, series.getX(j), series.getY(j));
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            touchX = event.getX();
+            touchY = event.getY();
+            moved = false;
+        }
+        if (renderer != null && (renderer.isPanXEnabled() || renderer.isZoomXEnabled())) {
+            getPlotArea(getWidth(), getHeight(), findAxis(renderer, Align.RIGHT) >= 0,
+                        renderer.isShowLegend() ? dataset.getSeriesCount() : 0, touchPlot);
+            if (touchPlot.width() > 0) {
+                scaleDetector.onTouchEvent(event);
+                gestureDetector.onTouchEvent(event);
+            }
+            if (moved) {
+                // A drag or pinch is not a click.
+                MotionEvent cancel = MotionEvent.obtain(event);
+                cancel.setAction(MotionEvent.ACTION_CANCEL);
+                super.onTouchEvent(cancel);
+                cancel.recycle();
+                return true;
+            }
+        }
+        return super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        renderThread = new HandlerThread("WVA chart render");
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        renderPending.set(false);
+        postRender();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        renderHandler = null;
+        renderThread.quit();
+        renderThread = null;
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (surfaceLock) {
+            surfaceReady = true;
+            surfaceWidth = width;
+            surfaceHeight = height;
+        }
+        // Draw the last snapshot again at the new size.
+        renderPending.set(false);
+        postRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // Once this returns, the surface may not be drawn on. Taking the
+        // lock waits out any frame being drawn.
+        synchronized (surfaceLock) {
+            surfaceReady = false;
+        }
+    }
+
+    /**
+     * Work out where the plot itself goes, leaving room for axis labels and
+     * titles on either side and for the X-axis labels and legend below.
+     */
+    private void getPlotArea(int width, int height, boolean rightAxis, int legendEntries, RectF out) {
+        float side = 56 * density;
+        int columns = Math.max(1, (int) ((width - 2 * side) / (LEGEND_COLUMN_DP * density)));
+        int rows = (legendEntries + columns - 1) / columns;
+        out.set(side, 16 * density, width - (rightAxis ? side : 16 * density),
+                height - (28 + 20 * rows) * density);
+    }
+
+    /** @return the first scale with the given Y-axis alignment, or -1 */
+    private static int findAxis(XYMultipleSeriesRenderer r, Align align) {
+        for (int i = 0; i < r.getScalesCount(); i++) {
+            if (r.getYAxisAlign(i) == align)
+                return i;
+        }
+        return -1;
+    }
+
+    /** Copy what is in view into a snapshot. Main thread only. */
+    private void takeSnapshot(Snapshot s) {
+        XYMultipleSeriesRenderer r = renderer;
+        s.start = (long) r.getXAxisMin();
+        s.end = (long) r.getXAxisMax();
+        s.setScales(r.getScalesCount());
+        for (int i = 0; i < s.scales; i++) {
+            s.yMin[i] = r.getYAxisMin(i);
+            s.yMax[i] = r.getYAxisMax(i);
+            s.yRight[i] = r.getYAxisAlign(i) == Align.RIGHT;
+            s.yLabelsColor[i] = r.getYLabelsColor(i);
+            s.yTitle[i] = r.getYTitle(i);
+        }
+        s.leftAxis = findAxis(r, Align.LEFT);
+        s.rightAxis = findAxis(r, Align.RIGHT);
+        s.yLabels = r.getYLabels();
+        s.backgroundColor = r.isApplyBackgroundColor() ? r.getBackgroundColor() : 0xFF000000;
+        s.axesColor = r.getAxesColor();
+        s.gridColor = r.getGridColor();
+        s.labelsColor = r.getLabelsColor();
+        s.xLabelsColor = r.getXLabelsColor();
+        s.showGridX = r.isShowGridX();
+        s.showGridY = r.isShowGridY();
+        s.showLegend = r.isShowLegend();
+        s.pointSize = r.getPointSize() * density / 2;
+
+        int count = Math.min(dataset.getSeriesCount(), r.getSeriesRendererCount());
+        s.setSeriesCount(count);
+        for (int i = 0; i < count; i++) {
+            XYSeries series = dataset.getSeriesAt(i);
+            XYSeriesRenderer sr = (XYSeriesRenderer) r.getSeriesRendererAt(i);
+            SeriesData d = s.series[i];
+            d.scale = Math.min(series.getScaleNumber(), s.scales - 1);
+            d.color = sr.getColor();
+            d.pointStyle = sr.getPointStyle();
+            d.fillPoints = sr.isFillPoints();
+            d.lineWidth = sr.getLineWidth() * density;
+            d.title = series.getTitle();
+            copyPoints(series, s.start, s.end, Math.max(256, getWidth() * POINTS_PER_PIXEL), d);
+        }
+    }
+
+    private static void copyPoints(XYSeries series, long start, long end, int maxPoints, SeriesData d) {
+        if (series instanceof BufferedXYSeries) {
+            BufferedXYSeries buffered = (BufferedXYSeries) series;
+            int count;
+            while ((count = buffered.copyRange(start, end, maxPoints, d.times, d.values)) > d.times.length) {
+                d.times = new long[count * 2];
+                d.values = new double[count * 2];
+            }
+            d.count = count;
+            return;
+        }
+
+        int n = series.getItemCount();
+        if (n > d.times.length) {
+            d.times = new long[n];
+            d.values = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            d.times[i] = (long) series.getX(i);
+            d.values[i] = series.getY(i);
+        }
+        d.count = n;
+    }
+
+    /** Draw the newest snapshot. Render thread only. */
+    private void render() {
+        synchronized (slotLock) {
+            if (readyIsNew) {
+                Snapshot s = drawing;
+                drawing = ready;
+                ready = s;
+                readyIsNew = false;
+            }
+        }
+
+        synchronized (surfaceLock) {
+            if (!surfaceReady)
+                return;
+            Canvas canvas = getHolder().lockCanvas();
+            if (canvas == null)
+                return;
+            try {
+                draw(canvas, drawing, surfaceWidth, surfaceHeight);
+            } finally {
+                getHolder().unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    private void draw(Canvas canvas, Snapshot s, int width, int height) {
+        canvas.drawColor(s.backgroundColor);
+        if (s.scales == 0)
+            return;
+        getPlotArea(width, height, s.rightAxis >= 0, s.showLegend ? s.seriesCount : 0, plot);
+        if (plot.width() <= 0 || plot.height() <= 0 || s.end <= s.start)
+            return;
+
+        drawYAxes(canvas, s);
+        drawXAxis(canvas, s);
+
+        canvas.save();
+        canvas.clipRect(plot);
+        for (int i = 0; i < s.seriesCount; i++) {
+            drawSeries(canvas, s, s.series[i]);
+        }
+        canvas.restore();
+
+        if (s.showLegend)
+            drawLegend(canvas, s);
+    }
+
+    private void drawYAxes(Canvas canvas, Snapshot s) {
+        if (yLabelRange.length != s.scales) {
+            yLabelRange = new double[s.scales][];
+            yLabelText = new String[s.scales][];
+        }
+        int divisions = Math.max(1, s.yLabels);
+        float textHeight = textPaint.getTextSize();
+
+        if (s.showGridY) {
+            gridPaint.setColor(s.gridColor);
+            for (int i = 1; i <= divisions; i++) {
+                float y = plot.bottom - plot.height() * i / divisions;
+                canvas.drawLine(plot.left, y, plot.right, y, gridPaint);
+            }
+        }
+
+        for (int axis = 0; axis < s.scales; axis++) {
+            if (axis != s.leftAxis && axis != s.rightAxis)
+                continue;
+            String[] labels = getYLabels(axis, s.yMin[axis], s.yMax[axis], divisions);
+            boolean right = s.yRight[axis];
+            float x = right ? plot.right : plot.left;
+
+            gridPaint.setColor(s.axesColor);
+            canvas.drawLine(x, plot.top, x, plot.bottom, gridPaint);
+
+            textPaint.setColor(s.yLabelsColor[axis]);
+            textPaint.setTextAlign(right ? Align.LEFT : Align.RIGHT);
+            float labelX = right ? x + 4 * density : x - 4 * density;
+            for (int i = 0; i <= divisions; i++) {
+                float y = plot.bottom - plot.height() * i / divisions;
+                canvas.drawText(labels[i], labelX, y + textHeight / 3, textPaint);
+            }
+
+            String title = s.yTitle[axis];
+            if (title != null && title.length() > 0) {
+                float titleX = right ? plot.right + 52 * density : plot.left - 44 * density;
+                float titleY = plot.centerY();
+                textPaint.setColor(s.labelsColor);
+                textPaint.setTextAlign(Align.CENTER);
+                canvas.save();
+                canvas.rotate(right ? 90 : -90, titleX, titleY);
+                canvas.drawText(title, titleX, titleY, textPaint);
+                canvas.restore();
+            }
+        }
+    }
+
+    private String[] getYLabels(int axis, double min, double max, int divisions) {
+        double[] range = yLabelRange[axis];
+        if (range == null || range[0] != min || range[1] != max || yLabelText[axis].length != divisions + 1) {
+            String[] labels = new String[divisions + 1];
+            for (int i = 0; i <= divisions; i++) {
+                labels[i] = formatNumber(min + (max - min) * i / divisions);
+            }
+            yLabelRange[axis] = new double[] {min, max};
+            yLabelText[axis] = labels;
+        }
+        return yLabelText[axis];
+    }
+
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value))
+            return Long.toString((long) value);
+        return Double.toString(Math.round(value * 10) / 10.0);
+    }
+
+    private void drawXAxis(Canvas canvas, Snapshot s) {
+        gridPaint.setColor(s.axesColor);
+        canvas.drawLine(plot.left, plot.bottom, plot.right, plot.bottom, gridPaint);
+
+        // Pick the shortest label interval which leaves room between labels.
+        float labelWidth = textPaint.measureText("00:00:00") * 1.5f;
+        long span = s.end - s.start;
+        long interval = LABEL_SECONDS[LABEL_SECONDS.length - 1] * 1000L;
+        for (int seconds : LABEL_SECONDS) {
+            if (span / (seconds * 1000L) * labelWidth <= plot.width()) {
+                interval = seconds * 1000L;
+                break;
+            }
+        }
+
+        textPaint.setColor(s.xLabelsColor);
+        textPaint.setTextAlign(Align.CENTER);
+        float y = plot.bottom + textPaint.getTextSize() + 4 * density;
+        double xScale = plot.width() / (double) span;
+        for (long t = (s.start + interval - 1) / interval * interval; t <= s.end; t += interval) {
+            float x = plot.left + (float) ((t - s.start) * xScale);
+            if (s.showGridX) {
+                gridPaint.setColor(s.gridColor);
+                canvas.drawLine(x, plot.top, x, plot.bottom, gridPaint);
+            }
+            canvas.drawText(getTimeLabel(t), x, y, textPaint);
+        }
+    }
+
+    /** Format a label time, reusing the text from previous frames. */
+    private String getTimeLabel(long time) {
+        for (int i = 0; i < LABEL_CACHE_SIZE; i++) {
+            if (xLabelTimes[i] == time && xLabelText[i] != null)
+                return xLabelText[i];
+        }
+        xLabelDate.setTime(time);
+        String text = xLabelFormat.format(xLabelDate);
+        xLabelTimes[xLabelNext] = time;
+        xLabelText[xLabelNext] = text;
+        xLabelNext = (xLabelNext + 1) % LABEL_CACHE_SIZE;
+        return text;
+    }
+
+    private void drawSeries(Canvas canvas, Snapshot s, SeriesData d) {
+        int n = d.count;
+        if (n == 0)
+            return;
+        long[] times = d.times;
+        double[] values = d.values;
+        int threshold = Math.max(3, (int) plot.width());
+        if (n > threshold) {
+            if (sampledTimes.length < threshold) {
+                sampledTimes = new long[threshold];
+                sampledValues = new double[threshold];
+            }
+            n = Lttb.downsample(times, values, n, threshold, sampledTimes, sampledValues);
+            times = sampledTimes;
+            values = sampledValues;
+        }
+        double xScale = plot.width() / (double) (s.end - s.start);
+        double yMin = s.yMin[d.scale], yMax = s.yMax[d.scale];
+        double yScale = plot.height() / (yMax > yMin ? yMax - yMin : 1);
+
+        if (lineBuffer.length < n * 4)
+            lineBuffer = new float[n * 8];
+        float[] pts = lineBuffer;
+        float prevX = 0, prevY = 0;
+        int used = 0;
+        for (int i = 0; i < n; i++) {
+            float x = plot.left + (float) ((times[i] - s.start) * xScale);
+            float y = plot.bottom - (float) ((values[i] - yMin) * yScale);
+            if (i > 0) {
+                pts[used++] = prevX;
+                pts[used++] = prevY;
+                pts[used++] = x;
+                pts[used++] = y;
+            }
+            prevX = x;
+            prevY = y;
+        }
+
+        linePaint.setColor(d.color);
+        linePaint.setStrokeWidth(d.lineWidth);
+        linePaint.setStyle(Paint.Style.STROKE);
+        if (used > 0)
+            canvas.drawLines(pts, 0, used, linePaint);
+
+        // Point markers only help while they are not piled on top of
+        // each other.
+        float size = s.pointSize;
+        if (d.pointStyle == null || d.pointStyle == PointStyle.POINT || n * size * 4 > plot.width())
+            return;
+        linePaint.setStyle(d.fillPoints ? Paint.Style.FILL : Paint.Style.STROKE);
+        for (int i = 0; i < n; i++) {
+            float x = plot.left + (float) ((times[i] - s.start) * xScale);
+            float y = plot.bottom - (float) ((values[i] - yMin) * yScale);
+            if (d.pointStyle == PointStyle.SQUARE)
+                canvas.drawRect(x - size, y - size, x + size, y + size, linePaint);
+            else
+                canvas.drawCircle(x, y, size, linePaint);
+        }
+    }
+
+    private void drawLegend(Canvas canvas, Snapshot s) {
+        float column = LEGEND_COLUMN_DP * density;
+        int columns = Math.max(1, (int) (plot.width() / column));
+        float swatch = 12 * density;
+        textPaint.setColor(s.labelsColor);
+        textPaint.setTextAlign(Align.LEFT);
+        linePaint.setStyle(Paint.Style.FILL);
+        for (int i = 0; i < s.seriesCount; i++) {
+            SeriesData d = s.series[i];
+            float x = plot.left + (i % columns) * column;
+            float y = plot.bottom + (44 + 20 * (i / columns)) * density;
+            linePaint.setColor(d.color);
+            canvas.drawRect(x, y - swatch, x + swatch, y, linePaint);
+            if (d.title != null) {
+                canvas.save();
+                canvas.clipRect(x, y - column, x + column - 4 * density, y + column);
+                canvas.drawText(d.title, x + swatch + 4 * density, y, textPaint);
+                canvas.restore();
+            }
+        }
+    }
+}
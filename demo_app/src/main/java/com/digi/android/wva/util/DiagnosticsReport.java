@@ -0,0 +1,149 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.DeviceSession;
+import com.digi.android.wva.FleetManager;
+import com.digi.android.wva.adapters.LogAdapter;
+
+import org.joda.time.DateTime;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Builds the JSON snapshot of the app's diagnostics shown, and exported, by
+ * the {@link com.digi.android.wva.DiagnosticsActivity}: the
+ * {@link IngestMetrics}, {@link MessageCourier} queues, event log,
+ * {@link ReconnectStats}, subscription failures and {@link BatchUploader}.
+ */
+public class DiagnosticsReport {
+    private DiagnosticsReport() {}
+
+    /**
+     * Build a report
+     * @param snapshot metrics to report
+     * @param earlier an earlier snapshot, to work out rates since; or null
+     *                to work them out since counting started
+     * @return the report
+     * @throws JSONException if the report could not be built
+     */
+    public static JSONObject build(IngestMetrics.Snapshot snapshot, IngestMetrics.Snapshot earlier)
+            throws JSONException {
+        JSONObject report = new JSONObject();
+        report.put("time", DateTime.now().toString());
+        report.put("countingForMillis", snapshot.time - snapshot.since);
+
+        JSONObject events = new JSONObject();
+        events.put("SUBSCRIPTION", rate(snapshot.subscriptionEvents, snapshot.getSubscriptionRate(earlier)));
+        events.put("ALARM", rate(snapshot.alarmEvents, snapshot.getAlarmRate(earlier)));
+        report.put("events", events);
+
+        JSONObject endpoints = new JSONObject();
+        for (Map.Entry<String, Long> e : snapshot.endpointEvents.entrySet()) {
+            endpoints.put(e.getKey(), rate(e.getValue(), snapshot.getEndpointRate(e.getKey(), earlier)));
+        }
+        report.put("endpoints", endpoints);
+
+        JSONObject latency = new JSONObject();
+        latency.put("count", snapshot.latencyCount);
+        latency.put("mean", snapshot.latencyMean);
+        latency.put("p50", snapshot.latencyP50);
+        latency.put("p90", snapshot.latencyP90);
+        latency.put("p99", snapshot.latencyP99);
+        latency.put("max", snapshot.latencyMax);
+        report.put("publishLatencyMillis", latency);
+
+        JSONObject queues = new JSONObject();
+        queues.put("dashboard", queue(MessageCourier.getDashboardQueueSize(),
+                MessageCourier.getDashboardDroppedCount()));
+        queues.put("chart", queue(MessageCourier.getChartQueueSize(),
+                MessageCourier.getChartDroppedCount()));
+        ChartFeed feed = MessageCourier.getChartFeed();
+        queues.put("chartFeed", queue(feed.getPendingEndpoints().size(), feed.getDroppedCount()));
+        report.put("queues", queues);
+
+        report.put("adapterNotifications",
+                rate(snapshot.notifications, snapshot.getNotificationRate(earlier)));
+
+        LogAdapter logs = LogAdapter.getInstance();
+        if (logs != null) {
+            JSONObject log = new JSONObject();
+            log.put("size", logs.getCount());
+            log.put("capacity", logs.getCapacity());
+            log.put("dropped", logs.getDroppedCount());
+            report.put("log", log);
+        }
+
+        ReconnectStats reconnects = ReconnectStats.getInstance();
+        if (reconnects != null)
+            report.put("reconnects", reconnects(reconnects));
+
+        FleetManager fleet = FleetManager.getInstance();
+        if (fleet != null) {
+            JSONArray devices = new JSONArray();
+            for (DeviceSession session : fleet.getSessions()) {
+                JSONObject device = new JSONObject();
+                device.put("name", session.getName());
+                device.put("state", session.getState().toString());
+                device.put("subscribed", session.getSubscribedCount());
+                device.put("failedSubscriptions", session.getFailedSubscriptionCount());
+                device.put("reconnects", reconnects(session.getReconnectStats()));
+                devices.put(device);
+            }
+            report.put("devices", devices);
+        }
+
+        JSONObject failures = new JSONObject();
+        failures.put("total", snapshot.subscriptionFailures);
+        JSONArray recent = new JSONArray();
+        for (String endpoint : snapshot.failedEndpoints)
+            recent.put(endpoint);
+        failures.put("recent", recent);
+        report.put("subscriptionFailures", failures);
+
+        BatchUploader uploader = BatchUploader.getInstance();
+        if (uploader != null) {
+            JSONObject upload = new JSONObject();
+            upload.put("enabled", uploader.isEnabled());
+            upload.put("waitingBatches", uploader.getWaitingBatchCount());
+            upload.put("sent", uploader.getSentCount());
+            upload.put("droppedSamples", uploader.getDroppedSampleCount());
+            upload.put("droppedBatches", uploader.getDroppedBatchCount());
+            upload.put("failedAttempts", uploader.getFailedAttemptCount());
+            report.put("upload", upload);
+        }
+
+        return report;
+    }
+
+    private static JSONObject rate(long total, double perSecond) throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("total", total);
+        o.put("perSecond", Math.round(perSecond * 10) / 10.0);
+        return o;
+    }
+
+    private static JSONObject queue(int size, long dropped) throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("size", size);
+        o.put("dropped", dropped);
+        return o;
+    }
+
+    private static JSONObject reconnects(ReconnectStats stats) throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("count", stats.getReconnectCount());
+        o.put("attempts", stats.getAttemptCount());
+        o.put("skipped", stats.getSkippedCount());
+        o.put("totalDowntimeMillis", stats.getTotalDowntime());
+        o.put("longestDowntimeMillis", stats.getLongestDowntime());
+        return o;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.model.EndpointConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Backing data structure for {@link com.digi.android.wva.adapters.EndpointsAdapter}.
+ *
+ * <p>Configurations are kept in an array sorted by endpoint name, following
+ * {@link VehicleEndpointComparator} (configurations without an endpoint name
+ * sort last), alongside a map from endpoint name to configuration. Looking
+ * up a configuration by name is O(1); finding where a new configuration
+ * belongs is O(log n), and adding configurations in sorted order (as when the
+ * endpoint list is first loaded) just appends them.</p>
+ *
+ * <p>Several configurations may share a name. {@link #find(String)} returns
+ * the one which was added first.</p>
+ *
+ * <p>All methods are synchronized, so lookups may be done from any thread.</p>
+ */
+public class EndpointRegistry {
+    private final VehicleEndpointComparator comparator = new VehicleEndpointComparator();
+    private final ArrayList<EndpointConfiguration> sorted = new ArrayList<EndpointConfiguration>();
+    private final Map<String, EndpointConfiguration> byName = new HashMap<String, EndpointConfiguration>();
+
+    /**
+     * Add a configuration at its sorted position
+     * @param conf configuration to add
+     * @return the position at which the configuration was added
+     */
+    public synchronized int add(EndpointConfiguration conf) {
+        String name = conf.getEndpoint();
+        int pos;
+        if (sorted.isEmpty() || compare(sorted.get(sorted.size() - 1).getEndpoint(), name) <= 0)
+            pos = sorted.size();
+        else
+            pos = upperBound(name);
+
+        sorted.add(pos, conf);
+        if (name != null && !byName.containsKey(name))
+            byName.put(name, conf);
+        return pos;
+    }
+
+    /**
+     * Remove a configuration
+     * @param conf configuration to remove
+     * @return true if the configuration was found and removed
+     */
+    public synchronized boolean remove(EndpointConfiguration conf) {
+        int pos = indexOf(conf);
+        if (pos < 0)
+            return false;
+
+        sorted.remove(pos);
+        String name = conf.getEndpoint();
+        if (name != null && byName.get(name) == conf) {
+            byName.remove(name);
+            // Any other configuration with this name is right next to where
+            // this one was.
+            int first = lowerBound(name);
+            if (first < sorted.size() && name.equals(sorted.get(first).getEndpoint()))
+                byName.put(name, sorted.get(first));
+        }
+        return true;
+    }
+
+    /**
+     * Look up a configuration by endpoint name
+     * @param endpoint endpoint name to look up
+     * @return the matching configuration, or null if there is none
+     */
+    public synchronized EndpointConfiguration find(String endpoint) {
+        if (endpoint == null)
+            return null;
+        return byName.get(endpoint);
+    }
+
+    /**
+     * Find the position of the given configuration
+     * @param conf configuration to look for
+     * @return position of the configuration, or -1 if it is not in the registry
+     */
+    public synchronized int indexOf(EndpointConfiguration conf) {
+        if (conf == null)
+            return -1;
+        String name = conf.getEndpoint();
+        for (int i = lowerBound(name); i < sorted.size(); i++) {
+            EndpointConfiguration c = sorted.get(i);
+            if (c == conf)
+                return i;
+            if (compare(c.getEndpoint(), name) != 0)
+                break;
+        }
+        return -1;
+    }
+
+    /**
+     * @param position position of the configuration to fetch
+     * @return the configuration at that position
+     */
+    public synchronized EndpointConfiguration get(int position) {
+        return sorted.get(position);
+    }
+
+    /**
+     * @return the number of configurations in the registry
+     */
+    public synchronized int size() {
+        return sorted.size();
+    }
+
+    /**
+     * Remove every configuration from the registry
+     */
+    public synchronized void clear() {
+        sorted.clear();
+        byName.clear();
+    }
+
+    /**
+     * Compare endpoint names, putting null names last
+     */
+    private int compare(String a, String b) {
+        if (a == null)
+            return b == null ? 0 : 1;
+        if (b == null)
+            return -1;
+        return comparator.compare(a, b);
+    }
+
+    /** @return index of the first configuration whose name is not before name */
+    private int lowerBound(String name) {
+        int lo = 0, hi = sorted.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(sorted.get(mid).getEndpoint(), name) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** @return index of the first configuration whose name is after name */
+    private int upperBound(String name) {
+        int lo = 0, hi = sorted.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(sorted.get(mid).getEndpoint(), name) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Runs an action on the main thread, in step with display frames, at most
+ * once per minimum interval, no matter how often it is {@link #request()
+ * requested}.
+ *
+ * <p>Requests made while a run is already pending are folded into that
+ * run. A request made less than the minimum interval after the last run is
+ * put off until the interval has passed, so the action runs at most
+ * 1000 / interval times per second.</p>
+ */
+public class FrameThrottle {
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable action;
+    private volatile long minInterval;
+    /** Main thread only. */
+    private boolean pending;
+    private long lastRun;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            pending = false;
+            lastRun = SystemClock.uptimeMillis();
+            action.run();
+        }
+    };
+
+    private final Runnable requestRunnable = new Runnable() {
+        @Override
+        public void run() {
+            request();
+        }
+    };
+
+    /**
+     * Create a throttle
+     * @param action action to run on the main thread
+     * @param minInterval minimum time between two runs, in milliseconds
+     */
+    public FrameThrottle(Runnable action, long minInterval) {
+        this.action = action;
+        setMinInterval(minInterval);
+    }
+
+    /**
+     * Set the minimum time between two runs of the action
+     * @param millis minimum interval in milliseconds, or 0 to run on every
+     *               frame in which the action was requested
+     */
+    public void setMinInterval(long millis) {
+        minInterval = Math.max(0, millis);
+    }
+
+    /**
+     * @return the minimum time between two runs of the action, in milliseconds
+     */
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Ask for the action to be run. May be called from any thread.
+     */
+    public void request() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(requestRunnable);
+            return;
+        }
+        if (pending)
+            return;
+        pending = true;
+
+        long wait = minInterval - (SystemClock.uptimeMillis() - lastRun);
+        if (wait <= 0)
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        else
+            Choreographer.getInstance().postFrameCallbackDelayed(frameCallback, wait);
+    }
+
+    /**
+     * Cancel any pending run of the action. Main thread only.
+     */
+    public void cancel() {
+        mainHandler.removeCallbacks(requestRunnable);
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        pending = false;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.widget.BaseAdapter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Central place for adapters to say "my data changed" without calling
+ * {@link BaseAdapter#notifyDataSetChanged()} on every change.
+ *
+ * <p>Adapters are marked dirty with {@link #invalidate(BaseAdapter)} or
+ * {@link #invalidateStructure(BaseAdapter)}, from any thread. Dirty adapters
+ * are notified together on the main thread, once per display frame at most,
+ * so the amount of list re-layout work follows the frame rate rather than the
+ * rate at which vehicle data arrives.</p>
+ *
+ * <p>A minimum interval between flushes can be set with
+ * {@link #setMinInterval(long)} to throttle refreshes further. That interval
+ * only applies to {@link #invalidate(BaseAdapter) content changes}. Changes
+ * to the number of items in an adapter are always flushed on the next frame,
+ * because {@link android.widget.ListView} refuses to lay itself out if its
+ * adapter's count changed without a notification.</p>
+ *
+ * <p>Code which needs to change adapter contents once per frame, rather than
+ * as soon as it can, can do so from a {@link FrameListener} registered with
+ * {@link #runOnNextFrame(FrameListener)}. Frame listeners run on the main
+ * thread just before dirty adapters are notified, so anything they
+ * invalidate is notified in the same frame.</p>
+ */
+public class InvalidationScheduler {
+    /**
+     * Callback run once on the main thread at the start of the next flush.
+     */
+    public interface FrameListener {
+        /**
+         * Called on the main thread, before dirty adapters are notified
+         */
+        void onFrame();
+    }
+
+    private static InvalidationScheduler instance;
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Handler mHandler = mainHandler;
+    /** Dirty adapters, mapped to true if their item count changed. Guarded by this. */
+    private final Map<BaseAdapter, Boolean> dirty = new LinkedHashMap<BaseAdapter, Boolean>();
+    /** Guarded by this. */
+    private final ArrayList<FrameListener> frameListeners = new ArrayList<FrameListener>();
+    private final ArrayList<FrameListener> running = new ArrayList<FrameListener>();
+    private final ArrayList<BaseAdapter> flushing = new ArrayList<BaseAdapter>();
+    /** Guarded by this. */
+    private boolean scheduled, scheduledImmediate;
+    private volatile long minInterval = 0;
+    private long lastFlush = 0;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame();
+        }
+    };
+
+    private final Runnable scheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            schedule();
+        }
+    };
+
+    /**
+     * Initialize the singleton InvalidationScheduler instance
+     */
+    public static void initInstance() {
+        if (instance == null)
+            instance = new InvalidationScheduler();
+    }
+
+    /**
+     * Fetch the singleton InvalidationScheduler instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static InvalidationScheduler getInstance() {
+        return instance;
+    }
+
+    private InvalidationScheduler() {
+    }
+
+    /**
+     * Mark an adapter as needing {@link BaseAdapter#notifyDataSetChanged()}
+     * because some of its items changed.
+     *
+     * <p>If no scheduler has been created, the adapter is notified
+     * immediately, as it would have been before.</p>
+     * @param adapter the adapter whose items changed
+     */
+    public static void invalidate(BaseAdapter adapter) {
+        if (instance == null)
+            adapter.notifyDataSetChanged();
+        else
+            instance.markDirty(adapter, false);
+    }
+
+    /**
+     * Mark an adapter as needing {@link BaseAdapter#notifyDataSetChanged()}
+     * because items were added to it or removed from it. The adapter will be
+     * notified on the next frame, regardless of the
+     * {@link #setMinInterval(long) minimum interval}.
+     * @param adapter the adapter whose item count changed
+     */
+    public static void invalidateStructure(BaseAdapter adapter) {
+        if (instance == null)
+            adapter.notifyDataSetChanged();
+        else
+            instance.markDirty(adapter, true);
+    }
+
+    /**
+     * Run the given listener once, on the main thread, at the start of the
+     * next frame in which adapters are flushed. Registering the same
+     * listener again before it has run has no effect.
+     *
+     * <p>If no scheduler has been created, the listener is simply posted
+     * to the main thread.</p>
+     * @param listener listener to run
+     */
+    public static void runOnNextFrame(final FrameListener listener) {
+        if (instance == null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onFrame();
+                }
+            });
+        } else {
+            instance.addFrameListener(listener);
+        }
+    }
+
+    /**
+     * Set the minimum amount of time between two flushes of content changes.
+     * @param millis minimum interval in milliseconds, or 0 to flush on every
+     *               frame in which something changed
+     */
+    public void setMinInterval(long millis) {
+        minInterval = Math.max(0, millis);
+    }
+
+    /**
+     * Get the minimum amount of time between two flushes of content changes.
+     * @return minimum interval in milliseconds
+     */
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    private void markDirty(BaseAdapter adapter, boolean structural) {
+        synchronized (this) {
+            Boolean was = dirty.get(adapter);
+            dirty.put(adapter, structural || (was != null && was));
+            if (scheduled && (scheduledImmediate || !structural))
+                return;
+            scheduled = true;
+        }
+        requestSchedule();
+    }
+
+    private void addFrameListener(FrameListener listener) {
+        synchronized (this) {
+            if (!frameListeners.contains(listener))
+                frameListeners.add(listener);
+            if (scheduled && scheduledImmediate)
+                return;
+            scheduled = true;
+        }
+        requestSchedule();
+    }
+
+    private void requestSchedule() {
+        if (Looper.myLooper() == Looper.getMainLooper())
+            schedule();
+        else
+            mHandler.post(scheduleRunnable);
+    }
+
+    /**
+     * Post the frame callback which flushes dirty adapters. Main thread only.
+     */
+    private void schedule() {
+        boolean immediate;
+        synchronized (this) {
+            if (dirty.isEmpty() && frameListeners.isEmpty()) {
+                scheduled = false;
+                return;
+            }
+            immediate = !frameListeners.isEmpty() || dirty.containsValue(Boolean.TRUE);
+            scheduled = true;
+            scheduledImmediate = immediate;
+        }
+
+        Choreographer choreographer = Choreographer.getInstance();
+        choreographer.removeFrameCallback(frameCallback);
+        long wait = minInterval - (SystemClock.uptimeMillis() - lastFlush);
+        if (immediate || wait <= 0)
+            choreographer.postFrameCallback(frameCallback);
+        else
+            choreographer.postFrameCallbackDelayed(frameCallback, wait);
+    }
+
+    /**
+     * Run pending frame listeners and notify every dirty adapter right now.
+     * Main thread only.
+     */
+    public void flush() {
+        flush(true);
+    }
+
+    /**
+     * Frame callback body: run frame listeners, notify adapters whose count
+     * changed, and notify the rest only if the minimum interval has passed.
+     */
+    private void onFrame() {
+        flush(SystemClock.uptimeMillis() - lastFlush >= minInterval);
+    }
+
+    private void flush(boolean includeContent) {
+        synchronized (this) {
+            running.addAll(frameListeners);
+            frameListeners.clear();
+        }
+        for (int i = 0; i < running.size(); i++) {
+            running.get(i).onFrame();
+        }
+        running.clear();
+
+        synchronized (this) {
+            Iterator<Map.Entry<BaseAdapter, Boolean>> it = dirty.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<BaseAdapter, Boolean> entry = it.next();
+                if (includeContent || entry.getValue()) {
+                    flushing.add(entry.getKey());
+                    it.remove();
+                }
+            }
+            scheduled = false;
+            scheduledImmediate = false;
+        }
+
+        // Frame listeners may have scheduled another callback, which is no
+        // longer needed for what was just flushed.
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        if (includeContent)
+            lastFlush = SystemClock.uptimeMillis();
+        for (int i = 0; i < flushing.size(); i++) {
+            flushing.get(i).notifyDataSetChanged();
+        }
+        IngestMetrics metrics = IngestMetrics.getInstance();
+        if (metrics != null && !flushing.isEmpty())
+            metrics.recordNotified(flushing.size());
+        flushing.clear();
+
+        // Anything left over (content changes waiting out the minimum
+        // interval, or changes made while notifying) needs another frame.
+        schedule();
+    }
+}
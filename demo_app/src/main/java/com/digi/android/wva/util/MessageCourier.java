@@ -7,17 +7,23 @@
  
 package com.digi.android.wva.util;
 
+import android.os.Handler;
 import com.digi.android.wva.model.VehicleData;
 
-import java.util.LinkedList;
+import java.util.List;
 
 /**
- * Class containing static LinkedLists used as queues for sending
+ * Class containing static {@link Mailbox}es used as queues for sending
  * messages and data from various sources (like {@link com.digi.android.wva.VehicleInfoService}
  * and {@link com.digi.android.wva.WvaApplication}) to the
  * {@link com.digi.android.wva.DashboardActivity} and {@link com.digi.android.wva.fragments.ChartFragment}
  * for use.
  *
+ * <p>Senders never block. Rather than polling, the dashboard and chart
+ * register a consumer (see {@link #registerDashboardConsumer(Handler, Runnable)}
+ * and {@link #registerChartConsumer(Handler, Runnable)}) which is run on
+ * their thread when messages are waiting.</p>
+ *
  * Created by mwadsten on 5/22/13.
  */
 public class MessageCourier {
@@ -143,19 +149,88 @@ public class MessageCourier {
         }
     }
     
-    private static final LinkedList<DashboardMessage> toDash = new LinkedList<DashboardMessage>();
-    private static final LinkedList<ChartMessage> toChart = new LinkedList<ChartMessage>();
     private static final int DASH_MAX = 5;
     private static final int CHART_MAX = 20;
 
-    private static final Object dashlock = new Object(),
-                                   chartlock = new Object();
+    private static final Mailbox<DashboardMessage> toDash = new Mailbox<DashboardMessage>(DASH_MAX);
+    private static final Mailbox<ChartMessage> toChart = new Mailbox<ChartMessage>(CHART_MAX);
+    private static final ChartFeed chartFeed = new ChartFeed();
 
     /**
      * No need for a constructor for MessageCourier.
      */
     private MessageCourier() {}
 
+    /**
+     * {@link Mailbox.Waker} which runs a task on a {@link Handler}'s thread.
+     */
+    private static class HandlerWaker implements Mailbox.Waker {
+        private final Handler handler;
+        private final Runnable consumer;
+
+        HandlerWaker(Handler handler, Runnable consumer) {
+            this.handler = handler;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void wake() {
+            handler.post(consumer);
+        }
+    }
+
+    /**
+     * Register the dashboard's message consumer. Whenever new dashboard
+     * messages arrive, <b>consumer</b> is posted to <b>handler</b>, which
+     * should then call {@link #getDashboardMessages()}. If messages are
+     * waiting already, consumer is posted right away.
+     * @param handler handler for the thread the consumer should run on
+     * @param consumer task which reads the pending messages
+     */
+    public static void registerDashboardConsumer(Handler handler, Runnable consumer) {
+        toDash.setWaker(new HandlerWaker(handler, consumer));
+    }
+
+    /**
+     * Stop waking the dashboard's message consumer. Messages continue to
+     * be queued up.
+     */
+    public static void unregisterDashboardConsumer() {
+        toDash.setWaker(null);
+    }
+
+    /**
+     * Register the chart's message consumer. Whenever new chart messages
+     * arrive, <b>consumer</b> is posted to <b>handler</b>, which should then
+     * call {@link #getChartMessages()}. If messages are waiting already,
+     * consumer is posted right away.
+     * @param handler handler for the thread the consumer should run on
+     * @param consumer task which reads the pending messages
+     */
+    public static void registerChartConsumer(Handler handler, Runnable consumer) {
+        HandlerWaker waker = new HandlerWaker(handler, consumer);
+        toChart.setWaker(waker);
+        chartFeed.setWaker(waker);
+    }
+
+    /**
+     * Stop waking the chart's message consumer. Messages continue to be
+     * queued up.
+     */
+    public static void unregisterChartConsumer() {
+        toChart.setWaker(null);
+        chartFeed.setWaker(null);
+    }
+
+    /**
+     * Get the feed through which new chart data is delivered. Data points
+     * are not sent as {@link ChartMessage}s; see {@link #sendChartNewData(VehicleData)}.
+     * @return the chart data feed
+     */
+    public static ChartFeed getChartFeed() {
+        return chartFeed;
+    }
+
     /**
      * Queue up a new message for the dashboard to inform it that
      * we have successfully connected to a device.
@@ -185,11 +260,25 @@ public class MessageCourier {
     }
 
     /**
-     * Queue up a new message for the chart, giving it new vehicle data to plot.
+     * Queue up new vehicle data for the chart to plot. The data goes into
+     * the {@link #getChartFeed() chart feed} rather than the chart's message
+     * queue, so that points are not dropped when they arrive faster than
+     * the chart reads them.
      * @param data VehicleData object to plot on screen
      */
     public static void sendChartNewData(VehicleData data) {
-        putChartMessage(ChartMessage.newData(data));
+        sendChartNewData(data.name, data.time, data.value);
+    }
+
+    /**
+     * Queue up a new data point for the chart to plot, without needing a
+     * {@link VehicleData} object
+     * @param endpoint endpoint the point belongs to
+     * @param time time of the point, in milliseconds since the epoch
+     * @param value value of the point
+     */
+    public static void sendChartNewData(String endpoint, long time, double value) {
+        chartFeed.add(endpoint, time, value);
     }
 
     private static void putDashMessage(DashboardMessage msg) {
@@ -197,16 +286,10 @@ public class MessageCourier {
     }
 
     private static void putDashMessage(DashboardMessage msg, boolean putAtFront) {
-        synchronized (dashlock) {
-            if (putAtFront)
-                toDash.addFirst(msg);
-            else
-                toDash.add(msg);
-            // Keep dashboard message queue to an appropriate size.
-            while (toDash.size() > DASH_MAX) {
-                toDash.remove();
-            }
-        }
+        if (putAtFront)
+            toDash.offerUrgent(msg);
+        else
+            toDash.offer(msg);
     }
 
     private static void putChartMessage(ChartMessage msg) {
@@ -214,16 +297,10 @@ public class MessageCourier {
     }
 
     private static void putChartMessage(ChartMessage msg, boolean putAtFront) {
-        synchronized (chartlock) {
-            if (putAtFront)
-                toChart.addFirst(msg);
-            else
-                toChart.add(msg);
-            // Keep chart message queue to an appropriate size.
-            while (toChart.size() > CHART_MAX) {
-                toChart.remove();
-            }
-        }
+        if (putAtFront)
+            toChart.offerUrgent(msg);
+        else
+            toChart.offer(msg);
     }
 
     /**
@@ -232,15 +309,8 @@ public class MessageCourier {
      * there are none
      */
     public static DashboardMessage[] getDashboardMessages() {
-        synchronized (dashlock) {
-            final int count = toDash.size();
-            if (count <= 0)
-                return new DashboardMessage[0];
-            DashboardMessage[] msgs = new DashboardMessage[count];
-            toDash.toArray(msgs);
-            toDash.clear();
-            return msgs;
-        }
+        List<DashboardMessage> msgs = toDash.drain();
+        return msgs.toArray(new DashboardMessage[msgs.size()]);
     }
 
     /**
@@ -249,26 +319,47 @@ public class MessageCourier {
      * there are none
      */
     public static ChartMessage[] getChartMessages() {
-        synchronized (chartlock) {
-            final int count = toChart.size();
-            if (count <= 0)
-                return new ChartMessage[0];
-            ChartMessage[] msgs = new ChartMessage[count];
-            toChart.toArray(msgs);
-            toChart.clear();
-            return msgs;
-        }
+        List<ChartMessage> msgs = toChart.drain();
+        return msgs.toArray(new ChartMessage[msgs.size()]);
     }
 
     /**
-     * Clear out any pending {@link ChartMessage}s and {@link DashboardMessage}s.
+     * @return the number of DashboardMessages waiting to be read
+     */
+    public static int getDashboardQueueSize() {
+        return toDash.size();
+    }
+
+    /**
+     * @return the number of DashboardMessages dropped because too many were
+     * waiting
+     */
+    public static int getDashboardDroppedCount() {
+        return toDash.getDroppedCount();
+    }
+
+    /**
+     * @return the number of ChartMessages waiting to be read
+     */
+    public static int getChartQueueSize() {
+        return toChart.size();
+    }
+
+    /**
+     * @return the number of ChartMessages dropped because too many were
+     * waiting
+     */
+    public static int getChartDroppedCount() {
+        return toChart.getDroppedCount();
+    }
+
+    /**
+     * Clear out any pending {@link ChartMessage}s, {@link DashboardMessage}s
+     * and chart data.
      */
     public static void clear() {
-        synchronized (chartlock) {
-            toChart.clear();
-        }
-        synchronized (dashlock) {
-            toDash.clear();
-        }
+        toChart.clear();
+        toDash.clear();
+        chartFeed.clear();
     }
 }
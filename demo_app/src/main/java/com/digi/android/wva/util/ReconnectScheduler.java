@@ -0,0 +1,123 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Schedules reconnect attempts on a {@link Handler}, after the delays
+ * chosen by a {@link ReconnectPolicy}, and records them in a
+ * {@link ReconnectStats}.
+ *
+ * <p>If {@link NetworkUtils#shouldBeAllowedToConnect(Context)} is false when
+ * an attempt comes due, the attempt is skipped and tried again after the
+ * same delay; skipped attempts do not count towards the backoff. At most one
+ * attempt is pending at a time. All methods should be called on the
+ * handler's thread.</p>
+ */
+public class ReconnectScheduler {
+    private static final String TAG = "ReconnectScheduler";
+
+    private final Handler handler;
+    private final Context context;
+    private final ReconnectStats stats;
+    private ReconnectPolicy policy;
+    private Runnable pending;
+
+    /**
+     * Create a scheduler
+     * @param handler handler on which attempts are run
+     * @param context context used to check the network state
+     * @param policy decides how long to wait before each attempt
+     * @param stats where to record attempts; may be null
+     */
+    public ReconnectScheduler(Handler handler, Context context, ReconnectPolicy policy,
+                              ReconnectStats stats) {
+        this.handler = handler;
+        this.context = context;
+        this.policy = policy;
+        this.stats = stats;
+    }
+
+    /**
+     * Replace the reconnect policy
+     * @param policy the new policy
+     */
+    public void setPolicy(ReconnectPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Schedule a reconnect attempt, replacing any attempt already pending
+     * @param attempt makes the attempt, when the time comes
+     * @return how long until the attempt, in milliseconds
+     */
+    public long schedule(final Runnable attempt) {
+        long now = SystemClock.elapsedRealtime();
+        final long delay = policy.nextDelay(now);
+        if (stats != null) {
+            stats.recordLost(now);
+            stats.recordScheduled(delay);
+        }
+        Log.d(TAG, "Reconnecting in " + delay + " ms");
+
+        cancel();
+        pending = new Runnable() {
+            @Override
+            public void run() {
+                if (!NetworkUtils.shouldBeAllowedToConnect(context)) {
+                    Log.d(TAG, "Network unavailable; skipping reconnect attempt");
+                    if (stats != null)
+                        stats.recordSkipped();
+                    handler.postDelayed(this, delay);
+                    return;
+                }
+                pending = null;
+                if (stats != null)
+                    stats.recordAttempt();
+                attempt.run();
+            }
+        };
+        handler.postDelayed(pending, delay);
+        return delay;
+    }
+
+    /**
+     * Record that the connection was made
+     */
+    public void onConnected() {
+        long now = SystemClock.elapsedRealtime();
+        policy.onConnected(now);
+        if (stats != null)
+            stats.recordConnected(now);
+    }
+
+    /**
+     * Drop any pending attempt
+     */
+    public void cancel() {
+        if (pending != null) {
+            handler.removeCallbacks(pending);
+            pending = null;
+        }
+    }
+
+    /**
+     * Drop any pending attempt, and forget about past failures, as when
+     * the user disconnects or connects to a new device
+     */
+    public void reset() {
+        cancel();
+        policy.reset();
+        if (stats != null)
+            stats.recordStopped();
+    }
+}
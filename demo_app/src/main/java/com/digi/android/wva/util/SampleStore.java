@@ -0,0 +1,563 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.digi.wva.async.EventFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only, on-device store of every vehicle data event received: its
+ * endpoint, device timestamp, value and event type.
+ *
+ * <p>Events are kept in segment files of a fixed size, each of which is
+ * memory-mapped while it is written, so that storing an event is a few
+ * writes into memory rather than a system call. Each segment starts with a
+ * header holding the number of records written so far and the earliest and
+ * latest timestamps among them, followed by fixed-size records. Endpoint
+ * names are stored once, in a separate dictionary file, and records refer
+ * to them by number. Once there are more segments than the store may keep,
+ * the oldest is deleted.</p>
+ *
+ * <p>{@link #append(String, EventFactory.Type, long, double)} never blocks
+ * on the disk: it puts the event in a queue of primitive arrays and returns,
+ * and a background writer thread moves queued events into the current
+ * segment. If the writer falls so far behind that the queue fills up, new
+ * events are dropped and counted in {@link #getDroppedCount()}.</p>
+ *
+ * <p>{@link #query(String, long, long, Samples)} reads the stored events of
+ * one endpoint over a time range, skipping any segment whose time range
+ * does not overlap it, and may be called from any thread.</p>
+ */
+public class SampleStore {
+    private static final String TAG = "SampleStore";
+    private static SampleStore instance;
+
+    /** Default size of each segment file, in bytes. */
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+    /** Default number of segments kept. */
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    private static final int MAGIC = 0x57564153; // "WVAS"
+    private static final int VERSION = 1;
+    // Header: magic, version, record count, (unused), earliest time, latest time
+    private static final int COUNT_OFFSET = 8;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+    private static final int HEADER_SIZE = 32;
+    // Record: endpoint number, event type, timestamp, value
+    private static final int RECORD_SIZE = 24;
+    private static final int QUEUE_CAPACITY = 16 * 1024;
+    private static final String ENDPOINTS_FILE = "endpoints";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final EventFactory.Type[] TYPES = EventFactory.Type.values();
+
+    /**
+     * Stored events of one endpoint, in the order they were received.
+     * Instances are meant to be reused from one query to the next.
+     */
+    public static final class Samples {
+        long[] times = new long[64];
+        double[] values = new double[64];
+        byte[] types = new byte[64];
+        int size;
+
+        /**
+         * @return the number of events
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param i index of the event
+         * @return device timestamp of the event, in milliseconds since the epoch
+         */
+        public long getTime(int i) {
+            return times[i];
+        }
+
+        /**
+         * @param i index of the event
+         * @return value of the event
+         */
+        public double getValue(int i) {
+            return values[i];
+        }
+
+        /**
+         * @param i index of the event
+         * @return type of the event
+         */
+        public EventFactory.Type getType(int i) {
+            return TYPES[types[i]];
+        }
+
+        void add(long time, double value, byte type) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            types[size] = type;
+            size++;
+        }
+    }
+
+    /** One segment file, and what is known about its contents. */
+    private static final class Segment {
+        final File file;
+        final long number;
+        final MappedByteBuffer buffer;
+        /** Number of records written. Written by the writer thread only. */
+        volatile int count;
+        volatile long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+
+        Segment(File file, long number, MappedByteBuffer buffer) {
+            this.file = file;
+            this.number = number;
+            this.buffer = buffer;
+        }
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+
+    // Queue of events waiting to be written. Guarded by queueLock.
+    private final Object queueLock = new Object();
+    private final String[] queueEndpoints = new String[QUEUE_CAPACITY];
+    private final byte[] queueTypes = new byte[QUEUE_CAPACITY];
+    private final long[] queueTimes = new long[QUEUE_CAPACITY];
+    private final double[] queueValues = new double[QUEUE_CAPACITY];
+    private int queueHead, queueSize;
+    private long dropped;
+
+    // Segments, oldest first. Guarded by segmentsLock; only the writer
+    // thread adds or removes segments.
+    private final Object segmentsLock = new Object();
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    /** Endpoint numbers. Only the writer thread adds to it. */
+    private final Map<String, Integer> endpointIds = new ConcurrentHashMap<String, Integer>();
+
+    // Writer thread state.
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicBoolean writePending = new AtomicBoolean();
+    private final String[] batchEndpoints = new String[QUEUE_CAPACITY];
+    private final byte[] batchTypes = new byte[QUEUE_CAPACITY];
+    private final long[] batchTimes = new long[QUEUE_CAPACITY];
+    private final double[] batchValues = new double[QUEUE_CAPACITY];
+    private Segment current;
+    private Writer endpointsWriter;
+    private boolean failed;
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending.set(false);
+            writeQueued();
+        }
+    };
+
+    /**
+     * Initialize the singleton SampleStore instance, keeping its files in
+     * the given directory
+     * @param directory directory to keep the store's files in
+     */
+    public static void initInstance(File directory) {
+        if (instance == null)
+            instance = new SampleStore(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Fetch the singleton SampleStore instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static SampleStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Open a store, creating it if need be. The files are opened on the
+     * writer thread, so events already in the store may not show up in
+     * queries straight away; see {@link #flush()}.
+     * @param directory directory to keep the store's files in
+     * @param segmentSize size of each segment file, in bytes
+     * @param maxSegments number of segment files to keep
+     */
+    public SampleStore(File directory, int segmentSize, int maxSegments) {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE)
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        if (maxSegments < 1)
+            throw new IllegalArgumentException("Must keep at least one segment");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.recordsPerSegment = (segmentSize - HEADER_SIZE) / RECORD_SIZE;
+        this.maxSegments = maxSegments;
+
+        thread = new HandlerThread("WVA sample store", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                open();
+            }
+        });
+    }
+
+    /**
+     * Queue an event to be stored. Never blocks on the disk, and may be
+     * called from any thread.
+     * @param endpoint endpoint the event came from
+     * @param type type of the event
+     * @param time device timestamp of the event, in milliseconds since the epoch
+     * @param value value of the event
+     * @return true if the event was queued, false if the queue was full and
+     * the event was dropped
+     */
+    public boolean append(String endpoint, EventFactory.Type type, long time, double value) {
+        synchronized (queueLock) {
+            if (queueSize == QUEUE_CAPACITY) {
+                dropped++;
+                return false;
+            }
+            int i = (queueHead + queueSize) % QUEUE_CAPACITY;
+            queueEndpoints[i] = endpoint;
+            queueTypes[i] = (byte) type.ordinal();
+            queueTimes[i] = time;
+            queueValues[i] = value;
+            queueSize++;
+        }
+        if (writePending.compareAndSet(false, true))
+            handler.post(writeRunnable);
+        return true;
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        synchronized (queueLock) {
+            return dropped;
+        }
+    }
+
+    /**
+     * Find the stored events of an endpoint between two times. Events still
+     * queued are not included. May be called from any thread.
+     * @param endpoint endpoint whose events to find
+     * @param start earliest device timestamp to include
+     * @param end latest device timestamp to include
+     * @param out where to put the events; anything in it is replaced
+     * @return the number of events found
+     */
+    public int query(String endpoint, long start, long end, Samples out) {
+        out.size = 0;
+        Integer id = endpointIds.get(endpoint);
+        if (id == null)
+            return 0;
+        int wanted = id;
+
+        Segment[] snapshot;
+        synchronized (segmentsLock) {
+            snapshot = segments.toArray(new Segment[segments.size()]);
+        }
+        for (Segment segment : snapshot) {
+            int count = segment.count;
+            if (count == 0 || segment.maxTime < start || segment.minTime > end)
+                continue;
+            MappedByteBuffer b = segment.buffer;
+            for (int r = 0, offset = HEADER_SIZE; r < count; r++, offset += RECORD_SIZE) {
+                if (b.getInt(offset) != wanted)
+                    continue;
+                long time = b.getLong(offset + 8);
+                if (time >= start && time <= end)
+                    out.add(time, b.getDouble(offset + 16), (byte) b.getInt(offset + 4));
+            }
+        }
+        return out.size;
+    }
+
+    /**
+     * Wait until every event queued so far has been written. Not to be
+     * called on the main thread.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                writeQueued();
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    /**
+     * Write out anything still queued, and stop the writer thread. The
+     * store may still be queried afterwards, but not appended to.
+     */
+    public void close() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                writeQueued();
+                if (current != null)
+                    current.buffer.force();
+                closeEndpointsWriter();
+            }
+        });
+        thread.quitSafely();
+    }
+
+    /** Load the dictionary and existing segments. Writer thread only. */
+    private void open() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            fail("Unable to create " + directory, null);
+            return;
+        }
+
+        File endpointsFile = new File(directory, ENDPOINTS_FILE);
+        if (endpointsFile.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(endpointsFile), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    endpointIds.put(line, endpointIds.size());
+                }
+            } catch (IOException e) {
+                fail("Unable to read endpoint names", e);
+                return;
+            } finally {
+                closeQuietly(reader);
+            }
+        }
+        try {
+            endpointsWriter = new OutputStreamWriter(new FileOutputStream(endpointsFile, true), "UTF-8");
+        } catch (IOException e) {
+            fail("Unable to open endpoint names", e);
+            return;
+        }
+
+        // Existing segments are only read; new events go into a new segment.
+        File[] files = directory.listFiles();
+        List<Segment> found = new ArrayList<Segment>();
+        if (files != null) {
+            for (File file : files) {
+                Segment segment = openSegment(file);
+                if (segment != null)
+                    found.add(segment);
+            }
+        }
+        Collections.sort(found, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment a, Segment b) {
+                return a.number < b.number ? -1 : (a.number == b.number ? 0 : 1);
+            }
+        });
+        synchronized (segmentsLock) {
+            segments.addAll(found);
+        }
+    }
+
+    /** @return an existing segment, mapped read-only, or null if the file is not one */
+    private Segment openSegment(File file) {
+        String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX))
+            return null;
+        long number;
+        try {
+            number = Long.parseLong(name.substring(SEGMENT_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                Log.w(TAG, "Ignoring unrecognized segment " + file);
+                return null;
+            }
+            Segment segment = new Segment(file, number, buffer);
+            segment.count = Math.min(buffer.getInt(COUNT_OFFSET),
+                                     (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+            segment.minTime = buffer.getLong(MIN_TIME_OFFSET);
+            segment.maxTime = buffer.getLong(MAX_TIME_OFFSET);
+            return segment;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to open segment " + file, e);
+            return null;
+        } finally {
+            closeQuietly(raf);
+        }
+    }
+
+    /** Move everything queued into the current segment. Writer thread only. */
+    private void writeQueued() {
+        int n;
+        synchronized (queueLock) {
+            n = queueSize;
+            for (int k = 0; k < n; k++) {
+                int i = (queueHead + k) % QUEUE_CAPACITY;
+                batchEndpoints[k] = queueEndpoints[i];
+                batchTypes[k] = queueTypes[i];
+                batchTimes[k] = queueTimes[i];
+                batchValues[k] = queueValues[i];
+                queueEndpoints[i] = null;
+            }
+            queueHead = (queueHead + n) % QUEUE_CAPACITY;
+            queueSize = 0;
+        }
+        if (failed)
+            return;
+
+        try {
+            for (int k = 0; k < n; k++) {
+                if (current == null || current.count == recordsPerSegment)
+                    startSegment();
+                writeRecord(current, endpointId(batchEndpoints[k]),
+                            batchTypes[k], batchTimes[k], batchValues[k]);
+                batchEndpoints[k] = null;
+            }
+        } catch (IOException e) {
+            fail("Unable to write samples", e);
+        }
+    }
+
+    private void writeRecord(Segment segment, int endpoint, byte type, long time, double value) {
+        MappedByteBuffer b = segment.buffer;
+        int offset = HEADER_SIZE + segment.count * RECORD_SIZE;
+        b.putInt(offset, endpoint);
+        b.putInt(offset + 4, type);
+        b.putLong(offset + 8, time);
+        b.putDouble(offset + 16, value);
+        if (time < segment.minTime) {
+            segment.minTime = time;
+            b.putLong(MIN_TIME_OFFSET, time);
+        }
+        if (time > segment.maxTime) {
+            segment.maxTime = time;
+            b.putLong(MAX_TIME_OFFSET, time);
+        }
+        // The count goes last, so that readers never see a record before
+        // it has been written.
+        b.putInt(COUNT_OFFSET, segment.count + 1);
+        segment.count++;
+    }
+
+    /** @return the number of an endpoint, adding it to the dictionary if need be */
+    private int endpointId(String endpoint) throws IOException {
+        Integer id = endpointIds.get(endpoint);
+        if (id != null)
+            return id;
+        // Endpoint names never contain line breaks. The name has to reach
+        // the file before any record uses its number; otherwise a crash
+        // would leave records that, on reopen, belong to the next endpoint
+        // to be added. This only happens once per endpoint.
+        endpointsWriter.write(endpoint);
+        endpointsWriter.write('\n');
+        endpointsWriter.flush();
+        int newId = endpointIds.size();
+        endpointIds.put(endpoint, newId);
+        return newId;
+    }
+
+    /** Start a new segment, deleting the oldest if there are too many. */
+    private void startSegment() throws IOException {
+        long number;
+        synchronized (segmentsLock) {
+            number = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).number + 1;
+        }
+        if (current != null)
+            current.buffer.force();
+
+        File file = new File(directory, SEGMENT_PREFIX + number);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer;
+        try {
+            raf.setLength(segmentSize);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            closeQuietly(raf);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(COUNT_OFFSET, 0);
+        buffer.putLong(MIN_TIME_OFFSET, Long.MAX_VALUE);
+        buffer.putLong(MAX_TIME_OFFSET, Long.MIN_VALUE);
+        current = new Segment(file, number, buffer);
+
+        List<Segment> removed = new ArrayList<Segment>();
+        synchronized (segmentsLock) {
+            segments.add(current);
+            while (segments.size() > maxSegments)
+                removed.add(segments.remove(0));
+        }
+        for (Segment old : removed) {
+            if (!old.file.delete())
+                Log.w(TAG, "Unable to delete " + old.file);
+        }
+    }
+
+    private void fail(String message, Throwable error) {
+        Log.e(TAG, message + "; no more samples will be stored", error);
+        failed = true;
+        closeEndpointsWriter();
+    }
+
+    private void closeEndpointsWriter() {
+        closeQuietly(endpointsWriter);
+        endpointsWriter = null;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null)
+            return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            // Nothing more to be done.
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.digi.wva.async.WvaCallback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Subscribes to a list of endpoints, with a bounded number of subscription
+ * requests in flight at once and a limit on how many are started per
+ * second.
+ *
+ * <p>Requests are started as soon as both a slot in the in-flight window and
+ * a token from the rate limiter are free; the rate limiter starts out full,
+ * so the first window's worth of requests goes out straight away, from
+ * {@link #start(Collection)} itself. Each finished request frees its slot
+ * and starts the next one. A failed subscription is tried again, after a
+ * delay which doubles with each attempt, up to the maximum number of
+ * attempts.</p>
+ *
+ * <p>The {@link Listener} hears about progress after each request finishes,
+ * and once more when every endpoint has either been subscribed to or given
+ * up on. Listener methods are called on whichever thread the request's
+ * response arrives on.</p>
+ */
+public class SubscriptionPipeline {
+    /** Default number of subscription requests in flight at once. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    /** Default number of subscription requests started per second. */
+    public static final double DEFAULT_RATE = 50;
+    /** Default number of times to try each subscription. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    /** Default delay before the first retry, in milliseconds. */
+    public static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    /** Longest delay between retries, in milliseconds. */
+    public static final long MAX_BACKOFF = 30000;
+
+    /**
+     * Something which can subscribe to an endpoint, such as
+     * {@link com.digi.android.wva.WvaApplication#subscribeToEndpointFromService}.
+     */
+    public interface Subscriber {
+        /**
+         * Start subscribing to an endpoint
+         * @param endpoint the endpoint to subscribe to
+         * @param callback to be called once the subscription succeeds or fails
+         * @return true if the subscription was started, or false to cancel
+         * the pipeline instead (for instance, because the device has gone
+         * away)
+         */
+        boolean subscribe(String endpoint, WvaCallback<Void> callback);
+    }
+
+    /**
+     * Interface for hearing how the pipeline is getting on
+     */
+    public interface Listener {
+        /**
+         * Called whenever an endpoint is subscribed to or given up on
+         * @param completed number of endpoints subscribed to or given up on
+         * @param total number of endpoints in the pipeline
+         */
+        void onProgress(int completed, int total);
+
+        /**
+         * Called once, when every endpoint has been subscribed to or given up
+         * on. Not called if the pipeline is {@link #cancel() cancelled}.
+         * @param subscribed number of endpoints subscribed to
+         * @param failed endpoints given up on
+         */
+        void onFinished(int subscribed, List<String> failed);
+    }
+
+    private final Handler handler;
+    private final Subscriber subscriber;
+    private final Listener listener;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private double rate = DEFAULT_RATE;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+
+    // All guarded by this.
+    private final ArrayDeque<String> queue = new ArrayDeque<String>();
+    private final Map<String, Integer> attempts = new HashMap<String, Integer>();
+    private final List<String> failed = new ArrayList<String>();
+    private int total, succeeded, inFlight, retriesWaiting;
+    private double tokens;
+    private long lastRefill;
+    private boolean started, cancelled, finished, pumping;
+
+    private final Runnable pumpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pump();
+        }
+    };
+
+    /**
+     * Create a pipeline
+     * @param handler handler used to wait out the rate limit and retry delays
+     * @param subscriber does the actual subscribing
+     * @param listener hears about progress; may be null
+     */
+    public SubscriptionPipeline(Handler handler, Subscriber subscriber, Listener listener) {
+        this.handler = handler;
+        this.subscriber = subscriber;
+        this.listener = listener;
+    }
+
+    /**
+     * Set the most subscription requests in flight at once. Must be called
+     * before {@link #start(Collection)}.
+     * @param max number of requests, at least 1
+     */
+    public synchronized void setMaxInFlight(int max) {
+        if (max < 1)
+            throw new IllegalArgumentException("Must allow at least one request in flight");
+        maxInFlight = max;
+    }
+
+    /**
+     * Set the most subscription requests started per second. Must be called
+     * before {@link #start(Collection)}.
+     * @param perSecond requests per second, above 0
+     */
+    public synchronized void setRate(double perSecond) {
+        if (!(perSecond > 0))
+            throw new IllegalArgumentException("Rate must be above 0");
+        rate = perSecond;
+    }
+
+    /**
+     * Set how often, and how far apart, failed subscriptions are tried
+     * @param attempts number of times to try each subscription, at least 1
+     * @param initialDelay delay before the first retry, in milliseconds; each
+     *                     further retry waits twice as long, up to
+     *                     {@link #MAX_BACKOFF}
+     */
+    public synchronized void setRetries(int attempts, long initialDelay) {
+        if (attempts < 1)
+            throw new IllegalArgumentException("Must try at least once");
+        maxAttempts = attempts;
+        initialBackoff = Math.max(0, initialDelay);
+    }
+
+    /**
+     * Start subscribing to the given endpoints. A pipeline can only be
+     * started once.
+     * @param endpoints endpoints to subscribe to
+     */
+    public void start(Collection<String> endpoints) {
+        synchronized (this) {
+            if (started)
+                throw new IllegalStateException("Pipeline already started");
+            started = true;
+            queue.addAll(endpoints);
+            total = queue.size();
+            tokens = maxInFlight;
+            lastRefill = SystemClock.uptimeMillis();
+        }
+        pump();
+    }
+
+    /**
+     * Stop starting new subscription requests. Requests already in flight
+     * are left to finish, but nobody hears about them.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        queue.clear();
+        handler.removeCallbacks(pumpRunnable);
+    }
+
+    /**
+     * @return true if every endpoint has been subscribed to or given up on
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /** Start as many requests as the window and rate limit allow. */
+    private synchronized void pump() {
+        // A subscriber may call back straight away, from inside the loop
+        // below; the loop picks up whatever that changes.
+        if (pumping || cancelled)
+            return;
+        pumping = true;
+        try {
+            while (!cancelled && inFlight < maxInFlight && !queue.isEmpty()) {
+                long now = SystemClock.uptimeMillis();
+                tokens = Math.min(maxInFlight, tokens + (now - lastRefill) * rate / 1000);
+                lastRefill = now;
+                if (tokens < 1) {
+                    handler.removeCallbacks(pumpRunnable);
+                    handler.postDelayed(pumpRunnable, (long) Math.ceil((1 - tokens) * 1000 / rate));
+                    break;
+                }
+                tokens--;
+                inFlight++;
+                String endpoint = queue.poll();
+                if (!subscriber.subscribe(endpoint, new ResultCallback(endpoint))) {
+                    inFlight--;
+                    cancel();
+                }
+            }
+        } finally {
+            pumping = false;
+        }
+        checkFinished();
+    }
+
+    private synchronized void onResult(final String endpoint, Throwable error) {
+        inFlight--;
+        if (cancelled)
+            return;
+
+        boolean completed = true;
+        if (error == null) {
+            succeeded++;
+        } else {
+            Integer tried = attempts.get(endpoint);
+            int n = tried == null ? 1 : tried + 1;
+            if (n < maxAttempts) {
+                attempts.put(endpoint, n);
+                retriesWaiting++;
+                completed = false;
+                long delay = Math.min(MAX_BACKOFF, initialBackoff << Math.min(n - 1, 20));
+                handler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (SubscriptionPipeline.this) {
+                            retriesWaiting--;
+                            if (cancelled)
+                                return;
+                            queue.add(endpoint);
+                        }
+                        pump();
+                    }
+                }, delay);
+            } else {
+                attempts.remove(endpoint);
+                failed.add(endpoint);
+            }
+        }
+
+        if (completed && listener != null)
+            listener.onProgress(succeeded + failed.size(), total);
+        pump();
+    }
+
+    private synchronized void checkFinished() {
+        if (finished || cancelled || !started
+                || !queue.isEmpty() || inFlight > 0 || retriesWaiting > 0)
+            return;
+        finished = true;
+        if (listener != null)
+            listener.onFinished(succeeded, new ArrayList<String>(failed));
+    }
+
+    private final class ResultCallback extends WvaCallback<Void> {
+        private final String endpoint;
+
+        ResultCallback(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public boolean runsOnUiThread() {
+            // Nothing here touches the UI.
+            return false;
+        }
+
+        @Override
+        public void onResponse(Throwable error, Void response) {
+            onResult(endpoint, error);
+        }
+    }
+}
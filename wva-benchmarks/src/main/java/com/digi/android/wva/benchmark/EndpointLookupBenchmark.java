@@ -0,0 +1,91 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.VehicleDataList;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up an endpoint's row by name, as the adapters do for each update.
+ * The {@code scan} benchmark walks the rows one by one, which is how the
+ * adapters used to find an endpoint, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointLookupBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int endpoints;
+
+    private VehicleDataList list;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<String> endpointNames = Endpoints.names(endpoints);
+        DateTime now = DateTime.now();
+        list = new VehicleDataList();
+        for (String name : endpointNames) {
+            list.update(new VehicleData(name, 0, now));
+        }
+        // Look endpoints up in a different order to the rows, and by equal
+        // rather than identical strings, as happens with names parsed from
+        // incoming events.
+        names = new String[endpoints];
+        for (int i = 0; i < endpoints; i++) {
+            names[i] = new String(endpointNames.get(endpoints - 1 - i));
+        }
+    }
+
+    private String nextName() {
+        String name = names[next];
+        if (++next == names.length)
+            next = 0;
+        return name;
+    }
+
+    @Benchmark
+    public VehicleData get() {
+        return list.get(nextName());
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return list.indexOf(nextName());
+    }
+
+    @Benchmark
+    public int scan() {
+        String name = nextName();
+        List<VehicleData> rows = list.getList();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).name.equals(name))
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import com.digi.android.wva.util.VehicleEndpointComparator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting the set of endpoints fetched from a device, with Pressure Pro
+ * endpoints last.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointSortBenchmark {
+    @Param({"100", "1000", "5000"})
+    public int endpoints;
+
+    /** As handed over by fetchVehicleDataEndpoints. */
+    private Set<String> names;
+
+    @Setup
+    public void setUp() {
+        names = new HashSet<String>(Endpoints.names(endpoints));
+    }
+
+    @Benchmark
+    public List<String> asSortedList() {
+        return VehicleEndpointComparator.asSortedList(names);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds sets of endpoint names resembling what a WVA reports, for use by
+ * the benchmarks.
+ */
+final class Endpoints {
+    private static final String[] BASES = {
+            "EngineSpeed", "VehicleSpeed", "FuelLevel", "EngineCoolantTemp",
+            "Odometer", "ThrottlePosition", "FuelRate", "BatteryVoltage"
+    };
+    private static final String[] PRESSURE_PRO = {"CTI", "TirePressure", "TireTemperature"};
+
+    private Endpoints() {
+    }
+
+    /**
+     * Make a list of distinct endpoint names, about one in five of them Pressure
+     * Pro endpoints, in a fixed random order
+     * @param count number of names to make
+     * @return the endpoint names
+     */
+    static List<String> names(int count) {
+        List<String> names = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            if (i % 5 == 4)
+                names.add(PRESSURE_PRO[i % PRESSURE_PRO.length] + "_" + (i / 5));
+            else
+                names.add(BASES[i % BASES.length] + "_" + i);
+        }
+        // Endpoints arrive in no particular order.
+        Collections.shuffle(names, new Random(42));
+        return names;
+    }
+}
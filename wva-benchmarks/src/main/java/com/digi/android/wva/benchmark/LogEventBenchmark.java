@@ -0,0 +1,78 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.VehicleDataList;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the {@link LogEvent}s shown in the data log, and formatting
+ * their messages and timestamps once they are shown.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogEventBenchmark {
+    private VehicleData data;
+    private String timestamp;
+    private LogEvent event;
+
+    @Setup
+    public void setUp() {
+        data = new VehicleData("EngineSpeed", 1234.5, DateTime.now());
+        timestamp = data.getTimestamp().toString();
+        event = VehicleDataList.makeLogEvent(data);
+    }
+
+    /** Construction alone, with the timestamp already formatted. */
+    @Benchmark
+    public LogEvent construct() {
+        return new LogEvent("EngineSpeed = 1234.5", timestamp);
+    }
+
+    /** Construction without a timestamp, which records the current time. */
+    @Benchmark
+    public LogEvent constructNow() {
+        return new LogEvent("EngineSpeed = 1234.5", null);
+    }
+
+    /** Formatting the timestamp of a piece of vehicle data. */
+    @Benchmark
+    public String formatTimestamp() {
+        return data.getTimestamp().toString();
+    }
+
+    /** The whole of building a data log entry for new vehicle data. */
+    @Benchmark
+    public LogEvent makeLogEvent() {
+        return VehicleDataList.makeLogEvent(data);
+    }
+
+    /** Formatting a data log entry, as done when its row is bound. */
+    @Benchmark
+    public int format() {
+        return event.getMessage().length() + event.getTimestamp().length();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import com.digi.android.wva.util.Mailbox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passing messages through a {@link Mailbox}, the queue behind
+ * {@code MessageCourier}: several producer threads offering messages while
+ * one consumer drains them, as the service and ingest threads do with the
+ * dashboard and chart.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailboxBenchmark {
+    /** Same bound as the chart mailbox. */
+    private final Mailbox<Object> mailbox = new Mailbox<Object>(500);
+    private final Object message = new Object();
+    private final AtomicInteger wakes = new AtomicInteger();
+
+    public MailboxBenchmark() {
+        mailbox.setWaker(new Mailbox.Waker() {
+            @Override
+            public void wake() {
+                wakes.incrementAndGet();
+            }
+        });
+    }
+
+    /** Consumer's own list, reused between drains like the chart's. */
+    @State(Scope.Thread)
+    public static class Drained {
+        final List<Object> messages = new ArrayList<Object>();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void offer() {
+        mailbox.offer(message);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int drain(Drained drained) {
+        int count = mailbox.drain(drained.messages);
+        drained.messages.clear();
+        return count;
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(1)
+    public int offerAndDrain(Drained drained) {
+        mailbox.offer(message);
+        int count = mailbox.drain(drained.messages);
+        drained.messages.clear();
+        return count;
+    }
+}
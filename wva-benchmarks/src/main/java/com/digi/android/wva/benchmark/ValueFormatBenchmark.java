@@ -0,0 +1,67 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import com.digi.android.wva.util.ValueFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting vehicle data values for the data list, as done for every row
+ * bound while scrolling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueFormatBenchmark {
+    private static final int VALUES = 1024;
+
+    private final double[] values = new double[VALUES];
+    private final ValueFormatter formatter = new ValueFormatter(3);
+    private final char[] buffer = new char[ValueFormatter.MAX_LENGTH];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES; i++)
+            values[i] = random.nextDouble() * 10000 - 5000;
+    }
+
+    private double nextValue() {
+        next = (next + 1) & (VALUES - 1);
+        return values[next];
+    }
+
+    /** What the data list used to do: a new DecimalFormat per row. */
+    @Benchmark
+    public String decimalFormat() {
+        return new DecimalFormat("#.###").format(nextValue());
+    }
+
+    /** Formatting into a row's own buffer. */
+    @Benchmark
+    public int valueFormatter() {
+        return formatter.format(nextValue(), buffer);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.benchmark;
+
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.EventLog;
+import com.digi.android.wva.util.LatestValues;
+import com.digi.android.wva.util.VehicleDataList;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates to a {@link VehicleDataList} holding a given number of endpoints,
+ * as made for each incoming vehicle data event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehicleDataListBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int endpoints;
+
+    private VehicleDataList list;
+    private final LatestValues latest = new LatestValues();
+    /** One new value for each endpoint, applied in turn. */
+    private VehicleData[] updates;
+    private int next;
+    /** Most recent event logged, kept so that building it can't be optimised away. */
+    private LogEvent lastLogged;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> names = Endpoints.names(endpoints);
+        DateTime now = DateTime.now();
+        list = new VehicleDataList();
+        updates = new VehicleData[endpoints];
+        for (int i = 0; i < endpoints; i++) {
+            list.update(new VehicleData(names.get(i), 0, now));
+            updates[i] = new VehicleData(names.get(i), i, now);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setEventLog() {
+        // Stand in for the app's LogAdapter, so that the log events are
+        // still built but not kept.
+        VehicleDataList.setEventLog(new EventLog() {
+            @Override
+            public void add(LogEvent event) {
+                lastLogged = event;
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearEventLog() {
+        VehicleDataList.setEventLog(null);
+    }
+
+    private VehicleData nextUpdate() {
+        VehicleData data = updates[next];
+        if (++next == updates.length)
+            next = 0;
+        return data;
+    }
+
+    /** Update an existing row, logging the update as the app does. */
+    @Benchmark
+    public boolean update() {
+        return list.update(nextUpdate());
+    }
+
+    /** Update an existing row without building a log event. */
+    @Benchmark
+    public boolean apply() {
+        return list.apply(nextUpdate(), list.getList().size());
+    }
+
+    /**
+     * Collect a sample into a reusable record and merge it into the list,
+     * as the ingest does once every endpoint has been seen.
+     */
+    @Benchmark
+    public boolean merge() {
+        VehicleData data = nextUpdate();
+        latest.put(data.name, data.value, data.time);
+        boolean added = list.merge(latest.get(data.name), list.getList().size());
+        latest.clear();
+        return added;
+    }
+
+    /** Fill an empty list with every endpoint, as on first connecting. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public VehicleDataList fill() {
+        VehicleDataList fresh = new VehicleDataList();
+        for (VehicleData data : updates) {
+            fresh.apply(data, fresh.getList().size());
+        }
+        return fresh;
+    }
+}
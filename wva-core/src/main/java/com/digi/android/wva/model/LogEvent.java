@@ -0,0 +1,180 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.model;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * Representation of log events within the application. Used to log
+ * such events as new vehicle data arriving and alarms being triggered.
+ *
+ * <p>Data and alarm events are kept as the fields they are made of, and
+ * are only turned into text by {@link #getMessage()} and
+ * {@link #getTimestamp()}, when the log row showing them is bound. Most
+ * events are never shown at all, so building them costs next to
+ * nothing.</p>
+ *
+ * <p>A data event can be refilled with {@link #set(String, double, long)}
+ * once it has been dropped from the log, so that a log which is full can
+ * take new samples without making any garbage (see
+ * {@link com.digi.android.wva.util.LogEventPool}).</p>
+ */
+public class LogEvent {
+    /**
+     * What a log event records
+     */
+    public enum Kind {
+        /** Free text, such as a connection state change. */
+        MESSAGE,
+        /** New vehicle data arriving. */
+        DATA,
+        /** An alarm going off. */
+        ALARM
+    }
+
+    private static final DateTimeFormatter DATA_FORMAT = ISODateTimeFormat.dateTime();
+    private static final DateTimeFormatter MESSAGE_FORMAT = ISODateTimeFormat.dateTimeNoMillis();
+
+    /**
+     * What this event records
+     */
+    public final Kind kind;
+    /**
+     * Name of the device the event came from, in fleet mode, or null
+     */
+    public final String source;
+    /**
+     * Endpoint of a data or alarm event, or null for a message
+     */
+    public String endpoint;
+    /**
+     * Value of a data or alarm event
+     */
+    public double value;
+    /**
+     * When the event occurred, in milliseconds since the epoch
+     */
+    public long time;
+    /**
+     * Indicated whether this log event is recording that an alarm went off or not
+     */
+	public final boolean isAlarm;
+
+    /** Text of a message event. */
+    private final String text;
+    /** Timestamp given when the event was created, if any. */
+    private final String timestamp;
+
+    /**
+     * Calls {@link #LogEvent(String, String, boolean)} with the third argument
+     * being <b>false</b>.
+     * @param message message of the event
+     * @param timestamp timestamp of the event
+     */
+	public LogEvent(String message, String timestamp) {
+        this(message, timestamp, false);
+	}
+
+    /**
+     * Create a new message LogEvent.
+     *
+     * <p>If the timestamp passed in is null, the current time will be used.</p>
+     * @param message message of the event
+     * @param timestamp timestamp of the event
+     * @param alarm true if the event is to record that an alarm went off
+     */
+	public LogEvent(String message, String timestamp, boolean alarm) {
+        this(Kind.MESSAGE, null, null, 0, System.currentTimeMillis(), alarm, message,
+                timestamp == null || timestamp.length() == 0 ? null : timestamp);
+	}
+
+    private LogEvent(Kind kind, String source, String endpoint, double value, long time,
+                     boolean alarm, String text, String timestamp) {
+        this.kind = kind;
+        this.source = source;
+        this.endpoint = endpoint;
+        this.value = value;
+        this.time = time;
+        this.isAlarm = alarm;
+        this.text = text;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Create an event recording new vehicle data
+     * @param endpoint endpoint the data is for
+     * @param value new value
+     * @param time time of the data, in milliseconds since the epoch
+     * @return the event
+     */
+    public static LogEvent data(String endpoint, double value, long time) {
+        return new LogEvent(Kind.DATA, null, endpoint, value, time, false, null, null);
+    }
+
+    /**
+     * Replace the sample recorded by a data event, as when reusing it once
+     * it has been dropped from the log
+     * @param endpoint endpoint the data is for
+     * @param value new value
+     * @param time time of the data, in milliseconds since the epoch
+     * @throws IllegalStateException if this is not a data event
+     */
+    public void set(String endpoint, double value, long time) {
+        if (kind != Kind.DATA)
+            throw new IllegalStateException("Only data events can be reused");
+        this.endpoint = endpoint;
+        this.value = value;
+        this.time = time;
+    }
+
+    /**
+     * Create an event recording that an alarm went off
+     * @param source name of the device the alarm came from, or null if
+     *               there is only the one device
+     * @param endpoint endpoint the alarm is for
+     * @param value value which triggered the alarm
+     * @param time time of the alarm, in milliseconds since the epoch
+     * @return the event
+     */
+    public static LogEvent alarm(String source, String endpoint, double value, long time) {
+        return new LogEvent(Kind.ALARM, source, endpoint, value, time, true, null, null);
+    }
+
+    /**
+     * Format the message of the event, to be displayed in the app's
+     * {@code LogAdapter}. A new string is built on every call.
+     * @return the message
+     */
+    public String getMessage() {
+        switch (kind) {
+            case DATA:
+                return prefix() + endpoint + " = " + value;
+            case ALARM:
+                return prefix() + "Alarm: " + endpoint + " = " + value;
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Format the timestamp of the event: the timestamp it was created with,
+     * if any, or else its {@link #time} in ISO 8601 format. A new string may
+     * be built on every call.
+     * @return the timestamp
+     */
+    public String getTimestamp() {
+        if (timestamp != null)
+            return timestamp;
+        return (kind == Kind.MESSAGE ? MESSAGE_FORMAT : DATA_FORMAT).print(time);
+    }
+
+    private String prefix() {
+        return source == null ? "" : source + ": ";
+    }
+}
@@ -0,0 +1,113 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.model;
+
+import org.joda.time.DateTime;
+
+/**
+ * Simple model for representing new vehicle data from the WVA.
+ *
+ * <p>The time of the data is kept as milliseconds since the epoch. A
+ * {@link DateTime} is only made when somebody asks for one, with
+ * {@link #getTimestamp()}, so that a VehicleData can be reused for sample
+ * after sample (see {@link #set(double, long)}) without allocating
+ * anything.</p>
+ */
+public class VehicleData {
+    /**
+     * Endpoint name for this data
+     */
+	public final String name;
+    /**
+     * Value associated with this data point
+     */
+	public double value;
+    /**
+     * Time of this data point, in milliseconds since the epoch
+     */
+	public long time;
+    /** Made from {@link #time} on demand; see {@link #getTimestamp()}. */
+	private DateTime timestamp;
+
+    /**
+     * Create a new piece of vehicle data
+     * @param name endpoint name
+     * @param value data value
+     * @param timestamp timestamp of data --- if null, the current time will be used
+     */
+	public VehicleData(String name, double value, DateTime timestamp) {
+        this(name, value, timestamp == null ? System.currentTimeMillis() : timestamp.getMillis());
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Create a new piece of vehicle data
+     * @param name endpoint name
+     * @param value data value
+     * @param time time of data, in milliseconds since the epoch
+     */
+	public VehicleData(String name, double value, long time) {
+        if (name == null)
+            throw new NullPointerException("Can't create VehicleData with null name!");
+        this.name = name;
+        this.value = value;
+        this.time = time;
+    }
+
+    /**
+     * Create a copy of a piece of vehicle data
+     * @param other vehicle data to copy
+     */
+	public VehicleData(VehicleData other) {
+        this(other.name, other.value, other.time);
+    }
+
+    /**
+     * Get the time of this data as a {@link DateTime}, for display or export.
+     * The DateTime is made the first time it is asked for, and kept until
+     * the time changes.
+     * @return timestamp of this data
+     */
+	public DateTime getTimestamp() {
+        DateTime ts = timestamp;
+        if (ts == null || ts.getMillis() != time) {
+            ts = new DateTime(time);
+            timestamp = ts;
+        }
+        return ts;
+    }
+
+    /**
+     * Replace the value and time of this data, as when reusing it for a new
+     * sample from the same endpoint
+     * @param value new value
+     * @param time new time, in milliseconds since the epoch
+     */
+	public void set(double value, long time) {
+        this.value = value;
+        this.time = time;
+    }
+
+    /**
+     * Override the value and timestamp of this vehicle data to be those of
+     * <b>newData</b>
+     * @param newData vehicle data whose values will be used to update this
+     * @throws Exception if the endpoint names don't match (and therefore we
+     * shouldn't try to update the data)
+     */
+	public void update(VehicleData newData) throws Exception {
+		if (this.name.equals(newData.name)) {
+			set(newData.value, newData.time);
+        }
+		else {
+			// If newData has a different name, updating this data
+			// would be a bad idea.
+			throw new Exception("Trying to update with different name! " + this.name + " vs. " + newData.name);
+		}
+	}
+}
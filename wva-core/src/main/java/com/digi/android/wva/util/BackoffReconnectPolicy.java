@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.util.Random;
+
+/**
+ * {@link ReconnectPolicy} with exponential backoff and jitter.
+ *
+ * <p>The first retry after a connection is lost comes quickly, since most
+ * drops are transient. Each further failure doubles the delay, up to a cap,
+ * so a device which has gone away is not hammered with connection attempts.
+ * Each delay is picked at random between half and all of its nominal value,
+ * which keeps several tablets from retrying in step, but never retries
+ * straight away. The backoff starts over once a connection has stayed up
+ * for a while.</p>
+ */
+public class BackoffReconnectPolicy implements ReconnectPolicy {
+    /** Default delay before the first retry, in milliseconds. */
+    public static final long DEFAULT_INITIAL_DELAY = 500;
+    /** Default longest delay between retries, in milliseconds. */
+    public static final long DEFAULT_MAX_DELAY = 60000;
+    /** Default time a connection must stay up to reset the backoff, in milliseconds. */
+    public static final long DEFAULT_STABLE_TIME = 60000;
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final long stableTime;
+    private final Random random;
+
+    private int failures;
+    private long connectedAt = -1;
+
+    /**
+     * Create a policy with the default delays
+     */
+    public BackoffReconnectPolicy() {
+        this(DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, DEFAULT_STABLE_TIME, new Random());
+    }
+
+    /**
+     * Create a policy
+     * @param initialDelay nominal delay before the first retry, in milliseconds
+     * @param maxDelay longest nominal delay between retries, in milliseconds
+     * @param stableTime time a connection must stay up for the backoff to
+     *                   start over, in milliseconds
+     * @param random source of jitter
+     */
+    public BackoffReconnectPolicy(long initialDelay, long maxDelay, long stableTime, Random random) {
+        if (initialDelay < 1 || maxDelay < initialDelay)
+            throw new IllegalArgumentException("Need 0 < initialDelay <= maxDelay");
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.stableTime = stableTime;
+        this.random = random;
+    }
+
+    @Override
+    public synchronized void onConnected(long now) {
+        connectedAt = now;
+    }
+
+    @Override
+    public synchronized long nextDelay(long now) {
+        if (connectedAt >= 0 && now - connectedAt >= stableTime)
+            failures = 0;
+        connectedAt = -1;
+
+        long delay = initialDelay;
+        for (int i = 0; i < failures && delay < maxDelay; i++)
+            delay *= 2;
+        delay = Math.min(delay, maxDelay);
+        failures++;
+
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half));
+    }
+
+    @Override
+    public synchronized void reset() {
+        failures = 0;
+        connectedAt = -1;
+    }
+
+    /**
+     * @return the number of retries since the backoff last started over
+     */
+    public synchronized int getFailureCount() {
+        return failures;
+    }
+}
@@ -0,0 +1,736 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Store-and-forward uploader which sends vehicle data samples to Device
+ * Cloud (or anything else accepting the same requests) in compressed
+ * batches, rather than with a request per sample.
+ *
+ * <p>{@link #offer(String, long, double)} puts a sample in a queue of
+ * primitive arrays and returns, from any thread. A background thread
+ * appends queued samples to the current batch file on disk. A batch is
+ * sealed once it holds {@link #setBatchLimits(int, long) enough samples},
+ * or once its first sample is old enough, and sealed batches are sent
+ * oldest first. Each is POSTed, gzip-compressed, as a list of Device Cloud
+ * DataPoints, and only deleted once the server has accepted it.</p>
+ *
+ * <p>Batches are files, so whatever had been written when the process died
+ * is picked up again, and sent, by the next uploader opened on the same
+ * directory. If sending fails, or the server asks to be left alone for a
+ * while (408, 429 or any 5xx response), the uploader waits as long as its
+ * {@link ReconnectPolicy} says before trying again; nothing is attempted
+ * while it has been told it is {@link #setOnline(boolean) offline}. Any
+ * other error response means the server will never take the batch, so it
+ * is thrown away, as is a batch whose file can't be read back. Once more
+ * than {@link #DEFAULT_MAX_BATCHES} batches are waiting, the oldest are
+ * thrown away too. If writing a batch fails, it is cut back to the samples
+ * already in its file and sealed; the rest are counted as dropped.</p>
+ */
+public class BatchUploader {
+    private static BatchUploader instance;
+
+    /** Default number of samples after which a batch is sealed. */
+    public static final int DEFAULT_MAX_BATCH_SAMPLES = 500;
+    /** Default age of a batch's first sample after which it is sealed, in milliseconds. */
+    public static final long DEFAULT_MAX_BATCH_AGE = 30000;
+    /** Most sealed batches kept waiting to be sent. */
+    public static final int DEFAULT_MAX_BATCHES = 200;
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final String PENDING_PREFIX = "pending-";
+    private static final String BATCH_PREFIX = "batch-";
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private final File directory;
+    private final ReconnectPolicy backoff;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Queue of samples waiting to be written. Guarded by queueLock.
+    private final Object queueLock = new Object();
+    private final String[] queueStreams = new String[QUEUE_CAPACITY];
+    private final long[] queueTimes = new long[QUEUE_CAPACITY];
+    private final double[] queueValues = new double[QUEUE_CAPACITY];
+    private int queueHead, queueSize;
+    private boolean writePending;
+
+    // Settings, read by the uploader thread.
+    private volatile URL url;
+    private final Map<String, String> headers = new LinkedHashMap<String, String>();
+    private volatile int maxBatchSamples = DEFAULT_MAX_BATCH_SAMPLES;
+    private volatile long maxBatchAge = DEFAULT_MAX_BATCH_AGE;
+    private volatile boolean online = true;
+
+    // Counts, for diagnostics.
+    private volatile long sent, droppedSamples, droppedBatches, failedAttempts;
+
+    // Uploader thread state.
+    private long nextBatch;
+    private File pendingFile;
+    private DataOutputStream pendingOut;
+    private int pendingCount;
+    private long pendingStarted;
+    /** Samples and bytes of the current batch known to be in its file. */
+    private int flushedCount, flushedBytes;
+    private ScheduledFuture<?> sealTask, retryTask;
+    /** Uptime, in milliseconds, before which nothing is sent. */
+    private long backoffUntil;
+    private boolean failed;
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writeQueued();
+            sealIfDue();
+            sendBatches();
+        }
+    };
+
+    private final Runnable sealRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sealTask = null;
+            writeQueued();
+            sealIfDue();
+            sendBatches();
+        }
+    };
+
+    private final Runnable retryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            retryTask = null;
+            sendBatches();
+        }
+    };
+
+    /**
+     * Initialize the singleton BatchUploader instance, keeping its batches
+     * in the given directory. It sends nothing until it is given a URL.
+     * @param directory directory to keep batches in
+     */
+    public static void initInstance(File directory) {
+        // Retry after a few seconds at first, backing off to every 15 minutes.
+        if (instance == null)
+            instance = new BatchUploader(directory, new BackoffReconnectPolicy(
+                    5000, 15 * 60 * 1000, 0, new Random()));
+    }
+
+    /**
+     * Fetch the singleton BatchUploader instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static BatchUploader getInstance() {
+        return instance;
+    }
+
+    /**
+     * Open an uploader, picking up any batches left in the directory by an
+     * earlier one
+     * @param directory directory to keep batches in
+     * @param backoff decides how long to wait after a failed attempt; told
+     *                to {@link ReconnectPolicy#reset() reset} after each
+     *                batch is sent
+     */
+    public BatchUploader(File directory, ReconnectPolicy backoff) {
+        this.directory = directory;
+        this.backoff = backoff;
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "WVA uploader");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                open();
+                sendBatches();
+            }
+        });
+    }
+
+    /**
+     * Set where batches are sent. Samples offered while there is no URL are
+     * ignored.
+     * @param url URL to POST batches to, or null to stop uploading
+     */
+    public void setUrl(URL url) {
+        this.url = url;
+        if (url != null)
+            run(retryRunnable);
+    }
+
+    /**
+     * @return true if there is a URL to send batches to
+     */
+    public boolean isEnabled() {
+        return url != null;
+    }
+
+    /**
+     * Set a header sent with every batch, such as {@code Authorization}
+     * @param name header name
+     * @param value header value, or null to stop sending the header
+     */
+    public void setHeader(String name, String value) {
+        synchronized (headers) {
+            if (value == null)
+                headers.remove(name);
+            else
+                headers.put(name, value);
+        }
+    }
+
+    /**
+     * Set when a batch is sealed and sent
+     * @param maxSamples number of samples after which a batch is sealed, at least 1
+     * @param maxAgeMillis age of a batch's first sample after which it is sealed
+     */
+    public void setBatchLimits(int maxSamples, long maxAgeMillis) {
+        if (maxSamples < 1)
+            throw new IllegalArgumentException("Batches must hold at least one sample");
+        maxBatchSamples = maxSamples;
+        maxBatchAge = Math.max(0, maxAgeMillis);
+    }
+
+    /**
+     * Say whether the network is available. Nothing is sent while offline;
+     * coming back online starts the backoff over and sends straight away.
+     * @param online true if the network is available
+     */
+    public void setOnline(boolean online) {
+        boolean cameBack = online && !this.online;
+        this.online = online;
+        if (cameBack) {
+            run(new Runnable() {
+                @Override
+                public void run() {
+                    backoff.reset();
+                    backoffUntil = 0;
+                    if (retryTask != null) {
+                        retryTask.cancel(false);
+                        retryTask = null;
+                    }
+                    sendBatches();
+                }
+            });
+        }
+    }
+
+    /**
+     * Queue a sample to be uploaded. Never blocks on the disk or network,
+     * and may be called from any thread.
+     * @param stream name of the data stream the sample belongs to
+     * @param time time of the sample, in milliseconds since the epoch
+     * @param value value of the sample
+     * @return true if the sample was queued; false if uploading is not
+     * enabled, or the queue was full and the sample was dropped
+     */
+    public boolean offer(String stream, long time, double value) {
+        if (url == null)
+            return false;
+        synchronized (queueLock) {
+            if (queueSize == QUEUE_CAPACITY) {
+                droppedSamples++;
+                return false;
+            }
+            int i = (queueHead + queueSize) % QUEUE_CAPACITY;
+            queueStreams[i] = stream;
+            queueTimes[i] = time;
+            queueValues[i] = value;
+            queueSize++;
+            if (writePending)
+                return true;
+            writePending = true;
+        }
+        run(writeRunnable);
+        return true;
+    }
+
+    /**
+     * Write out everything queued, seal the current batch whatever its size
+     * and age, and try to send every batch, unless backing off or offline.
+     * Waits until that is done; not to be called on the main thread.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void flush() throws InterruptedException {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    writeQueued();
+                    seal();
+                    sendBatches();
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Write out anything still queued and stop the uploader thread, waiting
+     * for it to finish. The current batch is left on disk, to be sealed by
+     * the next uploader opened on the same directory.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        if (!run(new Runnable() {
+            @Override
+            public void run() {
+                writeQueued();
+                closeQuietly(pendingOut);
+                pendingOut = null;
+                if (sealTask != null)
+                    sealTask.cancel(false);
+                if (retryTask != null)
+                    retryTask.cancel(false);
+            }
+        }))
+            return;
+        executor.shutdown();
+        executor.awaitTermination(CONNECT_TIMEOUT + READ_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of sealed batches waiting to be sent
+     */
+    public int getWaitingBatchCount() {
+        File[] batches = listBatches();
+        return batches == null ? 0 : batches.length;
+    }
+
+    /** @return number of samples sent */
+    public long getSentCount() {
+        return sent;
+    }
+
+    /** @return number of samples dropped because the queue was full, or they couldn't be written */
+    public long getDroppedSampleCount() {
+        synchronized (queueLock) {
+            return droppedSamples;
+        }
+    }
+
+    /**
+     * @return number of batches thrown away, because they were refused,
+     * couldn't be read back, or too many were waiting
+     */
+    public long getDroppedBatchCount() {
+        return droppedBatches;
+    }
+
+    /** @return number of attempts to send a batch which failed and will be retried */
+    public long getFailedAttemptCount() {
+        return failedAttempts;
+    }
+
+    /** Seal batches left by an earlier uploader. Uploader thread only. */
+    private void open() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            failed = true;
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            long n = number(file);
+            if (n >= nextBatch)
+                nextBatch = n + 1;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(PENDING_PREFIX)) {
+                long n = number(file);
+                if (n < 0 || !file.renameTo(new File(directory, BATCH_PREFIX + n)))
+                    file.delete();
+            }
+        }
+    }
+
+    /** Move queued samples into the current batch. Uploader thread only. */
+    private void writeQueued() {
+        while (true) {
+            String stream;
+            long time;
+            double value;
+            synchronized (queueLock) {
+                if (queueSize == 0) {
+                    writePending = false;
+                    break;
+                }
+                stream = queueStreams[queueHead];
+                time = queueTimes[queueHead];
+                value = queueValues[queueHead];
+                queueStreams[queueHead] = null;
+                queueHead = (queueHead + 1) % QUEUE_CAPACITY;
+                queueSize--;
+            }
+            if (failed) {
+                countDropped(1);
+                continue;
+            }
+            try {
+                if (pendingOut == null)
+                    startBatch();
+                pendingOut.writeUTF(stream);
+                pendingOut.writeLong(time);
+                pendingOut.writeDouble(value);
+            } catch (IOException e) {
+                countDropped(1);
+                if (pendingOut != null)
+                    cutShort();
+                continue;
+            }
+            pendingCount++;
+            if (pendingCount >= maxBatchSamples)
+                seal();
+        }
+
+        // Hand what has been written to the OS, so it outlives the process.
+        flushBatch();
+    }
+
+    /**
+     * Flush the current batch, if any, to its file
+     * @return false if that failed, and the batch was {@link #cutShort() cut short}
+     */
+    private boolean flushBatch() {
+        if (pendingOut == null)
+            return true;
+        try {
+            pendingOut.flush();
+        } catch (IOException e) {
+            cutShort();
+            return false;
+        }
+        flushedCount = pendingCount;
+        flushedBytes = pendingOut.size();
+        return true;
+    }
+
+    /**
+     * After failing to write the current batch, cut its file back to the
+     * samples last flushed, count the rest as dropped, and seal what is
+     * left, so that the next sample starts a new batch.
+     */
+    private void cutShort() {
+        closeQuietly(pendingOut);
+        pendingOut = null;
+        countDropped(pendingCount - flushedCount);
+        pendingCount = flushedCount;
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(pendingFile, "rw");
+            file.setLength(flushedBytes);
+        } catch (IOException e) {
+            // Reading the batch stops at a sample cut short anyway.
+        } finally {
+            closeQuietly(file);
+        }
+        retire();
+    }
+
+    private void countDropped(int samples) {
+        synchronized (queueLock) {
+            droppedSamples += samples;
+        }
+    }
+
+    private void startBatch() throws IOException {
+        pendingFile = new File(directory, PENDING_PREFIX + nextBatch++);
+        pendingOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pendingFile)));
+        pendingCount = 0;
+        flushedCount = 0;
+        flushedBytes = 0;
+        pendingStarted = now();
+        if (sealTask != null)
+            sealTask.cancel(false);
+        // Once closed, the batch is left for the next uploader to seal.
+        sealTask = executor.isShutdown() ? null
+                : executor.schedule(sealRunnable, maxBatchAge, TimeUnit.MILLISECONDS);
+    }
+
+    private void sealIfDue() {
+        if (pendingOut != null && (pendingCount >= maxBatchSamples || now() - pendingStarted >= maxBatchAge))
+            seal();
+    }
+
+    /** Close the current batch, if any, and make it ready to send. */
+    private void seal() {
+        if (pendingOut == null || !flushBatch()) {
+            // Nothing to seal, or the batch was cut short and sealed already.
+            return;
+        }
+        closeQuietly(pendingOut);
+        pendingOut = null;
+        retire();
+    }
+
+    /** Make the closed current batch ready to send. */
+    private void retire() {
+        if (sealTask != null) {
+            sealTask.cancel(false);
+            sealTask = null;
+        }
+        String n = pendingFile.getName().substring(PENDING_PREFIX.length());
+        if (pendingCount == 0 || !pendingFile.renameTo(new File(directory, BATCH_PREFIX + n))) {
+            pendingFile.delete();
+            countDropped(pendingCount);
+        }
+        pendingFile = null;
+        pendingCount = 0;
+
+        File[] batches = listBatches();
+        for (int i = 0; batches != null && i < batches.length - DEFAULT_MAX_BATCHES; i++) {
+            if (batches[i].delete())
+                droppedBatches++;
+        }
+    }
+
+    /** Send sealed batches, oldest first, until one fails. Uploader thread only. */
+    private void sendBatches() {
+        URL target = url;
+        if (target == null || !online || now() < backoffUntil || retryTask != null)
+            return;
+        File[] batches = listBatches();
+        if (batches == null)
+            return;
+
+        for (File batch : batches) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int count;
+            try {
+                count = writeBody(batch, body);
+            } catch (IOException e) {
+                // The batch can't be read back, and never will be; don't
+                // let it hold up the ones after it.
+                batch.delete();
+                droppedBatches++;
+                continue;
+            }
+
+            int status;
+            try {
+                status = count == 0 ? HttpURLConnection.HTTP_OK : post(target, body);
+            } catch (IOException e) {
+                status = -1;
+            }
+
+            if (status >= 200 && status < 300) {
+                batch.delete();
+                sent += count;
+                backoff.reset();
+            } else if (status == -1 || status == 408 || status == 429 || status >= 500) {
+                failedAttempts++;
+                long delay = backoff.nextDelay(now());
+                backoffUntil = now() + delay;
+                retryTask = executor.schedule(retryRunnable, delay, TimeUnit.MILLISECONDS);
+                return;
+            } else {
+                // The server will never accept this batch.
+                batch.delete();
+                droppedBatches++;
+            }
+        }
+    }
+
+    /**
+     * Write a batch out as a gzipped list of DataPoints
+     * @return the number of samples written
+     */
+    private static int writeBody(File batch, OutputStream out) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(batch)));
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        Writer writer = new OutputStreamWriter(gzip, "UTF-8");
+        int count = 0;
+        try {
+            writer.write("<list>");
+            while (true) {
+                String stream;
+                long time;
+                double value;
+                try {
+                    stream = in.readUTF();
+                    time = in.readLong();
+                    value = in.readDouble();
+                } catch (EOFException e) {
+                    // Either the end of the batch, or a sample cut short
+                    // when the process died; either way, stop here.
+                    break;
+                }
+                writer.write("<DataPoint><streamId>");
+                writeEscaped(writer, stream);
+                writer.write("</streamId><data>");
+                writer.write(Double.toString(value));
+                writer.write("</data><timestamp>");
+                writer.write(Long.toString(time));
+                writer.write("</timestamp></DataPoint>");
+                count++;
+            }
+            writer.write("</list>");
+        } finally {
+            closeQuietly(in);
+            writer.close();
+        }
+        return count;
+    }
+
+    private static void writeEscaped(Writer writer, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<': writer.write("&lt;"); break;
+                case '>': writer.write("&gt;"); break;
+                case '&': writer.write("&amp;"); break;
+                default: writer.write(c);
+            }
+        }
+    }
+
+    /** POST a compressed body, returning the response code. */
+    private int post(URL target, ByteArrayOutputStream body) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) target.openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(READ_TIMEOUT);
+            conn.setDoOutput(true);
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+            conn.setRequestProperty("Content-Encoding", "gzip");
+            synchronized (headers) {
+                for (Map.Entry<String, String> header : headers.entrySet())
+                    conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+            conn.setFixedLengthStreamingMode(body.size());
+            OutputStream out = conn.getOutputStream();
+            try {
+                body.writeTo(out);
+            } finally {
+                out.close();
+            }
+
+            int status = conn.getResponseCode();
+            // Read the response out, so the connection can be reused.
+            InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            if (in != null) {
+                byte[] skip = new byte[1024];
+                try {
+                    while (in.read(skip) != -1) {
+                        // Nothing to do with it.
+                    }
+                } finally {
+                    closeQuietly(in);
+                }
+            }
+            return status;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /** @return sealed batches, oldest first, or null if the directory can't be read */
+    private File[] listBatches() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return null;
+        int n = 0;
+        for (File file : files) {
+            if (file.getName().startsWith(BATCH_PREFIX) && number(file) >= 0)
+                files[n++] = file;
+        }
+        File[] batches = Arrays.copyOf(files, n);
+        Arrays.sort(batches, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long x = number(a), y = number(b);
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        return batches;
+    }
+
+    /** @return number of a batch file, or -1 if the file is not a batch */
+    private static long number(File file) {
+        String name = file.getName();
+        String digits;
+        if (name.startsWith(BATCH_PREFIX))
+            digits = name.substring(BATCH_PREFIX.length());
+        else if (name.startsWith(PENDING_PREFIX))
+            digits = name.substring(PENDING_PREFIX.length());
+        else
+            return -1;
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Hand a task to the uploader thread
+     * @return false if the uploader has been closed
+     */
+    private boolean run(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null)
+            return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            // Nothing more to do.
+        }
+    }
+}
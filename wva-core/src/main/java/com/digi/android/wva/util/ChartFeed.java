@@ -0,0 +1,330 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffer of chart data points between the code receiving vehicle data and
+ * the app's {@code ChartFragment}.
+ *
+ * <p>Points are kept per endpoint, as parallel arrays of timestamps and
+ * values rather than as objects, and the consumer takes every waiting point
+ * for an endpoint in one {@link #drain(String, Points)} call. Nothing is lost
+ * unless the number of waiting points exceeds the feed's budget (see
+ * {@link #setBudget(int)}); past that, the oldest waiting points of the
+ * endpoint being added to are dropped, and counted in
+ * {@link #getDroppedCount()}.</p>
+ *
+ * <p>A feed starts out disabled, and ignores new points until
+ * {@link #setEnabled(boolean) enabled}, so that nothing piles up while there
+ * is no chart to read it. Likewise, it can be limited to the endpoints
+ * being charted with {@link #setEndpoints(Collection)}.</p>
+ *
+ * <p>Like {@link Mailbox}, a {@link Mailbox.Waker} can be registered to be
+ * called once when points become available.</p>
+ */
+public class ChartFeed {
+    /** Default budget: 16 bytes per point, so about 1 MB of points. */
+    public static final int DEFAULT_BUDGET = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * A run of points for one endpoint, oldest first. Instances are meant
+     * to be reused from one drain to the next.
+     */
+    public static final class Points {
+        long[] times = new long[INITIAL_CAPACITY];
+        double[] values = new double[INITIAL_CAPACITY];
+        int size;
+
+        /**
+         * @return the number of points
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param i index of the point, 0 being the oldest
+         * @return timestamp of the point, in milliseconds since the epoch
+         */
+        public long getTime(int i) {
+            return times[i];
+        }
+
+        /**
+         * @param i index of the point, 0 being the oldest
+         * @return value of the point
+         */
+        public double getValue(int i) {
+            return values[i];
+        }
+
+        void ensureCapacity(int capacity) {
+            if (times.length >= capacity)
+                return;
+            int newCapacity = Math.max(capacity, times.length * 2);
+            long[] t = new long[newCapacity];
+            double[] v = new double[newCapacity];
+            System.arraycopy(times, 0, t, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            times = t;
+            values = v;
+        }
+    }
+
+    /**
+     * Waiting points for one endpoint, kept as a ring which grows on demand.
+     */
+    private static final class Series {
+        long[] times = new long[INITIAL_CAPACITY];
+        double[] values = new double[INITIAL_CAPACITY];
+        /** Index of the oldest point. */
+        int start;
+        int size;
+
+        void add(long time, double value) {
+            if (size == times.length)
+                grow();
+            int i = (start + size) % times.length;
+            times[i] = time;
+            values[i] = value;
+            size++;
+        }
+
+        void dropOldest() {
+            start = (start + 1) % times.length;
+            size--;
+        }
+
+        private void grow() {
+            int capacity = times.length * 2;
+            long[] t = new long[capacity];
+            double[] v = new double[capacity];
+            for (int i = 0; i < size; i++) {
+                int from = (start + i) % times.length;
+                t[i] = times[from];
+                v[i] = values[from];
+            }
+            times = t;
+            values = v;
+            start = 0;
+        }
+
+        /** Move every point into out, oldest first, and empty the series. */
+        void moveTo(Points out) {
+            out.ensureCapacity(size);
+            int first = Math.min(size, times.length - start);
+            System.arraycopy(times, start, out.times, 0, first);
+            System.arraycopy(values, start, out.values, 0, first);
+            System.arraycopy(times, 0, out.times, first, size - first);
+            System.arraycopy(values, 0, out.values, first, size - first);
+            out.size = size;
+            start = 0;
+            size = 0;
+        }
+    }
+
+    private final Map<String, Series> series = new HashMap<String, Series>();
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+    private volatile Mailbox.Waker waker;
+    private volatile boolean enabled;
+    /** Endpoints to accept points for, or null for every endpoint. */
+    private volatile Set<String> endpoints;
+    /** Total number of waiting points, across all endpoints. Guarded by this. */
+    private int total;
+    private int budget;
+    private long dropped;
+
+    /**
+     * Create a feed with the {@link #DEFAULT_BUDGET default budget}
+     */
+    public ChartFeed() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Create a feed
+     * @param budget maximum number of points to hold, across all endpoints
+     */
+    public ChartFeed(int budget) {
+        setBudget(budget);
+    }
+
+    /**
+     * Set the maximum number of points to hold, across all endpoints. Each
+     * point takes up 16 bytes.
+     * @param budget maximum number of waiting points, at least 1
+     */
+    public synchronized void setBudget(int budget) {
+        if (budget < 1)
+            throw new IllegalArgumentException("Budget must be at least 1");
+        this.budget = budget;
+    }
+
+    /**
+     * @return the maximum number of points held, across all endpoints
+     */
+    public synchronized int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Start or stop accepting new points. Points already waiting are kept.
+     * @param enabled true to accept new points, false to ignore them
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return true if the feed is accepting new points
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Only accept points for the given endpoints. Points already waiting
+     * for other endpoints are discarded.
+     * @param endpoints endpoints to accept points for, or null to accept
+     *                  points for every endpoint
+     */
+    public void setEndpoints(Collection<String> endpoints) {
+        Set<String> accepted = endpoints == null ? null : new HashSet<String>(endpoints);
+        synchronized (this) {
+            this.endpoints = accepted;
+            if (accepted == null)
+                return;
+            Iterator<Map.Entry<String, Series>> it = series.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Series> e = it.next();
+                if (!accepted.contains(e.getKey())) {
+                    total -= e.getValue().size;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a point. May be called from any thread.
+     * @param endpoint endpoint the point belongs to
+     * @param time timestamp of the point, in milliseconds since the epoch
+     * @param value value of the point
+     */
+    public void add(String endpoint, long time, double value) {
+        if (!enabled)
+            return;
+        Set<String> accepted = endpoints;
+        if (accepted != null && !accepted.contains(endpoint))
+            return;
+        synchronized (this) {
+            Series s = series.get(endpoint);
+            if (s == null) {
+                s = new Series();
+                series.put(endpoint, s);
+            }
+            if (total >= budget) {
+                // Make room by dropping this endpoint's oldest point, or if
+                // it has none, the oldest point of the busiest endpoint.
+                Series victim = s;
+                if (victim.size == 0) {
+                    for (Series other : series.values()) {
+                        if (other.size > victim.size)
+                            victim = other;
+                    }
+                }
+                victim.dropOldest();
+                total--;
+                dropped++;
+            }
+            s.add(time, value);
+            total++;
+        }
+
+        Mailbox.Waker w = waker;
+        if (w != null && wakePending.compareAndSet(false, true))
+            w.wake();
+    }
+
+    /**
+     * Take every waiting point for an endpoint
+     * @param endpoint endpoint whose points to take
+     * @param into points object to fill; its previous contents are replaced
+     * @return the number of points taken
+     */
+    public int drain(String endpoint, Points into) {
+        wakePending.set(false);
+        synchronized (this) {
+            Series s = series.get(endpoint);
+            if (s == null) {
+                into.size = 0;
+                return 0;
+            }
+            total -= s.size;
+            s.moveTo(into);
+            return into.size;
+        }
+    }
+
+    /**
+     * @return the names of endpoints which have points waiting
+     */
+    public synchronized List<String> getPendingEndpoints() {
+        List<String> pending = new ArrayList<String>();
+        for (Map.Entry<String, Series> e : series.entrySet()) {
+            if (e.getValue().size > 0)
+                pending.add(e.getKey());
+        }
+        return pending;
+    }
+
+    /**
+     * Set the consumer's waker, replacing any previous one. If there are
+     * points waiting already, the new waker is called right away.
+     * @param waker waker to call when points arrive, or null to stop
+     *              waking anybody
+     */
+    public void setWaker(Mailbox.Waker waker) {
+        this.waker = waker;
+        wakePending.set(false);
+        boolean waiting;
+        synchronized (this) {
+            waiting = total > 0;
+        }
+        if (waker != null && waiting && wakePending.compareAndSet(false, true))
+            waker.wake();
+    }
+
+    /**
+     * @return the number of points dropped because the budget was exceeded,
+     * since the feed was created or last cleared
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Discard every waiting point and reset the dropped count
+     */
+    public synchronized void clear() {
+        series.clear();
+        total = 0;
+        dropped = 0;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compressed, in-memory history of one endpoint's values, using the
+ * encoding of Facebook's Gorilla time series database (Pelkonen et al.,
+ * "Gorilla: A Fast, Scalable, In-Memory Time Series Database", VLDB 2015).
+ *
+ * <p>Points are packed into a bit stream as they are
+ * {@link #append(long, double) appended}. Each timestamp is stored as the
+ * difference between its delta from the previous timestamp and the delta
+ * before that, which is zero (one bit) for regularly spaced points and
+ * small for jittery ones. Each value is XORed with the previous value;
+ * an unchanged value takes one bit, and otherwise only the bits between
+ * the leading and trailing zeros of the XOR are stored, reusing the
+ * previous point's window when they fit in it. A slowly changing signal
+ * sampled at a steady rate comes to a couple of bytes per point, against
+ * the 80 or so of a {@link com.digi.android.wva.model.VehicleData}.</p>
+ *
+ * <p>The stream is split into blocks of {@link #BLOCK_BYTES} bytes, each
+ * starting with a full timestamp and value, so that old points can be
+ * dropped a block at a time with {@link #evictBefore(long)}. Points are
+ * read back in order with a {@link Cursor}.</p>
+ *
+ * <p>Appending and evicting should be done from one thread at a time;
+ * cursors may be used from any thread, and see the points appended before
+ * they were {@link #cursor(Cursor) positioned}.</p>
+ */
+public class CompressedHistory {
+    /** Size of a full block, in bytes. */
+    public static final int BLOCK_BYTES = 4096;
+    private static final int BLOCK_WORDS = BLOCK_BYTES / 8;
+    /** Most bits one point can take: a 64-bit timestamp and a 64-bit value, plus control bits. */
+    private static final int MAX_POINT_BITS = 4 + 64 + 2 + 5 + 6 + 64;
+
+    /** A run of points sharing one bit stream. */
+    private static final class Block {
+        long[] words = new long[BLOCK_WORDS];
+        /** Number of bits written. */
+        int bits;
+        /** Number of points written. */
+        int count;
+        long firstTime, lastTime;
+
+        // Encoder state.
+        long prevDelta;
+        long prevValueBits;
+        int prevLeading = -1, prevTrailing;
+
+        void write(long value, int n) {
+            // n is 1..64; bits go in most significant first.
+            int word = bits >>> 6;
+            int offset = bits & 63;
+            int free = 64 - offset;
+            if (n <= free) {
+                words[word] |= n == 64 ? value : (value & ((1L << n) - 1)) << (free - n);
+            } else {
+                int rest = n - free;
+                words[word] |= (value >>> rest) & ((1L << free) - 1);
+                words[word + 1] |= (value & ((1L << rest) - 1)) << (64 - rest);
+            }
+            bits += n;
+        }
+
+        boolean hasRoom() {
+            return bits + MAX_POINT_BITS <= words.length * 64;
+        }
+
+        /** Drop the unused part of the words array, once the block is full. */
+        void trim() {
+            words = Arrays.copyOf(words, (bits + 63) >>> 6);
+        }
+    }
+
+    /**
+     * Reads the points of a history in order. Cursors are meant to be
+     * reused; see {@link CompressedHistory#cursor(Cursor)}.
+     */
+    public static final class Cursor {
+        // Each block's words and point count, as of when the cursor was
+        // positioned. Points appended later go after them, so the bits
+        // read here never change.
+        private long[][] blockWords = new long[0][];
+        private int[] counts = new int[0];
+        private int blockCount;
+        private int blockIndex;
+        private long[] words;
+        private int pointsLeft;
+        private int bit;
+
+        private long time, delta;
+        private long valueBits;
+        private int leading, trailing;
+
+        void reset(ArrayList<Block> from) {
+            blockCount = from.size();
+            if (blockWords.length < blockCount) {
+                blockWords = new long[blockCount][];
+                counts = new int[blockCount];
+            }
+            for (int i = 0; i < blockCount; i++) {
+                Block b = from.get(i);
+                blockWords[i] = b.words;
+                counts[i] = b.count;
+            }
+            for (int i = blockCount; i < blockWords.length; i++)
+                blockWords[i] = null;
+            blockIndex = -1;
+            words = null;
+            pointsLeft = 0;
+        }
+
+        /**
+         * Move to the next point
+         * @return true if there is a next point, false if all points have
+         * been read
+         */
+        public boolean next() {
+            while (pointsLeft == 0) {
+                if (++blockIndex >= blockCount) {
+                    words = null;
+                    return false;
+                }
+                words = blockWords[blockIndex];
+                pointsLeft = counts[blockIndex];
+                bit = 0;
+                if (pointsLeft > 0) {
+                    time = read(64);
+                    valueBits = read(64);
+                    delta = 0;
+                    leading = -1;
+                    pointsLeft--;
+                    return true;
+                }
+            }
+
+            // Timestamp: delta of delta.
+            long dod;
+            if (read(1) == 0)
+                dod = 0;
+            else if (read(1) == 0)
+                dod = signExtend(read(7), 7);
+            else if (read(1) == 0)
+                dod = signExtend(read(9), 9);
+            else if (read(1) == 0)
+                dod = signExtend(read(12), 12);
+            else
+                dod = read(64);
+            delta += dod;
+            time += delta;
+
+            // Value: XOR with the previous value.
+            if (read(1) != 0) {
+                if (read(1) != 0) {
+                    leading = (int) read(5);
+                    int length = (int) read(6);
+                    if (length == 0)
+                        length = 64;
+                    trailing = 64 - leading - length;
+                }
+                int length = 64 - leading - trailing;
+                valueBits ^= read(length) << trailing;
+            }
+            pointsLeft--;
+            return true;
+        }
+
+        /**
+         * @return timestamp of the current point, in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return value of the current point
+         */
+        public double getValue() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        private long read(int n) {
+            int word = bit >>> 6;
+            int offset = bit & 63;
+            int avail = 64 - offset;
+            long value;
+            if (n <= avail) {
+                value = words[word] >>> (avail - n);
+            } else {
+                int rest = n - avail;
+                value = (words[word] << rest) | (words[word + 1] >>> (64 - rest));
+            }
+            bit += n;
+            return n == 64 ? value : value & ((1L << n) - 1);
+        }
+
+        private static long signExtend(long value, int n) {
+            return (value << (64 - n)) >> (64 - n);
+        }
+    }
+
+    private final ArrayList<Block> blocks = new ArrayList<Block>();
+    private Block current;
+    private int size;
+
+    /**
+     * Add a point to the end of the history. Points should be appended in
+     * time order; a point older than the last one is stored as it is, but
+     * may be dropped early by {@link #evictBefore(long)}.
+     * @param time timestamp of the point, in milliseconds since the epoch
+     * @param value value of the point
+     */
+    public synchronized void append(long time, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        Block b = current;
+        if (b == null || !b.hasRoom()) {
+            if (b != null)
+                b.trim();
+            b = new Block();
+            b.write(time, 64);
+            b.write(valueBits, 64);
+            b.firstTime = time;
+            b.lastTime = time;
+            b.prevValueBits = valueBits;
+            blocks.add(b);
+            current = b;
+            // The point becomes visible to cursors once count includes it.
+            b.count = 1;
+            size++;
+            return;
+        }
+
+        long delta = time - b.lastTime;
+        long dod = delta - b.prevDelta;
+        if (dod == 0) {
+            b.write(0, 1);
+        } else if (dod >= -64 && dod <= 63) {
+            b.write(0x2, 2);
+            b.write(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            b.write(0x6, 3);
+            b.write(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            b.write(0xE, 4);
+            b.write(dod, 12);
+        } else {
+            b.write(0xF, 4);
+            b.write(dod, 64);
+        }
+        b.prevDelta = delta;
+        b.lastTime = time;
+
+        long xor = valueBits ^ b.prevValueBits;
+        if (xor == 0) {
+            b.write(0, 1);
+        } else {
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (b.prevLeading >= 0 && leading >= b.prevLeading && trailing >= b.prevTrailing) {
+                // Fits in the previous window.
+                b.write(0x2, 2);
+                int length = 64 - b.prevLeading - b.prevTrailing;
+                b.write(xor >>> b.prevTrailing, length);
+            } else {
+                int length = 64 - leading - trailing;
+                b.write(0x3, 2);
+                b.write(leading, 5);
+                // 64 does not fit in 6 bits; it is written as 0.
+                b.write(length & 63, 6);
+                b.write(xor >>> trailing, length);
+                b.prevLeading = leading;
+                b.prevTrailing = trailing;
+            }
+        }
+        b.prevValueBits = valueBits;
+        b.count++;
+        size++;
+    }
+
+    /**
+     * Drop every block of points which ends before the given time. Points
+     * are dropped a block at a time, so some points older than the given
+     * time may be kept.
+     * @param time earliest time to keep
+     */
+    public synchronized void evictBefore(long time) {
+        int n = 0;
+        while (n < blocks.size() && blocks.get(n).lastTime < time && blocks.get(n) != current) {
+            size -= blocks.get(n).count;
+            n++;
+        }
+        if (n > 0)
+            blocks.subList(0, n).clear();
+    }
+
+    /**
+     * Position a cursor before the first point of this history
+     * @param cursor cursor to reuse, or null to create a new one
+     * @return the cursor
+     */
+    public synchronized Cursor cursor(Cursor cursor) {
+        if (cursor == null)
+            cursor = new Cursor();
+        cursor.reset(blocks);
+        return cursor;
+    }
+
+    /**
+     * @return the number of points in the history
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return timestamp of the oldest point kept, or 0 if there are none
+     */
+    public synchronized long getFirstTime() {
+        return blocks.isEmpty() ? 0 : blocks.get(0).firstTime;
+    }
+
+    /**
+     * @return timestamp of the newest point, or 0 if there are none
+     */
+    public synchronized long getLastTime() {
+        return current == null ? 0 : current.lastTime;
+    }
+
+    /**
+     * @return the number of bytes used by the encoded points
+     */
+    public synchronized long getByteCount() {
+        long bytes = 0;
+        for (Block b : blocks) {
+            bytes += b.words.length * 8L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Remove every point from the history
+     */
+    public synchronized void clear() {
+        blocks.clear();
+        current = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.model.LogEvent;
+
+/**
+ * Somewhere to record {@link LogEvent}s, such as the app's event log.
+ */
+public interface EventLog {
+    /**
+     * Record an event
+     * @param event the event
+     */
+    void add(LogEvent event);
+}
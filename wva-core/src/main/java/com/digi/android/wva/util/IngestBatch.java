@@ -0,0 +1,147 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.model.VehicleData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of processing some number of vehicle data events, as handed from
+ * the thread which processes them to the main thread: the newest value of
+ * each endpoint, the log events, and when each event was posted.
+ *
+ * <p>A batch is filled, handed over, applied, {@link #clear() cleared} and
+ * filled again. The newest values are kept in a {@link LatestValues}, and
+ * data log events are taken from the batch's own {@link LogEventPool}, which
+ * the log hands its dropped events back to while the batch is applied. Once
+ * every endpoint has been seen and the log is full, filling a batch and
+ * applying it allocate nothing.</p>
+ *
+ * <p>Not thread safe: the batch belongs to whichever thread it has been
+ * handed to.</p>
+ */
+public class IngestBatch {
+    private final LatestValues latest = new LatestValues();
+    /** Log events, oldest first. */
+    private final ArrayList<LogEvent> logEvents = new ArrayList<LogEvent>();
+    private final LogEventPool spareEvents = new LogEventPool();
+    /** When each event in the batch was posted, in uptime milliseconds. */
+    private long[] postedAt = new long[64];
+    private int posted;
+
+    /**
+     * Record a sample, replacing any earlier one from the same endpoint
+     * @param endpoint endpoint name
+     * @param value value of the sample
+     * @param time time of the sample, in milliseconds since the epoch
+     */
+    public void put(String endpoint, double value, long time) {
+        latest.put(endpoint, value, time);
+    }
+
+    /**
+     * Add a data event to the log events, reusing a spare one if there is
+     * any
+     * @param endpoint endpoint the data is for
+     * @param value new value
+     * @param time time of the data, in milliseconds since the epoch
+     */
+    public void logData(String endpoint, double value, long time) {
+        logEvents.add(spareEvents.data(endpoint, value, time));
+    }
+
+    /**
+     * Add any other event, such as an alarm, to the log events
+     * @param event the event
+     */
+    public void log(LogEvent event) {
+        logEvents.add(event);
+    }
+
+    /**
+     * Record when an event in the batch was posted
+     * @param time posting time, in uptime milliseconds
+     */
+    public void addPosted(long time) {
+        if (posted == postedAt.length) {
+            long[] grown = new long[posted * 2];
+            System.arraycopy(postedAt, 0, grown, 0, posted);
+            postedAt = grown;
+        }
+        postedAt[posted++] = time;
+    }
+
+    /**
+     * @return true if there is neither data nor log events in the batch
+     */
+    public boolean isEmpty() {
+        return latest.isEmpty() && logEvents.isEmpty();
+    }
+
+    /**
+     * @return the newest data for each endpoint in this batch, in order of
+     * first arrival. The records are reused once the batch is cleared.
+     */
+    public List<VehicleData> getLatest() {
+        return latest.getChanged();
+    }
+
+    /**
+     * @return the log events in this batch, oldest first
+     */
+    public List<LogEvent> getLogEvents() {
+        return logEvents;
+    }
+
+    /**
+     * @return where the log should hand back the events it drops while
+     * this batch is applied, to be reused when the batch is filled again
+     */
+    public LogEventPool getSpareEvents() {
+        return spareEvents;
+    }
+
+    /**
+     * @return the number of events posted
+     */
+    public int getPostedCount() {
+        return posted;
+    }
+
+    /**
+     * @param index index of an event, less than {@link #getPostedCount()}
+     * @return when that event was posted, in uptime milliseconds
+     */
+    public long getPostedAt(int index) {
+        return postedAt[index];
+    }
+
+    /**
+     * Apply the newest data to a list, adding a copy of the record for any
+     * endpoint it has no row for at the end
+     * @param list the list
+     */
+    public void mergeInto(VehicleDataList list) {
+        List<VehicleData> changed = latest.getChanged();
+        for (int i = 0; i < changed.size(); i++) {
+            list.merge(changed.get(i), list.getList().size());
+        }
+    }
+
+    /**
+     * Empty the batch, keeping its records and spare events for reuse
+     */
+    public void clear() {
+        latest.clear();
+        logEvents.clear();
+        posted = 0;
+    }
+}
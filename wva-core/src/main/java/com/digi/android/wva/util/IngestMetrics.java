@@ -0,0 +1,256 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counters and timings of the vehicle data pipeline, for diagnostics.
+ *
+ * <p>To use, call {@link #getInstance()} for a handle to the static instance
+ * of the class. The app records each event as it arrives, the time from
+ * each event's arrival to its being applied to the adapters, each adapter
+ * notification and each subscription given up on. Counts are kept in
+ * {@link StripedCounter}s, so recording costs little, from any thread.</p>
+ *
+ * <p>{@link #snapshot()} takes a copy of everything at once. Rates are
+ * worked out between two snapshots, such as those taken by a screen which
+ * refreshes every second.</p>
+ */
+public class IngestMetrics {
+    /** Most subscription failures remembered by endpoint name. */
+    public static final int MAX_FAILED_KEPT = 50;
+
+    private static IngestMetrics instance;
+
+    private final StripedCounter subscriptionEvents = new StripedCounter();
+    private final StripedCounter alarmEvents = new StripedCounter();
+    private final ConcurrentHashMap<String, StripedCounter> endpointEvents =
+            new ConcurrentHashMap<String, StripedCounter>();
+    private final StripedCounter notifications = new StripedCounter();
+    private final StripedCounter subscriptionFailures = new StripedCounter();
+    private final LatencyHistogram publishLatency = new LatencyHistogram();
+    /** Endpoints most recently given up on, oldest first. Guarded by itself. */
+    private final List<String> failedEndpoints = new ArrayList<String>();
+    private volatile long since = now();
+
+    /**
+     * Initialize the singleton IngestMetrics instance
+     */
+    public static void initInstance() {
+        if (instance == null)
+            instance = new IngestMetrics();
+    }
+
+    /**
+     * Fetch the singleton IngestMetrics instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static IngestMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record that an event arrived
+     * @param endpoint endpoint of the event; in fleet mode, prefixed with the
+     *                 device name and a slash
+     * @param alarm true for an alarm, false for subscription data
+     */
+    public void recordEvent(String endpoint, boolean alarm) {
+        (alarm ? alarmEvents : subscriptionEvents).increment();
+        StripedCounter counter = endpointEvents.get(endpoint);
+        if (counter == null) {
+            StripedCounter added = new StripedCounter(1);
+            counter = endpointEvents.putIfAbsent(endpoint, added);
+            if (counter == null)
+                counter = added;
+        }
+        counter.increment();
+    }
+
+    /**
+     * Record how long an event took from arriving to being applied to the
+     * adapters
+     * @param millis latency in milliseconds
+     */
+    public void recordPublished(long millis) {
+        publishLatency.record(millis);
+    }
+
+    /**
+     * Record that adapters were notified of changes
+     * @param adapters number of adapters notified
+     */
+    public void recordNotified(int adapters) {
+        notifications.add(adapters);
+    }
+
+    /**
+     * Record subscriptions which were given up on
+     * @param device name of the device, in fleet mode, or null
+     * @param failed endpoints which could not be subscribed to
+     */
+    public void recordSubscriptionFailures(String device, List<String> failed) {
+        if (failed.isEmpty())
+            return;
+        subscriptionFailures.add(failed.size());
+        synchronized (failedEndpoints) {
+            for (String endpoint : failed)
+                failedEndpoints.add(device == null ? endpoint : device + "/" + endpoint);
+            int excess = failedEndpoints.size() - MAX_FAILED_KEPT;
+            if (excess > 0)
+                failedEndpoints.subList(0, excess).clear();
+        }
+    }
+
+    /**
+     * @return latencies from events arriving to their being applied to the
+     * adapters
+     */
+    public LatencyHistogram getPublishLatency() {
+        return publishLatency;
+    }
+
+    /**
+     * Take a copy of every count
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Set every count back to zero
+     */
+    public void reset() {
+        subscriptionEvents.reset();
+        alarmEvents.reset();
+        endpointEvents.clear();
+        notifications.reset();
+        subscriptionFailures.reset();
+        publishLatency.reset();
+        synchronized (failedEndpoints) {
+            failedEndpoints.clear();
+        }
+        since = now();
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * Counts taken from an {@link IngestMetrics} at one moment
+     */
+    public static final class Snapshot {
+        /** When the snapshot was taken, in milliseconds on a monotonic clock. */
+        public final long time;
+        /** When counting started, on the same clock as {@link #time}. */
+        public final long since;
+        public final long subscriptionEvents;
+        public final long alarmEvents;
+        /** Events by endpoint, sorted by endpoint. */
+        public final Map<String, Long> endpointEvents;
+        public final long notifications;
+        public final long subscriptionFailures;
+        /** The most recent subscription failures, oldest first. */
+        public final List<String> failedEndpoints;
+        public final long latencyCount;
+        public final double latencyMean;
+        public final long latencyP50;
+        public final long latencyP90;
+        public final long latencyP99;
+        public final long latencyMax;
+
+        private Snapshot(IngestMetrics metrics) {
+            time = now();
+            since = metrics.since;
+            subscriptionEvents = metrics.subscriptionEvents.sum();
+            alarmEvents = metrics.alarmEvents.sum();
+            Map<String, Long> byEndpoint = new TreeMap<String, Long>();
+            for (Map.Entry<String, StripedCounter> e : metrics.endpointEvents.entrySet())
+                byEndpoint.put(e.getKey(), e.getValue().sum());
+            endpointEvents = Collections.unmodifiableMap(byEndpoint);
+            notifications = metrics.notifications.sum();
+            subscriptionFailures = metrics.subscriptionFailures.sum();
+            synchronized (metrics.failedEndpoints) {
+                failedEndpoints = Collections.unmodifiableList(
+                        new ArrayList<String>(metrics.failedEndpoints));
+            }
+            LatencyHistogram latency = metrics.publishLatency;
+            latencyCount = latency.getCount();
+            latencyMean = latency.getMean();
+            latencyP50 = latency.getPercentile(50);
+            latencyP90 = latency.getPercentile(90);
+            latencyP99 = latency.getPercentile(99);
+            latencyMax = latency.getMax();
+        }
+
+        /**
+         * @param earlier an earlier snapshot, or null to go back to when
+         *                counting started
+         * @return subscription events per second since then
+         */
+        public double getSubscriptionRate(Snapshot earlier) {
+            return perSecond(subscriptionEvents, earlier == null ? 0 : earlier.subscriptionEvents, earlier);
+        }
+
+        /**
+         * @param earlier an earlier snapshot, or null to go back to when
+         *                counting started
+         * @return alarm events per second since then
+         */
+        public double getAlarmRate(Snapshot earlier) {
+            return perSecond(alarmEvents, earlier == null ? 0 : earlier.alarmEvents, earlier);
+        }
+
+        /**
+         * @param earlier an earlier snapshot, or null to go back to when
+         *                counting started
+         * @return adapter notifications per second since then
+         */
+        public double getNotificationRate(Snapshot earlier) {
+            return perSecond(notifications, earlier == null ? 0 : earlier.notifications, earlier);
+        }
+
+        /**
+         * @param endpoint endpoint to look up
+         * @param earlier an earlier snapshot, or null to go back to when
+         *                counting started
+         * @return events per second for the endpoint since then
+         */
+        public double getEndpointRate(String endpoint, Snapshot earlier) {
+            return perSecond(getEndpointEvents(endpoint),
+                    earlier == null ? 0 : earlier.getEndpointEvents(endpoint), earlier);
+        }
+
+        /** Rate of a count since the earlier snapshot, or since counting started. */
+        private double perSecond(long count, long earlierCount, Snapshot earlier) {
+            long start = since;
+            if (earlier != null && earlier.since == since) {
+                start = earlier.time;
+                count -= earlierCount;
+            }
+            long elapsed = time - start;
+            return elapsed <= 0 ? 0 : count * 1000.0 / elapsed;
+        }
+
+        /**
+         * @param endpoint endpoint to look up
+         * @return number of events seen for the endpoint
+         */
+        public long getEndpointEvents(String endpoint) {
+            Long n = endpointEvents.get(endpoint);
+            return n == null ? 0 : n;
+        }
+    }
+}
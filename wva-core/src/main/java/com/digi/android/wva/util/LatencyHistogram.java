@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in milliseconds, in buckets which double in width
+ * (0, 1, 2-3, 4-7, ...), for reporting percentiles cheaply.
+ *
+ * <p>Recording a latency touches one bucket and two totals, all atomically,
+ * so latencies may be recorded and read from any thread. Percentiles are
+ * reported as the top of the bucket they fall into, so they overstate the
+ * real value by less than a factor of two.</p>
+ */
+public class LatencyHistogram {
+    /** The last bucket takes every latency from 2^(BUCKETS - 2) milliseconds up. */
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency
+     * @param millis the latency, in milliseconds; negative values count as 0
+     */
+    public void record(long millis) {
+        if (millis < 0)
+            millis = 0;
+        counts.incrementAndGet(bucket(millis));
+        count.incrementAndGet();
+        total.addAndGet(millis);
+        long m;
+        while (millis > (m = max.get()) && !max.compareAndSet(m, millis)) {
+            // Somebody else raised the maximum; try again.
+        }
+    }
+
+    /**
+     * @return number of latencies recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return longest latency recorded, or 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean latency, or 0 if there are none
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Estimate a percentile of the recorded latencies
+     * @param percentile percentile to find, from 0 to 100
+     * @return the top of the bucket holding that percentile, but no more
+     * than {@link #getMax()}; 0 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            n += counts.get(i);
+        if (n == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(n * Math.max(0, Math.min(100, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank))
+                return Math.min(max.get(), i == 0 ? 0 : (1L << i) - 1);
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget every latency recorded. Latencies recorded at the same time
+     * may be partly lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private static int bucket(long millis) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.model.VehicleData;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The newest value of each endpoint, out of any number of samples, kept in
+ * one reusable {@link VehicleData} record per endpoint.
+ *
+ * <p>The first sample from an endpoint creates its record; after that,
+ * {@link #put(String, double, long)} and {@link #clear()} allocate nothing,
+ * so a LatestValues can be filled and emptied over and over without making
+ * any garbage. The records belong to the LatestValues: anybody who wants to
+ * keep one past the next {@link #clear()} must copy it.</p>
+ *
+ * <p>Not thread safe.</p>
+ */
+public class LatestValues {
+    private static final class Slot {
+        final VehicleData data;
+        boolean changed;
+
+        Slot(VehicleData data) {
+            this.data = data;
+        }
+    }
+
+    private final Map<String, Slot> slots = new HashMap<String, Slot>();
+    /** Slots changed since the last clear, in order of first change. */
+    private final ArrayList<Slot> changed = new ArrayList<Slot>();
+    private final List<VehicleData> changedView = new AbstractList<VehicleData>() {
+        @Override
+        public VehicleData get(int location) {
+            return changed.get(location).data;
+        }
+
+        @Override
+        public int size() {
+            return changed.size();
+        }
+    };
+
+    /**
+     * Record a sample, replacing any earlier one from the same endpoint
+     * @param endpoint endpoint name
+     * @param value value of the sample
+     * @param time time of the sample, in milliseconds since the epoch
+     */
+    public void put(String endpoint, double value, long time) {
+        Slot slot = slots.get(endpoint);
+        if (slot == null) {
+            slot = new Slot(new VehicleData(endpoint, value, time));
+            slots.put(endpoint, slot);
+        } else {
+            slot.data.set(value, time);
+        }
+        if (!slot.changed) {
+            slot.changed = true;
+            changed.add(slot);
+        }
+    }
+
+    /**
+     * Look up the newest sample from an endpoint since the last clear
+     * @param endpoint endpoint name
+     * @return the endpoint's record, or null if it has had no samples since
+     * the last {@link #clear()}
+     */
+    public VehicleData get(String endpoint) {
+        Slot slot = slots.get(endpoint);
+        return slot != null && slot.changed ? slot.data : null;
+    }
+
+    /**
+     * @return the records of every endpoint with samples since the last
+     * clear, in the order they first arrived. The list is a live view, and
+     * its records are reused after {@link #clear()}.
+     */
+    public List<VehicleData> getChanged() {
+        return changedView;
+    }
+
+    /**
+     * @return true if there have been no samples since the last clear
+     */
+    public boolean isEmpty() {
+        return changed.isEmpty();
+    }
+
+    /**
+     * Forget every sample, keeping the records for reuse
+     */
+    public void clear() {
+        for (int i = 0; i < changed.size(); i++) {
+            changed.get(i).changed = false;
+        }
+        changed.clear();
+    }
+
+    /**
+     * Forget every record, for instance when the endpoints have changed
+     */
+    public void reset() {
+        changed.clear();
+        slots.clear();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.model.LogEvent;
+
+import java.util.ArrayList;
+
+/**
+ * Data {@link LogEvent}s which have been dropped from a log, kept to be
+ * refilled rather than building new ones.
+ *
+ * <p>Once a log is full, each event added pushes out the oldest one; handing
+ * the pushed-out events back here means that a steady stream of samples
+ * reuses the same few events over and over. Only data events are kept:
+ * messages and alarms are rare, and cannot be refilled.</p>
+ *
+ * <p>Not thread safe.</p>
+ */
+public class LogEventPool {
+    private final ArrayList<LogEvent> spare = new ArrayList<LogEvent>();
+
+    /**
+     * Get an event recording new vehicle data, reusing a spare one if there
+     * is any
+     * @param endpoint endpoint the data is for
+     * @param value new value
+     * @param time time of the data, in milliseconds since the epoch
+     * @return the event
+     */
+    public LogEvent data(String endpoint, double value, long time) {
+        int n = spare.size();
+        if (n == 0)
+            return LogEvent.data(endpoint, value, time);
+        LogEvent event = spare.remove(n - 1);
+        event.set(endpoint, value, time);
+        return event;
+    }
+
+    /**
+     * Keep an event which nothing refers to any more, if it can be reused
+     * @param event event dropped from a log, or null
+     */
+    public void recycle(LogEvent event) {
+        if (event != null && event.kind == LogEvent.Kind.DATA)
+            spare.add(event);
+    }
+
+    /**
+     * @return the number of spare events
+     */
+    public int size() {
+        return spare.size();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of time series, as described
+ * in Sveinn Steinarsson's thesis "Downsampling Time Series for Visual
+ * Representation" (2013).
+ *
+ * <p>The first and last points are always kept. The points in between are
+ * split into buckets, and from each bucket the point which makes the
+ * largest triangle with the point kept from the previous bucket and the
+ * average of the next bucket is kept. This keeps the peaks and dips which
+ * make a line chart look the way it does, in a single pass over the
+ * points.</p>
+ */
+public final class Lttb {
+    private Lttb() {
+    }
+
+    /**
+     * Downsample a series of points
+     * @param times timestamps of the points, in increasing order
+     * @param values values of the points
+     * @param count number of points to read from times and values
+     * @param threshold maximum number of points to keep, at least 3
+     * @param timesOut array to write kept timestamps into; must hold at least
+     *                 min(count, threshold) points. May not be times.
+     * @param valuesOut array to write kept values into, like timesOut
+     * @return the number of points kept
+     */
+    public static int downsample(long[] times, double[] values, int count, int threshold,
+                                 long[] timesOut, double[] valuesOut) {
+        if (threshold < 3)
+            throw new IllegalArgumentException("Threshold must be at least 3");
+        if (count <= threshold) {
+            System.arraycopy(times, 0, timesOut, 0, count);
+            System.arraycopy(values, 0, valuesOut, 0, count);
+            return count;
+        }
+
+        // Times are taken relative to the first point, so that the
+        // triangle areas don't lose precision to huge epoch values.
+        long origin = times[0];
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int out = 0;
+        int a = 0;
+        timesOut[out] = times[0];
+        valuesOut[out++] = values[0];
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (or the last point, for the last
+            // bucket).
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, count);
+            if (nextStart >= nextEnd) {
+                nextStart = count - 1;
+                nextEnd = count;
+            }
+            double avgX = 0, avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += times[i] - origin;
+                avgY += values[i];
+            }
+            avgX /= nextEnd - nextStart;
+            avgY /= nextEnd - nextStart;
+
+            // Pick the point in this bucket making the largest triangle.
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            double ax = times[a] - origin, ay = values[a];
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((ax - avgX) * (values[i] - ay)
+                                       - (ax - (times[i] - origin)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            timesOut[out] = times[chosen];
+            valuesOut[out++] = values[chosen];
+            a = chosen;
+        }
+
+        timesOut[out] = times[count - 1];
+        valuesOut[out++] = values[count - 1];
+        return out;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, lock-free, multi-producer/single-consumer message queue which
+ * wakes its consumer when there is something to read.
+ *
+ * <p>Any thread may {@link #offer(Object) offer} messages. Urgent messages
+ * (see {@link #offerUrgent(Object)}) are handed to the consumer before all
+ * other messages. When more than the maximum number of messages are waiting,
+ * the oldest non-urgent ones are dropped first.</p>
+ *
+ * <p>A consumer registers a {@link Waker} with {@link #setWaker(Waker)}. The
+ * waker is called once when messages become available, and not again until
+ * the consumer has {@link #drain(List) drained} the mailbox, so a burst of
+ * messages costs a single wakeup.</p>
+ *
+ * @param <T> type of message held in the mailbox
+ */
+public class Mailbox<T> {
+    /**
+     * Called, on the producing thread, when messages become available. An
+     * implementation would typically post a task to the consumer's thread.
+     */
+    public interface Waker {
+        /**
+         * Let the consumer know that there are messages waiting
+         */
+        void wake();
+    }
+
+    private final ConcurrentLinkedQueue<T> urgent = new ConcurrentLinkedQueue<T>();
+    private final ConcurrentLinkedQueue<T> normal = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final int max;
+    private volatile Waker waker;
+
+    /**
+     * Create a new, empty mailbox
+     * @param max maximum number of messages to hold
+     */
+    public Mailbox(int max) {
+        this.max = max;
+    }
+
+    /**
+     * Add a message to the back of the queue
+     * @param message message to add
+     */
+    public void offer(T message) {
+        normal.offer(message);
+        added();
+    }
+
+    /**
+     * Add a message which should be read before any non-urgent messages
+     * @param message message to add
+     */
+    public void offerUrgent(T message) {
+        urgent.offer(message);
+        added();
+    }
+
+    private void added() {
+        if (size.incrementAndGet() > max) {
+            // Drop the oldest regular message, or failing that, the oldest
+            // urgent one.
+            if (normal.poll() != null || urgent.poll() != null) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+        }
+
+        Waker w = waker;
+        if (w != null && wakePending.compareAndSet(false, true))
+            w.wake();
+    }
+
+    /**
+     * Move every waiting message into the given list, urgent messages first
+     * @param into list to add messages to
+     * @return the number of messages added
+     */
+    public int drain(List<T> into) {
+        // Clear this first, so that anything offered from here on triggers
+        // another wakeup.
+        wakePending.set(false);
+
+        int count = 0;
+        T message;
+        while ((message = urgent.poll()) != null) {
+            into.add(message);
+            count++;
+        }
+        while ((message = normal.poll()) != null) {
+            into.add(message);
+            count++;
+        }
+        size.addAndGet(-count);
+        return count;
+    }
+
+    /**
+     * Remove and return every waiting message, urgent messages first
+     * @return the waiting messages
+     */
+    public List<T> drain() {
+        List<T> messages = new ArrayList<T>();
+        drain(messages);
+        return messages;
+    }
+
+    /**
+     * Set the consumer's waker, replacing any previous one. If there are
+     * messages waiting already, the new waker is called right away.
+     * @param waker waker to call when messages arrive, or null to stop
+     *              waking anybody
+     */
+    public void setWaker(Waker waker) {
+        this.waker = waker;
+        wakePending.set(false);
+        if (waker != null && !isEmpty() && wakePending.compareAndSet(false, true))
+            waker.wake();
+    }
+
+    /**
+     * @return true if no messages are waiting
+     */
+    public boolean isEmpty() {
+        return urgent.isEmpty() && normal.isEmpty();
+    }
+
+    /**
+     * @return the number of messages waiting; only a rough figure while
+     * messages are being added or drained
+     */
+    public int size() {
+        return Math.max(0, Math.min(max, size.get()));
+    }
+
+    /**
+     * @return the number of messages dropped because the mailbox was full
+     */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Discard every waiting message
+     */
+    public void clear() {
+        drain(new ArrayList<T>());
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.util.ArrayList;
+
+/**
+ * Multi-resolution summary of a time series, for drawing long stretches of
+ * it without looking at every point.
+ *
+ * <p>Level 0 sums up every {@link #FANOUT} points in a bucket, holding the
+ * bucket's time span and its smallest and largest values (with their
+ * timestamps). Each level above sums up {@link #FANOUT} buckets of the level
+ * below in the same way. The pyramid is built as points are
+ * {@link #add(long, double) added}: each point updates the newest level-0
+ * bucket, and a full bucket is passed up to the level above. Old buckets are
+ * evicted with {@link #evictBefore(long)}, as in {@link TimeSeriesBuffer}.</p>
+ *
+ * <p>{@link #query(long, long, int, long[], double[])} picks the finest
+ * level which fits the requested number of points over the requested time
+ * range, and turns each bucket into its minimum and maximum points, which
+ * is enough to draw the same envelope as the raw points would. Only the
+ * newest bucket or so of each finer level is looked at, to cover the time
+ * which the chosen level has not summed up yet.</p>
+ *
+ * <p>{@link #rangeMinMax(long, long, double[], long[])} finds the smallest
+ * and largest values over a time range the same way, from the coarsest
+ * buckets lying wholly within the range, and only a few finer buckets of
+ * each level towards its edges.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class MinMaxPyramid {
+    /** Number of points or buckets summed up by each bucket. */
+    public static final int FANOUT = 8;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** One level of buckets, held in parallel arrays used as a ring. */
+    private static final class Level {
+        long[] start = new long[INITIAL_CAPACITY], end = new long[INITIAL_CAPACITY];
+        long[] minTime = new long[INITIAL_CAPACITY], maxTime = new long[INITIAL_CAPACITY];
+        double[] min = new double[INITIAL_CAPACITY], max = new double[INITIAL_CAPACITY];
+        int first, size;
+        /** Number of children in the newest bucket. */
+        int children;
+
+        int physical(int index) {
+            int i = first + index;
+            return i < start.length ? i : i - start.length;
+        }
+
+        /**
+         * Merge a child into the newest bucket, or start a new bucket if
+         * the newest one is full.
+         * @return true if this filled the newest bucket
+         */
+        boolean merge(long s, long e, long minT, double mn, long maxT, double mx) {
+            if (size == 0 || children == FANOUT) {
+                if (size == start.length)
+                    grow();
+                int i = physical(size++);
+                start[i] = s;
+                end[i] = e;
+                minTime[i] = minT;
+                min[i] = mn;
+                maxTime[i] = maxT;
+                max[i] = mx;
+                children = 1;
+            } else {
+                int i = physical(size - 1);
+                if (e > end[i])
+                    end[i] = e;
+                if (mn < min[i]) {
+                    min[i] = mn;
+                    minTime[i] = minT;
+                }
+                if (mx > max[i]) {
+                    max[i] = mx;
+                    maxTime[i] = maxT;
+                }
+                children++;
+            }
+            return children == FANOUT;
+        }
+
+        void evictBefore(long time) {
+            while (size > 0 && end[first] < time) {
+                first = (first + 1) % start.length;
+                size--;
+            }
+            if (size == 0) {
+                first = 0;
+                children = 0;
+            }
+        }
+
+        /** @return index of the first bucket ending at or after time */
+        int firstEndingFrom(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (end[physical(mid)] < time)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+
+        /** @return index of the first bucket ending after time */
+        int firstEndingAfter(long time) {
+            return time == Long.MAX_VALUE ? size : firstEndingFrom(time + 1);
+        }
+
+        /** @return index of the first bucket starting after time */
+        int firstStartingAfter(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start[physical(mid)] <= time)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+
+        private void grow() {
+            int capacity = start.length * 2;
+            start = copy(start, capacity);
+            end = copy(end, capacity);
+            minTime = copy(minTime, capacity);
+            maxTime = copy(maxTime, capacity);
+            min = copy(min, capacity);
+            max = copy(max, capacity);
+            first = 0;
+        }
+
+        private long[] copy(long[] from, int capacity) {
+            long[] to = new long[capacity];
+            int firstRun = Math.min(size, from.length - first);
+            System.arraycopy(from, first, to, 0, firstRun);
+            System.arraycopy(from, 0, to, firstRun, size - firstRun);
+            return to;
+        }
+
+        private double[] copy(double[] from, int capacity) {
+            double[] to = new double[capacity];
+            int firstRun = Math.min(size, from.length - first);
+            System.arraycopy(from, first, to, 0, firstRun);
+            System.arraycopy(from, 0, to, firstRun, size - firstRun);
+            return to;
+        }
+    }
+
+    private final ArrayList<Level> levels = new ArrayList<Level>();
+
+    /**
+     * Add a point. Points are expected in increasing time order; a point
+     * older than the newest one is summed up with the newest points.
+     * @param time timestamp of the point, in milliseconds since the epoch
+     * @param value value of the point
+     */
+    public void add(long time, double value) {
+        long s = time, e = time, minT = time, maxT = time;
+        double mn = value, mx = value;
+        for (int k = 0; ; k++) {
+            if (k == levels.size())
+                levels.add(new Level());
+            Level level = levels.get(k);
+            if (!level.merge(s, e, minT, mn, maxT, mx))
+                return;
+            // The newest bucket of this level is full; pass it up.
+            int i = level.physical(level.size - 1);
+            s = level.start[i];
+            e = level.end[i];
+            minT = level.minTime[i];
+            mn = level.min[i];
+            maxT = level.maxTime[i];
+            mx = level.max[i];
+        }
+    }
+
+    /**
+     * Remove every bucket which ends before the given time
+     * @param time earliest time to keep
+     */
+    public void evictBefore(long time) {
+        for (int k = 0; k < levels.size(); k++) {
+            levels.get(k).evictBefore(time);
+        }
+    }
+
+    /**
+     * @return the number of levels in the pyramid
+     */
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    /**
+     * Remove everything from the pyramid
+     */
+    public void clear() {
+        levels.clear();
+    }
+
+    /**
+     * Get the minimum and maximum points over a time range, from the finest
+     * level which fits into about maxPoints points. The bucket just before
+     * the range is included, so that lines can be drawn up to its start.
+     * @param start start of the time range
+     * @param stop end of the time range
+     * @param maxPoints roughly how many points to return
+     * @param times array to write timestamps into, oldest first
+     * @param values array to write values into
+     * @return the number of points in the result. If that is more than the
+     * arrays can hold, only as many as fit are written, and the caller
+     * should try again with larger arrays.
+     */
+    public int query(long start, long stop, int maxPoints, long[] times, double[] values) {
+        if (levels.isEmpty())
+            return 0;
+
+        // Finest level whose buckets (two points each), plus the unsummed
+        // newest buckets of the levels below it, fit into maxPoints.
+        int chosen = levels.size() - 1;
+        for (int k = 0; k < levels.size(); k++) {
+            Level level = levels.get(k);
+            int buckets = level.firstStartingAfter(stop) - level.firstEndingFrom(start) + 1;
+            if (2 * (buckets + k * FANOUT) <= maxPoints) {
+                chosen = k;
+                break;
+            }
+        }
+
+        int n = 0;
+        long covered = Long.MIN_VALUE;
+        for (int k = chosen; k >= 0; k--) {
+            Level level = levels.get(k);
+            int from = Math.max(0, level.firstEndingFrom(start) - 1);
+            if (k < chosen)
+                from = Math.max(from, level.firstStartingAfter(covered));
+            int to = level.firstStartingAfter(stop);
+            for (int b = from; b < to; b++) {
+                int i = level.physical(b);
+                boolean minFirst = level.minTime[i] <= level.maxTime[i];
+                n = put(times, values, n, minFirst ? level.minTime[i] : level.maxTime[i],
+                        minFirst ? level.min[i] : level.max[i]);
+                if (level.minTime[i] != level.maxTime[i])
+                    n = put(times, values, n, minFirst ? level.maxTime[i] : level.minTime[i],
+                            minFirst ? level.max[i] : level.min[i]);
+                covered = Math.max(covered, level.end[i]);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Find the smallest and largest values over the buckets lying wholly
+     * within a time range. The coarsest such buckets are used, and finer
+     * ones only to cover the rest of the range towards its edges, so a
+     * range of any length takes a few buckets per level.
+     *
+     * <p>The buckets used cover one unbroken stretch of the range. At most
+     * {@link #FANOUT} points on either side of it, inside the range, are
+     * not covered by them; callers wanting the exact range should read
+     * those points themselves.</p>
+     * @param start start of the time range
+     * @param stop end of the time range
+     * @param minMax array of at least two, to write the smallest and
+     *               largest values into
+     * @param covered array of at least two, to write the start and end of
+     *                the stretch covered into
+     * @return false if no bucket lies wholly within the range, in which
+     * case neither array is written
+     */
+    public boolean rangeMinMax(long start, long stop, double[] minMax, long[] covered) {
+        boolean found = false;
+        double mn = 0, mx = 0;
+        long from = 0, to = 0;
+
+        for (int k = levels.size() - 1; k >= 0; k--) {
+            Level level = levels.get(k);
+            // Buckets wholly within [start, stop], or, once part of the
+            // range is covered, within the parts on either side of it.
+            int first = level.firstStartingAfter(start - 1);
+            int last = level.firstEndingAfter(stop);
+            if (found) {
+                int left = level.firstEndingFrom(from);
+                int right = level.firstStartingAfter(to);
+                for (int b = first; b < Math.min(left, last); b++) {
+                    int i = level.physical(b);
+                    mn = Math.min(mn, level.min[i]);
+                    mx = Math.max(mx, level.max[i]);
+                    from = Math.min(from, level.start[i]);
+                }
+                for (int b = Math.max(right, first); b < last; b++) {
+                    int i = level.physical(b);
+                    mn = Math.min(mn, level.min[i]);
+                    mx = Math.max(mx, level.max[i]);
+                    to = Math.max(to, level.end[i]);
+                }
+            } else if (first < last) {
+                found = true;
+                mn = Double.MAX_VALUE;
+                mx = -Double.MAX_VALUE;
+                for (int b = first; b < last; b++) {
+                    int i = level.physical(b);
+                    mn = Math.min(mn, level.min[i]);
+                    mx = Math.max(mx, level.max[i]);
+                }
+                from = level.start[level.physical(first)];
+                to = level.end[level.physical(last - 1)];
+            }
+        }
+
+        if (!found)
+            return false;
+        minMax[0] = mn;
+        minMax[1] = mx;
+        covered[0] = from;
+        covered[1] = to;
+        return true;
+    }
+
+    private static int put(long[] times, double[] values, int n, long time, double value) {
+        if (n < times.length && n < values.length) {
+            times[n] = time;
+            values[n] = value;
+        }
+        return n + 1;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+/**
+ * Decides how long the app's {@code VehicleInfoService} waits
+ * before trying to reconnect the event channel after it is lost or fails to
+ * connect.
+ *
+ * <p>Times passed in are milliseconds from any monotonic clock, such as
+ * {@code android.os.SystemClock.elapsedRealtime()}.</p>
+ */
+public interface ReconnectPolicy {
+    /**
+     * Called when the event channel connects
+     * @param now current time, in milliseconds
+     */
+    void onConnected(long now);
+
+    /**
+     * Called each time a reconnect attempt is to be scheduled
+     * @param now current time, in milliseconds
+     * @return how long to wait before the attempt, in milliseconds
+     */
+    long nextDelay(long now);
+
+    /**
+     * Forget about past failures, as when connecting to a new device
+     */
+    void reset();
+}
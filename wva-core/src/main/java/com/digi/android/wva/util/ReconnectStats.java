@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+/**
+ * Counts and timings of event channel reconnects, for diagnostics.
+ *
+ * <p>To use, call {@link #getInstance()} for a handle to the static instance
+ * of the class. The app's {@code VehicleInfoService} records each
+ * lost connection, each scheduled, skipped and made reconnect attempt, and
+ * each reconnection. All times are in milliseconds.</p>
+ */
+public class ReconnectStats {
+    private static ReconnectStats instance;
+
+    private long attempts;
+    private long skipped;
+    private long reconnects;
+    private long lastDelay;
+    private long lastDowntime;
+    private long longestDowntime;
+    private long totalDowntime;
+    /** When the connection was lost, or -1 while connected. */
+    private long lostAt = -1;
+
+    /**
+     * Initialize the singleton ReconnectStats instance
+     */
+    public static void initInstance() {
+        if (instance == null)
+            instance = new ReconnectStats();
+    }
+
+    /**
+     * Fetch the singleton ReconnectStats instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static ReconnectStats getInstance() {
+        return instance;
+    }
+
+    /**
+     * Record that the connection was lost or could not be made
+     * @param now current time
+     */
+    public synchronized void recordLost(long now) {
+        if (lostAt < 0)
+            lostAt = now;
+    }
+
+    /**
+     * Record that a reconnect attempt was scheduled
+     * @param delay how long until the attempt
+     */
+    public synchronized void recordScheduled(long delay) {
+        lastDelay = delay;
+    }
+
+    /**
+     * Record that a reconnect attempt was skipped, because the network
+     * was not available
+     */
+    public synchronized void recordSkipped() {
+        skipped++;
+    }
+
+    /**
+     * Record that a reconnect attempt was made
+     */
+    public synchronized void recordAttempt() {
+        attempts++;
+    }
+
+    /**
+     * Record that the connection was made. If it had been lost, this counts
+     * as a reconnect.
+     * @param now current time
+     */
+    public synchronized void recordConnected(long now) {
+        if (lostAt < 0)
+            return;
+        reconnects++;
+        lastDowntime = now - lostAt;
+        longestDowntime = Math.max(longestDowntime, lastDowntime);
+        totalDowntime += lastDowntime;
+        lostAt = -1;
+    }
+
+    /**
+     * Forget that the connection was lost, as when the user disconnects
+     */
+    public synchronized void recordStopped() {
+        lostAt = -1;
+    }
+
+    /** @return number of reconnect attempts made */
+    public synchronized long getAttemptCount() {
+        return attempts;
+    }
+
+    /** @return number of reconnect attempts skipped while the network was unavailable */
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    /** @return number of times the connection was lost and made again */
+    public synchronized long getReconnectCount() {
+        return reconnects;
+    }
+
+    /** @return delay before the most recently scheduled attempt */
+    public synchronized long getLastDelay() {
+        return lastDelay;
+    }
+
+    /** @return time from losing the connection to making it again, the last time */
+    public synchronized long getLastDowntime() {
+        return lastDowntime;
+    }
+
+    /** @return longest time from losing the connection to making it again */
+    public synchronized long getLongestDowntime() {
+        return longestDowntime;
+    }
+
+    /** @return total time spent reconnecting */
+    public synchronized long getTotalDowntime() {
+        return totalDowntime;
+    }
+
+    /**
+     * @param now current time
+     * @return time since the connection was lost, or 0 if it is up
+     */
+    public synchronized long getCurrentDowntime(long now) {
+        return lostAt < 0 ? 0 : now - lostAt;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+/**
+ * Fixed-capacity circular buffer which is indexed newest-first: index 0 is
+ * the most recently added element.
+ *
+ * <p>Adding an element is O(1). Once the buffer is full, each new element
+ * overwrites the oldest one, and the number of elements overwritten this way
+ * is available from {@link #getDroppedCount()}.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @param <T> type of element held in the buffer
+ */
+public class RingBuffer<T> {
+    private Object[] elements;
+    /** Index in {@link #elements} where the next element will be written. */
+    private int head = 0;
+    private int size = 0;
+    private long dropped = 0;
+
+    /**
+     * Create a new, empty ring buffer
+     * @param capacity maximum number of elements to hold
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        elements = new Object[capacity];
+    }
+
+    /**
+     * Add an element to the front of the buffer, dropping the oldest
+     * element if the buffer is full
+     * @param element element to add
+     * @return the element dropped to make room, so that it can be reused,
+     * or null if the buffer was not full
+     */
+    @SuppressWarnings("unchecked")
+    public T add(T element) {
+        T oldest = null;
+        if (size == elements.length) {
+            oldest = (T) elements[head];
+            dropped++;
+        } else {
+            size++;
+        }
+
+        elements[head] = element;
+        head = (head + 1) % elements.length;
+        return oldest;
+    }
+
+    /**
+     * Get an element by its age
+     * @param index 0 for the newest element, {@link #size()} - 1 for the oldest
+     * @return the element at that index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Invalid index " + index + ", size is " + size);
+        int i = head - 1 - index;
+        if (i < 0)
+            i += elements.length;
+        return (T) elements[i];
+    }
+
+    /**
+     * Find the newest-first index of the given element
+     * @param element element to look for
+     * @return index of the element, or -1 if it is not in the buffer
+     */
+    public int indexOf(T element) {
+        for (int i = 0; i < size; i++) {
+            T e = get(i);
+            if (element == null ? e == null : element.equals(e))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of elements in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of elements the buffer can hold
+     */
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Get the number of elements which have been dropped from the buffer,
+     * because it was full or because its capacity was reduced, since it was
+     * created or last cleared
+     * @return number of dropped elements
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Change the capacity of the buffer. The newest elements are kept; if
+     * the new capacity is smaller than the current size, the oldest elements
+     * are dropped.
+     * @param capacity new maximum number of elements
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public void setCapacity(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        if (capacity == elements.length)
+            return;
+
+        int keep = Math.min(size, capacity);
+        Object[] resized = new Object[capacity];
+        // Copy oldest-kept first, so that the newest ends up just before head.
+        for (int i = 0; i < keep; i++) {
+            resized[i] = get(keep - 1 - i);
+        }
+        dropped += size - keep;
+        elements = resized;
+        size = keep;
+        head = keep % capacity;
+    }
+
+    /**
+     * Remove every element from the buffer and reset the dropped count
+     */
+    public void clear() {
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = null;
+        }
+        head = 0;
+        size = 0;
+        dropped = 0;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter which many threads can add to at once without fighting over a
+ * single memory location.
+ *
+ * <p>The count is split over a number of stripes, each on its own cache
+ * line, and each thread adds to the stripe picked by its thread ID. Adding
+ * is a single atomic operation on a stripe which is usually not shared;
+ * reading the count with {@link #sum()} adds up every stripe, so it is
+ * slower, and only exact while nobody is adding.</p>
+ */
+public class StripedCounter {
+    /** Longs per stripe, so that each stripe has a 64-byte cache line to itself. */
+    private static final int PAD = 8;
+    /** Most stripes used by default. */
+    private static final int MAX_STRIPES = 16;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * Create a counter with a stripe per processor, up to a limit
+     */
+    public StripedCounter() {
+        this(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Create a counter
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    public StripedCounter(int stripes) {
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+        mask = n - 1;
+        cells = new AtomicLongArray(n * PAD);
+    }
+
+    /**
+     * Add to the count
+     * @param n amount to add
+     */
+    public void add(long n) {
+        cells.addAndGet(index(), n);
+    }
+
+    /**
+     * Add one to the count
+     */
+    public void increment() {
+        cells.incrementAndGet(index());
+    }
+
+    /**
+     * @return the count
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PAD)
+            sum += cells.get(i);
+        return sum;
+    }
+
+    /**
+     * Set the count back to zero. Additions made at the same time may be
+     * lost.
+     */
+    public void reset() {
+        for (int i = 0; i < cells.length(); i += PAD)
+            cells.set(i, 0);
+    }
+
+    private int index() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= h >>> 16;
+        return (h & mask) * PAD;
+    }
+}
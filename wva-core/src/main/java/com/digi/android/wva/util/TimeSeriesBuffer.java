@@ -0,0 +1,251 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+/**
+ * Time series of (timestamp, value) points held in parallel primitive
+ * arrays, used as a ring.
+ *
+ * <p>Points are expected to arrive in roughly increasing time order. Each
+ * point is appended in O(1) (a point older than the newest one is placed in
+ * order, which only shifts the points after it). Old points are evicted from
+ * the front with {@link #evictBefore(long)}, also without shifting anything,
+ * so a chart can slide its time window continuously.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class TimeSeriesBuffer {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] times;
+    private double[] values;
+    /** Index in the arrays of the oldest point. */
+    private int start;
+    private int size;
+
+    private double minValue, maxValue;
+    /** True if minValue and maxValue need to be recomputed. */
+    private boolean rangeStale;
+
+    /**
+     * Create a new, empty series
+     */
+    public TimeSeriesBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create a new, empty series
+     * @param initialCapacity number of points to make room for up front
+     */
+    public TimeSeriesBuffer(int initialCapacity) {
+        times = new long[Math.max(1, initialCapacity)];
+        values = new double[times.length];
+        clear();
+    }
+
+    /**
+     * Add a point to the series
+     * @param time timestamp of the point, in milliseconds since the epoch
+     * @param value value of the point
+     */
+    public void add(long time, double value) {
+        if (size == times.length)
+            grow();
+
+        int pos = size;
+        if (size > 0 && time < getTime(size - 1)) {
+            // Out of order; find where it belongs and shift the later points.
+            pos = upperBound(time);
+            for (int i = size; i > pos; i--) {
+                int to = physical(i), from = physical(i - 1);
+                times[to] = times[from];
+                values[to] = values[from];
+            }
+        }
+        int i = physical(pos);
+        times[i] = time;
+        values[i] = value;
+        size++;
+
+        if (!rangeStale) {
+            if (value < minValue)
+                minValue = value;
+            if (value > maxValue)
+                maxValue = value;
+        }
+    }
+
+    /**
+     * Remove every point older than the given time
+     * @param time timestamp of the oldest point to keep
+     * @return the number of points removed
+     */
+    public int evictBefore(long time) {
+        int removed = 0;
+        while (size > 0 && times[start] < time) {
+            double value = values[start];
+            if (value <= minValue || value >= maxValue)
+                rangeStale = true;
+            start = (start + 1) % times.length;
+            size--;
+            removed++;
+        }
+        if (size == 0)
+            clear();
+        return removed;
+    }
+
+    /**
+     * @return the number of points in the series
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index index of the point, 0 being the oldest
+     * @return timestamp of the point, in milliseconds since the epoch
+     */
+    public long getTime(int index) {
+        checkIndex(index);
+        return times[physical(index)];
+    }
+
+    /**
+     * @param index index of the point, 0 being the oldest
+     * @return value of the point
+     */
+    public double getValue(int index) {
+        checkIndex(index);
+        return values[physical(index)];
+    }
+
+    /**
+     * @return the smallest value in the series, or {@link Double#MAX_VALUE}
+     * if the series is empty
+     */
+    public double getMinValue() {
+        updateRange();
+        return minValue;
+    }
+
+    /**
+     * @return the largest value in the series, or -{@link Double#MAX_VALUE}
+     * if the series is empty
+     */
+    public double getMaxValue() {
+        updateRange();
+        return maxValue;
+    }
+
+    /**
+     * Find the first point at or after the given time
+     * @param time timestamp to look for
+     * @return index of the first point whose timestamp is not before time,
+     * or {@link #size()} if there is none
+     */
+    public int lowerBound(long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[physical(mid)] < time)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Find the first point after the given time
+     * @param time timestamp to look for
+     * @return index of the first point whose timestamp is after time, or
+     * {@link #size()} if there is none
+     */
+    public int upperBound(long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[physical(mid)] <= time)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Copy a run of points into the given arrays
+     * @param from index of the first point to copy
+     * @param to index just past the last point to copy
+     * @param timesOut array to copy timestamps into, from index 0
+     * @param valuesOut array to copy values into, from index 0
+     */
+    public void copy(int from, int to, long[] timesOut, double[] valuesOut) {
+        if (from < 0 || to > size || from > to)
+            throw new IndexOutOfBoundsException("Invalid range " + from + "-" + to + ", size is " + size);
+        int count = to - from;
+        int first = physical(from);
+        int firstRun = Math.min(count, times.length - first);
+        System.arraycopy(times, first, timesOut, 0, firstRun);
+        System.arraycopy(values, first, valuesOut, 0, firstRun);
+        System.arraycopy(times, 0, timesOut, firstRun, count - firstRun);
+        System.arraycopy(values, 0, valuesOut, firstRun, count - firstRun);
+    }
+
+    /**
+     * Remove every point from the series
+     */
+    public void clear() {
+        start = 0;
+        size = 0;
+        minValue = Double.MAX_VALUE;
+        maxValue = -Double.MAX_VALUE;
+        rangeStale = false;
+    }
+
+    private int physical(int index) {
+        int i = start + index;
+        return i < times.length ? i : i - times.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Invalid index " + index + ", size is " + size);
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        long[] t = new long[capacity];
+        double[] v = new double[capacity];
+        int first = Math.min(size, times.length - start);
+        System.arraycopy(times, start, t, 0, first);
+        System.arraycopy(values, start, v, 0, first);
+        System.arraycopy(times, 0, t, first, size - first);
+        System.arraycopy(values, 0, v, first, size - first);
+        times = t;
+        values = v;
+        start = 0;
+    }
+
+    private void updateRange() {
+        if (!rangeStale)
+            return;
+        minValue = Double.MAX_VALUE;
+        maxValue = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            double value = values[physical(i)];
+            if (value < minValue)
+                minValue = value;
+            if (value > maxValue)
+                maxValue = value;
+        }
+        rangeStale = false;
+    }
+}
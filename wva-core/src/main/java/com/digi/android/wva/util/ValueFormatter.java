@@ -0,0 +1,142 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Formats numbers the way {@code new DecimalFormat("#.###")} does (rounded
+ * half-even to at most a given number of fraction digits, with trailing
+ * zeros dropped and no grouping), but without allocating anything.
+ *
+ * <p>{@link #format(double, char[])} writes the digits into a buffer owned
+ * by the caller, such as one kept for a list row and handed to
+ * {@code TextView.setText(char[], int, int)}. Rounding is done on the value
+ * scaled by the power of ten, so a value within a rounding error of halfway
+ * between two results may round the other way from DecimalFormat. Values
+ * too large for that, and NaN and infinity, are handed to a DecimalFormat
+ * instead.</p>
+ *
+ * <p>A formatter is not thread-safe.</p>
+ */
+public class ValueFormatter {
+    /** Buffer size large enough for any value formatted by {@link #format(double, char[])}. */
+    public static final int MAX_LENGTH = 320;
+    /** Scaled values from here up are formatted by DecimalFormat. */
+    private static final double LIMIT = 1e18;
+
+    private final int fractionDigits;
+    private final long scale;
+    private final char separator;
+    private final char[] buffer = new char[MAX_LENGTH];
+    private DecimalFormat fallback;
+
+    /**
+     * Create a formatter using the default locale's decimal separator
+     * @param fractionDigits most digits to show after the decimal point,
+     *                       from 0 to 9
+     */
+    public ValueFormatter(int fractionDigits) {
+        this(fractionDigits, DecimalFormatSymbols.getInstance().getDecimalSeparator());
+    }
+
+    /**
+     * Create a formatter
+     * @param fractionDigits most digits to show after the decimal point,
+     *                       from 0 to 9
+     * @param separator decimal separator
+     */
+    public ValueFormatter(int fractionDigits, char separator) {
+        if (fractionDigits < 0 || fractionDigits > 9)
+            throw new IllegalArgumentException("Fraction digits must be from 0 to 9");
+        this.fractionDigits = fractionDigits;
+        this.separator = separator;
+        long s = 1;
+        for (int i = 0; i < fractionDigits; i++)
+            s *= 10;
+        this.scale = s;
+    }
+
+    /**
+     * Format a value into a buffer
+     * @param value the value to format
+     * @param dest buffer to write to, starting at index 0; at least
+     *             {@link #MAX_LENGTH} long
+     * @return number of characters written
+     */
+    public int format(double value, char[] dest) {
+        double scaled = Math.abs(value * scale);
+        if (!(scaled < LIMIT)) {
+            // NaN, infinity or a very large value; these are rare enough not
+            // to be worth doing by hand.
+            String s = fallback().format(value);
+            s.getChars(0, s.length(), dest, 0);
+            return s.length();
+        }
+
+        int pos = 0;
+        // DecimalFormat keeps the sign of anything that rounds to zero.
+        if (value < 0 || (value == 0 && 1 / value < 0))
+            dest[pos++] = '-';
+
+        long units = (long) Math.rint(scaled);
+        pos = writeDigits(units / scale, dest, pos);
+
+        long fraction = units % scale;
+        if (fraction != 0) {
+            int digits = fractionDigits;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            dest[pos++] = separator;
+            for (int i = pos + digits - 1; i >= pos; i--) {
+                dest[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            pos += digits;
+        }
+        return pos;
+    }
+
+    /**
+     * Format a value as a new string
+     * @param value the value to format
+     * @return the formatted value
+     */
+    public String format(double value) {
+        return new String(buffer, 0, format(value, buffer));
+    }
+
+    /** Write the digits of a non-negative number, returning the new position. */
+    private static int writeDigits(long n, char[] dest, int pos) {
+        int digits = 1;
+        for (long t = n; t >= 10; t /= 10)
+            digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            dest[i] = (char) ('0' + n % 10);
+            n /= 10;
+        }
+        return pos + digits;
+    }
+
+    private DecimalFormat fallback() {
+        if (fallback == null) {
+            StringBuilder pattern = new StringBuilder("#");
+            if (fractionDigits > 0)
+                pattern.append('.');
+            for (int i = 0; i < fractionDigits; i++)
+                pattern.append('#');
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+            symbols.setDecimalSeparator(separator);
+            fallback = new DecimalFormat(pattern.toString(), symbols);
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,323 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.util;
+
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.model.VehicleData;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backing data structure for the app's {@code VariableAdapter}.
+ *
+ * <p>To use, call {@link #getInstance()} for a handle to the static instance
+ * of the class, and call {@link #update(VehicleData)} or
+ * {@link #update(VehicleData, int)} as needed.</p>
+ *
+ * <p>Rows are kept in an array (so that the adapter can index into them
+ * directly) alongside a map from endpoint name to row. Looking up and
+ * updating data by endpoint name never has to scan the rows. Removing a row
+ * still shifts the rows after it, and the next position lookup past it
+ * renumbers them, so removal costs O(n); that is fine for the rare UI
+ * action it is. A row keeps its position for as long as it is in the list;
+ * only inserting or removing rows ahead of it will move it.</p>
+ *
+ * <p>{@link #update(VehicleData)} also records each update in the
+ * {@link EventLog} set with {@link #setEventLog(EventLog)}; the app's
+ * {@code LogAdapter} sets itself as that log when it is created.</p>
+ *
+ * @author mwadsten
+ *
+ */
+public class VehicleDataList {
+	private static VehicleDataList instance;
+	private static volatile EventLog eventLog;
+	private final IndexedList backingList;
+
+    /**
+     * Set where {@link #update(VehicleData)} records updates
+     * @param log the event log, or null to record nothing
+     */
+	public static void setEventLog(EventLog log) {
+		eventLog = log;
+	}
+
+    /**
+     * Initialize the singleton VehicleDataList instance
+     */
+	public static void initInstance() {
+		if (instance == null)
+			instance = new VehicleDataList();
+	}
+
+    /**
+     * Fetch the singleton VehicleDataList instance
+     * @return the singleton instance, or null if there is none
+     */
+	public static VehicleDataList getInstance() {
+		return instance;
+	}
+
+    /**
+     * Create a list separate from the singleton instance, such as the one
+     * kept for each device in fleet mode
+     */
+	public VehicleDataList() {
+		backingList = new IndexedList();
+	}
+
+    /**
+     * Get the backing list of {@link VehicleData} objects.
+     *
+     * <p>Structural changes made through the returned list (add, remove,
+     * clear, ...) keep the endpoint name index up to date.</p>
+     * @return backing vehicle data list
+     */
+	public List<VehicleData> getList() {
+		return backingList;
+	}
+
+    /**
+     * Look up the data for the given endpoint
+     * @param endpoint endpoint name to look up
+     * @return the matching {@link VehicleData}, or null if there is none
+     */
+	public VehicleData get(String endpoint) {
+		return backingList.rows.get(endpoint);
+	}
+
+    /**
+     * Find the position of the data for the given endpoint within the list
+     * @param endpoint endpoint name to look up
+     * @return the position of the endpoint's data, or -1 if there is none
+     */
+	public int indexOf(String endpoint) {
+		return backingList.positionOf(endpoint);
+	}
+
+    /**
+     * Remove the data for the given endpoint, if there is any. The row is
+     * found without a scan, but the rows after it are shifted up, and
+     * renumbered by the next lookup of any of them.
+     * @param endpoint endpoint name whose data should be removed
+     * @return the data that was removed, or null if there was none
+     */
+	public VehicleData remove(String endpoint) {
+		int pos = backingList.positionOf(endpoint);
+		if (pos < 0)
+			return null;
+		return backingList.remove(pos);
+	}
+
+	/**
+	 * Search through the data and update the VehicleData object
+	 * corresponding to newData. If not found, newData will be
+	 * appended to the list.
+	 *
+     * @param newData VehicleData object to use to update data
+     * @return true if newData was added to the list as a new row, false if
+     * an existing row was updated
+	 */
+	public boolean update(VehicleData newData) {
+		return update(newData, backingList.size());
+	}
+
+	/**
+	 * Does the same as {@link #update(VehicleData) update(VehicleData)},
+	 * except that if no matching VehicleData is found, newData will be
+	 * added to the backing list at the given index (location) rather than
+	 * the end of the list
+	 * @param newData VehicleData object to use to update data
+	 * @param location index to insert newData at, if needed
+     * @return true if newData was added to the list as a new row, false if
+     * an existing row was updated
+	 */
+	public boolean update(VehicleData newData, int location) {
+		// Push log event with variable update
+		EventLog log = eventLog;
+		if (log != null)
+			log.add(makeLogEvent(newData));
+
+		return apply(newData, location);
+	}
+
+    /**
+     * Does the same as {@link #update(VehicleData, int) update(VehicleData, int)},
+     * except that no event is written to the {@link EventLog}. For use by
+     * callers which have logged the update already.
+     * @param newData VehicleData object to use to update data
+     * @param location index to insert newData at, if needed
+     * @return true if newData was added to the list as a new row, false if
+     * an existing row was updated
+     */
+	public boolean apply(VehicleData newData, int location) {
+		VehicleData toUpdate = backingList.rows.get(newData.name);
+
+		if (toUpdate == null) {
+			// No matching data in list to update. Insert newData
+			// into list at the given index.
+			backingList.add(location, newData);
+			return true;
+		}
+		else {
+			try {
+				toUpdate.update(newData);
+			} catch (Exception e) {
+				// This shouldn't happen, unless toUpdate's name was
+				// changed suddenly (which shouldn't happen)
+				e.printStackTrace();
+			}
+			return false;
+		}
+	}
+
+    /**
+     * Does the same as {@link #apply(VehicleData, int) apply(VehicleData, int)},
+     * except that newData itself is never kept: a new row gets a copy of it.
+     * For callers which reuse their VehicleData objects, such as
+     * {@link LatestValues}.
+     * @param newData VehicleData object to use to update data
+     * @param location index to insert a copy of newData at, if needed
+     * @return true if a copy of newData was added to the list as a new row,
+     * false if an existing row was updated
+     */
+	public boolean merge(VehicleData newData, int location) {
+		VehicleData toUpdate = backingList.rows.get(newData.name);
+		if (toUpdate == null) {
+			backingList.add(location, new VehicleData(newData));
+			return true;
+		}
+		toUpdate.set(newData.value, newData.time);
+		return false;
+	}
+
+    /**
+     * Build the event log entry recording a new piece of vehicle data
+     * @param newData the new vehicle data
+     * @return log event describing the update
+     */
+	public static LogEvent makeLogEvent(VehicleData newData) {
+		return LogEvent.data(newData.name, newData.value, newData.time);
+	}
+
+    /**
+     * List of rows which also indexes each row by endpoint name.
+     *
+     * <p>Row positions are recorded in {@link #positions}. Inserting or
+     * removing a row only marks the positions from that row onward as stale
+     * (see {@link #validUpTo}); they are recomputed the next time somebody
+     * asks for a position past that point. Appending, which is by far the
+     * most common structural change, leaves every position valid.</p>
+     */
+	private static final class IndexedList extends AbstractList<VehicleData> {
+		private final ArrayList<VehicleData> order = new ArrayList<VehicleData>();
+		private final Map<String, VehicleData> rows = new HashMap<String, VehicleData>();
+		private final Map<String, Integer> positions = new HashMap<String, Integer>();
+		/** Positions of rows before this index are known to be correct. */
+		private int validUpTo = 0;
+
+		@Override
+		public VehicleData get(int location) {
+			return order.get(location);
+		}
+
+		@Override
+		public int size() {
+			return order.size();
+		}
+
+		@Override
+		public void add(int location, VehicleData data) {
+			if (rows.containsKey(data.name)) {
+				// Never hold two rows for one endpoint; drop the old one.
+				int old = positionOf(data.name);
+				remove(old);
+				if (old < location)
+					location--;
+			}
+
+			order.add(location, data);
+			rows.put(data.name, data);
+			if (location == order.size() - 1 && validUpTo == location) {
+				positions.put(data.name, location);
+				validUpTo = order.size();
+			} else {
+				validUpTo = Math.min(validUpTo, location);
+			}
+			modCount++;
+		}
+
+		@Override
+		public VehicleData set(int location, VehicleData data) {
+			VehicleData old = order.get(location);
+			if (old.name.equals(data.name)) {
+				order.set(location, data);
+				rows.put(data.name, data);
+				return old;
+			}
+			remove(location);
+			add(location, data);
+			return old;
+		}
+
+		@Override
+		public VehicleData remove(int location) {
+			VehicleData removed = order.remove(location);
+			rows.remove(removed.name);
+			positions.remove(removed.name);
+			validUpTo = Math.min(validUpTo, location);
+			modCount++;
+			return removed;
+		}
+
+		@Override
+		public void clear() {
+			order.clear();
+			rows.clear();
+			positions.clear();
+			validUpTo = 0;
+			modCount++;
+		}
+
+		@Override
+		public int indexOf(Object object) {
+			if (!(object instanceof VehicleData))
+				return -1;
+			VehicleData data = (VehicleData) object;
+			int pos = positionOf(data.name);
+			return (pos >= 0 && order.get(pos) == data) ? pos : -1;
+		}
+
+		@Override
+		public boolean contains(Object object) {
+			return indexOf(object) >= 0;
+		}
+
+		int positionOf(String endpoint) {
+			if (endpoint == null || !rows.containsKey(endpoint))
+				return -1;
+			Integer pos = positions.get(endpoint);
+			if (pos == null || pos >= validUpTo) {
+				reindex();
+				pos = positions.get(endpoint);
+			}
+			return pos;
+		}
+
+		private void reindex() {
+			for (int i = validUpTo; i < order.size(); i++) {
+				positions.put(order.get(i).name, i);
+			}
+			validUpTo = order.size();
+		}
+	}
+}
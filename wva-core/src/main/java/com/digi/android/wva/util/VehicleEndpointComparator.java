@@ -20,6 +20,20 @@ public class VehicleEndpointComparator implements Comparator<String>, Serializab
 	 */
 	public static final String[] PRESSURE_PRO_PREFIXES = {"CTI", "TirePressure", "TireTemperature"};
 
+	/**
+	 * Check whether an endpoint is a Pressure Pro endpoint, which is not
+	 * subscribed to automatically
+	 * @param endpoint endpoint name to check
+	 * @return true if the endpoint starts with one of {@link #PRESSURE_PRO_PREFIXES}
+	 */
+	public static boolean isPressurePro(String endpoint) {
+		for (String s : PRESSURE_PRO_PREFIXES) {
+			if (endpoint.startsWith(s))
+				return true;
+		}
+		return false;
+	}
+
 	@Override
 	public int compare(String ep1, String ep2) {
 		boolean prefixed1 = false, prefixed2 = false;
@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory history of every endpoint's values, kept as one
+ * {@link CompressedHistory} per endpoint.
+ *
+ * <p>To use, call {@link #getInstance()} for a handle to the static instance
+ * of the class. Data is {@link #append(String, long, double) appended} by
+ * the code receiving vehicle data; anything older than the retention time
+ * (a full shift, by default) is dropped as new data arrives.</p>
+ */
+public class VehicleHistory {
+    /** Default time to keep data for, in milliseconds (12 hours). */
+    public static final long DEFAULT_RETENTION = 12 * 60 * 60 * 1000L;
+    private static VehicleHistory instance;
+
+    private final Map<String, CompressedHistory> histories = new HashMap<String, CompressedHistory>();
+    private volatile long retention = DEFAULT_RETENTION;
+
+    /**
+     * Create a history separate from the singleton instance, such as the
+     * one kept for each device in fleet mode
+     */
+    public VehicleHistory() {
+    }
+
+    /**
+     * Initialize the singleton VehicleHistory instance
+     */
+    public static void initInstance() {
+        if (instance == null)
+            instance = new VehicleHistory();
+    }
+
+    /**
+     * Fetch the singleton VehicleHistory instance
+     * @return the singleton instance, or null if there is none
+     */
+    public static VehicleHistory getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set how long data is kept for
+     * @param millis retention time, in milliseconds
+     */
+    public void setRetention(long millis) {
+        retention = millis;
+    }
+
+    /**
+     * Add a value to an endpoint's history, and drop whatever has become
+     * too old. Should be called from one thread at a time.
+     * @param endpoint endpoint the value came from
+     * @param time timestamp of the value, in milliseconds since the epoch
+     * @param value the value
+     */
+    public void append(String endpoint, long time, double value) {
+        CompressedHistory history;
+        synchronized (histories) {
+            history = histories.get(endpoint);
+            if (history == null) {
+                history = new CompressedHistory();
+                histories.put(endpoint, history);
+            }
+        }
+        history.append(time, value);
+        history.evictBefore(time - retention);
+    }
+
+    /**
+     * Fetch an endpoint's history
+     * @param endpoint endpoint whose history to fetch
+     * @return the endpoint's history, or null if no data has been seen for it
+     */
+    public CompressedHistory get(String endpoint) {
+        synchronized (histories) {
+            return histories.get(endpoint);
+        }
+    }
+
+    /**
+     * @return the number of bytes used by every endpoint's encoded history
+     */
+    public long getByteCount() {
+        long bytes = 0;
+        synchronized (histories) {
+            for (CompressedHistory history : histories.values()) {
+                bytes += history.getByteCount();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drop every endpoint's history
+     */
+    public void clear() {
+        synchronized (histories) {
+            histories.clear();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.model;
+
+import junit.framework.TestCase;
+import com.digi.android.wva.model.LogEvent;
+import org.joda.time.DateTime;
+
+/**
+ * Created by mwadsten on 5/29/13.
+ */
+public class LogEventTest extends TestCase {
+    public void testCreation() {
+        LogEvent e = new LogEvent("Test", "Timestamp");
+        assertEquals("Wrong message", "Test", e.getMessage());
+        assertEquals("Wrong timestamp", "Timestamp", e.getTimestamp());
+        assertFalse("Non-alarm event is alarm", e.isAlarm);
+
+        LogEvent e2 = new LogEvent("Test2", "Timestamp2", true);
+        assertEquals("Wrong message", "Test2", e2.getMessage());
+        assertEquals("Wrong timestamp", "Timestamp2", e2.getTimestamp());
+        assertTrue("Alarm event is not alarm", e2.isAlarm);
+    }
+
+    public void testNoTimestamp() {
+        long before = System.currentTimeMillis();
+        LogEvent e = new LogEvent("Test", null);
+        assertEquals("Wrong kind", LogEvent.Kind.MESSAGE, e.kind);
+        assertTrue("Wrong time", e.time >= before && e.time <= System.currentTimeMillis());
+        assertNotNull("No timestamp", e.getTimestamp());
+        assertFalse("Empty timestamp", e.getTimestamp().length() == 0);
+    }
+
+    public void testData() {
+        DateTime time = new DateTime(2014, 3, 1, 12, 30, 15, 250);
+        LogEvent e = LogEvent.data("EngineSpeed", 1234.5, time.getMillis());
+        assertEquals("Wrong kind", LogEvent.Kind.DATA, e.kind);
+        assertEquals("Wrong endpoint", "EngineSpeed", e.endpoint);
+        assertEquals("Wrong time", time.getMillis(), e.time);
+        assertFalse("Data event is alarm", e.isAlarm);
+        assertEquals("Wrong message", "EngineSpeed = 1234.5", e.getMessage());
+        assertEquals("Wrong timestamp", time.toString(), e.getTimestamp());
+    }
+
+    public void testReuseData() {
+        LogEvent e = LogEvent.data("EngineSpeed", 1234.5, 1000);
+        e.set("VehicleSpeed", 80.0, 2000);
+        assertEquals("Wrong endpoint", "VehicleSpeed", e.endpoint);
+        assertEquals("Wrong time", 2000, e.time);
+        assertEquals("Wrong message", "VehicleSpeed = 80.0", e.getMessage());
+
+        try {
+            LogEvent.alarm(null, "VehicleSpeed", 80.0, 2000).set("EngineSpeed", 0, 3000);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // Only data events can be reused
+        }
+    }
+
+    public void testAlarm() {
+        DateTime time = new DateTime(2014, 3, 1, 12, 30, 15, 250);
+        LogEvent e = LogEvent.alarm(null, "VehicleSpeed", 80.0, time.getMillis());
+        assertEquals("Wrong kind", LogEvent.Kind.ALARM, e.kind);
+        assertTrue("Alarm event is not alarm", e.isAlarm);
+        assertEquals("Wrong message", "Alarm: VehicleSpeed = 80.0", e.getMessage());
+        assertEquals("Wrong timestamp", time.toString(), e.getTimestamp());
+
+        LogEvent fromDevice = LogEvent.alarm("truck-2", "VehicleSpeed", 80.0, time.getMillis());
+        assertEquals("Wrong source", "truck-2", fromDevice.source);
+        assertEquals("Wrong message", "truck-2: Alarm: VehicleSpeed = 80.0", fromDevice.getMessage());
+    }
+}
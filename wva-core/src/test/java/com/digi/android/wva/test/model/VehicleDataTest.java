@@ -7,22 +7,22 @@
  
 package com.digi.android.wva.test.model;
 
-import android.test.InstrumentationTestCase;
+import junit.framework.TestCase;
 import com.digi.android.wva.model.VehicleData;
 
 /**
  * Created by mwadsten on 5/24/13.
  */
-public class VehicleDataTest extends InstrumentationTestCase {
+public class VehicleDataTest extends TestCase {
     public void testCreation() {
         VehicleData test = new VehicleData("Testing", 423.541, null);
         assertEquals("Name not stored correctly", "Testing", test.name);
         assertEquals("Value not stored correctly", 423.541, test.value, 0.01);
-        assertNotNull("Timestamp is null", test.timestamp);
+        assertNotNull("Timestamp is null", test.getTimestamp());
 
         VehicleData later = new VehicleData("Testing 2", 0, null);
-        long testms = test.timestamp.getMillis();
-        long laterms = later.timestamp.getMillis();
+        long testms = test.getTimestamp().getMillis();
+        long laterms = later.getTimestamp().getMillis();
         if (testms > laterms) {
             fail("Newer data does not have newer timestamp: " + testms
                     + " (older) vs. " + laterms + " (newer)");
@@ -63,4 +63,20 @@ public class VehicleDataTest extends InstrumentationTestCase {
         if (!raised)
             fail("Expected update() to raise Exception because of mismatched names.");
     }
+
+    public void testReuse() {
+        VehicleData data = new VehicleData("Reused", 1, 1000L);
+        assertEquals("Wrong timestamp", 1000L, data.getTimestamp().getMillis());
+
+        data.set(2, 5000L);
+        assertEquals("Value not replaced", 2, data.value, 0);
+        assertEquals("Time not replaced", 5000L, data.time);
+        assertEquals("Stale timestamp", 5000L, data.getTimestamp().getMillis());
+        assertSame("Timestamp made again for the same time", data.getTimestamp(), data.getTimestamp());
+
+        VehicleData copy = new VehicleData(data);
+        assertNotSame(data, copy);
+        assertEquals("Reused", copy.name);
+        assertEquals(5000L, copy.time);
+    }
 }
@@ -0,0 +1,67 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.BackoffReconnectPolicy;
+
+import java.util.Random;
+
+public class BackoffReconnectPolicyTest extends TestCase {
+	private BackoffReconnectPolicy policy;
+
+	@Override protected void setUp() {
+		policy = new BackoffReconnectPolicy(1000, 8000, 60000, new Random(42));
+	}
+
+	private static void assertBetween(long low, long high, long actual) {
+		assertTrue(actual + " not in [" + low + ", " + high + "]", actual >= low && actual <= high);
+	}
+
+	public void testDelaysDoubleUpToCap() {
+		long[] nominal = {1000, 2000, 4000, 8000, 8000, 8000};
+		for (long n : nominal)
+			assertBetween(n / 2, n, policy.nextDelay(0));
+		assertEquals(6, policy.getFailureCount());
+	}
+
+	public void testJitterSpreadsDelays() {
+		long first = policy.nextDelay(0);
+		boolean differs = false;
+		for (int i = 0; i < 20 && !differs; i++) {
+			policy.reset();
+			differs = policy.nextDelay(0) != first;
+		}
+		assertTrue("Delays were all the same", differs);
+	}
+
+	public void testStableSessionResetsBackoff() {
+		for (int i = 0; i < 4; i++)
+			policy.nextDelay(0);
+		policy.onConnected(1000);
+		// Up for a minute: the next retry is a fast one again
+		assertBetween(500, 1000, policy.nextDelay(61000));
+		assertEquals(1, policy.getFailureCount());
+	}
+
+	public void testShortSessionKeepsBackoff() {
+		for (int i = 0; i < 3; i++)
+			policy.nextDelay(0);
+		policy.onConnected(1000);
+		assertBetween(4000, 8000, policy.nextDelay(5000));
+	}
+
+	public void testReset() {
+		for (int i = 0; i < 5; i++)
+			policy.nextDelay(0);
+		policy.reset();
+		assertEquals(0, policy.getFailureCount());
+		assertBetween(500, 1000, policy.nextDelay(0));
+	}
+}
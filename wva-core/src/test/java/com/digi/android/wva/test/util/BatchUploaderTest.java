@@ -0,0 +1,269 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.BatchUploader;
+import com.digi.android.wva.util.ReconnectPolicy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs uploaders against a local HTTP server standing in for Device Cloud.
+ */
+public class BatchUploaderTest extends TestCase {
+	private File dir;
+	private HttpServer server;
+	private URL url;
+	private final BlockingQueue<String> bodies = new LinkedBlockingQueue<String>();
+	private final List<String> authorizations = new ArrayList<String>();
+	/** Status codes to answer with, in turn; 200 once they run out. */
+	private final BlockingQueue<Integer> statuses = new LinkedBlockingQueue<Integer>();
+	private final List<BatchUploader> uploaders = new ArrayList<BatchUploader>();
+
+	@Override protected void setUp() throws IOException {
+		dir = File.createTempFile("uploads", "");
+		assertTrue(dir.delete());
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/ws/DataPoint", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				InputStream in = exchange.getRequestBody();
+				if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding")))
+					in = new GZIPInputStream(in);
+				String body = read(in);
+				synchronized (authorizations) {
+					authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+				}
+				Integer status = statuses.poll();
+				exchange.sendResponseHeaders(status == null ? 200 : status, -1);
+				exchange.close();
+				if (status == null)
+					bodies.add(body);
+			}
+		});
+		server.start();
+		url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/ws/DataPoint");
+	}
+
+	@Override protected void tearDown() throws InterruptedException {
+		for (BatchUploader uploader : uploaders)
+			uploader.close();
+		server.stop(0);
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files)
+				file.delete();
+		}
+		dir.delete();
+	}
+
+	public void testSendsFullBatch() throws Exception {
+		BatchUploader uploader = open(new NoWaitPolicy());
+		uploader.setUrl(url);
+		uploader.setHeader("Authorization", "Basic dXNlcjpwYXNz");
+		uploader.setBatchLimits(3, 60000);
+
+		assertTrue(uploader.offer("wva/EngineSpeed", 1000, 700));
+		assertTrue(uploader.offer("wva/EngineSpeed", 2000, 712.5));
+		assertTrue(uploader.offer("wva/<odd>&name", 3000, -1));
+
+		String body = bodies.poll(5, TimeUnit.SECONDS);
+		assertEquals("<list>"
+				+ "<DataPoint><streamId>wva/EngineSpeed</streamId><data>700.0</data><timestamp>1000</timestamp></DataPoint>"
+				+ "<DataPoint><streamId>wva/EngineSpeed</streamId><data>712.5</data><timestamp>2000</timestamp></DataPoint>"
+				+ "<DataPoint><streamId>wva/&lt;odd&gt;&amp;name</streamId><data>-1.0</data><timestamp>3000</timestamp></DataPoint>"
+				+ "</list>", body);
+		synchronized (authorizations) {
+			assertEquals("Basic dXNlcjpwYXNz", authorizations.get(0));
+		}
+		uploader.flush();
+		assertEquals(3, uploader.getSentCount());
+		assertEquals(0, uploader.getWaitingBatchCount());
+	}
+
+	public void testSendsBatchOnceOldEnough() throws Exception {
+		BatchUploader uploader = open(new NoWaitPolicy());
+		uploader.setUrl(url);
+		uploader.setBatchLimits(100, 200);
+
+		uploader.offer("wva/VehicleSpeed", 1000, 55);
+		assertNull(bodies.poll(50, TimeUnit.MILLISECONDS));
+		String body = bodies.poll(5, TimeUnit.SECONDS);
+		assertNotNull(body);
+		assertEquals(1, count(body, "<DataPoint>"));
+	}
+
+	public void testIgnoresSamplesWithoutUrl() throws Exception {
+		BatchUploader uploader = open(new NoWaitPolicy());
+		assertFalse(uploader.isEnabled());
+		assertFalse(uploader.offer("wva/EngineSpeed", 1000, 700));
+		uploader.flush();
+		assertEquals(0, uploader.getWaitingBatchCount());
+	}
+
+	public void testBatchesSurviveRestart() throws Exception {
+		BatchUploader first = open(new NoWaitPolicy());
+		first.setUrl(new URL("http://127.0.0.1:" + closedPort() + "/ws/DataPoint"));
+		first.setOnline(false);
+		first.setBatchLimits(2, 60000);
+		for (int i = 0; i < 5; i++)
+			first.offer("wva/EngineSpeed", i, i);
+		first.close();
+		// Two full batches, and one sample left in the unsealed batch.
+		assertEquals(2, first.getWaitingBatchCount());
+		assertEquals(0, first.getSentCount());
+
+		BatchUploader second = open(new NoWaitPolicy());
+		second.setUrl(url);
+		int samples = 0;
+		for (int i = 0; i < 3; i++)
+			samples += count(bodies.poll(5, TimeUnit.SECONDS), "<DataPoint>");
+		assertEquals(5, samples);
+		second.flush();
+		assertEquals(0, second.getWaitingBatchCount());
+	}
+
+	public void testRetriesAfterServerError() throws Exception {
+		statuses.add(503);
+		statuses.add(429);
+		NoWaitPolicy policy = new NoWaitPolicy();
+		BatchUploader uploader = open(policy);
+		uploader.setUrl(url);
+		uploader.setBatchLimits(1, 60000);
+
+		uploader.offer("wva/EngineSpeed", 1000, 700);
+		assertNotNull(bodies.poll(5, TimeUnit.SECONDS));
+		uploader.flush();
+		assertEquals(2, uploader.getFailedAttemptCount());
+		assertEquals(2, policy.delays);
+		assertTrue(policy.resets > 0);
+		assertEquals(1, uploader.getSentCount());
+	}
+
+	public void testDropsRefusedBatch() throws Exception {
+		statuses.add(400);
+		BatchUploader uploader = open(new NoWaitPolicy());
+		uploader.setUrl(url);
+		uploader.setBatchLimits(1, 60000);
+
+		uploader.offer("wva/EngineSpeed", 1000, 700);
+		uploader.offer("wva/EngineSpeed", 2000, 701);
+		String body = bodies.poll(5, TimeUnit.SECONDS);
+		assertTrue(body.contains("<data>701.0</data>"));
+		uploader.flush();
+		assertEquals(1, uploader.getDroppedBatchCount());
+		assertEquals(0, uploader.getFailedAttemptCount());
+		assertEquals(0, uploader.getWaitingBatchCount());
+	}
+
+	public void testDropsUnreadableBatch() throws Exception {
+		assertTrue(dir.mkdirs());
+		// A sample whose stream name is not valid modified UTF-8
+		DataOutputStream bad = new DataOutputStream(new FileOutputStream(new File(dir, "batch-0")));
+		bad.writeShort(2);
+		bad.write(new byte[] {(byte) 0xff, (byte) 0xff});
+		bad.writeLong(1000);
+		bad.writeDouble(1);
+		bad.close();
+		DataOutputStream good = new DataOutputStream(new FileOutputStream(new File(dir, "batch-1")));
+		good.writeUTF("wva/EngineSpeed");
+		good.writeLong(2000);
+		good.writeDouble(700);
+		good.close();
+
+		BatchUploader uploader = open(new NoWaitPolicy());
+		uploader.setUrl(url);
+		String body = bodies.poll(5, TimeUnit.SECONDS);
+		assertNotNull(body);
+		assertTrue(body.contains("<timestamp>2000</timestamp>"));
+		uploader.flush();
+		assertEquals(1, uploader.getDroppedBatchCount());
+		assertEquals(0, uploader.getFailedAttemptCount());
+		assertEquals(0, uploader.getWaitingBatchCount());
+		assertEquals(1, uploader.getSentCount());
+	}
+
+	public void testWaitsWhileOffline() throws Exception {
+		BatchUploader uploader = open(new NoWaitPolicy());
+		uploader.setUrl(url);
+		uploader.setOnline(false);
+		uploader.offer("wva/EngineSpeed", 1000, 700);
+		uploader.flush();
+		assertEquals(1, uploader.getWaitingBatchCount());
+		assertTrue(bodies.isEmpty());
+
+		uploader.setOnline(true);
+		assertNotNull(bodies.poll(5, TimeUnit.SECONDS));
+		uploader.flush();
+		assertEquals(0, uploader.getWaitingBatchCount());
+	}
+
+	private BatchUploader open(ReconnectPolicy policy) {
+		BatchUploader uploader = new BatchUploader(dir, policy);
+		uploaders.add(uploader);
+		return uploader;
+	}
+
+	private static int closedPort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		return port;
+	}
+
+	private static int count(String s, String part) {
+		int n = 0;
+		for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1))
+			n++;
+		return n;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int n;
+		while ((n = in.read(buf)) != -1)
+			out.write(buf, 0, n);
+		return out.toString("UTF-8");
+	}
+
+	/** Retries straight away, counting what it is asked. */
+	private static class NoWaitPolicy implements ReconnectPolicy {
+		volatile int delays, resets;
+
+		@Override public void onConnected(long now) {
+		}
+
+		@Override public long nextDelay(long now) {
+			delays++;
+			return 0;
+		}
+
+		@Override public void reset() {
+			resets++;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.ChartFeed;
+
+import java.util.Arrays;
+
+public class ChartFeedTest extends TestCase {
+	private ChartFeed feed;
+	private final ChartFeed.Points points = new ChartFeed.Points();
+
+	@Override protected void setUp() {
+		feed = new ChartFeed(100);
+		feed.setEnabled(true);
+	}
+
+	public void testDisabledIgnoresPoints() {
+		feed.setEnabled(false);
+		feed.add("Speed", 1, 1.0);
+		assertEquals(0, feed.drain("Speed", points));
+	}
+
+	public void testEndpointFilter() {
+		feed.add("Speed", 1, 1.0);
+		feed.add("Rpm", 1, 1.0);
+		feed.setEndpoints(Arrays.asList("Rpm", "Fuel"));
+		feed.add("Speed", 2, 2.0);
+		feed.add("Fuel", 2, 2.0);
+
+		assertEquals("Waiting Speed points not discarded", 0, feed.drain("Speed", points));
+		assertEquals(1, feed.drain("Rpm", points));
+		assertEquals(1, feed.drain("Fuel", points));
+
+		feed.setEndpoints(null);
+		feed.add("Speed", 3, 3.0);
+		assertEquals(1, feed.drain("Speed", points));
+	}
+
+	public void testLosslessWithinBudget() {
+		// More than the initial capacity, to exercise growing
+		for (int i = 0; i < 100; i++)
+			feed.add("Speed", i, i * 2);
+
+		assertEquals(100, feed.drain("Speed", points));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, points.getTime(i));
+			assertEquals(i * 2, points.getValue(i), 0.001);
+		}
+		assertEquals(0, feed.getDroppedCount());
+		assertEquals("Drain didn't empty the series", 0, feed.drain("Speed", points));
+	}
+
+	public void testSeriesAreSeparate() {
+		feed.add("Speed", 1, 10);
+		feed.add("RPM", 2, 20);
+		feed.add("Speed", 3, 30);
+
+		assertEquals(2, feed.drain("Speed", points));
+		assertEquals(30, points.getValue(1), 0.001);
+		assertEquals(1, feed.drain("RPM", points));
+		assertEquals(20, points.getValue(0), 0.001);
+	}
+
+	public void testOverBudgetDropsOldest() {
+		for (int i = 0; i < 150; i++)
+			feed.add("Speed", i, i);
+
+		assertEquals(50, feed.getDroppedCount());
+		assertEquals(100, feed.drain("Speed", points));
+		assertEquals("Oldest point not dropped", 50, points.getTime(0));
+		assertEquals(149, points.getTime(99));
+	}
+
+	public void testDrainAfterWrapAround() {
+		// Drop some points so the ring's start moves, then check order.
+		feed.setBudget(64);
+		for (int i = 0; i < 80; i++)
+			feed.add("Speed", i, i);
+
+		assertEquals(64, feed.drain("Speed", points));
+		for (int i = 0; i < 64; i++)
+			assertEquals(16 + i, points.getTime(i));
+	}
+}
@@ -0,0 +1,94 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.CompressedHistory;
+
+import java.util.Random;
+
+public class CompressedHistoryTest extends TestCase {
+	private CompressedHistory history;
+
+	@Override protected void setUp() {
+		history = new CompressedHistory();
+	}
+
+	public void testRoundTrip() {
+		// Irregular timestamps, including large gaps and steps backwards,
+		// and values of every kind.
+		Random random = new Random(42);
+		int count = 5000;
+		long[] times = new long[count];
+		double[] values = new double[count];
+		long t = 1400000000000L;
+		for (int i = 0; i < count; i++) {
+			int kind = random.nextInt(4);
+			t += kind == 0 ? 100 : kind == 1 ? random.nextInt(5000) - 100 : kind == 2 ? 100000000L : 7;
+			times[i] = t;
+			values[i] = i % 7 == 0 ? Double.NaN : i % 5 == 0 ? -random.nextDouble() * 1e300
+					: random.nextInt(3) == 0 ? values[Math.max(0, i - 1)] : random.nextGaussian();
+			history.append(times[i], values[i]);
+		}
+
+		assertEquals(count, history.size());
+		CompressedHistory.Cursor cursor = history.cursor(null);
+		for (int i = 0; i < count; i++) {
+			assertTrue(cursor.next());
+			assertEquals(times[i], cursor.getTime());
+			assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(cursor.getValue()));
+		}
+		assertFalse(cursor.next());
+	}
+
+	public void testSlowSignalCompresses() {
+		// Ten minutes of a 10 Hz signal with a little jitter, changing
+		// value once a second.
+		Random random = new Random(1);
+		int count = 6000;
+		long t = 1400000000000L;
+		for (int i = 0; i < count; i++) {
+			t += 100 + (random.nextInt(10) == 0 ? random.nextInt(3) - 1 : 0);
+			history.append(t, 50 + i / 10);
+		}
+
+		double bytesPerPoint = history.getByteCount() / (double) count;
+		assertTrue("Too big: " + bytesPerPoint + " bytes per point", bytesPerPoint < 2.5);
+	}
+
+	public void testEvict() {
+		for (int i = 0; i < 100000; i++)
+			history.append(i, Math.sin(i));
+		history.evictBefore(50000);
+
+		long first = history.getFirstTime();
+		assertTrue(first <= 50000);
+		assertTrue(first > 0);
+
+		CompressedHistory.Cursor cursor = history.cursor(null);
+		assertTrue(cursor.next());
+		assertEquals(first, cursor.getTime());
+		int n = 1;
+		while (cursor.next())
+			n++;
+		assertEquals(history.size(), n);
+		assertEquals(99999, cursor.getTime());
+	}
+
+	public void testCursorSeesOnlyEarlierPoints() {
+		history.append(1, 1);
+		history.append(2, 2);
+		CompressedHistory.Cursor cursor = history.cursor(null);
+		history.append(3, 3);
+
+		assertTrue(cursor.next());
+		assertTrue(cursor.next());
+		assertFalse(cursor.next());
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.util.IngestBatch;
+import com.digi.android.wva.util.RingBuffer;
+import com.digi.android.wva.util.VehicleDataList;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class IngestBatchTest extends TestCase {
+	public void testCollectsDataAndEvents() {
+		IngestBatch batch = new IngestBatch();
+		assertTrue(batch.isEmpty());
+
+		batch.put("A", 1, 1000);
+		batch.logData("A", 1, 1000);
+		batch.put("A", 2, 2000);
+		batch.logData("A", 2, 2000);
+		LogEvent alarm = LogEvent.alarm(null, "B", 3, 3000);
+		batch.log(alarm);
+		for (int i = 0; i < 100; i++)
+			batch.addPosted(i);
+
+		assertFalse(batch.isEmpty());
+		assertEquals(1, batch.getLatest().size());
+		assertEquals(2, batch.getLatest().get(0).value, 0);
+		List<LogEvent> events = batch.getLogEvents();
+		assertEquals(3, events.size());
+		assertEquals(1000, events.get(0).time);
+		assertEquals(2000, events.get(1).time);
+		assertSame(alarm, events.get(2));
+		assertEquals(100, batch.getPostedCount());
+		assertEquals(99, batch.getPostedAt(99));
+
+		batch.clear();
+		assertTrue(batch.isEmpty());
+		assertEquals(0, batch.getPostedCount());
+	}
+
+	public void testReusesDroppedEvents() {
+		IngestBatch batch = new IngestBatch();
+		RingBuffer<LogEvent> log = new RingBuffer<LogEvent>(2);
+		batch.logData("A", 1, 1000);
+		batch.logData("A", 2, 2000);
+		batch.log(LogEvent.alarm(null, "A", 3, 3000));
+		LogEvent first = batch.getLogEvents().get(0);
+		apply(batch, log, new VehicleDataList());
+
+		// The log holds two events, so the alarm pushed out the first data
+		// event, which was handed back to the batch.
+		assertEquals(1, batch.getSpareEvents().size());
+		batch.logData("B", 4, 4000);
+		assertSame("Dropped event not reused", first, batch.getLogEvents().get(0));
+		assertEquals("B", first.endpoint);
+		assertEquals(4, first.value, 0);
+		assertEquals(4000, first.time);
+		assertEquals(0, batch.getSpareEvents().size());
+	}
+
+	/**
+	 * Once every endpoint has been seen and the log is full, filling a batch
+	 * with samples and their log events, and applying it to the log and a
+	 * VehicleDataList, should allocate nothing per sample.
+	 */
+	public void testSteadyStateAllocatesNothing() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return;     // Can't measure allocations on this VM.
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported())
+			return;
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		String[] endpoints = new String[100];
+		for (int i = 0; i < endpoints.length; i++) {
+			endpoints[i] = "Endpoint" + i;
+		}
+		// The two batches swapped back and forth by the ingest.
+		IngestBatch[] batches = { new IngestBatch(), new IngestBatch() };
+		RingBuffer<LogEvent> log = new RingBuffer<LogEvent>(5000);
+		VehicleDataList list = new VehicleDataList();
+
+		// Warm up: every endpoint gets its record and its row, and the log fills.
+		ingest(batches, log, list, endpoints, 0, 20000);
+
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		long overhead = threads.getThreadAllocatedBytes(id) - before;
+		before = threads.getThreadAllocatedBytes(id);
+		int samples = 200000;
+		ingest(batches, log, list, endpoints, 20000, samples);
+		long allocated = threads.getThreadAllocatedBytes(id) - before - overhead;
+
+		assertEquals("Rows added after warming up", endpoints.length, list.getList().size());
+		assertEquals(log.capacity(), log.size());
+		assertEquals(20000 + samples - 1, log.get(0).time);
+		// Even one small object per sample would come to megabytes. Allow for
+		// a few hundred bytes the VM itself may allocate while compiling.
+		assertTrue("Allocated " + allocated + " bytes for " + samples + " samples",
+				allocated < samples / 1000 * 16);
+	}
+
+	/**
+	 * Feed samples through as the ingest does, logging each one and applying
+	 * a batch every 50 samples
+	 */
+	private static void ingest(IngestBatch[] batches, RingBuffer<LogEvent> log,
+							   VehicleDataList list, String[] endpoints, int start, int samples) {
+		int filling = 0;
+		for (int i = start; i < start + samples; i++) {
+			IngestBatch batch = batches[filling];
+			String endpoint = endpoints[i % endpoints.length];
+			batch.put(endpoint, i, i);
+			batch.logData(endpoint, i, i);
+			batch.addPosted(i);
+			if (i % 50 == 49) {
+				apply(batch, log, list);
+				filling = 1 - filling;
+			}
+		}
+	}
+
+	/** Apply a batch as the ingest does once per frame, then empty it. */
+	private static void apply(IngestBatch batch, RingBuffer<LogEvent> log, VehicleDataList list) {
+		List<LogEvent> events = batch.getLogEvents();
+		for (int i = 0; i < events.size(); i++) {
+			batch.getSpareEvents().recycle(log.add(events.get(i)));
+		}
+		batch.mergeInto(list);
+		batch.clear();
+	}
+}
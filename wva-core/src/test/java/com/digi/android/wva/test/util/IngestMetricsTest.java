@@ -0,0 +1,95 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.IngestMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class IngestMetricsTest extends TestCase {
+	private IngestMetrics metrics;
+
+	@Override protected void setUp() {
+		IngestMetrics.initInstance();
+		metrics = IngestMetrics.getInstance();
+		metrics.reset();
+	}
+
+	public void testEventCounts() {
+		metrics.recordEvent("EngineSpeed", false);
+		metrics.recordEvent("EngineSpeed", false);
+		metrics.recordEvent("truck-2/VehicleSpeed", true);
+
+		IngestMetrics.Snapshot snapshot = metrics.snapshot();
+		assertEquals(2, snapshot.subscriptionEvents);
+		assertEquals(1, snapshot.alarmEvents);
+		assertEquals(2, snapshot.getEndpointEvents("EngineSpeed"));
+		assertEquals(1, snapshot.getEndpointEvents("truck-2/VehicleSpeed"));
+		assertEquals(0, snapshot.getEndpointEvents("Missing"));
+		assertEquals(Arrays.asList("EngineSpeed", "truck-2/VehicleSpeed"),
+				new ArrayList<String>(snapshot.endpointEvents.keySet()));
+	}
+
+	public void testLatencyAndNotifications() {
+		metrics.recordPublished(10);
+		metrics.recordPublished(20);
+		metrics.recordNotified(2);
+
+		IngestMetrics.Snapshot snapshot = metrics.snapshot();
+		assertEquals(2, snapshot.latencyCount);
+		assertEquals(15.0, snapshot.latencyMean, 0.001);
+		assertEquals(20, snapshot.latencyMax);
+		assertEquals(2, snapshot.notifications);
+	}
+
+	public void testSubscriptionFailures() {
+		metrics.recordSubscriptionFailures(null, Arrays.asList("A", "B"));
+		metrics.recordSubscriptionFailures("truck-2", Arrays.asList("C"));
+		metrics.recordSubscriptionFailures(null, new ArrayList<String>());
+
+		IngestMetrics.Snapshot snapshot = metrics.snapshot();
+		assertEquals(3, snapshot.subscriptionFailures);
+		assertEquals(Arrays.asList("A", "B", "truck-2/C"), snapshot.failedEndpoints);
+	}
+
+	public void testFailuresKeptAreBounded() {
+		List<String> failed = new ArrayList<String>();
+		for (int i = 0; i < IngestMetrics.MAX_FAILED_KEPT + 10; i++)
+			failed.add("E" + i);
+		metrics.recordSubscriptionFailures(null, failed);
+
+		IngestMetrics.Snapshot snapshot = metrics.snapshot();
+		assertEquals(failed.size(), snapshot.subscriptionFailures);
+		assertEquals(IngestMetrics.MAX_FAILED_KEPT, snapshot.failedEndpoints.size());
+		assertEquals("E10", snapshot.failedEndpoints.get(0));
+	}
+
+	public void testRates() throws InterruptedException {
+		IngestMetrics.Snapshot earlier = metrics.snapshot();
+		Thread.sleep(20);
+		for (int i = 0; i < 10; i++)
+			metrics.recordEvent("EngineSpeed", false);
+		Thread.sleep(20);
+		IngestMetrics.Snapshot later = metrics.snapshot();
+
+		double elapsed = later.time - earlier.time;
+		assertEquals(10 * 1000 / elapsed, later.getSubscriptionRate(earlier), 0.001);
+		assertEquals(10 * 1000 / elapsed, later.getEndpointRate("EngineSpeed", earlier), 0.001);
+		assertEquals(0.0, later.getAlarmRate(earlier));
+		assertTrue(later.getSubscriptionRate(null) > 0);
+
+		// Counts from before a reset are not subtracted from those after it.
+		metrics.reset();
+		IngestMetrics.Snapshot afterReset = metrics.snapshot();
+		assertEquals(0, afterReset.subscriptionEvents);
+		assertEquals(0.0, afterReset.getSubscriptionRate(later));
+	}
+}
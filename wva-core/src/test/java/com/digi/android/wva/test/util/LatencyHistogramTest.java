@@ -0,0 +1,58 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.LatencyHistogram;
+
+public class LatencyHistogramTest extends TestCase {
+	private LatencyHistogram histogram;
+
+	@Override protected void setUp() {
+		histogram = new LatencyHistogram();
+	}
+
+	public void testEmpty() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0.0, histogram.getMean());
+		assertEquals(0, histogram.getPercentile(99));
+	}
+
+	public void testPercentiles() {
+		// 90 fast samples and 10 slow ones.
+		for (int i = 0; i < 90; i++)
+			histogram.record(3);
+		for (int i = 0; i < 10; i++)
+			histogram.record(100);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(100, histogram.getMax());
+		assertEquals(12.7, histogram.getMean(), 0.001);
+		// 3 falls in the 2-3 bucket, 100 in the 64-127 bucket, capped at the maximum.
+		assertEquals(3, histogram.getPercentile(50));
+		assertEquals(3, histogram.getPercentile(90));
+		assertEquals(100, histogram.getPercentile(99));
+	}
+
+	public void testBucketTop() {
+		histogram.record(5);
+		histogram.record(1000);
+		// 5 is reported as the top of its 4-7 bucket.
+		assertEquals(7, histogram.getPercentile(50));
+	}
+
+	public void testNegativeAndReset() {
+		histogram.record(-5);
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.LatestValues;
+import com.digi.android.wva.util.VehicleDataList;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+public class LatestValuesTest extends TestCase {
+	public void testKeepsNewestInArrivalOrder() {
+		LatestValues latest = new LatestValues();
+		latest.put("B", 1, 1000);
+		latest.put("A", 2, 2000);
+		latest.put("B", 3, 3000);
+
+		List<VehicleData> changed = latest.getChanged();
+		assertEquals(2, changed.size());
+		assertEquals("B", changed.get(0).name);
+		assertEquals(3, changed.get(0).value, 0);
+		assertEquals(3000, changed.get(0).time);
+		assertEquals("A", changed.get(1).name);
+		assertSame(changed.get(0), latest.get("B"));
+	}
+
+	public void testClearReusesRecords() {
+		LatestValues latest = new LatestValues();
+		latest.put("A", 1, 1000);
+		VehicleData record = latest.get("A");
+
+		latest.clear();
+		assertTrue(latest.isEmpty());
+		assertNull("Cleared endpoint still reported", latest.get("A"));
+
+		latest.put("A", 2, 2000);
+		assertSame("Record not reused", record, latest.get("A"));
+		assertEquals(2, record.value, 0);
+		assertEquals(1, latest.getChanged().size());
+
+		latest.reset();
+		latest.put("A", 3, 3000);
+		assertNotSame("Record kept after reset", record, latest.get("A"));
+	}
+
+	public void testMergeCopiesRecords() {
+		LatestValues latest = new LatestValues();
+		VehicleDataList list = new VehicleDataList();
+		latest.put("A", 1, 1000);
+		assertTrue(list.merge(latest.get("A"), 0));
+		assertNotSame("List kept the reusable record", latest.get("A"), list.get("A"));
+
+		latest.clear();
+		latest.put("A", 2, 2000);
+		assertFalse(list.merge(latest.get("A"), 0));
+		assertEquals(2, list.get("A").value, 0);
+		assertEquals(2000, list.get("A").time);
+		assertEquals(1, list.getList().size());
+	}
+
+	/**
+	 * Once every endpoint has been seen, collecting samples and applying them
+	 * to a VehicleDataList should allocate nothing per sample.
+	 */
+	public void testSteadyStateAllocatesNothing() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return;     // Can't measure allocations on this VM.
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported())
+			return;
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		String[] endpoints = new String[100];
+		for (int i = 0; i < endpoints.length; i++) {
+			endpoints[i] = "Endpoint" + i;
+		}
+		LatestValues latest = new LatestValues();
+		VehicleDataList list = new VehicleDataList();
+
+		// Warm up: every endpoint gets its record and its row.
+		ingest(latest, list, endpoints, 0, 20000);
+
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		long overhead = threads.getThreadAllocatedBytes(id) - before;
+		before = threads.getThreadAllocatedBytes(id);
+		int samples = 200000;
+		ingest(latest, list, endpoints, 20000, samples);
+		long allocated = threads.getThreadAllocatedBytes(id) - before - overhead;
+
+		assertEquals("Rows added after warming up", endpoints.length, list.getList().size());
+		// Even one small object per sample would come to megabytes. Allow for
+		// a few hundred bytes the VM itself may allocate while compiling.
+		assertTrue("Allocated " + allocated + " bytes for " + samples + " samples",
+				allocated < samples / 1000 * 16);
+	}
+
+	/** Feed samples through as the ingest does, applying a batch every 50 samples. */
+	private static void ingest(LatestValues latest, VehicleDataList list, String[] endpoints,
+							   int start, int samples) {
+		for (int i = start; i < start + samples; i++) {
+			latest.put(endpoints[i % endpoints.length], i, i);
+			if (i % 50 == 49) {
+				List<VehicleData> changed = latest.getChanged();
+				for (int j = 0; j < changed.size(); j++) {
+					list.merge(changed.get(j), list.getList().size());
+				}
+				latest.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.Lttb;
+
+public class LttbTest extends TestCase {
+
+	public void testShortSeriesCopied() {
+		long[] times = {1, 2, 3};
+		double[] values = {5, 6, 7};
+		long[] t = new long[3];
+		double[] v = new double[3];
+
+		assertEquals(3, Lttb.downsample(times, values, 3, 10, t, v));
+		assertEquals(3, t[2]);
+		assertEquals(7.0, v[2]);
+	}
+
+	public void testKeepsEndsAndPeak() {
+		int count = 1000;
+		long[] times = new long[count];
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			times[i] = 1400000000000L + i * 100;
+			values[i] = i == 500 ? 1000 : i % 2;
+		}
+		long[] t = new long[20];
+		double[] v = new double[20];
+
+		int kept = Lttb.downsample(times, values, count, 20, t, v);
+		assertEquals(20, kept);
+		assertEquals(times[0], t[0]);
+		assertEquals(times[count - 1], t[kept - 1]);
+		boolean sawPeak = false;
+		for (int i = 0; i < kept; i++) {
+			if (i > 0)
+				assertTrue("Points out of order", t[i] > t[i - 1]);
+			if (v[i] == 1000)
+				sawPeak = true;
+		}
+		assertTrue("Peak was dropped", sawPeak);
+	}
+
+	public void testBadThreshold() {
+		try {
+			Lttb.downsample(new long[5], new double[5], 5, 2, new long[5], new double[5]);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.Mailbox;
+
+import java.util.List;
+
+public class MailboxTest extends TestCase {
+	private Mailbox<String> mailbox;
+	private int wakeups;
+	private final Mailbox.Waker waker = new Mailbox.Waker() {
+		@Override
+		public void wake() {
+			wakeups++;
+		}
+	};
+
+	@Override protected void setUp() {
+		mailbox = new Mailbox<String>(3);
+		wakeups = 0;
+	}
+
+	public void testUrgentFirst() {
+		mailbox.offer("a");
+		mailbox.offer("b");
+		mailbox.offerUrgent("error");
+
+		List<String> msgs = mailbox.drain();
+		assertEquals(3, msgs.size());
+		assertEquals("error", msgs.get(0));
+		assertEquals("a", msgs.get(1));
+		assertTrue("drain() didn't empty the mailbox", mailbox.isEmpty());
+	}
+
+	public void testDropOldest() {
+		mailbox.offerUrgent("error");
+		for (int i = 0; i < 5; i++)
+			mailbox.offer(Integer.toString(i));
+
+		List<String> msgs = mailbox.drain();
+		assertEquals(3, msgs.size());
+		assertEquals("Urgent message dropped", "error", msgs.get(0));
+		assertEquals("3", msgs.get(1));
+		assertEquals("4", msgs.get(2));
+		assertEquals(3, mailbox.getDroppedCount());
+	}
+
+	public void testOneWakeupPerDrain() {
+		mailbox.setWaker(waker);
+		assertEquals("Woken up with nothing waiting", 0, wakeups);
+
+		mailbox.offer("a");
+		mailbox.offer("b");
+		assertEquals("Not woken exactly once", 1, wakeups);
+
+		mailbox.drain();
+		mailbox.offer("c");
+		assertEquals("Not woken again after drain", 2, wakeups);
+	}
+
+	public void testWakeOnRegister() {
+		mailbox.offer("a");
+		mailbox.setWaker(waker);
+		assertEquals("Not woken for waiting message", 1, wakeups);
+
+		mailbox.setWaker(null);
+		mailbox.drain();
+		mailbox.offer("b");
+		assertEquals("Woken after unregistering", 1, wakeups);
+	}
+}
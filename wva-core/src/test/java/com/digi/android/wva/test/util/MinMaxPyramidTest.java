@@ -0,0 +1,146 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.MinMaxPyramid;
+
+import java.util.Random;
+
+public class MinMaxPyramidTest extends TestCase {
+	private MinMaxPyramid pyramid;
+
+	@Override protected void setUp() {
+		pyramid = new MinMaxPyramid();
+	}
+
+	public void testLevels() {
+		for (int t = 0; t < 64; t++)
+			pyramid.add(t, t);
+
+		// 64 points fill 8 level-0 buckets, which fill one level-1 bucket,
+		// which starts level 2.
+		assertEquals(3, pyramid.getLevelCount());
+	}
+
+	public void testBoundedOutput() {
+		// A shift's worth of one-second points
+		for (int t = 0; t < 8 * 3600; t++)
+			pyramid.add(t * 1000L, Math.sin(t / 100.0));
+
+		long[] times = new long[1000];
+		double[] values = new double[1000];
+		int n = pyramid.query(0, 8 * 3600 * 1000L, 1000, times, values);
+
+		assertTrue(n > 0);
+		assertTrue(n <= 1000);
+		for (int i = 1; i < n; i++)
+			assertTrue(times[i] >= times[i - 1]);
+	}
+
+	public void testKeepsPeaks() {
+		for (int t = 0; t < 10000; t++)
+			pyramid.add(t, t == 4321 ? 500 : t == 7777 ? -500 : t % 10);
+
+		long[] times = new long[200];
+		double[] values = new double[200];
+		int n = pyramid.query(0, 10000, 200, times, values);
+
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		assertEquals(500.0, max);
+		assertEquals(-500.0, min);
+	}
+
+	public void testCoversNewestPoints() {
+		// 100 points: 12 full level-0 buckets and 4 points not yet passed up
+		for (int t = 0; t < 100; t++)
+			pyramid.add(t, t);
+
+		long[] times = new long[100];
+		double[] values = new double[100];
+		int n = pyramid.query(0, 99, 40, times, values);
+
+		assertEquals(99, times[n - 1]);
+		assertEquals(99.0, values[n - 1]);
+	}
+
+	public void testRangeMinMax() {
+		Random random = new Random(1);
+		long[] times = new long[5000];
+		double[] values = new double[5000];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = i * 10L;
+			values[i] = random.nextGaussian();
+			pyramid.add(times[i], values[i]);
+		}
+
+		double[] minMax = new double[2];
+		long[] covered = new long[2];
+		for (int run = 0; run < 500; run++) {
+			long start = random.nextInt(50000), stop = start + random.nextInt(50000 - (int) start);
+			if (!pyramid.rangeMinMax(start, stop, minMax, covered))
+				continue;
+			assertTrue(covered[0] >= start);
+			assertTrue(covered[1] <= stop);
+
+			// Exact over the covered stretch, which leaves few points out
+			double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+			int outside = 0;
+			for (int i = 0; i < times.length; i++) {
+				if (times[i] >= covered[0] && times[i] <= covered[1]) {
+					min = Math.min(min, values[i]);
+					max = Math.max(max, values[i]);
+				} else if (times[i] >= start && times[i] <= stop) {
+					outside++;
+				}
+			}
+			assertEquals(min, minMax[0]);
+			assertEquals(max, minMax[1]);
+			assertTrue("Left out " + outside, outside <= 2 * MinMaxPyramid.FANOUT);
+		}
+	}
+
+	public void testRangeMinMaxIgnoresOldSpike() {
+		for (int t = 0; t < 100000; t++)
+			pyramid.add(t, t == 10 ? 1000 : t % 7);
+
+		double[] minMax = new double[2];
+		long[] covered = new long[2];
+		assertTrue(pyramid.rangeMinMax(90000, 99999, minMax, covered));
+		assertEquals(0.0, minMax[0]);
+		assertEquals(6.0, minMax[1]);
+
+		assertTrue(pyramid.rangeMinMax(0, 99999, minMax, covered));
+		assertEquals(1000.0, minMax[1]);
+	}
+
+	public void testRangeMinMaxTooShort() {
+		for (int t = 0; t < 100; t++)
+			pyramid.add(t, t);
+		// No bucket lies wholly within three points
+		assertFalse(pyramid.rangeMinMax(20, 22, new double[2], new long[2]));
+	}
+
+	public void testEvict() {
+		for (int t = 0; t < 100; t++)
+			pyramid.add(t, t);
+		pyramid.evictBefore(50);
+
+		long[] times = new long[100];
+		double[] values = new double[100];
+		int n = pyramid.query(0, 99, 100, times, values);
+
+		// The bucket holding 48..55 is kept, since it ends after 50
+		assertEquals(48, times[0]);
+	}
+}
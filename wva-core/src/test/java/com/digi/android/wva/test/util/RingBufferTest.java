@@ -0,0 +1,91 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.RingBuffer;
+
+public class RingBufferTest extends TestCase {
+	private RingBuffer<Integer> buffer;
+
+	@Override protected void setUp() {
+		buffer = new RingBuffer<Integer>(3);
+	}
+
+	public void testNewestFirst() {
+		buffer.add(1);
+		buffer.add(2);
+
+		assertEquals(2, buffer.size());
+		assertEquals(Integer.valueOf(2), buffer.get(0));
+		assertEquals(Integer.valueOf(1), buffer.get(1));
+		assertEquals(0, buffer.getDroppedCount());
+	}
+
+	public void testOverflowDropsOldest() {
+		for (int i = 1; i <= 3; i++)
+			assertNull(buffer.add(i));
+		assertEquals(Integer.valueOf(1), buffer.add(4));
+		assertEquals(Integer.valueOf(2), buffer.add(5));
+
+		assertEquals(3, buffer.size());
+		assertEquals(Integer.valueOf(5), buffer.get(0));
+		assertEquals(Integer.valueOf(3), buffer.get(2));
+		assertEquals(2, buffer.getDroppedCount());
+		assertEquals(-1, buffer.indexOf(1));
+		assertEquals(1, buffer.indexOf(4));
+	}
+
+	public void testGetOutOfRange() {
+		buffer.add(1);
+		try {
+			buffer.get(1);
+			fail("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	public void testShrinkKeepsNewest() {
+		for (int i = 1; i <= 3; i++)
+			buffer.add(i);
+
+		buffer.setCapacity(2);
+		assertEquals(2, buffer.size());
+		assertEquals(Integer.valueOf(3), buffer.get(0));
+		assertEquals(Integer.valueOf(2), buffer.get(1));
+		assertEquals(1, buffer.getDroppedCount());
+
+		// Check that writing continues in the right place.
+		buffer.add(4);
+		assertEquals(Integer.valueOf(4), buffer.get(0));
+		assertEquals(Integer.valueOf(3), buffer.get(1));
+	}
+
+	public void testGrow() {
+		for (int i = 1; i <= 4; i++)
+			buffer.add(i);
+
+		buffer.setCapacity(5);
+		buffer.add(5);
+		buffer.add(6);
+		assertEquals(5, buffer.size());
+		assertEquals(Integer.valueOf(6), buffer.get(0));
+		assertEquals(Integer.valueOf(2), buffer.get(4));
+	}
+
+	public void testClear() {
+		for (int i = 1; i <= 5; i++)
+			buffer.add(i);
+
+		buffer.clear();
+		assertEquals(0, buffer.size());
+		assertEquals(0, buffer.getDroppedCount());
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.StripedCounter;
+
+public class StripedCounterTest extends TestCase {
+	public void testAddAndReset() {
+		StripedCounter counter = new StripedCounter(4);
+		counter.increment();
+		counter.add(41);
+		assertEquals(42, counter.sum());
+
+		counter.reset();
+		assertEquals(0, counter.sum());
+	}
+
+	public void testConcurrentAdds() throws InterruptedException {
+		final StripedCounter counter = new StripedCounter();
+		final int perThread = 100000;
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < perThread; j++)
+						counter.increment();
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(threads.length * perThread, counter.sum());
+	}
+}
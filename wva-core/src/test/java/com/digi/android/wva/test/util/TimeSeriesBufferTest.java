@@ -0,0 +1,90 @@
+/* 
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ * 
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved. 
+ */
+ 
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.TimeSeriesBuffer;
+
+public class TimeSeriesBufferTest extends TestCase {
+	private TimeSeriesBuffer buffer;
+
+	@Override protected void setUp() {
+		buffer = new TimeSeriesBuffer(4);
+	}
+
+	public void testEvictWhileSliding() {
+		// Keep a window of 3 points while adding 10, wrapping the ring
+		for (int t = 0; t < 10; t++) {
+			buffer.add(t, t * 10);
+			buffer.evictBefore(t - 2);
+		}
+
+		assertEquals(3, buffer.size());
+		assertEquals(7, buffer.getTime(0));
+		assertEquals(90.0, buffer.getValue(2));
+		assertEquals(70.0, buffer.getMinValue());
+		assertEquals(90.0, buffer.getMaxValue());
+	}
+
+	public void testGrow() {
+		for (int t = 0; t < 10; t++)
+			buffer.add(t, t);
+
+		assertEquals(10, buffer.size());
+		for (int i = 0; i < 10; i++)
+			assertEquals(i, buffer.getTime(i));
+	}
+
+	public void testOutOfOrder() {
+		buffer.add(10, 1);
+		buffer.add(30, 3);
+		buffer.add(20, 2);
+
+		assertEquals(20, buffer.getTime(1));
+		assertEquals(3.0, buffer.getValue(2));
+	}
+
+	public void testBounds() {
+		buffer.add(10, 1);
+		buffer.add(20, 2);
+		buffer.add(20, 3);
+
+		assertEquals(1, buffer.lowerBound(20));
+		assertEquals(3, buffer.upperBound(20));
+		assertEquals(0, buffer.lowerBound(5));
+		assertEquals(3, buffer.lowerBound(25));
+	}
+
+	public void testCopyAcrossWrap() {
+		for (int t = 0; t < 6; t++) {
+			buffer.add(t, t);
+			buffer.evictBefore(t - 2);
+		}
+		long[] times = new long[3];
+		double[] values = new double[3];
+		buffer.copy(0, 3, times, values);
+
+		assertEquals(3, times[0]);
+		assertEquals(5, times[2]);
+		assertEquals(4.0, values[1]);
+	}
+
+	public void testEvictAll() {
+		buffer.add(10, 1);
+		assertEquals(1, buffer.evictBefore(100));
+		assertEquals(0, buffer.size());
+		assertEquals(Double.MAX_VALUE, buffer.getMinValue());
+		try {
+			buffer.getTime(0);
+			fail("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+}
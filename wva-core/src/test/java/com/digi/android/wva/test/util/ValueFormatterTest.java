@@ -0,0 +1,73 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.util.ValueFormatter;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+public class ValueFormatterTest extends TestCase {
+	private ValueFormatter formatter;
+	private DecimalFormat reference;
+
+	@Override protected void setUp() {
+		formatter = new ValueFormatter(3, '.');
+		reference = new DecimalFormat("#.###", DecimalFormatSymbols.getInstance(Locale.US));
+	}
+
+	public void testExamples() {
+		assertEquals("0", formatter.format(0.0));
+		assertEquals("-0", formatter.format(-0.0001));
+		assertEquals("0.5", formatter.format(0.5));
+		assertEquals("100", formatter.format(100));
+		assertEquals("-3.142", formatter.format(-3.14159));
+		assertEquals("0.3", formatter.format(0.1 + 0.2));
+		assertEquals("1234567.125", formatter.format(1234567.125));
+		assertEquals("0.002", formatter.format(0.0025));
+	}
+
+	public void testMatchesDecimalFormat() {
+		Random random = new Random(1234);
+		for (int i = 0; i < 10000; i++) {
+			double value = (random.nextInt(2000001) - 1000000) / 1000.0 + random.nextInt(7) / 7.0;
+			assertEquals("Wrong format for " + value, reference.format(value), formatter.format(value));
+		}
+	}
+
+	public void testLargeAndSpecialValues() {
+		assertEquals(reference.format(1e20), formatter.format(1e20));
+		assertEquals(reference.format(-Double.MAX_VALUE), formatter.format(-Double.MAX_VALUE));
+		assertEquals(reference.format(Double.NaN), formatter.format(Double.NaN));
+		assertEquals(reference.format(Double.POSITIVE_INFINITY), formatter.format(Double.POSITIVE_INFINITY));
+	}
+
+	public void testIntoBuffer() {
+		char[] buffer = new char[ValueFormatter.MAX_LENGTH];
+		int length = formatter.format(12.5, buffer);
+		assertEquals("12.5", new String(buffer, 0, length));
+		length = formatter.format(-Double.MAX_VALUE, buffer);
+		assertEquals(reference.format(-Double.MAX_VALUE), new String(buffer, 0, length));
+	}
+
+	public void testSeparatorAndDigits() {
+		ValueFormatter comma = new ValueFormatter(1, ',');
+		assertEquals("2,5", comma.format(2.45 + 0.01));
+		assertEquals("3", new ValueFormatter(0, '.').format(2.5 + 0.5));
+		try {
+			new ValueFormatter(10, '.');
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
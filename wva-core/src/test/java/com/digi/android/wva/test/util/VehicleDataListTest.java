@@ -0,0 +1,188 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.util;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.model.LogEvent;
+import com.digi.android.wva.model.VehicleData;
+import com.digi.android.wva.util.EventLog;
+import com.digi.android.wva.util.VehicleDataList;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class VehicleDataListTest extends TestCase {
+	private VehicleDataList list;
+	private final List<LogEvent> logged = new ArrayList<LogEvent>();
+
+	@Override protected void setUp() {
+		list = new VehicleDataList();
+		VehicleDataList.setEventLog(new EventLog() {
+			@Override
+			public void add(LogEvent event) {
+				logged.add(event);
+			}
+		});
+	}
+
+	@Override protected void tearDown() {
+		VehicleDataList.setEventLog(null);
+	}
+
+	public void testSingle() {
+		VehicleData data = new VehicleData("Test", 1.0, 1000);
+		assertTrue(list.update(data));
+
+		assertEquals(1, list.getList().size());
+		assertSame(data, list.getList().get(0));
+		assertEquals(1, logged.size());
+		assertEquals("Test", logged.get(0).endpoint);
+		assertEquals(1.0, logged.get(0).value, 0);
+	}
+
+	public void testUpdating() {
+		String[] names = new String[]
+				{"Apples", "Bananas", "Custard", "Daleks", "Elephants",
+				 "Bananas", "Fish Fingers", "Gorn", "Apples", "Daleks",
+				 "Hills", "Daleks", "Bananas", "Elephants", "Fish Fingers"};
+		Set<String> nameset = new HashSet<String>();
+		for (int i = 0; i < names.length; i++) {
+			nameset.add(names[i]);
+			list.update(new VehicleData(names[i], i, i));
+		}
+
+		assertEquals(nameset.size(), list.getList().size());
+		// Every update is logged, not just new rows.
+		assertEquals(names.length, logged.size());
+		assertEquals(12, list.get("Bananas").value, 0);
+	}
+
+	public void testIndexByName() {
+		String[] names = new String[]{"Apples", "Bananas", "Carrots", "Danger"};
+		for (int i = 0; i < names.length; i++)
+			list.update(new VehicleData(names[i], i, i));
+
+		for (int i = 0; i < names.length; i++) {
+			assertEquals(i, list.indexOf(names[i]));
+			assertSame(list.getList().get(i), list.get(names[i]));
+		}
+		assertEquals(-1, list.indexOf("Nothing"));
+		assertEquals(-1, list.indexOf(null));
+		assertNull(list.get("Nothing"));
+
+		// Updating existing data must not move it.
+		assertFalse(list.update(new VehicleData("Bananas", 100, 100)));
+		assertEquals(1, list.indexOf("Bananas"));
+		assertEquals(100, list.get("Bananas").value, 0);
+	}
+
+	public void testRemoveByName() {
+		String[] names = new String[]{"Apples", "Bananas", "Carrots", "Danger"};
+		for (int i = 0; i < names.length; i++)
+			list.update(new VehicleData(names[i], i, i));
+
+		assertNotNull(list.remove("Bananas"));
+		assertNull(list.remove("Bananas"));
+		assertEquals(names.length - 1, list.getList().size());
+		assertEquals(0, list.indexOf("Apples"));
+		assertEquals(1, list.indexOf("Carrots"));
+		assertEquals(2, list.indexOf("Danger"));
+
+		// Inserting ahead of existing rows pushes them down.
+		list.update(new VehicleData("Aardvark", 0, 0), 0);
+		assertEquals(0, list.indexOf("Aardvark"));
+		assertEquals(3, list.indexOf("Danger"));
+
+		list.getList().clear();
+		assertNull(list.get("Apples"));
+		assertEquals(-1, list.indexOf("Danger"));
+	}
+
+	public void testChangesThroughListKeepIndex() {
+		List<VehicleData> rows = list.getList();
+		rows.add(new VehicleData("A", 1, 1));
+		rows.add(new VehicleData("B", 2, 2));
+		rows.add(new VehicleData("C", 3, 3));
+
+		// Adding a second row for an endpoint replaces the first.
+		VehicleData newA = new VehicleData("A", 10, 10);
+		rows.add(newA);
+		assertEquals(3, rows.size());
+		assertEquals(2, list.indexOf("A"));
+		assertSame(newA, list.get("A"));
+		assertEquals(0, list.indexOf("B"));
+
+		// set() with another endpoint's data drops the old row's index.
+		rows.set(0, new VehicleData("D", 4, 4));
+		assertNull(list.get("B"));
+		assertEquals(0, list.indexOf("D"));
+		assertEquals(0, rows.indexOf(list.get("D")));
+		assertEquals(-1, rows.indexOf(new VehicleData("D", 4, 4)));
+
+		rows.remove(1);
+		assertEquals(-1, list.indexOf("C"));
+		assertEquals(1, list.indexOf("A"));
+	}
+
+	public void testPositionsMatchRowsAfterRandomChanges() {
+		Random random = new Random(42);
+		List<VehicleData> rows = list.getList();
+		for (int step = 0; step < 2000; step++) {
+			String name = "E" + random.nextInt(50);
+			int op = random.nextInt(4);
+			if (op == 0) {
+				list.remove(name);
+			} else if (op == 1) {
+				list.update(new VehicleData(name, step, step), random.nextInt(rows.size() + 1));
+			} else {
+				list.update(new VehicleData(name, step, step));
+			}
+
+			// Check a few names rather than all, so stale positions are
+			// sometimes left for later lookups to fix.
+			for (int i = 0; i < 3 && !rows.isEmpty(); i++) {
+				int pos = random.nextInt(rows.size());
+				assertEquals(pos, list.indexOf(rows.get(pos).name));
+			}
+		}
+		for (int i = 0; i < rows.size(); i++)
+			assertEquals(i, list.indexOf(rows.get(i).name));
+	}
+
+	public void testApplyDoesNotLog() {
+		assertTrue(list.apply(new VehicleData("Apples", 1, 1), 0));
+		assertFalse(list.apply(new VehicleData("Apples", 2, 2), 0));
+
+		assertEquals(1, list.getList().size());
+		assertEquals(2, list.get("Apples").value, 0);
+		assertTrue(logged.isEmpty());
+	}
+
+	public void testMergeCopiesNewRows() {
+		VehicleData data = new VehicleData("Apples", 1, 1000);
+		assertTrue(list.merge(data, 0));
+		assertNotSame(data, list.get("Apples"));
+
+		data.set(2, 2000);
+		assertEquals(1, list.get("Apples").value, 0);
+		assertFalse(list.merge(data, 0));
+		assertEquals(2, list.get("Apples").value, 0);
+		assertEquals(2000, list.get("Apples").time);
+		assertTrue(logged.isEmpty());
+	}
+
+	public void testNoEventLog() {
+		VehicleDataList.setEventLog(null);
+		list.update(new VehicleData("Apples", 1, 1));
+		assertEquals(1, list.getList().size());
+		assertTrue(logged.isEmpty());
+	}
+}
@@ -11,11 +11,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import android.test.InstrumentationTestCase;
+import junit.framework.TestCase;
 
 import com.digi.android.wva.util.VehicleEndpointComparator;
 
-public class VehicleEndpointComparatorTest extends InstrumentationTestCase {
+public class VehicleEndpointComparatorTest extends TestCase {
 	private VehicleEndpointComparator comp;
 	
 	/* Pressure Pro endpoint prefix. */
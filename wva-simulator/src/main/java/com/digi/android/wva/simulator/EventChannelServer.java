@@ -0,0 +1,168 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The simulator's event channel: a TCP server which sends every event to
+ * every connected client, one JSON object per line.
+ *
+ * <p>Events are written by the thread calling {@link #send(String)}, and
+ * only pushed out to the clients by {@link #flush()}, so that a whole tick's
+ * worth of events goes out together. A client which can't keep up slows the
+ * sender down, much as a real WVA's queue would fill up; a client whose
+ * connection fails is dropped.</p>
+ */
+public class EventChannelServer implements SimulatedVehicle.EventSink {
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<Client>();
+    private final AtomicLong sent = new AtomicLong();
+    private ServerSocket server;
+    private Thread acceptThread;
+
+    private static final class Client {
+        final Socket socket;
+        final Writer out;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), 65536);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing more to do with it anyway.
+            }
+        }
+    }
+
+    /**
+     * Start accepting clients
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port can't be listened on
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null)
+            throw new IllegalStateException("Event channel already started");
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+        final ServerSocket listening = server;
+        acceptThread = new Thread("Event channel accept") {
+            @Override
+            public void run() {
+                while (!listening.isClosed()) {
+                    try {
+                        Socket socket = listening.accept();
+                        socket.setTcpNoDelay(true);
+                        clients.add(new Client(socket));
+                        System.out.println("Event channel client connected from "
+                                + socket.getRemoteSocketAddress());
+                    } catch (IOException e) {
+                        // Closed by stop(), or the client went away already.
+                    }
+                }
+            }
+        };
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return the port being listened on, or -1 if not started
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getLocalPort();
+    }
+
+    /**
+     * Stop accepting clients, and disconnect every client
+     */
+    public synchronized void stop() {
+        if (server == null)
+            return;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+        server = null;
+        for (Client c : clients) {
+            c.close();
+        }
+        clients.clear();
+    }
+
+    /**
+     * Disconnect every client but keep listening, as when a real WVA drops
+     * its connections
+     */
+    public void dropClients() {
+        for (Client c : clients) {
+            clients.remove(c);
+            c.close();
+        }
+    }
+
+    @Override
+    public void send(String event) {
+        for (Client c : clients) {
+            try {
+                c.out.write(event);
+                c.out.write('\n');
+            } catch (IOException e) {
+                drop(c);
+            }
+        }
+        sent.incrementAndGet();
+    }
+
+    /**
+     * Push everything sent so far out to the clients
+     */
+    public void flush() {
+        for (Client c : clients) {
+            try {
+                c.out.flush();
+            } catch (IOException e) {
+                drop(c);
+            }
+        }
+    }
+
+    private void drop(Client c) {
+        if (clients.remove(c)) {
+            System.out.println("Event channel client " + c.socket.getRemoteSocketAddress() + " disconnected");
+            c.close();
+        }
+    }
+
+    /**
+     * @return number of clients connected
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return number of events sent since starting, whether or not anybody
+     * was connected to receive them
+     */
+    public long getEventsSent() {
+        return sent.get();
+    }
+}
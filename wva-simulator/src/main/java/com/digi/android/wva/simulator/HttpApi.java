@@ -0,0 +1,366 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Base64;
+
+/**
+ * The simulator's ws/ web services: the resources the WVA library uses to
+ * list and fetch vehicle data, manage subscriptions and alarms, configure
+ * the event channel, read fault codes, and get and set the time.
+ *
+ * <p>Responses follow the WVA's formats closely enough for the library;
+ * PUT and DELETE requests which succeed get an empty 200 response.</p>
+ */
+class HttpApi implements HttpHandler {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String[] BUSES = {"can0", "can1"};
+    private static final String[] DTC_TYPES = {"active", "inactive"};
+
+    private final SimulatedVehicle vehicle;
+    private final SimulatorConfig config;
+    private final EventChannelServer events;
+    private final String authorization;
+
+    /** An error to answer the request with. */
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    HttpApi(SimulatedVehicle vehicle, SimulatorConfig config, EventChannelServer events) {
+        this.vehicle = vehicle;
+        this.config = config;
+        this.events = events;
+        if (config.user == null) {
+            authorization = null;
+        } else {
+            String credentials = config.user + ":" + (config.password == null ? "" : config.password);
+            authorization = "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(UTF_8));
+        }
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (config.httpDelay > 0)
+                Thread.sleep(config.httpDelay);
+            if (authorization != null
+                    && !authorization.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"WVA\"");
+                throw new HttpError(401, "Unauthorized");
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            path = path.length() <= 4 ? "" : path.substring(4);   // strip "/ws/"
+            if (path.endsWith("/"))
+                path = path.substring(0, path.length() - 1);
+
+            JSONObject response = route(exchange.getRequestMethod(), path, exchange);
+            if (response == null) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                byte[] body = response.toString().getBytes(UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        } catch (HttpError e) {
+            byte[] body = e.getMessage().getBytes(UTF_8);
+            exchange.sendResponseHeaders(e.status, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (JSONException e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handle a request
+     * @return the JSON to answer with, or null for an empty response
+     */
+    private JSONObject route(String method, String path, HttpExchange exchange)
+            throws HttpError, JSONException, IOException {
+        String[] parts = path.isEmpty() ? new String[0] : path.split("/");
+        String top = parts.length == 0 ? "" : parts[0];
+
+        if (parts.length == 0) {
+            requireGet(method);
+            return list("ws", "vehicle", "subscriptions", "alarms", "config", "hw");
+        }
+        if ("vehicle".equals(top)) {
+            if (parts.length == 1) {
+                requireGet(method);
+                return list("vehicle", "vehicle/data", "vehicle/dtc");
+            }
+            if ("data".equals(parts[1]))
+                return vehicleData(method, parts);
+            if ("dtc".equals(parts[1]))
+                return faultCodes(method, parts);
+        } else if ("subscriptions".equals(top)) {
+            return subscriptions(method, parts, exchange);
+        } else if ("alarms".equals(top)) {
+            return alarms(method, parts, exchange);
+        } else if ("config".equals(top)) {
+            return config(method, parts, exchange);
+        } else if ("hw".equals(top)) {
+            return hardware(method, parts, exchange);
+        }
+        throw new HttpError(404, "No such resource: " + path);
+    }
+
+    private JSONObject vehicleData(String method, String[] parts) throws HttpError, JSONException {
+        requireGet(method);
+        if (parts.length == 2) {
+            JSONArray uris = new JSONArray();
+            for (SimulatedEndpoint e : vehicle.getEndpoints()) {
+                uris.put(e.getUri());
+            }
+            return new JSONObject().put("data", uris);
+        }
+        SimulatedEndpoint endpoint = parts.length == 3 ? vehicle.getEndpoint(parts[2]) : null;
+        if (endpoint == null)
+            throw new HttpError(404, "No such endpoint");
+        long now = vehicle.now();
+        return new JSONObject().put(endpoint.name, new JSONObject()
+                .put("value", endpoint.generator.valueAt(now))
+                .put("timestamp", SimulatedVehicle.TIMESTAMP.print(now)));
+    }
+
+    private JSONObject faultCodes(String method, String[] parts) throws HttpError, JSONException {
+        requireGet(method);
+        if (parts.length == 2) {
+            JSONArray uris = new JSONArray();
+            for (String bus : BUSES) {
+                for (String type : DTC_TYPES) {
+                    uris.put("vehicle/dtc/" + bus + "_" + type);
+                }
+            }
+            return new JSONObject().put("dtc", uris);
+        }
+        String busType = parts[2];
+        if (!isBusType(busType))
+            throw new HttpError(404, "No such bus");
+        if (parts.length == 3) {
+            JSONArray uris = new JSONArray();
+            for (int i = 0; i < vehicle.getEcuCount(); i++) {
+                uris.put("vehicle/dtc/" + busType + "/ecu" + i);
+            }
+            return new JSONObject().put(busType, uris);
+        }
+        String ecu = parts[3];
+        if (parts.length != 4 || !isEcu(ecu))
+            throw new HttpError(404, "No such ECU");
+        // No fault codes to report.
+        return new JSONObject().put(ecu, new JSONObject()
+                .put("value", "")
+                .put("timestamp", SimulatedVehicle.TIMESTAMP.print(vehicle.now())));
+    }
+
+    private JSONObject subscriptions(String method, String[] parts, HttpExchange exchange)
+            throws HttpError, JSONException, IOException {
+        if (parts.length == 1) {
+            requireGet(method);
+            JSONArray uris = new JSONArray();
+            for (String name : vehicle.getSubscriptionNames()) {
+                uris.put("subscriptions/" + name);
+            }
+            return new JSONObject().put("subscriptions", uris);
+        }
+        if (parts.length != 2)
+            throw new HttpError(404, "No such resource");
+        String name = parts[1];
+        if ("GET".equals(method)) {
+            SimulatedVehicle.Subscription sub = vehicle.getSubscription(name);
+            if (sub == null)
+                throw new HttpError(404, "No such subscription");
+            return new JSONObject().put("subscription", new JSONObject()
+                    .put("uri", sub.endpoint.getUri())
+                    .put("interval", sub.interval)
+                    .put("buffer", sub.buffer));
+        } else if ("PUT".equals(method)) {
+            JSONObject sub = readObject(exchange, "subscription");
+            SimulatedEndpoint endpoint = endpointAt(sub.optString("uri"));
+            vehicle.subscribe(name, endpoint, sub.optInt("interval", 1), sub.optString("buffer", "queue"));
+            return null;
+        } else if ("DELETE".equals(method)) {
+            if (!vehicle.unsubscribe(name))
+                throw new HttpError(404, "No such subscription");
+            return null;
+        }
+        throw new HttpError(405, "Method not allowed");
+    }
+
+    private JSONObject alarms(String method, String[] parts, HttpExchange exchange)
+            throws HttpError, JSONException, IOException {
+        if (parts.length == 1) {
+            requireGet(method);
+            JSONArray uris = new JSONArray();
+            for (String name : vehicle.getAlarmNames()) {
+                uris.put("alarms/" + name);
+            }
+            return new JSONObject().put("alarms", uris);
+        }
+        if (parts.length != 2)
+            throw new HttpError(404, "No such resource");
+        String name = parts[1];
+        if ("GET".equals(method)) {
+            SimulatedVehicle.Alarm alarm = vehicle.getAlarm(name);
+            if (alarm == null)
+                throw new HttpError(404, "No such alarm");
+            return new JSONObject().put("alarm", new JSONObject()
+                    .put("uri", alarm.endpoint.getUri())
+                    .put("type", alarm.type)
+                    .put("threshold", alarm.threshold)
+                    .put("interval", alarm.interval));
+        } else if ("PUT".equals(method)) {
+            JSONObject alarm = readObject(exchange, "alarm");
+            SimulatedEndpoint endpoint = endpointAt(alarm.optString("uri"));
+            String type = alarm.optString("type");
+            if (!SimulatedVehicle.ALARM_TYPES.contains(type))
+                throw new HttpError(400, "Unknown alarm type: " + type);
+            vehicle.addAlarm(name, endpoint, type, alarm.optDouble("threshold", 0),
+                    alarm.optInt("interval", 0));
+            return null;
+        } else if ("DELETE".equals(method)) {
+            if (!vehicle.removeAlarm(name))
+                throw new HttpError(404, "No such alarm");
+            return null;
+        }
+        throw new HttpError(405, "Method not allowed");
+    }
+
+    private JSONObject config(String method, String[] parts, HttpExchange exchange)
+            throws HttpError, JSONException, IOException {
+        if (parts.length == 1) {
+            requireGet(method);
+            return list("config", "config/ws_events");
+        }
+        if (parts.length != 2 || !"ws_events".equals(parts[1]))
+            throw new HttpError(404, "No such configuration");
+        if ("GET".equals(method)) {
+            return new JSONObject().put("ws_events", new JSONObject()
+                    .put("enable", "on")
+                    .put("port", events.getPort()));
+        } else if ("PUT".equals(method)) {
+            // The event channel is always on, on the port it was started with.
+            readObject(exchange, "ws_events");
+            return null;
+        }
+        throw new HttpError(405, "Method not allowed");
+    }
+
+    private JSONObject hardware(String method, String[] parts, HttpExchange exchange)
+            throws HttpError, JSONException, IOException {
+        if (parts.length == 1) {
+            requireGet(method);
+            return list("hw", "hw/time");
+        }
+        if (parts.length != 2 || !"time".equals(parts[1]))
+            throw new HttpError(404, "No such hardware");
+        if ("GET".equals(method)) {
+            return new JSONObject().put("time", SimulatedVehicle.TIMESTAMP.print(vehicle.now()));
+        } else if ("PUT".equals(method)) {
+            String time = readObject(exchange, null).optString("time");
+            try {
+                vehicle.setTime(ISODateTimeFormat.dateTimeParser().parseMillis(time));
+            } catch (IllegalArgumentException e) {
+                throw new HttpError(400, "Bad time: " + time);
+            }
+            return null;
+        }
+        throw new HttpError(405, "Method not allowed");
+    }
+
+    private static void requireGet(String method) throws HttpError {
+        if (!"GET".equals(method))
+            throw new HttpError(405, "Method not allowed");
+    }
+
+    private static JSONObject list(String key, String... uris) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (String uri : uris) {
+            array.put(uri);
+        }
+        return new JSONObject().put(key, array);
+    }
+
+    private static boolean isBusType(String busType) {
+        for (String bus : BUSES) {
+            for (String type : DTC_TYPES) {
+                if (busType.equals(bus + "_" + type))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isEcu(String ecu) {
+        if (!ecu.startsWith("ecu"))
+            return false;
+        try {
+            int i = Integer.parseInt(ecu.substring(3));
+            return i >= 0 && i < vehicle.getEcuCount();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private SimulatedEndpoint endpointAt(String uri) throws HttpError {
+        SimulatedEndpoint endpoint = uri.startsWith("vehicle/data/")
+                ? vehicle.getEndpoint(uri.substring("vehicle/data/".length())) : null;
+        if (endpoint == null)
+            throw new HttpError(404, "No such endpoint: " + uri);
+        return endpoint;
+    }
+
+    /**
+     * Read the request body as a JSON object
+     * @param key key the body's object is wrapped in, or null to return the body itself
+     */
+    private static JSONObject readObject(HttpExchange exchange, String key) throws HttpError, IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            bytes.write(buf, 0, n);
+        }
+        try {
+            JSONObject body = new JSONObject(new String(bytes.toByteArray(), UTF_8));
+            return key == null ? body : body.getJSONObject(key);
+        } catch (JSONException e) {
+            throw new HttpError(400, "Bad request body: " + e.getMessage());
+        }
+    }
+}
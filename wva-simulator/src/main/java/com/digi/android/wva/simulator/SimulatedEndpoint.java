@@ -0,0 +1,55 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+/**
+ * A vehicle data endpoint offered by the simulator.
+ */
+public class SimulatedEndpoint {
+    /** Endpoint name, such as EngineSpeed. */
+    public final String name;
+    /** Where the endpoint's values come from. */
+    public final ValueGenerator generator;
+    /**
+     * Events per second sent for each subscription to this endpoint, or 0 to
+     * honour the interval asked for by the subscription, as a real WVA does.
+     */
+    public final double rate;
+
+    /**
+     * Create an endpoint
+     * @param name endpoint name
+     * @param generator where the endpoint's values come from
+     * @param rate events per second sent for each subscription, or 0 to use
+     *             the subscription's own interval
+     */
+    public SimulatedEndpoint(String name, ValueGenerator generator, double rate) {
+        if (rate < 0)
+            throw new IllegalArgumentException("Rate must not be negative");
+        this.name = name;
+        this.generator = generator;
+        this.rate = rate;
+    }
+
+    /**
+     * @return the endpoint's URI, relative to /ws/
+     */
+    public String getUri() {
+        return "vehicle/data/" + name;
+    }
+
+    /**
+     * Work out how often to send events for a subscription
+     * @param intervalSeconds interval asked for by the subscription
+     * @return milliseconds between events
+     */
+    long periodFor(int intervalSeconds) {
+        if (rate > 0)
+            return Math.max(1, Math.round(1000 / rate));
+        return Math.max(1, intervalSeconds) * 1000L;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The state of a simulated WVA: its endpoints, subscriptions, alarms and
+ * clock. Subscriptions and alarms may be changed from any thread;
+ * {@link #tick(long, EventSink)} is only called from one.
+ */
+public class SimulatedVehicle {
+    /** Timestamps as the WVA writes them, such as 2014-04-21T16:55:33Z. */
+    static final DateTimeFormatter TIMESTAMP =
+            ISODateTimeFormat.dateTimeNoMillis().withZone(DateTimeZone.UTC);
+
+    /**
+     * Where events go, such as the {@link EventChannelServer}.
+     */
+    public interface EventSink {
+        /**
+         * Send an event
+         * @param event the event, as a single line of JSON
+         */
+        void send(String event);
+    }
+
+    static final class Subscription {
+        final String shortName;
+        final SimulatedEndpoint endpoint;
+        final int interval;
+        final String buffer;
+        final long period;
+        long nextDue;
+
+        Subscription(String shortName, SimulatedEndpoint endpoint, int interval, String buffer,
+                     long now) {
+            this.shortName = shortName;
+            this.endpoint = endpoint;
+            this.interval = interval;
+            this.buffer = buffer;
+            this.period = endpoint.periodFor(interval);
+            // Send the first value straight away.
+            this.nextDue = now;
+        }
+    }
+
+    static final class Alarm {
+        final String shortName;
+        final SimulatedEndpoint endpoint;
+        final String type;
+        final double threshold;
+        final int interval;
+        long nextAllowed;
+        /** Value last sampled (for "change") or last reported (for "delta"). */
+        double lastValue = Double.NaN;
+
+        Alarm(String shortName, SimulatedEndpoint endpoint, String type, double threshold,
+              int interval) {
+            this.shortName = shortName;
+            this.endpoint = endpoint;
+            this.type = type;
+            this.threshold = threshold;
+            this.interval = interval;
+        }
+    }
+
+    /** Alarm types the WVA knows about. */
+    static final List<String> ALARM_TYPES = Arrays.asList("above", "below", "change", "delta");
+
+    private final Map<String, SimulatedEndpoint> endpoints;
+    private final int ecus;
+    private final ConcurrentMap<String, Subscription> subscriptions =
+            new ConcurrentHashMap<String, Subscription>();
+    private final ConcurrentMap<String, Alarm> alarms = new ConcurrentHashMap<String, Alarm>();
+    private volatile long clockOffset;
+    /** Sequence number of the last event sent. Only used on the tick thread. */
+    private long sequence;
+
+    /**
+     * Create a vehicle
+     * @param endpoints the vehicle data endpoints it offers
+     * @param ecus number of ECUs reporting fault codes on each bus
+     */
+    public SimulatedVehicle(Collection<SimulatedEndpoint> endpoints, int ecus) {
+        Map<String, SimulatedEndpoint> byName = new LinkedHashMap<String, SimulatedEndpoint>();
+        for (SimulatedEndpoint e : endpoints) {
+            byName.put(e.name, e);
+        }
+        this.endpoints = Collections.unmodifiableMap(byName);
+        this.ecus = ecus;
+    }
+
+    /**
+     * @return the endpoints, in the order they were given
+     */
+    public Collection<SimulatedEndpoint> getEndpoints() {
+        return endpoints.values();
+    }
+
+    /**
+     * @param name endpoint name
+     * @return the endpoint, or null if there is none by that name
+     */
+    public SimulatedEndpoint getEndpoint(String name) {
+        return endpoints.get(name);
+    }
+
+    /**
+     * @return number of ECUs reporting fault codes on each bus
+     */
+    public int getEcuCount() {
+        return ecus;
+    }
+
+    /**
+     * @return the vehicle's current time, in milliseconds since the epoch
+     */
+    public long now() {
+        return System.currentTimeMillis() + clockOffset;
+    }
+
+    /**
+     * Set the vehicle's clock, as done through ws/hw/time
+     * @param millis the new time, in milliseconds since the epoch
+     */
+    public void setTime(long millis) {
+        clockOffset = millis - System.currentTimeMillis();
+    }
+
+    /**
+     * Add or replace a subscription
+     * @param shortName subscription name, such as EngineSpeed~sub
+     * @param endpoint endpoint to send the values of
+     * @param interval seconds between values
+     * @param buffer the buffer mode asked for ("queue" or "discard")
+     */
+    public void subscribe(String shortName, SimulatedEndpoint endpoint, int interval, String buffer) {
+        subscriptions.put(shortName, new Subscription(shortName, endpoint, interval, buffer, now()));
+    }
+
+    /**
+     * @param shortName subscription name
+     * @return true if there was such a subscription
+     */
+    public boolean unsubscribe(String shortName) {
+        return subscriptions.remove(shortName) != null;
+    }
+
+    /**
+     * @return names of the current subscriptions
+     */
+    public Collection<String> getSubscriptionNames() {
+        return subscriptions.keySet();
+    }
+
+    Subscription getSubscription(String shortName) {
+        return subscriptions.get(shortName);
+    }
+
+    /**
+     * Add or replace an alarm
+     * @param shortName alarm name, such as EngineSpeed~above
+     * @param endpoint endpoint to watch
+     * @param type one of {@link #ALARM_TYPES}
+     * @param threshold threshold of the alarm
+     * @param interval least number of seconds between alarm events
+     */
+    public void addAlarm(String shortName, SimulatedEndpoint endpoint, String type,
+                         double threshold, int interval) {
+        if (!ALARM_TYPES.contains(type))
+            throw new IllegalArgumentException("Unknown alarm type: " + type);
+        alarms.put(shortName, new Alarm(shortName, endpoint, type, threshold, interval));
+    }
+
+    /**
+     * @param shortName alarm name
+     * @return true if there was such an alarm
+     */
+    public boolean removeAlarm(String shortName) {
+        return alarms.remove(shortName) != null;
+    }
+
+    /**
+     * @return names of the current alarms
+     */
+    public Collection<String> getAlarmNames() {
+        return alarms.keySet();
+    }
+
+    Alarm getAlarm(String shortName) {
+        return alarms.get(shortName);
+    }
+
+    /**
+     * Send every subscription event and alarm which is due
+     * @param now the vehicle's current time
+     * @param sink where to send the events
+     * @return number of events sent
+     */
+    public int tick(long now, EventSink sink) {
+        int sent = 0;
+        String timestamp = null;
+        for (Subscription sub : subscriptions.values()) {
+            if (now < sub.nextDue)
+                continue;
+            if (timestamp == null)
+                timestamp = TIMESTAMP.print(now);
+            sink.send(event("data", sub.shortName, sub.buffer, sub.endpoint, timestamp,
+                    sub.endpoint.generator.valueAt(now)));
+            sent++;
+            // Keep to the rate, but don't try to catch up after a stall.
+            sub.nextDue += sub.period;
+            if (sub.nextDue <= now)
+                sub.nextDue = now + sub.period;
+        }
+        for (Alarm alarm : alarms.values()) {
+            double value = alarm.endpoint.generator.valueAt(now);
+            if (!triggered(alarm, value) || now < alarm.nextAllowed)
+                continue;
+            if (timestamp == null)
+                timestamp = TIMESTAMP.print(now);
+            sink.send(event("alarm", alarm.shortName, "queue", alarm.endpoint, timestamp, value));
+            sent++;
+            alarm.nextAllowed = now + Math.max(0, alarm.interval) * 1000L;
+            if ("delta".equals(alarm.type))
+                alarm.lastValue = value;
+        }
+        return sent;
+    }
+
+    private static boolean triggered(Alarm alarm, double value) {
+        if ("above".equals(alarm.type))
+            return value > alarm.threshold;
+        if ("below".equals(alarm.type))
+            return value < alarm.threshold;
+        if ("change".equals(alarm.type)) {
+            boolean changed = !Double.isNaN(alarm.lastValue) && value != alarm.lastValue;
+            alarm.lastValue = value;
+            return changed;
+        }
+        // delta: compared with the last value reported.
+        if (Double.isNaN(alarm.lastValue)) {
+            alarm.lastValue = value;
+            return false;
+        }
+        return Math.abs(value - alarm.lastValue) >= alarm.threshold;
+    }
+
+    /**
+     * Build an event as the WVA sends it on the event channel, such as
+     * <pre>{"data": {"sequence": 1, "uri": "vehicle/data/EngineSpeed", "buffer": "queue",
+     * "short_name": "EngineSpeed~sub", "timestamp": "...",
+     * "EngineSpeed": {"timestamp": "...", "value": 1000.0}}}</pre>
+     */
+    private String event(String kind, String shortName, String buffer, SimulatedEndpoint endpoint,
+                         String timestamp, double value) {
+        String ts = JSONObject.quote(timestamp);
+        StringBuilder sb = new StringBuilder(192);
+        sb.append("{\"").append(kind).append("\": {\"sequence\": ").append(++sequence)
+                .append(", \"uri\": ").append(JSONObject.quote(endpoint.getUri()))
+                .append(", \"buffer\": ").append(JSONObject.quote(buffer))
+                .append(", \"short_name\": ").append(JSONObject.quote(shortName))
+                .append(", \"timestamp\": ").append(ts)
+                .append(", ").append(JSONObject.quote(endpoint.name))
+                .append(": {\"timestamp\": ").append(ts)
+                .append(", \"value\": ").append(value)
+                .append("}}}");
+        return sb.toString();
+    }
+}
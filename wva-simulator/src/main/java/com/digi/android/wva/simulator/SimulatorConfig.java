@@ -0,0 +1,178 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings for a {@link WvaSimulator}.
+ *
+ * <p>Settings can be read from a properties file, from command line
+ * options, or both; the same names are used for each, so
+ * {@code --http-port 8080} on the command line is {@code http.port=8080}
+ * in a file. Recognized settings:</p>
+ * <ul>
+ *     <li>{@code http.port} port for the ws/ web services (default 80, as the app expects)</li>
+ *     <li>{@code event.port} event channel port (default 5000, as in the app's settings)</li>
+ *     <li>{@code endpoints} number of vehicle data endpoints to offer (default 50)</li>
+ *     <li>{@code generator} value generator for the endpoints (see {@link ValueGenerator})</li>
+ *     <li>{@code rate} events per second per subscription, or 0 to honour each
+ *     subscription's interval (default 0)</li>
+ *     <li>{@code endpoint.NAME} adds or overrides one endpoint, as
+ *     {@code GENERATOR} or {@code GENERATOR@RATE}</li>
+ *     <li>{@code ecus} number of ECUs reporting fault codes on each bus (default 1)</li>
+ *     <li>{@code http.delay} milliseconds to wait before answering each web
+ *     services request, to mimic a slow network (default 0)</li>
+ *     <li>{@code tick} milliseconds between checks for events to send (default 10)</li>
+ *     <li>{@code user}, {@code password} require HTTP basic authentication</li>
+ * </ul>
+ * <p>On the command line, {@code --endpoint NAME=SPEC} sets
+ * {@code endpoint.NAME}, and {@code --config FILE} reads a properties file.</p>
+ */
+public class SimulatorConfig {
+    /** Names given to the first generated endpoints, as found on a typical vehicle. */
+    private static final String[] COMMON_ENDPOINTS = {
+            "EngineSpeed", "VehicleSpeed", "FuelLevel", "EngineCoolantTemp", "Odometer",
+            "ThrottlePosition", "FuelRate", "BatteryVoltage", "AccelPedalPosition",
+            "EngineOilPressure", "EngineOilTemp", "TripOdometer", "TransOilTemp",
+            "ParkingBrake", "CruiseControlStatus", "EngineHours"
+    };
+
+    public int httpPort = 80;
+    public int eventPort = 5000;
+    public int endpointCount = 50;
+    public String generator = "sine:0:100:60";
+    public double rate = 0;
+    public int ecus = 1;
+    public long httpDelay = 0;
+    public long tick = 10;
+    public String user;
+    public String password;
+    /** Endpoints set one by one, by name, as generator specs with an optional rate. */
+    public final Map<String, String> endpointSpecs = new LinkedHashMap<String, String>();
+
+    /**
+     * Apply settings from a set of properties
+     * @param props the settings
+     * @throws IllegalArgumentException if a setting is unknown or invalid
+     */
+    public void apply(Properties props) {
+        for (String key : props.stringPropertyNames()) {
+            set(key, props.getProperty(key).trim());
+        }
+    }
+
+    /**
+     * Apply settings from a properties file
+     * @param path file to read
+     * @throws IOException if the file can't be read
+     */
+    public void load(String path) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(path);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        apply(props);
+    }
+
+    /**
+     * Apply settings from command line options
+     * @param args the options
+     * @throws IOException if a {@code --config} file can't be read
+     * @throws IllegalArgumentException if an option is unknown or invalid
+     */
+    public void parse(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || i + 1 >= args.length)
+                throw new IllegalArgumentException("Expected --option value, got " + arg);
+            String value = args[++i];
+            String name = arg.substring(2);
+            if ("config".equals(name)) {
+                load(value);
+            } else if ("endpoint".equals(name)) {
+                int eq = value.indexOf('=');
+                if (eq <= 0)
+                    throw new IllegalArgumentException("Expected --endpoint NAME=SPEC, got " + value);
+                set("endpoint." + value.substring(0, eq), value.substring(eq + 1));
+            } else {
+                set(name.replace('-', '.'), value);
+            }
+        }
+    }
+
+    private void set(String key, String value) {
+        try {
+            if (key.startsWith("endpoint.")) {
+                String name = key.substring("endpoint.".length());
+                // Fail now, rather than once the simulator is running.
+                endpoint(name, value);
+                endpointSpecs.put(name, value);
+            } else if ("http.port".equals(key)) {
+                httpPort = Integer.parseInt(value);
+            } else if ("event.port".equals(key)) {
+                eventPort = Integer.parseInt(value);
+            } else if ("endpoints".equals(key)) {
+                endpointCount = Integer.parseInt(value);
+            } else if ("generator".equals(key)) {
+                ValueGenerator.parse(value);
+                generator = value;
+            } else if ("rate".equals(key)) {
+                rate = Double.parseDouble(value);
+            } else if ("ecus".equals(key)) {
+                ecus = Integer.parseInt(value);
+            } else if ("http.delay".equals(key)) {
+                httpDelay = Long.parseLong(value);
+            } else if ("tick".equals(key)) {
+                tick = Long.parseLong(value);
+            } else if ("user".equals(key)) {
+                user = value;
+            } else if ("password".equals(key)) {
+                password = value;
+            } else {
+                throw new IllegalArgumentException("Unknown setting: " + key);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number for " + key + ": " + value, e);
+        }
+    }
+
+    /**
+     * Build the endpoints these settings describe: {@link #endpointCount}
+     * generated endpoints, with any set by name added or overridden
+     * @return the endpoints, in the order they are listed by the simulator
+     */
+    public List<SimulatedEndpoint> buildEndpoints() {
+        Map<String, SimulatedEndpoint> endpoints = new LinkedHashMap<String, SimulatedEndpoint>();
+        for (int i = 0; i < endpointCount; i++) {
+            String name = i < COMMON_ENDPOINTS.length ? COMMON_ENDPOINTS[i] : "Endpoint" + i;
+            endpoints.put(name, new SimulatedEndpoint(name, ValueGenerator.parse(generator), rate));
+        }
+        for (Map.Entry<String, String> spec : endpointSpecs.entrySet()) {
+            endpoints.put(spec.getKey(), endpoint(spec.getKey(), spec.getValue()));
+        }
+        return new ArrayList<SimulatedEndpoint>(endpoints.values());
+    }
+
+    private SimulatedEndpoint endpoint(String name, String spec) {
+        int at = spec.lastIndexOf('@');
+        if (at < 0)
+            return new SimulatedEndpoint(name, ValueGenerator.parse(spec), rate);
+        return new SimulatedEndpoint(name, ValueGenerator.parse(spec.substring(0, at)),
+                Double.parseDouble(spec.substring(at + 1)));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+import java.util.Random;
+
+/**
+ * Produces the values of a simulated vehicle data endpoint over time.
+ *
+ * <p>Generators are described by short specs, as used on the command line
+ * and in configuration files:</p>
+ * <ul>
+ *     <li>{@code constant:V} always V</li>
+ *     <li>{@code ramp:MIN:MAX:PERIOD} rises from MIN to MAX every PERIOD seconds</li>
+ *     <li>{@code sine:MIN:MAX:PERIOD} swings between MIN and MAX every PERIOD seconds</li>
+ *     <li>{@code random:MIN:MAX} a new random value between MIN and MAX each time</li>
+ * </ul>
+ */
+public abstract class ValueGenerator {
+    /**
+     * Get the endpoint's value at the given time
+     * @param millis time, in milliseconds since the epoch
+     * @return the value
+     */
+    public abstract double valueAt(long millis);
+
+    /**
+     * Build a generator from its spec
+     * @param spec generator spec, such as {@code sine:0:100:30}
+     * @return the generator
+     * @throws IllegalArgumentException if the spec can't be understood
+     */
+    public static ValueGenerator parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        String kind = parts[0];
+        try {
+            if ("constant".equals(kind) && parts.length == 2)
+                return constant(Double.parseDouble(parts[1]));
+            if ("ramp".equals(kind) && parts.length == 4)
+                return new Ramp(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                        period(parts[3]));
+            if ("sine".equals(kind) && parts.length == 4)
+                return new Sine(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                        period(parts[3]));
+            if ("random".equals(kind) && parts.length == 3)
+                return new Uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number in value generator: " + spec, e);
+        }
+        throw new IllegalArgumentException("Unknown value generator: " + spec);
+    }
+
+    /**
+     * @param value the value to generate
+     * @return a generator which always produces the given value
+     */
+    public static ValueGenerator constant(final double value) {
+        return new ValueGenerator() {
+            @Override
+            public double valueAt(long millis) {
+                return value;
+            }
+        };
+    }
+
+    private static long period(String seconds) {
+        long millis = (long) (Double.parseDouble(seconds) * 1000);
+        if (millis <= 0)
+            throw new IllegalArgumentException("Period must be above 0: " + seconds);
+        return millis;
+    }
+
+    private static final class Ramp extends ValueGenerator {
+        private final double min, max;
+        private final long period;
+
+        Ramp(double min, double max, long period) {
+            this.min = min;
+            this.max = max;
+            this.period = period;
+        }
+
+        @Override
+        public double valueAt(long millis) {
+            return min + (max - min) * (millis % period) / period;
+        }
+    }
+
+    private static final class Sine extends ValueGenerator {
+        private final double mid, amplitude;
+        private final long period;
+
+        Sine(double min, double max, long period) {
+            this.mid = (min + max) / 2;
+            this.amplitude = (max - min) / 2;
+            this.period = period;
+        }
+
+        @Override
+        public double valueAt(long millis) {
+            return mid + amplitude * Math.sin(2 * Math.PI * (millis % period) / period);
+        }
+    }
+
+    private static final class Uniform extends ValueGenerator {
+        private final double min, max;
+        private final Random random = new Random();
+
+        Uniform(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public synchronized double valueAt(long millis) {
+            return min + (max - min) * random.nextDouble();
+        }
+    }
+}
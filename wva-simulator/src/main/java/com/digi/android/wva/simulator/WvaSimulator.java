@@ -0,0 +1,155 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.simulator;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stand-in for a WVA, for testing the app and the library without a
+ * vehicle: serves the ws/ web services over HTTP and pushes subscription
+ * and alarm events over the event channel.
+ *
+ * <p>Run it with {@code ./gradlew :wva-simulator:run -Pargs="..."}, or
+ * start one from a test. See {@link SimulatorConfig} for the settings.</p>
+ */
+public class WvaSimulator {
+    private final SimulatorConfig config;
+    private final SimulatedVehicle vehicle;
+    private final EventChannelServer events = new EventChannelServer();
+    private HttpServer http;
+    private ExecutorService httpExecutor;
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Create a simulator. Nothing is served until {@link #start()}.
+     * @param config settings
+     */
+    public WvaSimulator(SimulatorConfig config) {
+        this.config = config;
+        this.vehicle = new SimulatedVehicle(config.buildEndpoints(), config.ecus);
+    }
+
+    /**
+     * Start serving the web services and the event channel
+     * @throws IOException if either port can't be listened on
+     */
+    public synchronized void start() throws IOException {
+        if (http != null)
+            throw new IllegalStateException("Simulator already started");
+        events.start(config.eventPort);
+        try {
+            http = HttpServer.create(new InetSocketAddress(config.httpPort), 0);
+        } catch (IOException e) {
+            events.stop();
+            throw e;
+        }
+        http.createContext("/ws", new HttpApi(vehicle, config, events));
+        // Requests are answered concurrently, as many clients connect at once
+        // when load testing.
+        httpExecutor = Executors.newCachedThreadPool();
+        http.setExecutor(httpExecutor);
+        http.start();
+
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                if (vehicle.tick(vehicle.now(), events) > 0)
+                    events.flush();
+            }
+        }, config.tick, config.tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop serving, and disconnect every event channel client
+     */
+    public synchronized void stop() {
+        if (http == null)
+            return;
+        ticker.shutdownNow();
+        http.stop(0);
+        httpExecutor.shutdownNow();
+        events.stop();
+        http = null;
+    }
+
+    /**
+     * @return the port the web services are served on
+     */
+    public synchronized int getHttpPort() {
+        return http == null ? -1 : http.getAddress().getPort();
+    }
+
+    /**
+     * @return the port the event channel is served on
+     */
+    public int getEventPort() {
+        return events.getPort();
+    }
+
+    /**
+     * @return the simulated vehicle
+     */
+    public SimulatedVehicle getVehicle() {
+        return vehicle;
+    }
+
+    /**
+     * @return the event channel
+     */
+    public EventChannelServer getEventChannel() {
+        return events;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulatorConfig config = new SimulatorConfig();
+        try {
+            config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: WvaSimulator [--config FILE] [--http-port N] [--event-port N]"
+                    + " [--endpoints N] [--generator SPEC] [--rate PER_SECOND]"
+                    + " [--endpoint NAME=SPEC[@PER_SECOND]]... [--ecus N] [--http-delay MS]"
+                    + " [--tick MS] [--user NAME --password PASSWORD]");
+            System.exit(2);
+            return;
+        }
+
+        final WvaSimulator simulator = new WvaSimulator(config);
+        simulator.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                simulator.stop();
+            }
+        });
+        System.out.println("Simulating a WVA with " + simulator.getVehicle().getEndpoints().size()
+                + " endpoints: web services on port " + simulator.getHttpPort()
+                + ", event channel on port " + simulator.getEventPort());
+
+        // Report throughput every ten seconds while anybody is listening.
+        long lastCount = 0;
+        while (true) {
+            Thread.sleep(10000);
+            long count = simulator.getEventChannel().getEventsSent();
+            int clients = simulator.getEventChannel().getClientCount();
+            if (clients > 0 || count != lastCount) {
+                System.out.printf("%d clients, %d subscriptions, %.1f events/s%n", clients,
+                        simulator.getVehicle().getSubscriptionNames().size(),
+                        (count - lastCount) / 10.0);
+            }
+            lastCount = count;
+        }
+    }
+}
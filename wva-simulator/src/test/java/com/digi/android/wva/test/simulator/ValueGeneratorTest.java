@@ -0,0 +1,53 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.simulator;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.simulator.ValueGenerator;
+
+public class ValueGeneratorTest extends TestCase {
+	public void testConstant() {
+		ValueGenerator g = ValueGenerator.parse("constant:42.5");
+		assertEquals(42.5, g.valueAt(0));
+		assertEquals(42.5, g.valueAt(123456789));
+	}
+
+	public void testRamp() {
+		ValueGenerator g = ValueGenerator.parse("ramp:0:100:10");
+		assertEquals(0.0, g.valueAt(0));
+		assertEquals(50.0, g.valueAt(5000));
+		assertEquals(0.0, g.valueAt(10000));
+	}
+
+	public void testSine() {
+		ValueGenerator g = ValueGenerator.parse("sine:0:100:4");
+		assertEquals(50.0, g.valueAt(0), 1e-9);
+		assertEquals(100.0, g.valueAt(1000), 1e-9);
+		assertEquals(0.0, g.valueAt(3000), 1e-9);
+	}
+
+	public void testRandomStaysInRange() {
+		ValueGenerator g = ValueGenerator.parse("random:10:20");
+		for (int i = 0; i < 1000; i++) {
+			double v = g.valueAt(i);
+			assertTrue(v >= 10 && v < 20);
+		}
+	}
+
+	public void testBadSpecs() {
+		String[] bad = {"", "bogus:1", "constant", "sine:0:1", "ramp:0:1:0", "random:a:b"};
+		for (String spec : bad) {
+			try {
+				ValueGenerator.parse(spec);
+				fail("Accepted " + spec);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of
+ * the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Copyright (c) 2014 Digi International Inc., All Rights Reserved.
+ */
+package com.digi.android.wva.test.simulator;
+
+import junit.framework.TestCase;
+
+import com.digi.android.wva.simulator.SimulatorConfig;
+import com.digi.android.wva.simulator.WvaSimulator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+
+public class WvaSimulatorTest extends TestCase {
+	private WvaSimulator simulator;
+
+	@Override protected void setUp() throws Exception {
+		simulator = start("--endpoints", "20", "--endpoint", "EngineSpeed=constant:1500@50");
+	}
+
+	@Override protected void tearDown() {
+		simulator.stop();
+	}
+
+	private static WvaSimulator start(String... args) throws IOException {
+		SimulatorConfig config = new SimulatorConfig();
+		config.httpPort = 0;
+		config.eventPort = 0;
+		config.parse(args);
+		WvaSimulator sim = new WvaSimulator(config);
+		sim.start();
+		return sim;
+	}
+
+	/** Make a request; returns the status code, followed by the body. */
+	private String[] request(String method, String path, String body) throws IOException {
+		URL url = new URL("http://localhost:" + simulator.getHttpPort() + "/ws/" + path);
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setRequestMethod(method);
+		if (body != null) {
+			conn.setDoOutput(true);
+			OutputStream out = conn.getOutputStream();
+			out.write(body.getBytes("UTF-8"));
+			out.close();
+		}
+		int status = conn.getResponseCode();
+		InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if (in != null) {
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = in.read(buf)) > 0) {
+				bytes.write(buf, 0, n);
+			}
+			in.close();
+		}
+		return new String[] {String.valueOf(status), bytes.toString("UTF-8")};
+	}
+
+	private JSONObject get(String path) throws Exception {
+		String[] response = request("GET", path, null);
+		assertEquals("GET " + path, "200", response[0]);
+		return new JSONObject(response[1]);
+	}
+
+	public void testListsEndpoints() throws Exception {
+		JSONArray data = get("vehicle/data").getJSONArray("data");
+		assertEquals(20, data.length());
+		assertEquals("vehicle/data/EngineSpeed", data.getString(0));
+
+		JSONObject engineSpeed = get("vehicle/data/EngineSpeed").getJSONObject("EngineSpeed");
+		assertEquals(1500.0, engineSpeed.getDouble("value"));
+		assertTrue(engineSpeed.getString("timestamp").endsWith("Z"));
+
+		assertEquals("404", request("GET", "vehicle/data/NoSuchThing", null)[0]);
+	}
+
+	public void testServicesListed() throws Exception {
+		JSONArray ws = get("").getJSONArray("ws");
+		String services = ws.toString();
+		for (String s : new String[] {"vehicle", "subscriptions", "alarms", "hw"}) {
+			assertTrue(services.contains("\"" + s + "\""));
+		}
+	}
+
+	public void testSubscriptionEvents() throws Exception {
+		Socket socket = new Socket("localhost", simulator.getEventPort());
+		try {
+			socket.setSoTimeout(5000);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+			String[] put = request("PUT", "subscriptions/EngineSpeed~sub",
+					"{\"subscription\": {\"uri\": \"vehicle/data/EngineSpeed\", \"interval\": 1, \"buffer\": \"queue\"}}");
+			assertEquals("200", put[0]);
+			assertEquals("", put[1]);
+
+			// EngineSpeed is sent 50 times a second, whatever the interval.
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < 10; i++) {
+				JSONObject event = new JSONObject(in.readLine()).getJSONObject("data");
+				assertEquals("vehicle/data/EngineSpeed", event.getString("uri"));
+				assertEquals("EngineSpeed~sub", event.getString("short_name"));
+				assertEquals(1500.0, event.getJSONObject("EngineSpeed").getDouble("value"));
+			}
+			assertTrue(System.currentTimeMillis() - start < 1000);
+
+			JSONObject sub = get("subscriptions/EngineSpeed~sub").getJSONObject("subscription");
+			assertEquals(1, sub.getInt("interval"));
+			assertEquals("200", request("DELETE", "subscriptions/EngineSpeed~sub", null)[0]);
+			assertEquals("404", request("DELETE", "subscriptions/EngineSpeed~sub", null)[0]);
+			assertEquals(0, get("subscriptions").getJSONArray("subscriptions").length());
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testUnknownEndpointSubscription() throws Exception {
+		assertEquals("404", request("PUT", "subscriptions/Nothing~sub",
+				"{\"subscription\": {\"uri\": \"vehicle/data/Nothing\", \"interval\": 1}}")[0]);
+		assertEquals("400", request("PUT", "subscriptions/EngineSpeed~sub", "not json")[0]);
+	}
+
+	public void testAlarmEvents() throws Exception {
+		Socket socket = new Socket("localhost", simulator.getEventPort());
+		try {
+			socket.setSoTimeout(5000);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+			assertEquals("200", request("PUT", "alarms/EngineSpeed~above",
+					"{\"alarm\": {\"uri\": \"vehicle/data/EngineSpeed\", \"type\": \"above\", \"threshold\": 1000, \"interval\": 10}}")[0]);
+			JSONObject alarm = new JSONObject(in.readLine()).getJSONObject("alarm");
+			assertEquals("EngineSpeed~above", alarm.getString("short_name"));
+			assertEquals(1500.0, alarm.getJSONObject("EngineSpeed").getDouble("value"));
+
+			assertEquals("400", request("PUT", "alarms/EngineSpeed~sideways",
+					"{\"alarm\": {\"uri\": \"vehicle/data/EngineSpeed\", \"type\": \"sideways\"}}")[0]);
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testConfigurationAndTime() throws Exception {
+		JSONObject events = get("config/ws_events").getJSONObject("ws_events");
+		assertEquals(simulator.getEventPort(), events.getInt("port"));
+		assertEquals("200", request("PUT", "config/ws_events",
+				"{\"ws_events\": {\"enable\": \"on\", \"port\": 5000}}")[0]);
+
+		assertEquals("200", request("PUT", "hw/time", "{\"time\": \"2014-01-02T03:04:05Z\"}")[0]);
+		assertTrue(get("hw/time").getString("time").startsWith("2014-01-02T03:04"));
+
+		JSONArray ecus = get("vehicle/dtc/can0_active").getJSONArray("can0_active");
+		assertEquals("vehicle/dtc/can0_active/ecu0", ecus.getString(0));
+		assertTrue(get("vehicle/dtc/can0_active/ecu0").has("ecu0"));
+	}
+
+	public void testBasicAuth() throws Exception {
+		simulator.stop();
+		simulator = start("--user", "admin", "--password", "secret");
+		assertEquals("401", request("GET", "vehicle/data", null)[0]);
+	}
+}